@@ -0,0 +1,219 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yupi.yuaicodemother.ai.model.message.AiResponseMessage;
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
+import com.yupi.yuaicodemother.ai.model.message.ToolExecutedMessage;
+import com.yupi.yuaicodemother.ai.model.message.ToolRequestMessage;
+import com.yupi.yuaicodemother.ai.recording.LlmCassette;
+import com.yupi.yuaicodemother.ai.recording.LlmRecording;
+import com.yupi.yuaicodemother.ai.recording.LlmRecordingFiles;
+import com.yupi.yuaicodemother.ai.recording.ReplayingHttpClientBuilder;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionResponse;
+import dev.langchain4j.service.tool.ToolExecution;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基准测试的输入数据
+ * 模型响应为 LlmRecordingFiles 格式（与 record 模式的输出相同），按代码生成类型分目录，文件名为 6 位序号，
+ * 一次生成的多轮工具调用按序号排列。
+ * 跟踪性能回退时应通过 -Dpayloads.dir=目录 指定真实录制，读取该目录下的 {codeGenType}/ 子目录；
+ * 未指定时回退到内置的 payloads/synthetic/{codeGenType}/，它们是按录制格式合成的数据，不是真实模型输出
+ * （开始时间相同、首个片段延迟固定、ID 按规律编号），只用于冒烟运行，详见 README 的“输入数据”一节；
+ * 提示词和查询请求为整理的典型请求样本，每行一条
+ *
+ * @author yupi
+ */
+public final class BenchmarkPayloads {
+
+    /**
+     * 真实录制目录的系统属性
+     */
+    public static final String PAYLOADS_DIR_PROPERTY = "payloads.dir";
+
+    private static final String RESOURCE_ROOT = "payloads/";
+
+    /**
+     * 内置合成数据的目录
+     */
+    private static final String SYNTHETIC_ROOT = RESOURCE_ROOT + "synthetic/";
+
+    private static final String DONE = "[DONE]";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private BenchmarkPayloads() {
+    }
+
+    /**
+     * 读取一次生成的全部录制，未指定真实录制目录时使用内置的合成数据
+     *
+     * @param codeGenType 代码生成类型（html、multi_file、vue_project）
+     * @return 按录制顺序排列的调用
+     */
+    public static List<LlmRecording> recordings(String codeGenType) {
+        try {
+            String directory = System.getProperty(PAYLOADS_DIR_PROPERTY);
+            if (directory != null) {
+                return requireNotEmpty(LlmRecordingFiles.readDirectory(Paths.get(directory, codeGenType)), codeGenType);
+            }
+            System.err.println("未指定 -D" + PAYLOADS_DIR_PROPERTY + "，" + codeGenType + " 使用内置的合成数据，结果不能用于跟踪性能回退");
+            List<LlmRecording> recordings = new ArrayList<>();
+            for (int seq = 1; ; seq++) {
+                String resource = String.format("%s%s/%06d%s", SYNTHETIC_ROOT, codeGenType, seq, LlmRecordingFiles.FILE_SUFFIX);
+                InputStream in = BenchmarkPayloads.class.getClassLoader().getResourceAsStream(resource);
+                if (in == null) {
+                    break;
+                }
+                recordings.add(LlmRecordingFiles.read(in, resource));
+            }
+            return requireNotEmpty(recordings, codeGenType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 录制中的全部流式响应片段（不含结束标记）
+     */
+    public static List<ChatCompletionResponse> chatCompletionResponses(LlmRecording recording) {
+        List<ChatCompletionResponse> responses = new ArrayList<>();
+        for (LlmRecording.Frame frame : recording.frames()) {
+            if (!LlmRecording.EVENT.equals(frame.kind()) || DONE.equals(frame.data())) {
+                continue;
+            }
+            try {
+                responses.add(OBJECT_MAPPER.readValue(frame.data(), ChatCompletionResponse.class));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("录制的响应片段无法解析: " + frame.data(), e);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * 通过 OpenAiStreamingChatModel 回放录制，得到与线上一致的流式消息序列（即门面交给流处理器的 StreamMessage）
+     * 工具执行结果不影响流处理器的输出，统一使用固定文本
+     *
+     * @param recordings 一次生成的全部录制，每个录制对应一轮模型调用
+     * @return 流式消息
+     */
+    public static List<StreamMessage> streamMessages(List<LlmRecording> recordings) {
+        OpenAiStreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .baseUrl("http://replay")
+                .apiKey("replay")
+                .modelName("deepseek-chat")
+                .httpClientBuilder(new ReplayingHttpClientBuilder(new LlmCassette(recordings, false, false), 0))
+                .build();
+        List<StreamMessage> messages = new ArrayList<>();
+        for (int i = 0; i < recordings.size(); i++) {
+            CompletableFuture<ChatResponse> done = new CompletableFuture<>();
+            model.chat(ChatRequest.builder().messages(UserMessage.from("replay")).build(), new StreamingChatResponseHandler() {
+
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    messages.add(new AiResponseMessage(partialResponse));
+                }
+
+                @Override
+                public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+                    messages.add(new ToolRequestMessage(partialToolExecutionRequest));
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    done.complete(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    done.completeExceptionally(error);
+                }
+            });
+            ChatResponse response = done.orTimeout(30, TimeUnit.SECONDS).join();
+            if (response.aiMessage().hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : response.aiMessage().toolExecutionRequests()) {
+                    messages.add(new ToolExecutedMessage(ToolExecution.builder()
+                            .request(request)
+                            .result("ok")
+                            .build()));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 录制中模型输出的文本片段
+     */
+    public static List<String> contentChunks(List<LlmRecording> recordings) {
+        List<String> chunks = new ArrayList<>();
+        for (StreamMessage message : streamMessages(recordings)) {
+            if (message instanceof AiResponseMessage aiResponseMessage) {
+                chunks.add(aiResponseMessage.getData());
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 录制中模型输出的完整文本（即代码解析器的输入）
+     */
+    public static String content(List<LlmRecording> recordings) {
+        return String.join("", contentChunks(recordings));
+    }
+
+    /**
+     * 按行读取文本样本，忽略空行
+     */
+    public static List<String> lines(String name) {
+        String resource = RESOURCE_ROOT + name;
+        InputStream in = BenchmarkPayloads.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalStateException("找不到基准测试输入: " + resource);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines().filter(line -> !line.isBlank()).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按行读取 JSON 样本并转换为对象
+     */
+    public static <T> List<T> jsonLines(String name, Class<T> type) {
+        return lines(name).stream().map(line -> JSONUtil.toBean(line, type)).toList();
+    }
+
+    private static List<LlmRecording> requireNotEmpty(List<LlmRecording> recordings, String codeGenType) {
+        if (recordings.isEmpty()) {
+            String directory = System.getProperty(PAYLOADS_DIR_PROPERTY);
+            Path location = directory != null ? Paths.get(directory, codeGenType) : Paths.get(SYNTHETIC_ROOT, codeGenType);
+            throw new IllegalStateException("没有 " + codeGenType + " 类型的录制: " + location);
+        }
+        return recordings;
+    }
+}
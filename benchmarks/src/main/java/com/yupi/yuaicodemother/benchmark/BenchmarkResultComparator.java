@@ -0,0 +1,99 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 对比两次基准测试结果（JMH 的 -rf json 输出），用于跟踪版本间的性能回退
+ * 用法：java -cp benchmarks.jar com.yupi.yuaicodemother.benchmark.BenchmarkResultComparator 基线.json 本次.json [阈值百分比，默认 10]
+ * 吞吐量模式（thrpt）下降、其余模式（avgt 等）耗时上升超过阈值时视为回退，存在回退时以状态码 1 退出
+ *
+ * @author yupi
+ */
+public class BenchmarkResultComparator {
+
+    private static final double DEFAULT_THRESHOLD_PERCENT = 10;
+
+    private static final String THROUGHPUT_MODE = "thrpt";
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("用法: BenchmarkResultComparator <baseline.json> <current.json> [thresholdPercent]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD_PERCENT;
+        Map<String, JSONObject> baseline = load(args[0]);
+        Map<String, JSONObject> current = load(args[1]);
+        int regressions = 0;
+        System.out.printf("%-90s %14s %14s %9s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+            JSONObject result = entry.getValue();
+            JSONObject metric = result.getJSONObject("primaryMetric");
+            String unit = metric.getStr("scoreUnit");
+            JSONObject baselineResult = baseline.get(entry.getKey());
+            if (baselineResult == null) {
+                System.out.printf("%-90s %14s %14s %9s%n", entry.getKey(), "-", format(metric.getDouble("score"), unit), "new");
+                continue;
+            }
+            double before = baselineResult.getJSONObject("primaryMetric").getDouble("score");
+            double after = metric.getDouble("score");
+            double changePercent = before == 0 ? 0 : (after - before) / before * 100;
+            // 吞吐量越高越好，其余模式的得分为耗时，越低越好
+            boolean regressed = THROUGHPUT_MODE.equals(result.getStr("mode"))
+                    ? changePercent < -threshold
+                    : changePercent > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-90s %14s %14s %+8.1f%%%s%n", entry.getKey(), format(before, unit), format(after, unit),
+                    changePercent, regressed ? "  <-- 回退" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-90s %14s %14s %9s%n", key, "-", "-", "removed");
+            }
+        }
+        if (regressions > 0) {
+            System.out.printf("共 %d 项超过 %.1f%% 的性能回退%n", regressions, threshold);
+            System.exit(1);
+        }
+        System.out.println("没有超过阈值的性能回退");
+    }
+
+    /**
+     * 读取结果文件，键为基准类名、方法名加参数
+     */
+    private static Map<String, JSONObject> load(String file) {
+        JSONArray results = JSONUtil.parseArray(FileUtil.readString(file, StandardCharsets.UTF_8));
+        Map<String, JSONObject> resultMap = new LinkedHashMap<>();
+        for (JSONObject result : results.jsonIter()) {
+            resultMap.put(key(result), result);
+        }
+        return resultMap;
+    }
+
+    private static String key(JSONObject result) {
+        // 去掉包名，便于阅读
+        String benchmark = result.getStr("benchmark");
+        benchmark = benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1);
+        JSONObject params = result.getJSONObject("params");
+        if (params == null || params.isEmpty()) {
+            return benchmark;
+        }
+        StringBuilder key = new StringBuilder(benchmark).append(':');
+        new TreeMap<>(params).forEach((name, value) -> key.append(name).append('=').append(value).append(','));
+        key.setLength(key.length() - 1);
+        return key.toString();
+    }
+
+    private static String format(double score, String unit) {
+        return String.format("%.3f %s", score, unit);
+    }
+}
@@ -0,0 +1,38 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import com.yupi.yuaicodemother.model.dto.app.AppQueryRequest;
+import com.yupi.yuaicodemother.utils.CacheKeyUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存 key 生成基准
+ * 输入为精选应用列表接口（listGoodAppVOByPage）的查询请求样本，每次调用依次为全部样本生成 key
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheKeyUtilsBenchmark {
+
+    private List<AppQueryRequest> queryRequests;
+
+    @Setup
+    public void setUp() {
+        queryRequests = BenchmarkPayloads.jsonLines("app-queries.jsonl", AppQueryRequest.class);
+    }
+
+    @Benchmark
+    public void generateKey(Blackhole blackhole) {
+        for (AppQueryRequest queryRequest : queryRequests) {
+            blackhole.consume(CacheKeyUtils.generateKey(queryRequest));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import com.yupi.yuaicodemother.core.sse.GenerationSseEvents;
+import com.yupi.yuaicodemother.core.sse.JsonSseFrameEncoder;
+import com.yupi.yuaicodemother.core.sse.SseFrameEncoder;
+import com.yupi.yuaicodemother.core.stream.GenerationEvent;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AppController.chatToGenCode 的 SSE 转换基准
+ * 输入为录制格式的模型输出（未指定 -Dpayloads.dir 时为内置的合成数据），每个 token 一个生成事件（未开启片段合并时的最坏情况），
+ * 测量一次生成的全部事件转换为 SSE 事件（含 done 事件）的耗时
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChatToGenCodeSseBenchmark {
+
+    @Param({"html", "multi_file"})
+    public String codeGenType;
+
+    private final SseFrameEncoder encoder = new JsonSseFrameEncoder();
+
+    private List<GenerationEvent> events;
+
+    @Setup
+    public void setUp() {
+        List<String> chunks = BenchmarkPayloads.contentChunks(BenchmarkPayloads.recordings(codeGenType));
+        events = new ArrayList<>(chunks.size());
+        for (String chunk : chunks) {
+            events.add(new GenerationEvent("a1b2c3d4", events.size() + 1, chunk));
+        }
+    }
+
+    @Benchmark
+    public void toServerSentEvents(Blackhole blackhole) {
+        GenerationSseEvents.toServerSentEvents(Flux.fromIterable(events), encoder)
+                .doOnNext(blackhole::consume)
+                .blockLast();
+    }
+}
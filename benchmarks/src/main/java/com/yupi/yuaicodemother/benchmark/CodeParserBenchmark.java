@@ -0,0 +1,53 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import com.yupi.yuaicodemother.core.parser.HtmlCodeParser;
+import com.yupi.yuaicodemother.core.parser.MultiFileCodeParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码解析器基准
+ * 输入为录制格式的完整模型输出（未指定 -Dpayloads.dir 时为内置的合成数据，见 BenchmarkPayloads）（说明文字 + 代码块），与生成结束后解析保存时的输入一致
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CodeParserBenchmark {
+
+    private final HtmlCodeParser htmlCodeParser = new HtmlCodeParser();
+
+    private final MultiFileCodeParser multiFileCodeParser = new MultiFileCodeParser();
+
+    private String htmlResponse;
+
+    private String multiFileResponse;
+
+    @Setup
+    public void setUp() {
+        htmlResponse = BenchmarkPayloads.content(BenchmarkPayloads.recordings("html"));
+        multiFileResponse = BenchmarkPayloads.content(BenchmarkPayloads.recordings("multi_file"));
+    }
+
+    /**
+     * HTML 单文件模式
+     */
+    @Benchmark
+    public void htmlCodeParser(Blackhole blackhole) {
+        blackhole.consume(htmlCodeParser.parseCode(htmlResponse));
+    }
+
+    /**
+     * 多文件模式：HTML、CSS、JS 各匹配一次
+     */
+    @Benchmark
+    public void multiFileCodeParser(Blackhole blackhole) {
+        blackhole.consume(multiFileCodeParser.parseCode(multiFileResponse));
+    }
+}
@@ -0,0 +1,81 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
+import com.yupi.yuaicodemother.ai.tools.BaseTool;
+import com.yupi.yuaicodemother.ai.tools.ExitTool;
+import com.yupi.yuaicodemother.ai.tools.FileDeleteTool;
+import com.yupi.yuaicodemother.ai.tools.FileDirReadTool;
+import com.yupi.yuaicodemother.ai.tools.FileModifyTool;
+import com.yupi.yuaicodemother.ai.tools.FileReadTool;
+import com.yupi.yuaicodemother.ai.tools.FileWriteTool;
+import com.yupi.yuaicodemother.ai.tools.ToolManager;
+import com.yupi.yuaicodemother.core.handler.JsonMessageStreamHandler;
+import com.yupi.yuaicodemother.model.entity.User;
+import com.yupi.yuaicodemother.service.ChatHistoryService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vue 工程模式流处理器基准
+ * 输入为录制格式的一次完整生成（多轮写文件工具调用，未指定 -Dpayloads.dir 时为内置的合成数据）经 OpenAiStreamingChatModel 回放得到的消息序列，
+ * 测量 JsonMessageStreamHandler 处理全部消息（拼接对话历史、格式化工具调用信息）的耗时
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonMessageStreamHandlerBenchmark {
+
+    private final JsonMessageStreamHandler handler = new JsonMessageStreamHandler();
+
+    private List<StreamMessage> messages;
+
+    private ChatHistoryService chatHistoryService;
+
+    private User loginUser;
+
+    @Setup
+    public void setUp() {
+        messages = BenchmarkPayloads.streamMessages(BenchmarkPayloads.recordings("vue_project"));
+        ToolManager toolManager = new ToolManager();
+        inject(toolManager, "tools", new BaseTool[]{
+                new FileWriteTool(), new FileReadTool(), new FileModifyTool(),
+                new FileDeleteTool(), new FileDirReadTool(), new ExitTool()
+        });
+        toolManager.initTools();
+        inject(handler, "toolManager", toolManager);
+        // 对话历史不落库，只保留处理器自身的开销
+        chatHistoryService = (ChatHistoryService) Proxy.newProxyInstance(ChatHistoryService.class.getClassLoader(),
+                new Class<?>[]{ChatHistoryService.class},
+                (proxy, method, args) -> method.getReturnType() == boolean.class ? Boolean.TRUE : null);
+        loginUser = new User();
+        loginUser.setId(1L);
+    }
+
+    @Benchmark
+    public void handle(Blackhole blackhole) {
+        handler.handle(Flux.fromIterable(messages), chatHistoryService, 1L, loginUser)
+                .doOnNext(blackhole::consume)
+                .blockLast();
+    }
+
+    private static void inject(Object target, String fieldName, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), fieldName);
+        if (field == null) {
+            throw new IllegalStateException(target.getClass().getSimpleName() + " 中没有字段: " + fieldName);
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
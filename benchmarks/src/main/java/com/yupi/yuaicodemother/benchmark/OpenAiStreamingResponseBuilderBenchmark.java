@@ -0,0 +1,114 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import dev.langchain4j.model.openai.OpenAiStreamingResponseBuilder;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionChoice;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionResponse;
+import dev.langchain4j.model.openai.internal.chat.Delta;
+import dev.langchain4j.model.openai.internal.chat.FunctionCall;
+import dev.langchain4j.model.openai.internal.chat.ToolCall;
+import dev.langchain4j.model.openai.internal.chat.ToolType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式响应增量拼装基准
+ * 按 OpenAI 兼容接口的实际分片方式回放一次完整响应的全部增量（delta）：
+ * text：纯文本输出（HTML 单文件模式）；toolCalls：Vue 工程模式下连续两次写文件的工具调用，参数按片段下发。
+ * 只使用 append / build，与改动前的版本对比时在旧版本的主工程上运行同一基准（见 README）
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OpenAiStreamingResponseBuilderBenchmark {
+
+    private static final String SAMPLE_LINE = "    <div class=\"card\"><h2>标题</h2><p>这是一段示例内容 content</p></div>\n";
+
+    @Param({"text", "toolCalls"})
+    public String scenario;
+
+    /**
+     * 响应（或工具参数）的字符数
+     */
+    @Param({"8192", "65536"})
+    public int responseChars;
+
+    private List<ChatCompletionResponse> deltas;
+
+    @Setup
+    public void setUp() {
+        StringBuilder body = new StringBuilder(responseChars);
+        while (body.length() < responseChars) {
+            body.append(SAMPLE_LINE);
+        }
+        body.setLength(responseChars);
+        deltas = new ArrayList<>();
+        if ("text".equals(scenario)) {
+            // 上游平均每个 token 约 4 个字符
+            for (int i = 0; i < responseChars; i += 4) {
+                deltas.add(response(Delta.builder()
+                        .content(body.substring(i, Math.min(i + 4, responseChars)))
+                        .build(), null));
+            }
+        } else {
+            String arguments = "{\"relativeFilePath\":\"src/App.vue\",\"content\":\"" + body + "\"}";
+            recordToolCall(0, "call_0", arguments);
+            recordToolCall(1, "call_1", arguments);
+        }
+        deltas.add(response(Delta.builder().build(), "text".equals(scenario) ? "stop" : "tool_calls"));
+    }
+
+    /**
+     * 工具调用：首个片段带 id 和工具名，后续片段只带参数
+     */
+    private void recordToolCall(int index, String id, String arguments) {
+        deltas.add(response(Delta.builder()
+                .toolCalls(List.of(ToolCall.builder()
+                        .index(index)
+                        .id(id)
+                        .type(ToolType.FUNCTION)
+                        .function(FunctionCall.builder().name("writeFile").arguments("").build())
+                        .build()))
+                .build(), null));
+        for (int i = 0; i < arguments.length(); i += 4) {
+            deltas.add(response(Delta.builder()
+                    .toolCalls(List.of(ToolCall.builder()
+                            .index(index)
+                            .function(FunctionCall.builder()
+                                    .arguments(arguments.substring(i, Math.min(i + 4, arguments.length())))
+                                    .build())
+                            .build()))
+                    .build(), null));
+        }
+    }
+
+    private static ChatCompletionResponse response(Delta delta, String finishReason) {
+        return ChatCompletionResponse.builder()
+                .id("chatcmpl-benchmark")
+                .created(1700000000L)
+                .model("deepseek-chat")
+                .choices(List.of(ChatCompletionChoice.builder()
+                        .index(0)
+                        .delta(delta)
+                        .finishReason(finishReason)
+                        .build()))
+                .build();
+    }
+
+    @Benchmark
+    public void appendAndBuild(Blackhole blackhole) {
+        OpenAiStreamingResponseBuilder builder = new OpenAiStreamingResponseBuilder();
+        for (ChatCompletionResponse delta : deltas) {
+            builder.append(delta);
+        }
+        blackhole.consume(builder.build());
+    }
+}
@@ -0,0 +1,51 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import dev.langchain4j.model.openai.OpenAiStreamingResponseBuilder;
+import dev.langchain4j.model.openai.internal.chat.ChatCompletionResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按输入数据的分片拼装流式响应的基准
+ * 与 OpenAiStreamingResponseBuilderBenchmark 的可调节输入互补：按录制格式数据中的分片依次拼装一次生成中每轮模型调用的响应，
+ * vue_project 包含多轮写文件工具调用。未指定 -Dpayloads.dir 时使用内置的合成数据（见 BenchmarkPayloads）
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadStreamingResponseBuilderBenchmark {
+
+    @Param({"html", "multi_file", "vue_project"})
+    public String codeGenType;
+
+    /**
+     * 每轮模型调用的响应片段
+     */
+    private List<List<ChatCompletionResponse>> rounds;
+
+    @Setup
+    public void setUp() {
+        rounds = BenchmarkPayloads.recordings(codeGenType).stream()
+                .map(BenchmarkPayloads::chatCompletionResponses)
+                .toList();
+    }
+
+    @Benchmark
+    public void appendAndBuild(Blackhole blackhole) {
+        for (List<ChatCompletionResponse> round : rounds) {
+            OpenAiStreamingResponseBuilder builder = new OpenAiStreamingResponseBuilder();
+            for (ChatCompletionResponse response : round) {
+                builder.append(response);
+            }
+            blackhole.consume(builder.build());
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import com.yupi.yuaicodemother.ai.guardrail.PromptSafetyInputGuardrail;
+import dev.langchain4j.data.message.UserMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 提示词安全审查基准
+ * 输入为整理的用户提示词样本（中英文、长短不一，包含少量注入攻击），每次调用依次审查全部样本
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PromptSafetyInputGuardrailBenchmark {
+
+    private final PromptSafetyInputGuardrail guardrail = new PromptSafetyInputGuardrail();
+
+    private List<UserMessage> userMessages;
+
+    @Setup
+    public void setUp() {
+        userMessages = BenchmarkPayloads.lines("prompts.txt").stream()
+                .map(UserMessage::from)
+                .toList();
+    }
+
+    @Benchmark
+    public void validate(Blackhole blackhole) {
+        for (UserMessage userMessage : userMessages) {
+            blackhole.consume(guardrail.validate(userMessage));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import com.yupi.yuaicodemother.core.parser.StreamingCodeFenceParser;
+import com.yupi.yuaicodemother.core.stream.ResponseAccumulator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单次生成的响应累加对比基准（响应为一个 html 代码块，两边都包含流式代码块解析）
+ * 原实现：门面的 codeBuilder 与流处理器的 aiResponseBuilder 各保存一份完整响应，代码块解析器再用自己的缓冲区保存一份代码，
+ * 结束时各 toString 一次
+ * 新实现：一个分段累加器，解析器从中截取代码块，结束时只 toString 一次
+ * 建议配合 -prof gc 查看每次生成的分配字节数（gc.alloc.rate.norm）
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseAccumulatorBenchmark {
+
+    private static final String SAMPLE_LINE = "    <div class=\"card\"><h2>标题</h2><p>这是一段示例内容 content</p></div>\n";
+
+    /**
+     * 完整响应的字符数
+     */
+    @Param({"16384", "131072"})
+    public int responseChars;
+
+    /**
+     * 模拟上游按 token 切分的片段（平均 4 个字符）
+     */
+    private List<String> chunks;
+
+    /**
+     * 各片段是否位于代码块内（原解析器会把这些片段复制到自己的缓冲区）
+     */
+    private boolean[] inFence;
+
+    @Setup
+    public void setUp() {
+        StringBuilder code = new StringBuilder(responseChars);
+        while (code.length() < responseChars) {
+            code.append(SAMPLE_LINE);
+        }
+        code.setLength(responseChars);
+        String prefix = "下面是生成的页面：\n```html\n";
+        String response = prefix + code + "\n```\n";
+        chunks = new ArrayList<>();
+        List<Boolean> fenceFlags = new ArrayList<>();
+        for (int i = 0; i < response.length(); i += 4) {
+            chunks.add(response.substring(i, Math.min(i + 4, response.length())));
+            fenceFlags.add(i >= prefix.length() && i < prefix.length() + responseChars);
+        }
+        inFence = new boolean[fenceFlags.size()];
+        for (int i = 0; i < inFence.length; i++) {
+            inFence[i] = fenceFlags.get(i);
+        }
+    }
+
+    /**
+     * 原有实现：两份 StringBuilder，解析器另有一份代码缓冲区
+     */
+    @Benchmark
+    public void twoStringBuilders(Blackhole blackhole) {
+        StringBuilder codeBuilder = new StringBuilder();
+        StringBuilder aiResponseBuilder = new StringBuilder();
+        StringBuilder fenceBuffer = new StringBuilder();
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser(codeBuilder, (lang, code) -> blackhole.consume(code));
+        for (int i = 0; i < chunks.size(); i++) {
+            String chunk = chunks.get(i);
+            codeBuilder.append(chunk);
+            aiResponseBuilder.append(chunk);
+            parser.feed(chunk);
+            if (inFence[i]) {
+                fenceBuffer.append(chunk);
+            }
+        }
+        parser.finish();
+        blackhole.consume(fenceBuffer);
+        blackhole.consume(codeBuilder.toString());
+        blackhole.consume(aiResponseBuilder.toString());
+    }
+
+    /**
+     * 新实现：共享的分段累加器，解析器从中截取代码块
+     */
+    @Benchmark
+    public void sharedAccumulator(Blackhole blackhole) {
+        ResponseAccumulator accumulator = new ResponseAccumulator();
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser(accumulator, (lang, code) -> blackhole.consume(code));
+        for (String chunk : chunks) {
+            accumulator.append(chunk);
+            parser.feed(chunk);
+        }
+        parser.finish();
+        blackhole.consume(accumulator.toString());
+    }
+}
@@ -0,0 +1,89 @@
+package com.yupi.yuaicodemother.benchmark;
+
+import cn.hutool.json.JSONUtil;
+import com.yupi.yuaicodemother.core.sse.JsonSseFrameEncoder;
+import com.yupi.yuaicodemother.core.sse.SseFrameEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.codec.ServerSentEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AppController.chatToGenCode 中 SSE 帧编码的对比基准
+ * 建议配合 -prof gc 查看每帧分配字节数（gc.alloc.rate.norm）
+ *
+ * @author yupi
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SseFrameEncodeBenchmark {
+
+    private static final String SAMPLE_PAGE = """
+            <!DOCTYPE html>
+            <html lang="zh-CN">
+            <head>
+                <meta charset="UTF-8">
+                <title>程序员鱼皮的博客</title>
+                <style>
+                    body { font-family: "PingFang SC", sans-serif; margin: 0; }
+                    .card { border-radius: 8px; box-shadow: 0 2px 8px rgba(0,0,0,.1); }
+                </style>
+            </head>
+            <body>
+                <h1 class="title">欢迎来到我的博客</h1>
+                <script>
+                    document.querySelector('.title').addEventListener('click', () => alert("你好\\n世界"));
+                </script>
+            </body>
+            </html>
+            """;
+
+    /**
+     * 模拟上游按 token 切分的片段（平均 4 个字符）
+     */
+    private List<String> chunks;
+
+    private final SseFrameEncoder encoder = new JsonSseFrameEncoder();
+
+    @Setup
+    public void setUp() {
+        chunks = new ArrayList<>();
+        for (int i = 0; i < SAMPLE_PAGE.length(); i += 4) {
+            chunks.add(SAMPLE_PAGE.substring(i, Math.min(i + 4, SAMPLE_PAGE.length())));
+        }
+    }
+
+    /**
+     * 原有实现：Map.of + JSONUtil.toJsonStr
+     */
+    @Benchmark
+    public void mapAndHutool(Blackhole blackhole) {
+        for (String chunk : chunks) {
+            Map<String, String> wrapper = Map.of("d", chunk);
+            String jsonData = JSONUtil.toJsonStr(wrapper);
+            blackhole.consume(ServerSentEvent.<String>builder()
+                    .data(jsonData)
+                    .build());
+        }
+    }
+
+    /**
+     * 新实现：复用缓冲区直接转义
+     */
+    @Benchmark
+    public void frameEncoder(Blackhole blackhole) {
+        for (String chunk : chunks) {
+            blackhole.consume(ServerSentEvent.<String>builder()
+                    .data(encoder.encode(chunk))
+                    .build());
+        }
+    }
+}
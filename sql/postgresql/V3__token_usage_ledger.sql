@@ -0,0 +1,37 @@
+-- =====================================================
+-- PostgreSQL Migration: Token Usage Ledger
+-- One row per model response, written in batches by the application
+-- =====================================================
+
+-- =====================================================
+-- Token Usage Table
+-- =====================================================
+-- No foreign keys on purpose: usage must remain billable after an app or user is deleted,
+-- and the batched writer should never fail a whole batch because of one missing row.
+CREATE TABLE IF NOT EXISTS token_usage (
+    id                  BIGSERIAL PRIMARY KEY,
+    user_id             BIGINT,
+    app_id              BIGINT,
+    model_name          VARCHAR(128) NOT NULL,
+    input_tokens        INTEGER NOT NULL DEFAULT 0,
+    output_tokens       INTEGER NOT NULL DEFAULT 0,
+    total_tokens        INTEGER NOT NULL DEFAULT 0,
+    create_time         TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Token usage indexes
+-- Rows are appended in time order, so a BRIN index covers time-range scans at a fraction of the B-tree size
+CREATE INDEX IF NOT EXISTS idx_token_usage_create_time ON token_usage USING BRIN (create_time);
+CREATE INDEX IF NOT EXISTS idx_token_usage_user_time ON token_usage(user_id, create_time);
+CREATE INDEX IF NOT EXISTS idx_token_usage_app_time ON token_usage(app_id, create_time);
+
+-- Token usage comments
+COMMENT ON TABLE token_usage IS 'Per-request model token usage ledger (append-only)';
+COMMENT ON COLUMN token_usage.id IS 'Primary key - auto-generated';
+COMMENT ON COLUMN token_usage.user_id IS 'User ID who triggered the model call, NULL for system calls';
+COMMENT ON COLUMN token_usage.app_id IS 'Application ID, NULL when the call is not tied to an app';
+COMMENT ON COLUMN token_usage.model_name IS 'Model name reported by the provider';
+COMMENT ON COLUMN token_usage.input_tokens IS 'Prompt tokens';
+COMMENT ON COLUMN token_usage.output_tokens IS 'Completion tokens';
+COMMENT ON COLUMN token_usage.total_tokens IS 'Total tokens';
+COMMENT ON COLUMN token_usage.create_time IS 'Time the model response completed (not the flush time)';
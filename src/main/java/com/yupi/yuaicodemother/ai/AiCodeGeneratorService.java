@@ -6,7 +6,6 @@ import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
-import reactor.core.publisher.Flux;
 
 public interface AiCodeGeneratorService {
 
@@ -31,20 +30,22 @@ public interface AiCodeGeneratorService {
     /**
      * 生成 HTML 代码
      *
+     * @param appId       应用 id（对话记忆 id）
      * @param userMessage 用户提示词
      * @return AI 的输出结果
      */
     @SystemMessage(fromResource = "prompt/codegen-html-system-prompt.txt")
-    Flux<String> generateHtmlCodeStream(String userMessage);
+    TokenStream generateHtmlCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成多文件代码
      *
+     * @param appId       应用 id（对话记忆 id）
      * @param userMessage 用户提示词
      * @return AI 的输出结果
      */
     @SystemMessage(fromResource = "prompt/codegen-multi-file-system-prompt.txt")
-    Flux<String> generateMultiFileCodeStream(String userMessage);
+    TokenStream generateMultiFileCodeStream(@MemoryId long appId, @UserMessage String userMessage);
 
     /**
      * 生成 Vue 项目代码（流式）
@@ -4,24 +4,30 @@ import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.yupi.yuaicodemother.ai.guardrail.PromptSafetyInputGuardrail;
 import com.yupi.yuaicodemother.ai.guardrail.RetryOutputGuardrail;
+import com.yupi.yuaicodemother.ai.scheduler.LlmCallContext;
 import com.yupi.yuaicodemother.ai.tools.*;
+import com.yupi.yuaicodemother.config.AiServiceConfig;
 import com.yupi.yuaicodemother.exception.BusinessException;
 import com.yupi.yuaicodemother.exception.ErrorCode;
 import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
-import com.yupi.yuaicodemother.service.ChatHistoryService;
 import com.yupi.yuaicodemother.utils.SpringContextUtil;
-import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
 import dev.langchain4j.data.message.ToolExecutionResultMessage;
-import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.ParallelToolExecutionPolicy;
+import dev.langchain4j.service.ToolLoopContextPropagator;
+import dev.langchain4j.service.ToolLoopPolicy;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * AI 服务创建工厂
@@ -30,17 +36,33 @@ import java.time.Duration;
 @Slf4j
 public class AiCodeGeneratorServiceFactory {
 
+    /**
+     * 把发起生成的线程上的模型调用上下文（排队、监控）带到工具循环线程
+     */
+    private static final ToolLoopContextPropagator CALL_CONTEXT_PROPAGATOR = LlmCallContext::wrap;
+
     @Resource(name = "openAiChatModel")
     private ChatModel chatModel;
 
     @Resource
-    private RedisChatMemoryStore redisChatMemoryStore;
+    private ToolManager toolManager;
 
     @Resource
-    private ChatHistoryService chatHistoryService;
+    private AppChatMemoryProvider appChatMemoryProvider;
 
     @Resource
-    private ToolManager toolManager;
+    private AiServiceConfig aiServiceConfig;
+
+    @Resource
+    private ParallelToolExecutionPolicy parallelToolExecutionPolicy;
+
+    @Resource
+    private ToolLoopPolicy toolLoopPolicy;
+
+    /**
+     * 共享模式下的 AI 服务实例，每种生成类型一个，不随 appId 创建和过期
+     */
+    private final Map<CodeGenTypeEnum, AiCodeGeneratorService> sharedServices = new ConcurrentHashMap<>();
 
     /**
      * AI 服务实例缓存
@@ -76,6 +98,9 @@ public class AiCodeGeneratorServiceFactory {
      * @return
      */
     public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
+        if (aiServiceConfig.isShared()) {
+            return sharedServices.computeIfAbsent(codeGenType, this::createSharedAiCodeGeneratorService);
+        }
         String cacheKey = buildCacheKey(appId, codeGenType);
         return serviceCache.get(cacheKey, key -> createAiCodeGeneratorService(appId, codeGenType));
     }
@@ -89,24 +114,39 @@ public class AiCodeGeneratorServiceFactory {
      */
     private AiCodeGeneratorService createAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
         log.info("为 appId: {} 创建新的 AI 服务实例", appId);
-        // 根据 appId 构建独立的对话记忆
-        MessageWindowChatMemory chatMemory = MessageWindowChatMemory
-                .builder()
-                .id(appId)
-                .chatMemoryStore(redisChatMemoryStore)
-                .maxMessages(20)
-                .build();
-        // 从数据库中加载对话历史到记忆中
-        chatHistoryService.loadChatHistoryToMemory(appId, chatMemory, 20);
+        // 根据 appId 构建独立的对话记忆（与共享模式相同的压缩和 Token 预算策略）
+        ChatMemory chatMemory = appChatMemoryProvider.createChatMemory(appId);
+        return buildAiCodeGeneratorService(codeGenType, memoryId -> chatMemory);
+    }
+
+    /**
+     * 创建共享的 AI 服务实例，对话记忆在每次调用时按 @MemoryId（appId）解析
+     *
+     * @param codeGenType 生成类型
+     * @return
+     */
+    private AiCodeGeneratorService createSharedAiCodeGeneratorService(CodeGenTypeEnum codeGenType) {
+        log.info("创建共享的 AI 服务实例，生成类型: {}", codeGenType.getValue());
+        return buildAiCodeGeneratorService(codeGenType, appChatMemoryProvider);
+    }
+
+    /**
+     * 构建 AI 服务实例
+     *
+     * @param codeGenType        生成类型
+     * @param chatMemoryProvider 对话记忆提供者
+     * @return
+     */
+    private AiCodeGeneratorService buildAiCodeGeneratorService(CodeGenTypeEnum codeGenType, ChatMemoryProvider chatMemoryProvider) {
         return switch (codeGenType) {
             // Vue 项目生成，使用工具调用和推理模型
             case VUE_PROJECT -> {
                 // 使用多例模式的 StreamingChatModel 解决并发问题
                 StreamingChatModel reasoningStreamingChatModel = SpringContextUtil.getBean("reasoningStreamingChatModelPrototype", StreamingChatModel.class);
-                yield AiServices.builder(AiCodeGeneratorService.class)
+                AiServices<AiCodeGeneratorService> builder = AiServices.builder(AiCodeGeneratorService.class)
                         .chatModel(chatModel)
                         .streamingChatModel(reasoningStreamingChatModel)
-                        .chatMemoryProvider(memoryId -> chatMemory)
+                        .chatMemoryProvider(chatMemoryProvider)
                         .tools(toolManager.getAllTools())
                         // 处理工具调用幻觉问题
                         .hallucinatedToolNameStrategy(toolExecutionRequest ->
@@ -114,21 +154,25 @@ public class AiCodeGeneratorServiceFactory {
                                         "Error: there is no tool called " + toolExecutionRequest.name())
                         )
                         .maxSequentialToolsInvocations(20)  // 最多连续调用 20 次工具
-                        .inputGuardrails(new PromptSafetyInputGuardrail()) // 添加输入护轨
+                        .inputGuardrails(new PromptSafetyInputGuardrail()); // 添加输入护轨
 //                        .outputGuardrails(new RetryOutputGuardrail()) // 添加输出护轨，为了流式输出，这里不使用
-                        .build();
+                // 限制工具调用循环的轮数、耗时和 Token，一轮中互不冲突的写文件调用并行执行
+                toolLoopPolicy.applyTo(builder);
+                CALL_CONTEXT_PROPAGATOR.applyTo(builder);
+                yield parallelToolExecutionPolicy.applyTo(builder).build();
             }
             // HTML 和 多文件生成，使用流式对话模型
             case HTML, MULTI_FILE -> {
                 // 使用多例模式的 StreamingChatModel 解决并发问题
                 StreamingChatModel openAiStreamingChatModel = SpringContextUtil.getBean("streamingChatModelPrototype", StreamingChatModel.class);
-                yield AiServices.builder(AiCodeGeneratorService.class)
+                AiServices<AiCodeGeneratorService> builder = AiServices.builder(AiCodeGeneratorService.class)
                         .chatModel(chatModel)
                         .streamingChatModel(openAiStreamingChatModel)
-                        .chatMemory(chatMemory)
-                        .inputGuardrails(new PromptSafetyInputGuardrail()) // 添加输入护轨
+                        .chatMemoryProvider(chatMemoryProvider)
+                        .inputGuardrails(new PromptSafetyInputGuardrail()); // 添加输入护轨
 //                        .outputGuardrails(new RetryOutputGuardrail()) // 添加输出护轨，为了流式输出，这里不使用
-                        .build();
+                CALL_CONTEXT_PROPAGATOR.applyTo(builder);
+                yield toolLoopPolicy.applyTo(builder).build();
             }
             default ->
                     throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType.getValue());
@@ -0,0 +1,85 @@
+package com.yupi.yuaicodemother.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yuaicodemother.ai.memory.CompactingChatMemoryStore;
+import com.yupi.yuaicodemother.ai.memory.TokenBudgetChatMemory;
+import com.yupi.yuaicodemother.config.AiServiceConfig;
+import com.yupi.yuaicodemother.service.ChatHistoryService;
+import dev.langchain4j.community.store.memory.chat.redis.RedisChatMemoryStore;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按 appId 提供对话记忆
+ * 共享的 AI 服务实例在每次调用时通过 @MemoryId 解析对话记忆，记忆实例放在有界缓存中
+ * 缓存淘汰只影响记忆对象本身，下次访问时优先从 Redis 恢复，AI 服务实例无需重建
+ */
+@Slf4j
+@Component
+public class AppChatMemoryProvider implements ChatMemoryProvider {
+
+    @Resource
+    private RedisChatMemoryStore redisChatMemoryStore;
+
+    @Resource
+    private ChatHistoryService chatHistoryService;
+
+    @Resource
+    private AiServiceConfig aiServiceConfig;
+
+    private Cache<Long, ChatMemory> memoryCache;
+
+    /**
+     * 发给模型的记忆存储：开启压缩时较早轮次的代码只保留文件清单
+     */
+    private ChatMemoryStore chatMemoryStore;
+
+    @PostConstruct
+    public void initCache() {
+        chatMemoryStore = aiServiceConfig.isMemoryCompaction()
+                ? new CompactingChatMemoryStore(redisChatMemoryStore, aiServiceConfig.getMemoryFullTurns())
+                : redisChatMemoryStore;
+        memoryCache = Caffeine.newBuilder()
+                .maximumSize(aiServiceConfig.getMemoryCacheSize())
+                .expireAfterAccess(aiServiceConfig.getMemoryExpireAfterAccess())
+                .removalListener((key, value, cause) -> log.debug("对话记忆被移除，appId: {}, 原因: {}", key, cause))
+                .build();
+    }
+
+    @Override
+    public ChatMemory get(Object memoryId) {
+        if (!(memoryId instanceof Number number)) {
+            // 未声明 @MemoryId 的方法（同步生成接口）使用临时记忆，不写入 Redis
+            return MessageWindowChatMemory.withMaxMessages(aiServiceConfig.getMaxMessages());
+        }
+        return memoryCache.get(number.longValue(), this::createChatMemory);
+    }
+
+    /**
+     * 构建对话记忆（不经过缓存），Redis 中没有该应用的记忆时才从数据库加载历史
+     * 非共享模式下每个 AI 服务实例持有一个，与共享模式使用相同的压缩和 Token 预算策略
+     *
+     * @param appId 应用 id
+     * @return 对话记忆
+     */
+    public ChatMemory createChatMemory(Long appId) {
+        chatHistoryService.hydrateChatMemory(appId, chatMemoryStore, aiServiceConfig.getMaxMessages());
+        if (aiServiceConfig.getMemoryMaxTokens() > 0) {
+            return new TokenBudgetChatMemory(appId, chatMemoryStore, aiServiceConfig.getMemoryMaxTokens(),
+                    aiServiceConfig.getMemoryFullTurns());
+        }
+        return MessageWindowChatMemory
+                .builder()
+                .id(appId)
+                .chatMemoryStore(chatMemoryStore)
+                .maxMessages(aiServiceConfig.getMaxMessages())
+                .build();
+    }
+}
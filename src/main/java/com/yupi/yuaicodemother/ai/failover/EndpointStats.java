@@ -0,0 +1,83 @@
+package com.yupi.yuaicodemother.ai.failover;
+
+/**
+ * 单个模型端点的实时状态：首 token 耗时的 EWMA 和失败降级
+ * 同一逻辑模型的所有实例（多例模型）共用一份
+ *
+ * @author yupi
+ */
+final class EndpointStats {
+
+    private static final int MAX_COOLDOWN_SHIFT = 4;
+
+    private final double alpha;
+
+    private final long defaultTtftNanos;
+
+    private final long cooldownNanos;
+
+    /**
+     * 首 token 耗时的 EWMA，小于 0 表示尚无观测
+     */
+    private double ewmaNanos = -1;
+
+    private int consecutiveFailures;
+
+    private boolean coolingDown;
+
+    private long coolingUntil;
+
+    EndpointStats(double alpha, long defaultTtftNanos, long cooldownNanos) {
+        this.alpha = alpha;
+        this.defaultTtftNanos = defaultTtftNanos;
+        this.cooldownNanos = cooldownNanos;
+    }
+
+    /**
+     * 记录一次成功的首 token 耗时，同时解除降级
+     */
+    synchronized void recordTimeToFirstToken(long nanos) {
+        update(nanos);
+        consecutiveFailures = 0;
+        coolingDown = false;
+    }
+
+    /**
+     * 记录一次未完成的观测（对冲中落败时已等待的时长），真实耗时至少为该值，只会调高 EWMA
+     */
+    synchronized void recordPending(long nanos) {
+        if (ewmaNanos < 0 || nanos > ewmaNanos) {
+            update(nanos);
+        }
+    }
+
+    /**
+     * 记录一次失败，端点降级一段时间，连续失败时降级时长翻倍
+     */
+    synchronized void recordFailure(long now) {
+        consecutiveFailures++;
+        coolingDown = true;
+        coolingUntil = now + (cooldownNanos << Math.min(consecutiveFailures - 1, MAX_COOLDOWN_SHIFT));
+    }
+
+    /**
+     * 排序分值，越小越优先；降级中的端点排在所有可用端点之后
+     */
+    synchronized double score(long now) {
+        if (coolingDown && now - coolingUntil < 0) {
+            return Double.MAX_VALUE;
+        }
+        return ewmaNanos < 0 ? defaultTtftNanos : ewmaNanos;
+    }
+
+    /**
+     * 首 token 耗时的 EWMA（毫秒），尚无观测时为 NaN
+     */
+    synchronized double ewmaMillis() {
+        return ewmaNanos < 0 ? Double.NaN : ewmaNanos / 1_000_000;
+    }
+
+    private void update(long nanos) {
+        ewmaNanos = ewmaNanos < 0 ? nanos : alpha * nanos + (1 - alpha) * ewmaNanos;
+    }
+}
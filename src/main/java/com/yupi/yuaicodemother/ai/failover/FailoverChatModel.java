@@ -0,0 +1,76 @@
+package com.yupi.yuaicodemother.ai.failover;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 多端点同步模型：按端点排序依次尝试，失败时转移到下一个端点
+ * 同步调用拿不到首 token 时间，以完整耗时作为端点的观测值
+ *
+ * @author yupi
+ */
+@Slf4j
+final class FailoverChatModel implements ChatModel {
+
+    private final String model;
+
+    private final List<ModelEndpoint<ChatModel>> endpoints;
+
+    private final ModelFailoverFactory factory;
+
+    FailoverChatModel(String model, List<ModelEndpoint<ChatModel>> endpoints, ModelFailoverFactory factory) {
+        this.model = model;
+        this.endpoints = endpoints;
+        this.factory = factory;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        RuntimeException lastError = null;
+        String decision = "selected";
+        String lastEndpoint = null;
+        for (ModelEndpoint<ChatModel> endpoint : factory.rank(endpoints)) {
+            if (lastEndpoint != null) {
+                log.warn("模型端点请求失败，转移到下一个端点，model: {}, endpoint: {}, next: {}, 错误: {}",
+                        model, lastEndpoint, endpoint.name(), lastError.getMessage());
+            }
+            factory.recordDecision(model, endpoint.name(), decision);
+            long start = System.nanoTime();
+            try {
+                ChatResponse chatResponse = endpoint.model().chat(chatRequest);
+                endpoint.stats().recordTimeToFirstToken(System.nanoTime() - start);
+                return chatResponse;
+            } catch (RuntimeException e) {
+                endpoint.stats().recordFailure(System.nanoTime());
+                lastError = e;
+                lastEndpoint = endpoint.name();
+                decision = "failover";
+            }
+        }
+        factory.recordDecision(model, lastEndpoint, "exhausted");
+        throw lastError;
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return endpoints.get(0).model().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return endpoints.get(0).model().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return endpoints.get(0).model().supportedCapabilities();
+    }
+}
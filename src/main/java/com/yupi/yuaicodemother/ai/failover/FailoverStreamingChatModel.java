@@ -0,0 +1,318 @@
+package com.yupi.yuaicodemother.ai.failover;
+
+import com.yupi.yuaicodemother.ai.http.StreamAbortHandle;
+import com.yupi.yuaicodemother.monitor.MonitorContext;
+import com.yupi.yuaicodemother.monitor.MonitorContextHolder;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 多端点流式模型
+ * 每次调用按端点排序选择首选端点；端点在输出首个 token 前失败时转移到下一个端点；
+ * 配置了对冲延迟时，首选端点在该时长内没有输出则向下一个端点发出对冲请求，先输出 token 的一方胜出，
+ * 胜出者确定后立即关闭落败请求的响应流，它们已经发出的输入按胜出请求的输入 Token 数计入调用方的用量。
+ * 已经开始输出后的错误无法转移（输出已经发给调用方），直接上报。
+ * 对冲和故障转移的请求在调度线程或 HTTP 回调线程上发出，发出前重新设置调用方的监控上下文，保证计入正确的用户
+ *
+ * @author yupi
+ */
+@Slf4j
+final class FailoverStreamingChatModel implements StreamingChatModel {
+
+    private final String model;
+
+    private final List<ModelEndpoint<StreamingChatModel>> endpoints;
+
+    private final Duration hedgeDelay;
+
+    private final ModelFailoverFactory factory;
+
+    FailoverStreamingChatModel(String model, List<ModelEndpoint<StreamingChatModel>> endpoints,
+                               Duration hedgeDelay, ModelFailoverFactory factory) {
+        this.model = model;
+        this.endpoints = endpoints;
+        this.hedgeDelay = hedgeDelay;
+        this.factory = factory;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        new Race(chatRequest, handler, factory.rank(endpoints)).start();
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return endpoints.get(0).model().defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return endpoints.get(0).model().provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return endpoints.get(0).model().supportedCapabilities();
+    }
+
+    /**
+     * 一次调用中各端点请求的竞争
+     */
+    private final class Race {
+
+        private final ChatRequest chatRequest;
+
+        private final StreamingChatResponseHandler handler;
+
+        /**
+         * 调用方的监控上下文
+         */
+        private final MonitorContext monitorContext;
+
+        private final Deque<ModelEndpoint<StreamingChatModel>> remaining;
+
+        /**
+         * 最先输出的请求，确定后只转发它的回调
+         */
+        private final AtomicReference<Attempt> winner = new AtomicReference<>();
+
+        private final List<Attempt> attempts = new ArrayList<>();
+
+        /**
+         * 胜出者确定时被中止的请求
+         */
+        private volatile List<Attempt> aborted = List.of();
+
+        private int running;
+
+        private boolean hedged;
+
+        private ScheduledFuture<?> hedgeTask;
+
+        Race(ChatRequest chatRequest, StreamingChatResponseHandler handler, List<ModelEndpoint<StreamingChatModel>> ranked) {
+            this.chatRequest = chatRequest;
+            this.handler = handler;
+            this.monitorContext = factory.currentMonitorContext();
+            this.remaining = new ArrayDeque<>(ranked);
+        }
+
+        void start() {
+            launch(remaining.pollFirst(), "selected");
+            if (hedgeDelay != null) {
+                synchronized (this) {
+                    if (winner.get() == null && !remaining.isEmpty()) {
+                        hedgeTask = factory.scheduleHedge(this::hedge, hedgeDelay);
+                    }
+                }
+            }
+        }
+
+        private void launch(ModelEndpoint<StreamingChatModel> endpoint, String decision) {
+            Attempt attempt = new Attempt(endpoint, "hedge".equals(decision));
+            synchronized (this) {
+                // 对冲任务可能在胜出者确定后才执行到这里
+                if (winner.get() != null) {
+                    return;
+                }
+                attempts.add(attempt);
+                running++;
+            }
+            factory.recordDecision(model, endpoint.name(), decision);
+            try {
+                MonitorContextHolder.runWithContext(monitorContext,
+                        () -> StreamAbortHandle.runWith(attempt.abortHandle, () -> endpoint.model().chat(chatRequest, attempt)));
+            } catch (RuntimeException e) {
+                attempt.onError(e);
+            }
+        }
+
+        private void hedge() {
+            ModelEndpoint<StreamingChatModel> next;
+            synchronized (this) {
+                if (winner.get() != null || hedged || handler.isCancelled()) {
+                    return;
+                }
+                next = remaining.pollFirst();
+                if (next == null) {
+                    return;
+                }
+                hedged = true;
+            }
+            launch(next, "hedge");
+        }
+
+        /**
+         * 某个请求最先输出：取消对冲计划，中止其他进行中的请求，并把它们已等待的时长计入各自的端点状态
+         */
+        private void onWinner(Attempt attempt) {
+            List<Attempt> others = new ArrayList<>();
+            synchronized (this) {
+                if (hedgeTask != null) {
+                    hedgeTask.cancel(false);
+                }
+                for (Attempt other : attempts) {
+                    if (other != attempt && !other.failed) {
+                        others.add(other);
+                    }
+                }
+            }
+            aborted = others;
+            long now = System.nanoTime();
+            for (Attempt other : others) {
+                other.endpoint.stats().recordPending(now - other.startNanos);
+                other.abortHandle.abort();
+                factory.recordDecision(model, other.endpoint.name(), "aborted");
+            }
+            if (attempt.hedge) {
+                factory.recordDecision(model, attempt.endpoint.name(), "hedge_won");
+            }
+        }
+
+        /**
+         * 被中止的请求已经发出了相同的输入，按胜出请求的输入 Token 数计入调用方的用量（没有输出）
+         */
+        private void chargeAborted(ChatResponse completeResponse) {
+            TokenUsage tokenUsage = completeResponse.tokenUsage();
+            if (tokenUsage == null || tokenUsage.inputTokenCount() == null) {
+                return;
+            }
+            for (Attempt other : aborted) {
+                factory.recordAborted(monitorContext, modelNameOf(other.endpoint), new TokenUsage(tokenUsage.inputTokenCount(), 0));
+            }
+        }
+
+        private String modelNameOf(ModelEndpoint<StreamingChatModel> endpoint) {
+            if (chatRequest.modelName() != null) {
+                return chatRequest.modelName();
+            }
+            ChatRequestParameters parameters = endpoint.model().defaultRequestParameters();
+            return parameters != null ? parameters.modelName() : null;
+        }
+
+        /**
+         * 某个请求在输出前失败：还有其他请求进行中则等待它们，否则转移到下一个端点
+         */
+        private void onAttemptFailed(Attempt attempt, Throwable error) {
+            ModelEndpoint<StreamingChatModel> next;
+            synchronized (this) {
+                running--;
+                if (winner.get() != null || handler.isCancelled() || running > 0) {
+                    return;
+                }
+                next = remaining.pollFirst();
+            }
+            if (next == null) {
+                factory.recordDecision(model, attempt.endpoint.name(), "exhausted");
+                handler.onError(error);
+                return;
+            }
+            log.warn("模型端点请求失败，转移到下一个端点，model: {}, endpoint: {}, next: {}, 错误: {}",
+                    model, attempt.endpoint.name(), next.name(), error.getMessage());
+            launch(next, "failover");
+        }
+
+        /**
+         * 发往单个端点的请求
+         */
+        private final class Attempt implements StreamingChatResponseHandler {
+
+            private final ModelEndpoint<StreamingChatModel> endpoint;
+
+            private final boolean hedge;
+
+            private final long startNanos = System.nanoTime();
+
+            private final StreamAbortHandle abortHandle = new StreamAbortHandle();
+
+            private volatile boolean failed;
+
+            Attempt(ModelEndpoint<StreamingChatModel> endpoint, boolean hedge) {
+                this.endpoint = endpoint;
+                this.hedge = hedge;
+            }
+
+            /**
+             * @return 当前请求是否为胜出者（首次输出时尝试成为胜出者）
+             */
+            private boolean claim() {
+                Attempt current = winner.get();
+                if (current == null && winner.compareAndSet(null, this)) {
+                    endpoint.stats().recordTimeToFirstToken(System.nanoTime() - startNanos);
+                    onWinner(this);
+                    return true;
+                }
+                return winner.get() == this;
+            }
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                if (claim()) {
+                    handler.onPartialResponse(partialResponse);
+                }
+            }
+
+            @Override
+            public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+                if (claim()) {
+                    handler.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+                if (claim()) {
+                    handler.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+                }
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                if (claim()) {
+                    chargeAborted(completeResponse);
+                    handler.onCompleteResponse(completeResponse);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                if (winner.get() == this) {
+                    handler.onError(error);
+                    return;
+                }
+                if (abortHandle.isAborted()) {
+                    // 中止后读取响应流出错，与端点状态无关
+                    return;
+                }
+                failed = true;
+                endpoint.stats().recordFailure(System.nanoTime());
+                onAttemptFailed(this, error);
+            }
+
+            @Override
+            public boolean isCancelled() {
+                if (handler.isCancelled()) {
+                    return true;
+                }
+                Attempt current = winner.get();
+                return current != null && current != this;
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.yupi.yuaicodemother.ai.failover;
+
+/**
+ * 逻辑模型下的一个服务端点
+ *
+ * @param name  端点名称
+ * @param model 指向该端点的模型实例
+ * @param stats 端点的实时状态（所有实例共用）
+ * @param <M>   ChatModel 或 StreamingChatModel
+ * @author yupi
+ */
+record ModelEndpoint<M>(String name, M model, EndpointStats stats) {
+}
@@ -0,0 +1,185 @@
+package com.yupi.yuaicodemother.ai.failover;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import com.yupi.yuaicodemother.config.ModelEndpointProperties;
+import com.yupi.yuaicodemother.config.ModelFailoverConfig;
+import com.yupi.yuaicodemother.monitor.AiModelMonitorListener;
+import com.yupi.yuaicodemother.monitor.MonitorContext;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多端点模型工厂
+ * 一个逻辑模型（如 streaming-chat-model）可以配置多个服务端点，每次调用按首 token 耗时的 EWMA 选择端点，
+ * 失败时自动转移到下一个端点，流式模型还可以在首个端点迟迟没有输出时发出对冲请求，先出 token 的一方胜出。
+ * 端点状态按逻辑模型和端点名称共享，多例模型的每个实例都基于同一份实时数据路由。
+ * 指标：ai_model_endpoint_ttft_ewma_ms{model,endpoint}，路由决策由 {@link AiModelMonitorListener} 记录
+ *
+ * @author yupi
+ */
+@Component
+public class ModelFailoverFactory {
+
+    @Resource
+    private ModelFailoverConfig modelFailoverConfig;
+
+    @Resource
+    private AiModelMonitorListener aiModelMonitorListener;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, EndpointStats> statsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 调度线程由第一次对冲时的调用线程创建，不继承它的线程上下文（否则之后所有对冲都会带上该用户的上下文）
+     */
+    private final ScheduledExecutorService hedgeScheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("model-hedge-scheduler").daemon().inheritInheritableThreadLocals(false).factory());
+
+    @PreDestroy
+    public void destroy() {
+        hedgeScheduler.shutdownNow();
+    }
+
+    /**
+     * 合并主端点和备用端点，备用端点未填写的项沿用主端点的配置
+     *
+     * @return 主端点在前，每个端点都有唯一的名称
+     */
+    public List<ModelEndpointProperties> resolveEndpoints(String baseUrl, String apiKey, String modelName,
+                                                          List<ModelEndpointProperties> backups) {
+        List<ModelEndpointProperties> resolved = new ArrayList<>();
+        ModelEndpointProperties primary = new ModelEndpointProperties();
+        primary.setBaseUrl(baseUrl);
+        primary.setApiKey(apiKey);
+        primary.setModelName(modelName);
+        resolved.add(primary);
+        if (backups != null) {
+            for (ModelEndpointProperties backup : backups) {
+                ModelEndpointProperties endpoint = new ModelEndpointProperties();
+                endpoint.setName(backup.getName());
+                endpoint.setBaseUrl(StrUtil.blankToDefault(backup.getBaseUrl(), baseUrl));
+                endpoint.setApiKey(StrUtil.blankToDefault(backup.getApiKey(), apiKey));
+                endpoint.setModelName(StrUtil.blankToDefault(backup.getModelName(), modelName));
+                resolved.add(endpoint);
+            }
+        }
+        List<String> names = new ArrayList<>();
+        for (ModelEndpointProperties endpoint : resolved) {
+            String name = StrUtil.isNotBlank(endpoint.getName()) ? endpoint.getName() : URLUtil.url(endpoint.getBaseUrl()).getHost();
+            String uniqueName = name;
+            for (int i = 2; names.contains(uniqueName); i++) {
+                uniqueName = name + "#" + i;
+            }
+            names.add(uniqueName);
+            endpoint.setName(uniqueName);
+        }
+        return resolved;
+    }
+
+    /**
+     * 创建多端点流式模型，只有一个端点时直接返回该端点的模型
+     *
+     * @param model      逻辑模型名称
+     * @param endpoints  端点名称 -> 模型实例（按配置顺序）
+     * @param hedgeDelay 首个端点多久没有输出就发出对冲请求，为空或 0 表示不对冲
+     */
+    public StreamingChatModel streaming(String model, LinkedHashMap<String, StreamingChatModel> endpoints, Duration hedgeDelay) {
+        if (endpoints.size() == 1) {
+            return endpoints.values().iterator().next();
+        }
+        Duration effectiveHedgeDelay = hedgeDelay == null || hedgeDelay.isZero() || hedgeDelay.isNegative() ? null : hedgeDelay;
+        return new FailoverStreamingChatModel(model, toEndpoints(model, endpoints), effectiveHedgeDelay, this);
+    }
+
+    /**
+     * 创建多端点同步模型（只做故障转移，不对冲），只有一个端点时直接返回该端点的模型
+     *
+     * @param model     逻辑模型名称
+     * @param endpoints 端点名称 -> 模型实例（按配置顺序）
+     */
+    public ChatModel sync(String model, LinkedHashMap<String, ChatModel> endpoints) {
+        if (endpoints.size() == 1) {
+            return endpoints.values().iterator().next();
+        }
+        return new FailoverChatModel(model, toEndpoints(model, endpoints), this);
+    }
+
+    /**
+     * 按当前状态排序，分值相同（如都没有观测数据）时保持配置顺序
+     */
+    <M> List<ModelEndpoint<M>> rank(List<ModelEndpoint<M>> endpoints) {
+        long now = System.nanoTime();
+        List<ModelEndpoint<M>> ranked = new ArrayList<>(endpoints);
+        ranked.sort(Comparator.comparingDouble((ModelEndpoint<M> endpoint) -> endpoint.stats().score(now)));
+        return ranked;
+    }
+
+    void recordDecision(String model, String endpoint, String decision) {
+        aiModelMonitorListener.onEndpointDecision(model, endpoint, decision);
+    }
+
+    /**
+     * 计入被中止的请求的估算用量（计入发起调用的用户）
+     */
+    void recordAborted(MonitorContext monitorContext, String modelName, TokenUsage tokenUsage) {
+        aiModelMonitorListener.onAbortedRequest(monitorContext, modelName, tokenUsage);
+    }
+
+    /**
+     * 延迟执行对冲任务，任务本身在虚拟线程中运行，避免阻塞调度线程
+     */
+    ScheduledFuture<?> scheduleHedge(Runnable task, Duration delay) {
+        return hedgeScheduler.schedule(
+                () -> Thread.ofVirtual().name("model-hedge").inheritInheritableThreadLocals(false).start(task),
+                delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 当前调用方的监控上下文，由多端点模型在发起调用时获取，之后的对冲和故障转移请求沿用
+     */
+    MonitorContext currentMonitorContext() {
+        return aiModelMonitorListener.currentContext();
+    }
+
+    private <M> List<ModelEndpoint<M>> toEndpoints(String model, LinkedHashMap<String, M> models) {
+        List<ModelEndpoint<M>> endpoints = new ArrayList<>();
+        models.forEach((name, instance) -> endpoints.add(new ModelEndpoint<>(name, instance, stats(model, name))));
+        return List.copyOf(endpoints);
+    }
+
+    private EndpointStats stats(String model, String endpoint) {
+        return statsMap.computeIfAbsent(model + "/" + endpoint, key -> {
+            EndpointStats stats = new EndpointStats(
+                    modelFailoverConfig.getEwmaAlpha(),
+                    modelFailoverConfig.getDefaultTimeToFirstToken().toNanos(),
+                    modelFailoverConfig.getFailureCooldown().toNanos());
+            Gauge.builder("ai_model_endpoint_ttft_ewma_ms", stats, EndpointStats::ewmaMillis)
+                    .description("模型端点首 token 耗时的 EWMA（毫秒）")
+                    .tag("model", model)
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            return stats;
+        });
+    }
+}
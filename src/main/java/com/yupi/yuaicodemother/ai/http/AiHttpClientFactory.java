@@ -0,0 +1,302 @@
+package com.yupi.yuaicodemother.ai.http;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.core.util.URLUtil;
+import com.yupi.yuaicodemother.ai.recording.LlmRecordingManager;
+import com.yupi.yuaicodemother.config.AiHttpClientConfig;
+import com.yupi.yuaicodemother.exception.BusinessException;
+import com.yupi.yuaicodemother.exception.ErrorCode;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 模型共享 HTTP 客户端工厂
+ * 多例模型每次创建都会构建新的 OpenAI 客户端，默认情况下各自持有独立的连接池，新会话总要重新握手。
+ * 这里把所有模型的 HTTP 请求都落到同一个 JDK HttpClient 上（优先 HTTP/2，共享连接池和 TLS 会话），
+ * 并按主机限制同时进行中的请求数。
+ * 指标：ai_http_requests_total{host,type}、ai_http_tls_handshakes_total{host}（新建 TLS 连接数，
+ * 与请求数之比即连接复用情况）、ai_http_in_flight_requests{host}、ai_http_permit_wait{host}
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class AiHttpClientFactory {
+
+    @Resource
+    private AiHttpClientConfig aiHttpClientConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private LlmRecordingManager llmRecordingManager;
+
+    private java.net.http.HttpClient sharedClient;
+
+    private final ConcurrentHashMap<String, HostState> hostStates = new ConcurrentHashMap<>();
+
+    private final Set<String> warmedHosts = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() throws NoSuchAlgorithmException {
+        // 连接池参数只能通过启动参数设置（见 application.yml 中 ai-http-client 的说明），这里只打印生效的值
+        log.info("模型 HTTP 客户端连接池参数：jdk.httpclient.keepalive.timeout={}，jdk.httpclient.keepalive.timeout.h2={}，"
+                        + "jdk.httpclient.connectionPoolSize={}", System.getProperty("jdk.httpclient.keepalive.timeout", "默认"),
+                System.getProperty("jdk.httpclient.keepalive.timeout.h2", "默认"),
+                System.getProperty("jdk.httpclient.connectionPoolSize", "默认"));
+        sharedClient = java.net.http.HttpClient.newBuilder()
+                .version(java.net.http.HttpClient.Version.valueOf(aiHttpClientConfig.getVersion()))
+                .connectTimeout(aiHttpClientConfig.getConnectTimeout())
+                .sslContext(HandshakeCountingSslContext.wrap(SSLContext.getDefault(), host -> hostState(host).handshakes.increment()))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * 创建使用共享连接池的 HttpClientBuilder，供模型构建器的 httpClientBuilder(...) 使用
+     * 连接超时以共享客户端的配置为准，读超时仍按各模型的配置生效
+     */
+    public HttpClientBuilder newHttpClientBuilder() {
+        return new SharedHttpClientBuilder();
+    }
+
+    /**
+     * 预先连接模型服务的主机（每个主机只执行一次），使首个会话无需等待 TLS 握手
+     *
+     * @param baseUrl 模型服务地址
+     */
+    public void warmUp(String baseUrl) {
+        if (!aiHttpClientConfig.isWarmUp() || StrUtil.isBlank(baseUrl)) {
+            return;
+        }
+        String host = URLUtil.url(baseUrl).getHost();
+        if (!warmedHosts.add(host)) {
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofSeconds(10))
+                .build();
+        sharedClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, throwable) -> {
+                    if (throwable != null) {
+                        log.warn("预连接模型服务失败，host: {}，{}", host, throwable.getMessage());
+                    } else {
+                        log.info("预连接模型服务完成，host: {}，协议: {}", host, response.version());
+                    }
+                });
+    }
+
+    HostState hostStateForUrl(String url) {
+        return hostState(URLUtil.url(url).getHost());
+    }
+
+    private HostState hostState(String host) {
+        return hostStates.computeIfAbsent(host, HostState::new);
+    }
+
+    /**
+     * 单个主机的并发许可和指标
+     */
+    final class HostState {
+
+        private final String host;
+
+        private final Semaphore permits;
+
+        private final Counter syncRequests;
+
+        private final Counter streamRequests;
+
+        private final Counter handshakes;
+
+        private final Timer permitWait;
+
+        private HostState(String host) {
+            int maxRequests = aiHttpClientConfig.getMaxRequestsPerHost();
+            this.host = host;
+            this.permits = new Semaphore(maxRequests, true);
+            this.syncRequests = requestCounter("sync");
+            this.streamRequests = requestCounter("stream");
+            this.handshakes = Counter.builder("ai_http_tls_handshakes_total")
+                    .description("新建 TLS 连接次数")
+                    .tag("host", host)
+                    .register(meterRegistry);
+            this.permitWait = Timer.builder("ai_http_permit_wait")
+                    .description("等待主机请求许可的耗时")
+                    .tag("host", host)
+                    .register(meterRegistry);
+            Gauge.builder("ai_http_in_flight_requests", permits, p -> maxRequests - p.availablePermits())
+                    .description("进行中的请求数")
+                    .tag("host", host)
+                    .register(meterRegistry);
+        }
+
+        private Counter requestCounter(String type) {
+            return Counter.builder("ai_http_requests_total")
+                    .description("模型服务 HTTP 请求次数")
+                    .tag("host", host)
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+
+        void acquire(boolean stream) {
+            (stream ? streamRequests : syncRequests).increment();
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(aiHttpClientConfig.getAcquireTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待模型服务请求许可时被中断");
+            } finally {
+                permitWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            if (!acquired) {
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "模型服务繁忙，请稍后再试");
+            }
+        }
+
+        void release() {
+            permits.release();
+        }
+    }
+
+    /**
+     * 每个模型一个，读超时各自生效，底层连接池共享
+     */
+    private final class SharedHttpClientBuilder implements HttpClientBuilder {
+
+        private Duration connectTimeout;
+
+        private Duration readTimeout;
+
+        @Override
+        public Duration connectTimeout() {
+            return connectTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return readTimeout;
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            JdkHttpClient jdkHttpClient = JdkHttpClient.builder()
+                    .httpClientBuilder(new SharedJdkClientBuilder())
+                    .readTimeout(readTimeout)
+                    .build();
+            // 录制或回放模式下替换为对应的客户端
+            return llmRecordingManager.decorate(new MeteredHttpClient(jdkHttpClient, AiHttpClientFactory.this));
+        }
+    }
+
+    /**
+     * JdkHttpClient 总是通过 Builder 创建底层客户端（只会设置连接超时），这里直接返回共享实例
+     * 连接超时以共享客户端的配置为准；其他设置无法在共享实例上生效，设置为非默认值时直接报错，避免被静默忽略
+     */
+    private final class SharedJdkClientBuilder implements java.net.http.HttpClient.Builder {
+
+        @Override
+        public java.net.http.HttpClient.Builder cookieHandler(CookieHandler cookieHandler) {
+            return rejectIfSet("cookieHandler", cookieHandler);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder connectTimeout(Duration duration) {
+            return this;
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder sslContext(SSLContext sslContext) {
+            return rejectIfSet("sslContext", sslContext);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder sslParameters(SSLParameters sslParameters) {
+            return rejectIfSet("sslParameters", sslParameters);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder executor(Executor executor) {
+            return rejectIfSet("executor", executor);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder followRedirects(java.net.http.HttpClient.Redirect policy) {
+            return policy == java.net.http.HttpClient.Redirect.NEVER ? this : rejectIfSet("followRedirects", policy);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder version(java.net.http.HttpClient.Version version) {
+            return version == sharedClient.version() ? this : rejectIfSet("version", version);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder priority(int priority) {
+            return rejectIfSet("priority", priority);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder proxy(ProxySelector proxySelector) {
+            return rejectIfSet("proxy", proxySelector);
+        }
+
+        @Override
+        public java.net.http.HttpClient.Builder authenticator(Authenticator authenticator) {
+            return rejectIfSet("authenticator", authenticator);
+        }
+
+        private java.net.http.HttpClient.Builder rejectIfSet(String setting, Object value) {
+            if (value == null) {
+                return this;
+            }
+            throw new UnsupportedOperationException("模型共享 HTTP 客户端不支持单独设置 " + setting + "，请修改 AiHttpClientFactory 中的共享客户端");
+        }
+
+        @Override
+        public java.net.http.HttpClient build() {
+            return sharedClient;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.yupi.yuaicodemother.ai.http;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLContextSpi;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import java.security.SecureRandom;
+import java.util.function.Consumer;
+
+/**
+ * 统计新建 TLS 连接的 SSLContext
+ * JDK HttpClient 每建立一条 TLS 连接都会调用一次 createSSLEngine(host, port)，以此计数即可得到连接复用情况
+ *
+ * @author yupi
+ */
+final class HandshakeCountingSslContext {
+
+    private HandshakeCountingSslContext() {
+    }
+
+    /**
+     * @param delegate    实际的 SSLContext
+     * @param onHandshake 新建连接时的回调，参数为主机名
+     */
+    static SSLContext wrap(SSLContext delegate, Consumer<String> onHandshake) {
+        return new SSLContext(new CountingSpi(delegate, onHandshake), delegate.getProvider(), delegate.getProtocol()) {
+        };
+    }
+
+    private static final class CountingSpi extends SSLContextSpi {
+
+        private final SSLContext delegate;
+
+        private final Consumer<String> onHandshake;
+
+        CountingSpi(SSLContext delegate, Consumer<String> onHandshake) {
+            this.delegate = delegate;
+            this.onHandshake = onHandshake;
+        }
+
+        @Override
+        protected void engineInit(KeyManager[] km, TrustManager[] tm, SecureRandom sr) {
+            throw new UnsupportedOperationException("已初始化的 SSLContext 不支持重新初始化");
+        }
+
+        @Override
+        protected SSLSocketFactory engineGetSocketFactory() {
+            return delegate.getSocketFactory();
+        }
+
+        @Override
+        protected SSLServerSocketFactory engineGetServerSocketFactory() {
+            return delegate.getServerSocketFactory();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine() {
+            return delegate.createSSLEngine();
+        }
+
+        @Override
+        protected SSLEngine engineCreateSSLEngine(String host, int port) {
+            onHandshake.accept(host);
+            return delegate.createSSLEngine(host, port);
+        }
+
+        @Override
+        protected SSLSessionContext engineGetServerSessionContext() {
+            return delegate.getServerSessionContext();
+        }
+
+        @Override
+        protected SSLSessionContext engineGetClientSessionContext() {
+            return delegate.getClientSessionContext();
+        }
+
+        @Override
+        protected SSLParameters engineGetDefaultSSLParameters() {
+            return delegate.getDefaultSSLParameters();
+        }
+
+        @Override
+        protected SSLParameters engineGetSupportedSSLParameters() {
+            return delegate.getSupportedSSLParameters();
+        }
+    }
+}
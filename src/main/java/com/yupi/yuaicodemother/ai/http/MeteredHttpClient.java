@@ -0,0 +1,86 @@
+package com.yupi.yuaicodemother.ai.http;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 带主机级并发限制和指标的 HTTP 客户端
+ * 请求前获取所属主机的许可，普通请求在返回后释放，流式请求在流结束（完成、出错或被取消）后释放。
+ * 流式请求在 {@link StreamAbortHandle} 范围内发起时，响应流登记到该句柄，中止时直接关闭
+ *
+ * @author yupi
+ */
+final class MeteredHttpClient implements HttpClient {
+
+    private final HttpClient delegate;
+
+    private final AiHttpClientFactory factory;
+
+    MeteredHttpClient(HttpClient delegate, AiHttpClientFactory factory) {
+        this.delegate = delegate;
+        this.factory = factory;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        AiHttpClientFactory.HostState host = factory.hostStateForUrl(request.url());
+        host.acquire(false);
+        try {
+            return delegate.execute(request);
+        } finally {
+            host.release();
+        }
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        AiHttpClientFactory.HostState host = factory.hostStateForUrl(request.url());
+        host.acquire(true);
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                host.release();
+            }
+        };
+        StreamAbortHandle abortHandle = StreamAbortHandle.current();
+        ServerSentEventParser effectiveParser = abortHandle == null ? parser : (inputStream, eventListener) -> {
+            abortHandle.onAbort(inputStream);
+            parser.parse(inputStream, eventListener);
+        };
+        try {
+            delegate.execute(request, effectiveParser, new ServerSentEventListener() {
+
+                @Override
+                public void onOpen(SuccessfulHttpResponse response) {
+                    listener.onOpen(response);
+                }
+
+                @Override
+                public void onEvent(ServerSentEvent event) {
+                    listener.onEvent(event);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    release.run();
+                    listener.onError(throwable);
+                }
+
+                @Override
+                public void onClose() {
+                    release.run();
+                    listener.onClose();
+                }
+            });
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+}
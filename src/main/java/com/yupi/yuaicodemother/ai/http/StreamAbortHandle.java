@@ -0,0 +1,80 @@
+package com.yupi.yuaicodemother.ai.http;
+
+import cn.hutool.core.io.IoUtil;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式请求的中止句柄
+ * 在 {@link #runWith} 范围内发起的流式请求会把响应流登记到句柄上，调用 {@link #abort()} 时立即关闭，
+ * 不必等到下一段响应到达时才由 isCancelled 中断（例如对冲落败的请求可能迟迟没有输出）
+ *
+ * @author yupi
+ */
+public final class StreamAbortHandle {
+
+    private static final ThreadLocal<StreamAbortHandle> CURRENT = new ThreadLocal<>();
+
+    private final List<Closeable> streams = new ArrayList<>();
+
+    private boolean aborted;
+
+    /**
+     * 在当前线程上以指定句柄执行任务（任务中同步发起的流式请求会登记到该句柄），结束后恢复原来的句柄
+     */
+    public static void runWith(StreamAbortHandle handle, Runnable task) {
+        StreamAbortHandle previous = CURRENT.get();
+        CURRENT.set(handle);
+        try {
+            task.run();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * 当前线程的句柄，不在 {@link #runWith} 范围内时为 null
+     */
+    public static StreamAbortHandle current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 登记中止时需要关闭的资源，已经中止时立即关闭
+     */
+    public void onAbort(Closeable stream) {
+        synchronized (this) {
+            if (!aborted) {
+                streams.add(stream);
+                return;
+            }
+        }
+        IoUtil.close(stream);
+    }
+
+    /**
+     * 中止：关闭已登记的响应流，之后登记的也会立即关闭
+     */
+    public void abort() {
+        List<Closeable> toClose;
+        synchronized (this) {
+            if (aborted) {
+                return;
+            }
+            aborted = true;
+            toClose = new ArrayList<>(streams);
+            streams.clear();
+        }
+        toClose.forEach(IoUtil::close);
+    }
+
+    public synchronized boolean isAborted() {
+        return aborted;
+    }
+}
@@ -0,0 +1,182 @@
+package com.yupi.yuaicodemother.ai.memory;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 对话消息压缩器
+ * 把发给模型的历史消息中的完整代码替换为文件清单（语言、行数、内容哈希），只保留简短的文字说明
+ * 展示用的对话历史（chat_history 表）不受影响
+ *
+ * @author yupi
+ */
+public final class ChatMessageCompactor {
+
+    /**
+     * 代码块：```lang ... ```
+     */
+    private static final Pattern CODE_FENCE = Pattern.compile("```([\\w+-]*)[^\\n]*\\n(.*?)```", Pattern.DOTALL);
+
+    /**
+     * 代码块之外的文字最多保留的字符数
+     */
+    private static final int MAX_TEXT_CHARS = 300;
+
+    /**
+     * 工具参数、工具结果中超过该长度的字符串会被替换为摘要
+     */
+    private static final int MAX_VALUE_CHARS = 200;
+
+    /**
+     * 压缩后的标记，已压缩的消息不再重复处理
+     */
+    private static final String COMPACTED_MARK = "[已压缩]";
+
+    private ChatMessageCompactor() {
+    }
+
+    /**
+     * 压缩单条消息，系统消息原样返回
+     * 用户消息只替换其中的代码块（如相似应用复用时附带的参考代码），需求文字完整保留
+     *
+     * @param message 对话消息
+     * @return 压缩后的消息
+     */
+    public static ChatMessage compact(ChatMessage message) {
+        if (message instanceof AiMessage aiMessage) {
+            return compactAiMessage(aiMessage);
+        }
+        if (message instanceof ToolExecutionResultMessage resultMessage) {
+            String text = resultMessage.text();
+            if (text == null || text.length() <= MAX_VALUE_CHARS) {
+                return message;
+            }
+            return ToolExecutionResultMessage.from(resultMessage.id(), resultMessage.toolName(), digest(text));
+        }
+        if (message instanceof UserMessage userMessage && userMessage.hasSingleText()) {
+            String text = compactCodeFences(userMessage.singleText());
+            if (text == userMessage.singleText()) {
+                return message;
+            }
+            return userMessage.name() == null ? UserMessage.from(text) : UserMessage.from(userMessage.name(), text);
+        }
+        return message;
+    }
+
+    /**
+     * 把文本中的代码块原地替换为清单行，代码块之外的文字不变
+     *
+     * @param text 文本
+     * @return 替换后的文本，没有代码块时返回原对象
+     */
+    static String compactCodeFences(String text) {
+        Matcher matcher = CODE_FENCE.matcher(text);
+        if (!matcher.find()) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder();
+        do {
+            String lang = StrUtil.blankToDefault(matcher.group(1), "text");
+            matcher.appendReplacement(result, Matcher.quoteReplacement("- " + lang + " 代码块 " + digest(matcher.group(2))));
+        } while (matcher.find());
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    /**
+     * 压缩 AI 文本：代码块替换为清单行，其余文字截断
+     *
+     * @param text AI 回复文本
+     * @return 压缩后的文本
+     */
+    public static String compactText(String text) {
+        if (StrUtil.isBlank(text) || text.startsWith(COMPACTED_MARK)) {
+            return text;
+        }
+        StringBuilder prose = new StringBuilder();
+        List<String> manifest = new ArrayList<>();
+        Matcher matcher = CODE_FENCE.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            prose.append(text, last, matcher.start());
+            String lang = StrUtil.blankToDefault(matcher.group(1), "text");
+            manifest.add("- " + lang + " 代码块 " + digest(matcher.group(2)));
+            last = matcher.end();
+        }
+        prose.append(text, last, text.length());
+        String proseText = prose.toString().trim();
+        if (manifest.isEmpty() && proseText.length() <= MAX_TEXT_CHARS) {
+            // 纯文字的短回复无需压缩
+            return text;
+        }
+        if (manifest.isEmpty() && proseText.startsWith("<")) {
+            // HTML 模式下未使用代码块包裹的完整页面
+            manifest.add("- html 页面 " + digest(proseText));
+            proseText = "";
+        }
+        StringBuilder result = new StringBuilder(COMPACTED_MARK).append(" 本轮生成的代码已从上下文中省略");
+        if (!proseText.isEmpty()) {
+            result.append('\n').append(StrUtil.maxLength(proseText, MAX_TEXT_CHARS));
+        }
+        for (String line : manifest) {
+            result.append('\n').append(line);
+        }
+        return result.toString();
+    }
+
+    private static AiMessage compactAiMessage(AiMessage aiMessage) {
+        String text = compactText(aiMessage.text());
+        if (!aiMessage.hasToolExecutionRequests()) {
+            return text == aiMessage.text() ? aiMessage : AiMessage.from(text);
+        }
+        List<ToolExecutionRequest> requests = new ArrayList<>(aiMessage.toolExecutionRequests().size());
+        for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+            requests.add(ToolExecutionRequest.builder()
+                    .id(request.id())
+                    .name(request.name())
+                    .arguments(compactArguments(request.arguments()))
+                    .build());
+        }
+        return StrUtil.isBlank(text) ? AiMessage.from(requests) : AiMessage.from(text, requests);
+    }
+
+    /**
+     * 工具参数中较长的字符串（如 writeFile 的 content）替换为摘要，保留路径等短参数
+     */
+    private static String compactArguments(String arguments) {
+        if (arguments == null || arguments.length() <= MAX_VALUE_CHARS || !JSONUtil.isTypeJSONObject(arguments)) {
+            return arguments;
+        }
+        JSONObject json = JSONUtil.parseObj(arguments);
+        boolean changed = false;
+        for (String key : json.keySet()) {
+            Object value = json.get(key);
+            if (value instanceof String str && str.length() > MAX_VALUE_CHARS && !str.startsWith(COMPACTED_MARK)) {
+                json.set(key, digest(str));
+                changed = true;
+            }
+        }
+        return changed ? json.toString() : arguments;
+    }
+
+    /**
+     * 内容摘要：行数、字符数和 SHA-256 前 12 位，模型可通过哈希判断内容是否变化
+     */
+    static String digest(String content) {
+        long lines = content.isEmpty() ? 0 : content.chars().filter(c -> c == '\n').count() + 1;
+        return String.format("%s %d 行，%d 字符，sha256:%s", COMPACTED_MARK, lines, content.length(),
+                DigestUtil.sha256Hex(content).substring(0, 12));
+    }
+}
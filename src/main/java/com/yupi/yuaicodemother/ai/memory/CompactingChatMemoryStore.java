@@ -0,0 +1,77 @@
+package com.yupi.yuaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 压缩较早轮次的对话记忆存储
+ * 写入时保留最近几轮（含进行中的一轮）的完整消息，更早轮次的 AI 回复、工具消息和用户消息中的代码块替换为压缩形式
+ * 一轮从一条用户消息开始，到下一条用户消息之前结束
+ *
+ * @author yupi
+ */
+public class CompactingChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMemoryStore delegate;
+
+    /**
+     * 除进行中的一轮外，额外保留完整内容的轮数（修改代码时模型需要看到上一轮生成的代码）
+     */
+    private final int fullTurns;
+
+    public CompactingChatMemoryStore(ChatMemoryStore delegate, int fullTurns) {
+        this.delegate = delegate;
+        this.fullTurns = Math.max(0, fullTurns);
+    }
+
+    @Override
+    public List<ChatMessage> getMessages(Object memoryId) {
+        return delegate.getMessages(memoryId);
+    }
+
+    @Override
+    public void updateMessages(Object memoryId, List<ChatMessage> messages) {
+        delegate.updateMessages(memoryId, compact(messages));
+    }
+
+    @Override
+    public void deleteMessages(Object memoryId) {
+        delegate.deleteMessages(memoryId);
+    }
+
+    /**
+     * 压缩保留轮次之前的消息
+     *
+     * @param messages 全部消息
+     * @return 压缩后的消息
+     */
+    List<ChatMessage> compact(List<ChatMessage> messages) {
+        int boundary = fullTurnsStart(messages);
+        if (boundary <= 0) {
+            return messages;
+        }
+        List<ChatMessage> result = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            result.add(i < boundary ? ChatMessageCompactor.compact(message) : message);
+        }
+        return result;
+    }
+
+    /**
+     * 保留完整内容的第一条消息的下标
+     */
+    private int fullTurnsStart(List<ChatMessage> messages) {
+        int turns = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i) instanceof UserMessage && ++turns > fullTurns) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,182 @@
+package com.yupi.yuaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 Token 预算淘汰的对话记忆
+ * 与按条数淘汰的 MessageWindowChatMemory 不同，一条完整的 HTML 回复和一句简短的提问占用的预算不同
+ * 超出预算时从最早的一轮开始整轮淘汰，保证剩余消息仍以用户消息开头，工具调用与结果不会被拆开
+ * 进行中的一轮和最近 fullTurns 轮不会被淘汰（与 CompactingChatMemoryStore 保留完整代码的轮数一致，
+ * 否则修改代码时模型看不到上一轮生成的代码），这些轮次超出预算时允许超出
+ * 非线程安全，同一 appId 的生成是串行的
+ *
+ * @author yupi
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    /**
+     * 每条消息的固定开销（角色、分隔符等）
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private final Object id;
+
+    private final ChatMemoryStore store;
+
+    private final int maxTokens;
+
+    /**
+     * 除进行中的一轮外，不参与淘汰的最近轮数
+     */
+    private final int fullTurns;
+
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, int maxTokens) {
+        this(id, store, maxTokens, 0);
+    }
+
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, int maxTokens, int fullTurns) {
+        this.id = id;
+        this.store = store;
+        this.maxTokens = maxTokens;
+        this.fullTurns = Math.max(0, fullTurns);
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        if (message instanceof SystemMessage) {
+            int systemIndex = findSystemMessage(messages);
+            if (systemIndex >= 0) {
+                if (messages.get(systemIndex).equals(message)) {
+                    return;
+                }
+                messages.remove(systemIndex);
+            }
+            messages.addFirst(message);
+        } else {
+            messages.add(message);
+        }
+        evict(messages);
+        store.updateMessages(id, messages);
+    }
+
+    @Override
+    public List<ChatMessage> messages() {
+        return new ArrayList<>(store.getMessages(id));
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 超出预算时整轮淘汰最早的对话，系统消息、进行中的一轮和最近 fullTurns 轮始终保留
+     */
+    private void evict(List<ChatMessage> messages) {
+        int total = 0;
+        for (ChatMessage message : messages) {
+            total += estimateTokens(message);
+        }
+        int first = findSystemMessage(messages) == 0 ? 1 : 0;
+        while (total > maxTokens) {
+            int nextTurn = nextUserMessage(messages, first + 1);
+            if (nextTurn < 0 || countTurns(messages, nextTurn) <= fullTurns) {
+                // 只剩进行中的一轮和需要保留完整内容的轮次
+                return;
+            }
+            List<ChatMessage> evicted = messages.subList(first, nextTurn);
+            for (ChatMessage message : evicted) {
+                total -= estimateTokens(message);
+            }
+            evicted.clear();
+        }
+    }
+
+    private static int findSystemMessage(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            if (messages.get(i) instanceof SystemMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 从 from 开始（含）到末尾的轮数
+     */
+    private static int countTurns(List<ChatMessage> messages, int from) {
+        int turns = 0;
+        for (int i = from; i < messages.size(); i++) {
+            if (messages.get(i) instanceof UserMessage) {
+                turns++;
+            }
+        }
+        return turns;
+    }
+
+    private static int nextUserMessage(List<ChatMessage> messages, int from) {
+        for (int i = from; i < messages.size(); i++) {
+            if (messages.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 估算消息的 Token 数
+     */
+    static int estimateTokens(ChatMessage message) {
+        int tokens = MESSAGE_OVERHEAD_TOKENS;
+        if (message instanceof UserMessage userMessage) {
+            tokens += userMessage.hasSingleText() ? estimateTokens(userMessage.singleText()) : 0;
+        } else if (message instanceof AiMessage aiMessage) {
+            tokens += estimateTokens(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    tokens += estimateTokens(request.name()) + estimateTokens(request.arguments());
+                }
+            }
+        } else if (message instanceof ToolExecutionResultMessage resultMessage) {
+            tokens += estimateTokens(resultMessage.text());
+        } else if (message instanceof SystemMessage systemMessage) {
+            tokens += estimateTokens(systemMessage.text());
+        }
+        return tokens;
+    }
+
+    /**
+     * 估算文本的 Token 数：ASCII 字符约 4 个一个 Token，中文等其他字符约 1 个一个 Token
+     */
+    static int estimateTokens(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+}
@@ -6,11 +6,12 @@ import lombok.NoArgsConstructor;
 
 /**
  * 流式消息响应基类
+ * 门面与流处理器之间直接传递类型化的消息对象，只在 HTTP 出口处序列化一次
  */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class StreamMessage {
+public abstract sealed class StreamMessage permits AiResponseMessage, ToolRequestMessage, ToolExecutedMessage {
 
     /**
      * 消息类型
@@ -0,0 +1,103 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 一组可回放的录制
+ * 优先回放请求摘要相同、尚未回放过的录制；非严格模式下找不到时按录制顺序取下一个同类型（流式 / 普通）的录制，
+ * 这样即使提示词中有应用 ID 等随运行变化的内容，整段对话（包括多轮工具调用）也能按原顺序重放。
+ * 按顺序回放只适用于单个对话：同时有其他录制正在回放时（多个对话并发、对冲请求等）无法判断该取哪一个，
+ * 此时直接报错而不是把别的对话的录制交出去，需要并发回放时请使用严格模式。
+ * 调用方在回放结束（或交出最后一个片段之前）调用 {@link #finished()}
+ *
+ * @author yupi
+ */
+public final class LlmCassette {
+
+    private final List<LlmRecording> recordings;
+
+    private final boolean strict;
+
+    private final boolean loop;
+
+    private final boolean[] replayed;
+
+    /**
+     * 已取出、尚未回放结束的录制数
+     */
+    private int inFlight;
+
+    /**
+     * @param recordings 按录制顺序排列的录制
+     * @param strict     是否只回放请求摘要相同的录制
+     * @param loop       全部回放过之后是否从头循环
+     */
+    public LlmCassette(List<LlmRecording> recordings, boolean strict, boolean loop) {
+        this.recordings = List.copyOf(recordings);
+        this.strict = strict;
+        this.loop = loop;
+        this.replayed = new boolean[this.recordings.size()];
+    }
+
+    public static LlmCassette load(Path directory, boolean strict, boolean loop) throws IOException {
+        return new LlmCassette(LlmRecordingFiles.readDirectory(directory), strict, loop);
+    }
+
+    /**
+     * 取出下一个要回放的录制
+     *
+     * @return 没有可回放的录制时返回 null
+     * @throws IllegalStateException 需要按顺序回放，但还有其他录制正在回放
+     */
+    public synchronized LlmRecording next(String requestHash, boolean stream) {
+        LlmRecording recording = find(requestHash, stream);
+        if (recording == null && loop && recordings.stream().anyMatch(candidate -> candidate.stream() == stream)) {
+            Arrays.fill(replayed, false);
+            recording = find(requestHash, stream);
+        }
+        if (recording != null) {
+            inFlight++;
+        }
+        return recording;
+    }
+
+    /**
+     * 一个录制回放结束
+     */
+    public synchronized void finished() {
+        inFlight = Math.max(0, inFlight - 1);
+    }
+
+    public int size() {
+        return recordings.size();
+    }
+
+    private LlmRecording find(String requestHash, boolean stream) {
+        int fallback = -1;
+        for (int i = 0; i < recordings.size(); i++) {
+            LlmRecording recording = recordings.get(i);
+            if (replayed[i] || recording.stream() != stream) {
+                continue;
+            }
+            if (recording.requestHash().equals(requestHash)) {
+                replayed[i] = true;
+                return recording;
+            }
+            if (fallback < 0) {
+                fallback = i;
+            }
+        }
+        if (strict || fallback < 0) {
+            return null;
+        }
+        if (inFlight > 0) {
+            throw new IllegalStateException("非严格模式只支持单个对话按顺序回放，当前还有 " + inFlight
+                    + " 个录制正在回放，requestHash: " + requestHash);
+        }
+        replayed[fallback] = true;
+        return recordings.get(fallback);
+    }
+}
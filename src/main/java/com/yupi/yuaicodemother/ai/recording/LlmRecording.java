@@ -0,0 +1,60 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import java.util.List;
+
+/**
+ * 一次模型服务调用的录制结果
+ * 流式调用依次为 open、若干 event、close（或 error）；普通调用为一个 response（或 error）。
+ * 请求只保存摘要用于回放时匹配，不保存提示词等内容
+ *
+ * @param url         请求地址
+ * @param stream      是否为流式调用
+ * @param requestHash 请求体摘要
+ * @param recordedAt  录制时间（毫秒时间戳）
+ * @param frames      按到达顺序排列的响应片段
+ * @author yupi
+ */
+public record LlmRecording(String url, boolean stream, String requestHash, long recordedAt, List<Frame> frames) {
+
+    public static final String OPEN = "open";
+
+    public static final String EVENT = "event";
+
+    public static final String CLOSE = "close";
+
+    public static final String ERROR = "error";
+
+    public static final String RESPONSE = "response";
+
+    /**
+     * 响应片段
+     *
+     * @param offsetMicros 相对请求发出时间的偏移（微秒）
+     * @param kind         片段类型：open、event、close、error、response
+     * @param event        SSE 事件名（event 片段），错误类型（error 片段）
+     * @param data         SSE 数据（event 片段）、响应体（response 片段）、错误信息（error 片段）
+     * @param status       HTTP 状态码（open、response 片段，以及带状态码的 error 片段）
+     */
+    public record Frame(long offsetMicros, String kind, String event, String data, Integer status) {
+
+        public static Frame open(long offsetMicros, int status) {
+            return new Frame(offsetMicros, OPEN, null, null, status);
+        }
+
+        public static Frame event(long offsetMicros, String event, String data) {
+            return new Frame(offsetMicros, EVENT, event, data, null);
+        }
+
+        public static Frame close(long offsetMicros) {
+            return new Frame(offsetMicros, CLOSE, null, null, null);
+        }
+
+        public static Frame error(long offsetMicros, String errorType, String message, Integer status) {
+            return new Frame(offsetMicros, ERROR, errorType, message, status);
+        }
+
+        public static Frame response(long offsetMicros, int status, String body) {
+            return new Frame(offsetMicros, RESPONSE, null, body, status);
+        }
+    }
+}
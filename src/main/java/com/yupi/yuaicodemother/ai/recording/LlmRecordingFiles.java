@@ -0,0 +1,122 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import cn.hutool.crypto.SecureUtil;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 录制文件的读写
+ * 每次调用一个 gzip 压缩的 JSON Lines 文件（*.jsonl.gz）：第一行是请求摘要，之后每行一个响应片段，
+ * 字段名使用缩写以减小体积。文件名以录制序号开头，按文件名排序即录制顺序
+ *
+ * @author yupi
+ */
+public final class LlmRecordingFiles {
+
+    public static final String FILE_SUFFIX = ".jsonl.gz";
+
+    private LlmRecordingFiles() {
+    }
+
+    /**
+     * 请求体摘要（SHA-256 前 16 位），回放时用于匹配同一个请求
+     */
+    public static String requestHash(String requestBody) {
+        return SecureUtil.sha256(requestBody == null ? "" : requestBody).substring(0, 16);
+    }
+
+    public static void write(Path file, LlmRecording recording) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(file)), StandardCharsets.UTF_8))) {
+            JSONObject header = new JSONObject()
+                    .set("url", recording.url())
+                    .set("stream", recording.stream())
+                    .set("hash", recording.requestHash())
+                    .set("at", recording.recordedAt());
+            writer.write(header.toString());
+            writer.newLine();
+            for (LlmRecording.Frame frame : recording.frames()) {
+                JSONObject line = new JSONObject()
+                        .set("t", frame.offsetMicros())
+                        .set("k", frame.kind())
+                        .set("e", frame.event())
+                        .set("d", frame.data())
+                        .set("s", frame.status());
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    public static LlmRecording read(Path file) throws IOException {
+        return read(Files.newInputStream(file), file.toString());
+    }
+
+    /**
+     * 从输入流读取一个录制文件（如打包在 jar 中的录制），读取完毕后关闭输入流
+     *
+     * @param in     gzip 压缩的录制文件内容
+     * @param source 来源描述，用于错误信息
+     */
+    public static LlmRecording read(InputStream in, String source) throws IOException {
+        try (InputStream input = in;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(
+                     new GZIPInputStream(input), StandardCharsets.UTF_8))) {
+            String headerLine = reader.readLine();
+            if (headerLine == null) {
+                throw new IOException("录制文件为空: " + source);
+            }
+            JSONObject header = JSONUtil.parseObj(headerLine);
+            List<LlmRecording.Frame> frames = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JSONObject frame = JSONUtil.parseObj(line);
+                frames.add(new LlmRecording.Frame(frame.getLong("t"), frame.getStr("k"),
+                        frame.getStr("e"), frame.getStr("d"), frame.getInt("s")));
+            }
+            return new LlmRecording(header.getStr("url"), header.getBool("stream", false),
+                    header.getStr("hash"), header.getLong("at", 0L), List.copyOf(frames));
+        }
+    }
+
+    /**
+     * 按录制顺序读取目录下的所有录制文件
+     */
+    public static List<LlmRecording> readDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted()
+                    .map(file -> {
+                        try {
+                            return read(file);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import cn.hutool.core.date.DatePattern;
+import cn.hutool.core.date.DateUtil;
+import com.yupi.yuaicodemother.config.LlmRecordingConfig;
+import dev.langchain4j.http.client.HttpClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 模型调用录制与回放
+ * 所有模型的 HTTP 客户端都由 AiHttpClientFactory 创建，这里按配置把它替换为录制或回放的客户端：
+ * record 模式下在真实请求的同时把响应写入录制目录（每次调用一个文件，后台线程写入，不阻塞流式输出）；
+ * replay 模式下启动时加载录制目录，之后的模型调用全部由录制回放
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class LlmRecordingManager {
+
+    private static final String MODE_RECORD = "record";
+
+    private static final String MODE_REPLAY = "replay";
+
+    @Resource
+    private LlmRecordingConfig llmRecordingConfig;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private Path directory;
+
+    private String session;
+
+    private LlmCassette cassette;
+
+    private ExecutorService writer;
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Paths.get(llmRecordingConfig.getDirectory());
+        switch (llmRecordingConfig.getMode()) {
+            case MODE_RECORD -> {
+                Files.createDirectories(directory);
+                // 文件名以会话时间开头，多次录制到同一目录时仍按时间顺序排列
+                session = DateUtil.format(DateUtil.date(), DatePattern.PURE_DATETIME_PATTERN);
+                writer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("llm-recording-writer").daemon().factory());
+                log.info("模型调用录制已开启，目录: {}", directory.toAbsolutePath());
+            }
+            case MODE_REPLAY -> {
+                cassette = LlmCassette.load(directory, llmRecordingConfig.isStrict(), llmRecordingConfig.isLoop());
+                log.info("模型调用回放已开启，目录: {}，共 {} 条录制", directory.toAbsolutePath(), cassette.size());
+            }
+            default -> {
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (writer != null) {
+            writer.shutdown();
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 按模式包装模型的 HTTP 客户端
+     */
+    public HttpClient decorate(HttpClient httpClient) {
+        if (cassette != null) {
+            return new ReplayingHttpClient(cassette, llmRecordingConfig.getTimeScale());
+        }
+        if (writer != null) {
+            return new RecordingHttpClient(httpClient, new FileSink());
+        }
+        return httpClient;
+    }
+
+    /**
+     * 写入录制目录
+     */
+    private final class FileSink implements RecordingHttpClient.Sink {
+
+        @Override
+        public long nextSequence() {
+            return sequence.incrementAndGet();
+        }
+
+        @Override
+        public void save(long sequence, LlmRecording recording) {
+            String fileName = String.format("%s-%06d-%s%s", session, sequence, recording.requestHash(), LlmRecordingFiles.FILE_SUFFIX);
+            writer.execute(() -> {
+                try {
+                    LlmRecordingFiles.write(directory.resolve(fileName), recording);
+                } catch (IOException e) {
+                    log.warn("写入模型调用录制失败，file: {}, {}", fileName, e.getMessage());
+                }
+            });
+        }
+    }
+}
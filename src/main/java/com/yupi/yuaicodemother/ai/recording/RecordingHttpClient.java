@@ -0,0 +1,154 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 录制模型服务响应的 HTTP 客户端
+ * 在真实请求的基础上记录每个响应片段及其相对请求发出时间的偏移，响应结束（完成或出错）后交给 {@link Sink} 保存；
+ * 被调用方取消、没有正常结束的流式响应不保存
+ *
+ * @author yupi
+ */
+final class RecordingHttpClient implements HttpClient {
+
+    /**
+     * 录制结果的保存方
+     */
+    interface Sink {
+
+        /**
+         * 请求发出时分配录制序号，保证文件顺序与请求顺序一致
+         */
+        long nextSequence();
+
+        void save(long sequence, LlmRecording recording);
+    }
+
+    private final HttpClient delegate;
+
+    private final Sink sink;
+
+    RecordingHttpClient(HttpClient delegate, Sink sink) {
+        this.delegate = delegate;
+        this.sink = sink;
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        Recorder recorder = new Recorder(request, false);
+        try {
+            SuccessfulHttpResponse response = delegate.execute(request);
+            recorder.add(LlmRecording.Frame.response(recorder.offsetMicros(), response.statusCode(), response.body()));
+            return response;
+        } catch (RuntimeException e) {
+            recorder.add(errorFrame(recorder.offsetMicros(), e));
+            throw e;
+        } finally {
+            recorder.finish();
+        }
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        Recorder recorder = new Recorder(request, true);
+        delegate.execute(request, parser, new ServerSentEventListener() {
+
+            @Override
+            public void onOpen(SuccessfulHttpResponse response) {
+                recorder.add(LlmRecording.Frame.open(recorder.offsetMicros(), response.statusCode()));
+                listener.onOpen(response);
+            }
+
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                recorder.add(LlmRecording.Frame.event(recorder.offsetMicros(), event.event(), event.data()));
+                listener.onEvent(event);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                recorder.add(errorFrame(recorder.offsetMicros(), throwable));
+                try {
+                    listener.onError(throwable);
+                } finally {
+                    recorder.finish();
+                }
+            }
+
+            @Override
+            public void onClose() {
+                recorder.add(LlmRecording.Frame.close(recorder.offsetMicros()));
+                try {
+                    listener.onClose();
+                } finally {
+                    recorder.finish();
+                }
+            }
+        });
+    }
+
+    private static LlmRecording.Frame errorFrame(long offsetMicros, Throwable throwable) {
+        Integer status = throwable instanceof HttpException httpException ? httpException.statusCode() : null;
+        return LlmRecording.Frame.error(offsetMicros, throwable.getClass().getSimpleName(), throwable.getMessage(), status);
+    }
+
+    /**
+     * 单次调用的录制状态
+     */
+    private final class Recorder {
+
+        private final long sequence = sink.nextSequence();
+
+        private final long startNanos = System.nanoTime();
+
+        private final long recordedAt = System.currentTimeMillis();
+
+        private final String url;
+
+        private final String requestHash;
+
+        private final boolean stream;
+
+        private final List<LlmRecording.Frame> frames = new ArrayList<>();
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private Recorder(HttpRequest request, boolean stream) {
+            this.url = request.url();
+            this.requestHash = LlmRecordingFiles.requestHash(request.body());
+            this.stream = stream;
+        }
+
+        long offsetMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        }
+
+        synchronized void add(LlmRecording.Frame frame) {
+            if (!finished.get()) {
+                frames.add(frame);
+            }
+        }
+
+        void finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            List<LlmRecording.Frame> snapshot;
+            synchronized (this) {
+                snapshot = List.copyOf(frames);
+            }
+            sink.save(sequence, new LlmRecording(url, stream, requestHash, recordedAt, snapshot));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 回放录制的模型服务 HTTP 客户端，不访问网络
+ * 通过 httpClientBuilder(new ReplayingHttpClientBuilder(...)) 交给 OpenAiStreamingChatModel 等模型使用，
+ * 录制的 SSE 数据块按原来的到达间隔（乘以时间缩放）交给模型解析，解析、工具循环和后续处理都与线上一致。
+ * 与 JDK 客户端一样，流式响应在独立的线程中推送，监听器抛出的异常交给监听器的 onError，
+ * onError 再次抛出异常时停止回放（模型取消流式响应依赖这一点）
+ *
+ * @author yupi
+ */
+@Slf4j
+public class ReplayingHttpClient implements HttpClient {
+
+    private final LlmCassette cassette;
+
+    private final double timeScale;
+
+    /**
+     * @param cassette  要回放的录制
+     * @param timeScale 时间缩放：1 表示按录制时的间隔，0 表示不等待
+     */
+    public ReplayingHttpClient(LlmCassette cassette, double timeScale) {
+        this.cassette = cassette;
+        this.timeScale = Math.max(0, timeScale);
+    }
+
+    @Override
+    public SuccessfulHttpResponse execute(HttpRequest request) {
+        LlmRecording recording = next(request, false);
+        try {
+            long start = System.nanoTime();
+            for (LlmRecording.Frame frame : recording.frames()) {
+                waitUntil(start, frame.offsetMicros());
+                if (LlmRecording.ERROR.equals(frame.kind())) {
+                    throw toException(frame);
+                }
+                if (LlmRecording.RESPONSE.equals(frame.kind())) {
+                    return response(frame.status(), frame.data());
+                }
+            }
+            throw new IllegalStateException("录制中没有响应: " + recording.requestHash());
+        } finally {
+            cassette.finished();
+        }
+    }
+
+    @Override
+    public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+        Thread.ofVirtual().name("llm-replay").start(() -> {
+            LlmRecording recording;
+            try {
+                recording = next(request, true);
+            } catch (RuntimeException e) {
+                listener.onError(e);
+                return;
+            }
+            replay(recording, listener);
+        });
+    }
+
+    private void replay(LlmRecording recording, ServerSentEventListener listener) {
+        List<LlmRecording.Frame> frames = recording.frames();
+        boolean finished = false;
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < frames.size(); i++) {
+                LlmRecording.Frame frame = frames.get(i);
+                waitUntil(start, frame.offsetMicros());
+                if (i == frames.size() - 1) {
+                    // 最后一个片段会触发下一轮请求（工具循环），先结束本次回放
+                    cassette.finished();
+                    finished = true;
+                }
+                if (!dispatch(frame, listener)) {
+                    return;
+                }
+            }
+        } finally {
+            if (!finished) {
+                cassette.finished();
+            }
+        }
+    }
+
+    /**
+     * 把片段交给监听器，监听器抛出的异常交给 onError
+     *
+     * @return onError 也抛出异常时返回 false，停止回放
+     */
+    private boolean dispatch(LlmRecording.Frame frame, ServerSentEventListener listener) {
+        try {
+            switch (frame.kind()) {
+                case LlmRecording.OPEN -> listener.onOpen(response(frame.status(), null));
+                case LlmRecording.EVENT -> listener.onEvent(new ServerSentEvent(frame.event(), frame.data()));
+                case LlmRecording.CLOSE -> listener.onClose();
+                case LlmRecording.ERROR -> listener.onError(toException(frame));
+                default -> log.warn("未知的录制片段类型: {}", frame.kind());
+            }
+            return true;
+        } catch (Exception e) {
+            if (LlmRecording.ERROR.equals(frame.kind())) {
+                log.debug("回放时监听器处理错误片段失败，停止回放: {}", e.getMessage());
+                return false;
+            }
+            try {
+                listener.onError(e);
+                return true;
+            } catch (Exception onErrorException) {
+                log.debug("回放时监听器处理异常失败，停止回放: {}", onErrorException.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private LlmRecording next(HttpRequest request, boolean stream) {
+        String requestHash = LlmRecordingFiles.requestHash(request.body());
+        LlmRecording recording = cassette.next(requestHash, stream);
+        if (recording == null) {
+            throw new HttpException(404, "没有可回放的录制，requestHash: " + requestHash + ", stream: " + stream);
+        }
+        return recording;
+    }
+
+    private void waitUntil(long startNanos, long offsetMicros) {
+        long remaining = startNanos + (long) (offsetMicros * 1000 * timeScale) - System.nanoTime();
+        if (remaining <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(Duration.ofNanos(remaining));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static SuccessfulHttpResponse response(Integer status, String body) {
+        return SuccessfulHttpResponse.builder()
+                .statusCode(status == null ? 200 : status)
+                .headers(Map.of())
+                .body(body)
+                .build();
+    }
+
+    private static RuntimeException toException(LlmRecording.Frame frame) {
+        if (frame.status() != null) {
+            return new HttpException(frame.status(), frame.data());
+        }
+        if (TimeoutException.class.getSimpleName().equals(frame.event())) {
+            return new TimeoutException(frame.data());
+        }
+        return new RuntimeException(frame.data());
+    }
+}
@@ -0,0 +1,61 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+
+import java.time.Duration;
+
+/**
+ * 供模型构建器的 httpClientBuilder(...) 使用，测试和基准测试中可以脱离 Spring 直接回放：
+ * <pre>
+ * OpenAiStreamingChatModel.builder()
+ *         .baseUrl("http://replay")
+ *         .modelName("deepseek-chat")
+ *         .httpClientBuilder(new ReplayingHttpClientBuilder(LlmCassette.load(dir, false, true), 0))
+ *         .build();
+ * </pre>
+ *
+ * @author yupi
+ */
+public class ReplayingHttpClientBuilder implements HttpClientBuilder {
+
+    private final LlmCassette cassette;
+
+    private final double timeScale;
+
+    private Duration connectTimeout;
+
+    private Duration readTimeout;
+
+    public ReplayingHttpClientBuilder(LlmCassette cassette, double timeScale) {
+        this.cassette = cassette;
+        this.timeScale = timeScale;
+    }
+
+    @Override
+    public Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder connectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    @Override
+    public Duration readTimeout() {
+        return readTimeout;
+    }
+
+    @Override
+    public HttpClientBuilder readTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    @Override
+    public HttpClient build() {
+        return new ReplayingHttpClient(cassette, timeScale);
+    }
+}
@@ -0,0 +1,89 @@
+package com.yupi.yuaicodemother.ai.routing;
+
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 代码生成类型的本地启发式分类器
+ * 按关键词加权打分（输入为规范化后的提示词），各类型得分经 softmax 得到置信度；
+ * 没有命中关键词或几类得分接近时置信度较低，交给模型判断
+ *
+ * @author yupi
+ */
+public final class CodeGenTypeHeuristicClassifier {
+
+    /**
+     * 较长的需求描述通常意味着更复杂的项目
+     */
+    private static final int LONG_PROMPT_CHARS = 150;
+
+    private static final Map<CodeGenTypeEnum, Map<String, Double>> KEYWORDS = new EnumMap<>(CodeGenTypeEnum.class);
+
+    static {
+        KEYWORDS.put(CodeGenTypeEnum.HTML, Map.ofEntries(
+                Map.entry("单文件", 4.0), Map.entry("单个html", 4.0), Map.entry("一个html", 4.0),
+                Map.entry("简单", 2.0), Map.entry("介绍页", 2.0), Map.entry("个人介绍", 2.0),
+                Map.entry("落地页", 2.0), Map.entry("landingpage", 2.0), Map.entry("名片", 2.0),
+                Map.entry("简历", 2.0), Map.entry("邀请函", 2.0), Map.entry("表白", 2.0),
+                Map.entry("一个页面", 1.5), Map.entry("单页", 1.5), Map.entry("倒计时", 1.5),
+                Map.entry("静态", 1.0), Map.entry("展示", 1.0), Map.entry("小游戏", 1.0)
+        ));
+        KEYWORDS.put(CodeGenTypeEnum.MULTI_FILE, Map.ofEntries(
+                Map.entry("多文件", 5.0), Map.entry("分离", 2.0), Map.entry("官网", 2.0),
+                Map.entry("多个页面", 2.0), Map.entry("关于我们", 1.5), Map.entry("联系我们", 1.5),
+                Map.entry("首页", 1.0), Map.entry("公司", 1.0), Map.entry("企业", 1.0),
+                Map.entry("导航", 1.0), Map.entry("多页面", 1.0)
+        ));
+        KEYWORDS.put(CodeGenTypeEnum.VUE_PROJECT, Map.ofEntries(
+                Map.entry("vue", 5.0), Map.entry("react", 4.0), Map.entry("单页应用", 3.5),
+                Map.entry("管理系统", 3.0), Map.entry("后台", 3.0), Map.entry("状态管理", 3.0),
+                Map.entry("增删改查", 3.0), Map.entry("crud", 3.0), Map.entry("前端项目", 3.0),
+                Map.entry("路由", 2.0), Map.entry("购物车", 2.0), Map.entry("仪表盘", 2.0),
+                Map.entry("dashboard", 2.0), Map.entry("spa", 2.0), Map.entry("数据可视化", 2.0),
+                Map.entry("权限", 2.0), Map.entry("商城", 2.0), Map.entry("电商", 2.0),
+                Map.entry("工程", 2.0), Map.entry("登录", 1.5), Map.entry("组件", 1.5),
+                Map.entry("系统", 1.5), Map.entry("注册", 1.0), Map.entry("项目", 1.0)
+        ));
+    }
+
+    private CodeGenTypeHeuristicClassifier() {
+    }
+
+    /**
+     * 分类
+     *
+     * @param normalizedPrompt 规范化后的提示词
+     * @return 得分最高的类型及其置信度（0 ~ 1），未命中任何关键词时置信度为 0
+     */
+    public static RoutingDecision classify(String normalizedPrompt) {
+        Map<CodeGenTypeEnum, Double> scores = new EnumMap<>(CodeGenTypeEnum.class);
+        boolean matched = false;
+        for (Map.Entry<CodeGenTypeEnum, Map<String, Double>> entry : KEYWORDS.entrySet()) {
+            double score = 0;
+            for (Map.Entry<String, Double> keyword : entry.getValue().entrySet()) {
+                if (normalizedPrompt.contains(keyword.getKey())) {
+                    score += keyword.getValue();
+                }
+            }
+            matched |= score > 0;
+            scores.put(entry.getKey(), score);
+        }
+        if (!matched) {
+            return new RoutingDecision(CodeGenTypeEnum.HTML, 0, RoutingDecision.Source.HEURISTIC);
+        }
+        if (normalizedPrompt.length() > LONG_PROMPT_CHARS) {
+            scores.merge(CodeGenTypeEnum.VUE_PROJECT, 1.0, Double::sum);
+        }
+        CodeGenTypeEnum best = CodeGenTypeEnum.HTML;
+        double total = 0;
+        for (Map.Entry<CodeGenTypeEnum, Double> entry : scores.entrySet()) {
+            total += Math.exp(entry.getValue());
+            if (entry.getValue() > scores.get(best)) {
+                best = entry.getKey();
+            }
+        }
+        return new RoutingDecision(best, Math.exp(scores.get(best)) / total, RoutingDecision.Source.HEURISTIC);
+    }
+}
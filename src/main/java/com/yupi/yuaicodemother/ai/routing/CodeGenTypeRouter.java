@@ -0,0 +1,109 @@
+package com.yupi.yuaicodemother.ai.routing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yuaicodemother.ai.AiCodeGenTypeRoutingService;
+import com.yupi.yuaicodemother.config.CodeGenRoutingConfig;
+import com.yupi.yuaicodemother.core.cache.PromptNormalizer;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代码生成类型路由
+ * 1. 本地启发式分类，置信度足够时直接采用
+ * 2. 按规范化提示词查询最近的模型路由结果
+ * 3. 以上都不满足时调用模型，结果写入缓存；模型调用失败时使用启发式分类的最佳猜测
+ * 指标：ai_routing_decisions_total{source,type}、ai_routing_confidence{source}、ai_routing_duration{source}
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class CodeGenTypeRouter {
+
+    @Resource
+    private CodeGenRoutingConfig codeGenRoutingConfig;
+
+    @Resource
+    private AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, CodeGenTypeEnum> decisionCache;
+
+    @PostConstruct
+    public void init() {
+        decisionCache = Caffeine.newBuilder()
+                .maximumSize(codeGenRoutingConfig.getCacheSize())
+                .expireAfterWrite(codeGenRoutingConfig.getCacheExpireAfterWrite())
+                .build();
+    }
+
+    /**
+     * 选择代码生成类型
+     *
+     * @param userPrompt 用户需求描述
+     * @return 路由结果
+     */
+    public RoutingDecision route(String userPrompt) {
+        long start = System.nanoTime();
+        RoutingDecision decision = doRoute(userPrompt);
+        record(decision, System.nanoTime() - start);
+        log.info("代码生成类型路由完成，类型: {}, 来源: {}, 置信度: {}", decision.codeGenType().getValue(),
+                decision.source(), String.format("%.2f", decision.confidence()));
+        return decision;
+    }
+
+    private RoutingDecision doRoute(String userPrompt) {
+        String normalized = PromptNormalizer.normalize(userPrompt);
+        RoutingDecision heuristic = CodeGenTypeHeuristicClassifier.classify(normalized);
+        if (codeGenRoutingConfig.isHeuristicEnabled() && heuristic.confidence() >= codeGenRoutingConfig.getMinConfidence()) {
+            return heuristic;
+        }
+        CodeGenTypeEnum cached = decisionCache.getIfPresent(normalized);
+        if (cached != null) {
+            return new RoutingDecision(cached, 1, RoutingDecision.Source.CACHE);
+        }
+        try {
+            CodeGenTypeEnum codeGenType = aiCodeGenTypeRoutingService.routeCodeGenType(userPrompt);
+            if (codeGenType != null) {
+                decisionCache.put(normalized, codeGenType);
+                return new RoutingDecision(codeGenType, 1, RoutingDecision.Source.LLM);
+            }
+            log.warn("模型路由未返回有效类型，使用启发式分类结果");
+        } catch (Exception e) {
+            log.error("模型路由失败，使用启发式分类结果: {}", e.getMessage());
+        }
+        return heuristic.withSource(RoutingDecision.Source.FALLBACK);
+    }
+
+    private void record(RoutingDecision decision, long elapsedNanos) {
+        String source = decision.source().name().toLowerCase();
+        Counter.builder("ai_routing_decisions_total")
+                .description("代码生成类型路由次数")
+                .tag("source", source)
+                .tag("type", decision.codeGenType().getValue())
+                .register(meterRegistry)
+                .increment();
+        DistributionSummary.builder("ai_routing_confidence")
+                .description("代码生成类型路由置信度")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(decision.confidence());
+        Timer.builder("ai_routing_duration")
+                .description("代码生成类型路由耗时")
+                .tag("source", source)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+}
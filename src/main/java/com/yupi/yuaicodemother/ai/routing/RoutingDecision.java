@@ -0,0 +1,40 @@
+package com.yupi.yuaicodemother.ai.routing;
+
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+
+/**
+ * 代码生成类型路由结果
+ *
+ * @param codeGenType 生成类型
+ * @param confidence  置信度（0 ~ 1），模型判断的结果记为 1
+ * @param source      判断来源
+ * @author yupi
+ */
+public record RoutingDecision(CodeGenTypeEnum codeGenType, double confidence, Source source) {
+
+    /**
+     * 判断来源
+     */
+    public enum Source {
+        /**
+         * 本地启发式分类
+         */
+        HEURISTIC,
+        /**
+         * 最近的路由结果缓存
+         */
+        CACHE,
+        /**
+         * 模型判断
+         */
+        LLM,
+        /**
+         * 模型调用失败，使用启发式分类的最佳猜测
+         */
+        FALLBACK
+    }
+
+    public RoutingDecision withSource(Source source) {
+        return new RoutingDecision(codeGenType, confidence, source);
+    }
+}
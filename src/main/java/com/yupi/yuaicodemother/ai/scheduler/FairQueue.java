@@ -0,0 +1,196 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+
+/**
+ * 单个模型的并发许可和加权公平队列
+ * 进行中的调用未达上限时直接放行，否则排队：优先通道（管理员）总是先于普通通道，
+ * 同一通道内按开始时间公平排队（SFQ）：每个请求的虚拟完成时间 = max(当前虚拟时间, 该用户上一个请求的完成时间) + 1 / 权重，
+ * 同一用户连续提交的请求会依次往后排，不会挤占其他用户，权重越高的用户排得越靠前
+ *
+ * @author yupi
+ */
+final class FairQueue {
+
+    private static final Comparator<Ticket> ORDER = Comparator
+            .comparing((Ticket ticket) -> !ticket.priority)
+            .thenComparingDouble(ticket -> ticket.finishTag)
+            .thenComparingLong(ticket -> ticket.seq);
+
+    private final int maxInFlight;
+
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(ORDER);
+
+    /**
+     * 每个用户最后一个排队请求的虚拟完成时间，队列清空时一起清空
+     */
+    private final Map<String, Double> lastFinishTags = new HashMap<>();
+
+    private double virtualTime;
+
+    private int inFlight;
+
+    private long seq;
+
+    FairQueue(int maxInFlight) {
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * 申请许可，返回的 ticket 在获得许可时完成
+     *
+     * @param userId        用户 ID
+     * @param weight        用户权重（大于 0）
+     * @param priority      是否走优先通道
+     * @param queueListener 排队位置变化时的回调，可以为空
+     */
+    Ticket enqueue(String userId, double weight, boolean priority, IntConsumer queueListener) {
+        Ticket ticket = new Ticket(priority, queueListener);
+        List<Runnable> notifications;
+        synchronized (this) {
+            ticket.seq = ++seq;
+            if (inFlight < maxInFlight && waiting.isEmpty()) {
+                inFlight++;
+                ticket.granted.complete(null);
+                return ticket;
+            }
+            ticket.startTag = Math.max(virtualTime, lastFinishTags.getOrDefault(userId, 0d));
+            ticket.finishTag = ticket.startTag + 1 / weight;
+            lastFinishTags.put(userId, ticket.finishTag);
+            ticket.queued = true;
+            waiting.add(ticket);
+            notifications = positionNotifications();
+        }
+        notifications.forEach(Runnable::run);
+        return ticket;
+    }
+
+    /**
+     * 归还许可，并按顺序放行排队中的请求
+     */
+    void release() {
+        List<Runnable> notifications;
+        synchronized (this) {
+            inFlight--;
+            notifications = dispatch();
+        }
+        notifications.forEach(Runnable::run);
+    }
+
+    /**
+     * 放弃排队
+     *
+     * @return false 表示已经获得许可（调用方需要自行 release）
+     */
+    boolean cancel(Ticket ticket) {
+        List<Runnable> notifications;
+        synchronized (this) {
+            if (!waiting.remove(ticket)) {
+                return false;
+            }
+            if (waiting.isEmpty()) {
+                resetVirtualTime();
+            }
+            notifications = positionNotifications();
+        }
+        notifications.forEach(Runnable::run);
+        return true;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int waiting() {
+        return waiting.size();
+    }
+
+    private List<Runnable> dispatch() {
+        List<Runnable> notifications = new ArrayList<>();
+        boolean dispatched = false;
+        while (inFlight < maxInFlight && !waiting.isEmpty()) {
+            Ticket ticket = waiting.poll();
+            inFlight++;
+            virtualTime = Math.max(virtualTime, ticket.startTag);
+            notifications.add(() -> ticket.granted.complete(null));
+            dispatched = true;
+        }
+        if (!dispatched) {
+            return notifications;
+        }
+        if (waiting.isEmpty()) {
+            resetVirtualTime();
+        }
+        notifications.addAll(positionNotifications());
+        return notifications;
+    }
+
+    private void resetVirtualTime() {
+        virtualTime = 0;
+        lastFinishTags.clear();
+    }
+
+    /**
+     * 计算排队位置有变化的请求，回调在锁外执行
+     */
+    private List<Runnable> positionNotifications() {
+        List<Runnable> notifications = new ArrayList<>();
+        List<Ticket> ordered = new ArrayList<>(waiting);
+        ordered.sort(ORDER);
+        for (int i = 0; i < ordered.size(); i++) {
+            Ticket ticket = ordered.get(i);
+            int position = i + 1;
+            if (ticket.queueListener != null && ticket.position != position) {
+                ticket.position = position;
+                notifications.add(() -> ticket.queueListener.accept(position));
+            }
+        }
+        return notifications;
+    }
+
+    /**
+     * 一次许可申请
+     */
+    static final class Ticket {
+
+        private final boolean priority;
+
+        private final IntConsumer queueListener;
+
+        private final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        private long seq;
+
+        private double startTag;
+
+        private double finishTag;
+
+        private boolean queued;
+
+        private int position;
+
+        private Ticket(boolean priority, IntConsumer queueListener) {
+            this.priority = priority;
+            this.queueListener = queueListener;
+        }
+
+        CompletableFuture<Void> granted() {
+            return granted;
+        }
+
+        boolean isQueued() {
+            return queued;
+        }
+
+        boolean isPriority() {
+            return priority;
+        }
+    }
+}
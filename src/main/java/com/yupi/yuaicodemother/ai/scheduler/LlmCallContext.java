@@ -0,0 +1,136 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import com.yupi.yuaicodemother.monitor.MonitorContext;
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+
+import java.util.function.IntConsumer;
+
+/**
+ * 模型调用上下文（调度器据此决定排队通道和权重），同时携带监控上下文
+ * 不会被子线程继承：线程池和调度器的线程由第一个使用者创建，继承会把该用户的上下文带给之后的所有调用。
+ * 需要跨线程时显式传递：在其他线程上订阅时使用 subscribeWith，AI 服务的工具循环线程通过 wrap 设置（见 AiCodeGeneratorServiceFactory）
+ *
+ * @author yupi
+ */
+@Getter
+public final class LlmCallContext {
+
+    private static final ThreadLocal<LlmCallContext> CONTEXT_HOLDER = new ThreadLocal<>();
+
+    /**
+     * 发起调用的用户 ID，为空时按系统调用处理
+     */
+    private volatile String userId;
+
+    /**
+     * 用户角色，决定公平队列中的权重以及是否走优先通道
+     */
+    private volatile String userRole;
+
+    /**
+     * 排队位置变化时的回调，参数为当前排在第几位，0 表示已开始调用
+     */
+    private volatile IntConsumer queueListener;
+
+    /**
+     * 监控上下文，用于 Token 计量和监控指标
+     */
+    private volatile MonitorContext monitorContext;
+
+    private LlmCallContext() {
+    }
+
+    /**
+     * 获取当前线程的上下文
+     */
+    public static LlmCallContext current() {
+        return CONTEXT_HOLDER.get();
+    }
+
+    /**
+     * 获取当前线程的上下文，不存在时创建
+     */
+    public static LlmCallContext currentOrOpen() {
+        LlmCallContext context = CONTEXT_HOLDER.get();
+        if (context == null) {
+            context = new LlmCallContext();
+            CONTEXT_HOLDER.set(context);
+        }
+        return context;
+    }
+
+    /**
+     * 获取当前线程的上下文，不存在时新建一个（新建的上下文不设置到当前线程上，由 subscribeWith 或 wrap 传递）
+     */
+    public static LlmCallContext currentOrCreate() {
+        LlmCallContext context = CONTEXT_HOLDER.get();
+        return context != null ? context : new LlmCallContext();
+    }
+
+    /**
+     * 清除当前线程的上下文（已经传递到其他线程的上下文不受影响）
+     */
+    public static void clear() {
+        CONTEXT_HOLDER.remove();
+    }
+
+    /**
+     * 订阅时把指定上下文设置到订阅线程上，订阅完成后恢复
+     * 用于在其他线程上订阅会发起模型调用的流（模型调用在订阅时开始）
+     *
+     * @param context 上下文，为空时直接返回原始流
+     * @param source  原始流
+     * @return 在该上下文中订阅的流
+     */
+    public static <T> Flux<T> subscribeWith(LlmCallContext context, Flux<T> source) {
+        if (context == null) {
+            return source;
+        }
+        return Flux.from(subscriber -> runWith(context, () -> source.subscribe(subscriber)));
+    }
+
+    /**
+     * 把当前线程的上下文带到在其他线程上执行的任务：在当前线程调用，任务执行时设置该上下文，结束后恢复
+     *
+     * @param task 任务
+     * @return 在当前上下文中执行的任务，当前线程没有上下文时直接返回原任务
+     */
+    public static Runnable wrap(Runnable task) {
+        LlmCallContext context = CONTEXT_HOLDER.get();
+        if (context == null) {
+            return task;
+        }
+        return () -> runWith(context, task);
+    }
+
+    private static void runWith(LlmCallContext context, Runnable task) {
+        LlmCallContext previous = CONTEXT_HOLDER.get();
+        CONTEXT_HOLDER.set(context);
+        try {
+            task.run();
+        } finally {
+            if (previous == null) {
+                CONTEXT_HOLDER.remove();
+            } else {
+                CONTEXT_HOLDER.set(previous);
+            }
+        }
+    }
+
+    public LlmCallContext user(String userId, String userRole) {
+        this.userId = userId;
+        this.userRole = userRole;
+        return this;
+    }
+
+    public LlmCallContext queueListener(IntConsumer queueListener) {
+        this.queueListener = queueListener;
+        return this;
+    }
+
+    public LlmCallContext monitorContext(MonitorContext monitorContext) {
+        this.monitorContext = monitorContext;
+        return this;
+    }
+}
@@ -0,0 +1,166 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import com.yupi.yuaicodemother.config.LlmSchedulerConfig;
+import com.yupi.yuaicodemother.exception.BusinessException;
+import com.yupi.yuaicodemother.exception.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * 模型调用调度器（每个模型一个舱壁）
+ * 所有 ChatModel / StreamingChatModel 的调用都先在这里申请许可，排队期间通过 {@link LlmCallContext} 中的回调通知排队位置。
+ * 指标：ai_llm_queue_wait{model,lane}、ai_llm_queue_rejected_total{model,reason}、
+ * ai_llm_in_flight_calls{model}、ai_llm_queued_calls{model}
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class LlmScheduler {
+
+    /**
+     * 排队时检查取消和超时的间隔
+     */
+    private static final long POLL_INTERVAL_MILLIS = 500;
+
+    private static final String SYSTEM_USER = "system";
+
+    private static final Runnable NO_OP = () -> {
+    };
+
+    @Resource
+    private LlmSchedulerConfig llmSchedulerConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, FairQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * 申请调用许可，必要时阻塞排队
+     *
+     * @param model     模型名称（Bean 名称）
+     * @param cancelled 调用方是否已取消，排队期间定期检查
+     * @return 归还许可的回调（可重复调用），排队期间被取消时返回 null
+     * @throws BusinessException 排队超时
+     */
+    public Runnable acquire(String model, BooleanSupplier cancelled) {
+        if (!llmSchedulerConfig.isEnabled()) {
+            return NO_OP;
+        }
+        FairQueue queue = queues.computeIfAbsent(model, this::createQueue);
+        LlmCallContext context = LlmCallContext.current();
+        String userId = context == null || context.getUserId() == null ? SYSTEM_USER : context.getUserId();
+        String userRole = context == null ? null : context.getUserRole();
+        IntConsumer contextListener = context == null ? null : context.getQueueListener();
+        IntConsumer queueListener = contextListener == null ? null : position -> notifySafely(contextListener, position);
+        boolean priority = userRole != null && llmSchedulerConfig.getPriorityRoles().contains(userRole);
+        double weight = userRole == null ? 1 : llmSchedulerConfig.getRoleWeights().getOrDefault(userRole, 1d);
+
+        long start = System.nanoTime();
+        FairQueue.Ticket ticket = queue.enqueue(userId, weight <= 0 ? 1 : weight, priority, queueListener);
+        if (ticket.isQueued() && !await(model, queue, ticket, start, cancelled)) {
+            return null;
+        }
+        Timer.builder("ai_llm_queue_wait")
+                .description("模型调用排队等待时间")
+                .tag("model", model)
+                .tag("lane", priority ? "priority" : "normal")
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (ticket.isQueued()) {
+            log.info("模型调用结束排队，model: {}, userId: {}, 等待 {} ms", model, userId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            if (queueListener != null) {
+                queueListener.accept(0);
+            }
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                queue.release();
+            }
+        };
+    }
+
+    /**
+     * @return false 表示排队期间被取消
+     */
+    private boolean await(String model, FairQueue queue, FairQueue.Ticket ticket, long start, BooleanSupplier cancelled) {
+        long deadline = start + llmSchedulerConfig.getQueueTimeout().toNanos();
+        while (true) {
+            try {
+                ticket.granted().get(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                boolean isCancelled = cancelled.getAsBoolean();
+                if (!isCancelled && System.nanoTime() - deadline < 0) {
+                    continue;
+                }
+                if (!queue.cancel(ticket)) {
+                    // 放弃排队的同时拿到了许可
+                    return true;
+                }
+                rejected(model, isCancelled ? "cancelled" : "timeout");
+                if (isCancelled) {
+                    return false;
+                }
+                throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "当前排队人数较多，请稍后再试");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!queue.cancel(ticket)) {
+                    queue.release();
+                }
+                rejected(model, "interrupted");
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待模型调用许可时被中断");
+            } catch (ExecutionException e) {
+                // 许可只会正常完成
+                throw new BusinessException(ErrorCode.SYSTEM_ERROR, "等待模型调用许可失败");
+            }
+        }
+    }
+
+    private FairQueue createQueue(String model) {
+        int maxInFlight = llmSchedulerConfig.getMaxInFlight().getOrDefault(model, llmSchedulerConfig.getDefaultMaxInFlight());
+        FairQueue queue = new FairQueue(maxInFlight);
+        Gauge.builder("ai_llm_in_flight_calls", queue, FairQueue::inFlight)
+                .description("进行中的模型调用数")
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("ai_llm_queued_calls", queue, FairQueue::waiting)
+                .description("排队中的模型调用数")
+                .tag("model", model)
+                .register(meterRegistry);
+        return queue;
+    }
+
+    private void rejected(String model, String reason) {
+        Counter.builder("ai_llm_queue_rejected_total")
+                .description("排队未获得许可的模型调用数")
+                .tag("model", model)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static void notifySafely(IntConsumer queueListener, int position) {
+        try {
+            queueListener.accept(position);
+        } catch (Exception e) {
+            log.warn("通知排队位置失败: {}", e.getMessage());
+        }
+    }
+}
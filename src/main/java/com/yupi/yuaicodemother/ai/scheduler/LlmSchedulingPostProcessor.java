@@ -0,0 +1,37 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * 为所有对话模型 Bean（包括多例模型的每个实例）套上调度器
+ * 以 Bean 名称作为模型名称，注入方仍按 ChatModel / StreamingChatModel 接口使用
+ *
+ * @author yupi
+ */
+@Component
+public class LlmSchedulingPostProcessor implements BeanPostProcessor {
+
+    /**
+     * 延迟获取调度器，避免 BeanPostProcessor 过早初始化调度器及其依赖
+     */
+    private final ObjectProvider<LlmScheduler> llmSchedulerProvider;
+
+    public LlmSchedulingPostProcessor(ObjectProvider<LlmScheduler> llmSchedulerProvider) {
+        this.llmSchedulerProvider = llmSchedulerProvider;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof StreamingChatModel streamingChatModel && !(bean instanceof ScheduledStreamingChatModel)) {
+            return new ScheduledStreamingChatModel(streamingChatModel, beanName, llmSchedulerProvider.getObject());
+        }
+        if (bean instanceof ChatModel chatModel && !(bean instanceof ScheduledChatModel)) {
+            return new ScheduledChatModel(chatModel, beanName, llmSchedulerProvider.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,57 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.Set;
+
+/**
+ * 经过调度器的同步对话模型，调用期间一直占用所属模型的许可
+ * 监听器仍由被包装的模型触发，这里不再重复
+ *
+ * @author yupi
+ */
+final class ScheduledChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+
+    private final String modelName;
+
+    private final LlmScheduler llmScheduler;
+
+    ScheduledChatModel(ChatModel delegate, String modelName, LlmScheduler llmScheduler) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.llmScheduler = llmScheduler;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        // 同步调用无法被取消，只受排队超时限制
+        Runnable release = llmScheduler.acquire(modelName, () -> false);
+        try {
+            return delegate.chat(chatRequest);
+        } finally {
+            release.run();
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,109 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Set;
+
+/**
+ * 经过调度器的流式对话模型
+ * 在调用线程（AI 服务的工具循环线程）上排队，许可在响应完成、出错或被取消后归还；
+ * 工具循环的每一轮各自申请一次许可，执行工具期间不占用模型额度。
+ * 监听器仍由被包装的模型触发，这里不再重复
+ *
+ * @author yupi
+ */
+final class ScheduledStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+
+    private final String modelName;
+
+    private final LlmScheduler llmScheduler;
+
+    ScheduledStreamingChatModel(StreamingChatModel delegate, String modelName, LlmScheduler llmScheduler) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.llmScheduler = llmScheduler;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        Runnable release = llmScheduler.acquire(modelName, handler::isCancelled);
+        if (release == null) {
+            // 排队期间已取消，与模型被取消时一样不再回调
+            return;
+        }
+        try {
+            delegate.chat(chatRequest, new ReleasingHandler(handler, release));
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+
+    /**
+     * 在流结束时归还许可
+     * 被取消的流既不会完成也不会出错，但模型每收到一段响应都会检查 isCancelled，借此归还
+     */
+    private record ReleasingHandler(StreamingChatResponseHandler delegate, Runnable release)
+            implements StreamingChatResponseHandler {
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            delegate.onPartialResponse(partialResponse);
+        }
+
+        @Override
+        public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+            delegate.onPartialToolExecutionRequest(index, partialToolExecutionRequest);
+        }
+
+        @Override
+        public void onCompleteToolExecutionRequest(int index, ToolExecutionRequest completeToolExecutionRequest) {
+            delegate.onCompleteToolExecutionRequest(index, completeToolExecutionRequest);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            release.run();
+            delegate.onCompleteResponse(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            release.run();
+            delegate.onError(error);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            boolean cancelled = delegate.isCancelled();
+            if (cancelled) {
+                release.run();
+            }
+            return cancelled;
+        }
+    }
+}
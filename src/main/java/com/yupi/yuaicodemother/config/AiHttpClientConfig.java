@@ -0,0 +1,43 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * AI 模型 HTTP 客户端配置
+ * 所有模型实例（包括多例模型）共用一个 JDK HttpClient 及其连接池，新会话不必重新建立 TLS 连接
+ * 连接池的保活时间和大小是 JVM 级别的系统属性，只能通过启动参数设置（见 application.yml）
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.ai-http-client")
+@Data
+public class AiHttpClientConfig {
+
+    /**
+     * 优先使用的 HTTP 版本，服务端不支持 HTTP/2 时自动降级为 HTTP/1.1
+     */
+    private String version = "HTTP_2";
+
+    /**
+     * 建立连接的超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+
+    /**
+     * 每个主机同时进行中的请求数上限（HTTP/1.1 下即连接数上限，流式请求在响应结束前一直占用）
+     */
+    private int maxRequestsPerHost = 64;
+
+    /**
+     * 等待请求许可的超时时间
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 启动时是否预先连接各模型服务的主机
+     */
+    private boolean warmUp = true;
+}
@@ -0,0 +1,52 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * AI 服务实例配置
+ * 共享模式下每种代码生成类型只构建一个 AI 服务实例，对话记忆按 appId 在每次调用时解析
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.ai-service")
+@Data
+public class AiServiceConfig {
+
+    /**
+     * 是否开启共享模式，关闭时沿用每个 appId 一个 AI 服务实例的方式
+     */
+    private boolean shared = false;
+
+    /**
+     * 对话记忆保留的最大消息数（未开启 Token 预算时生效），同时也是从数据库加载历史的条数
+     */
+    private int maxMessages = 20;
+
+    /**
+     * 对话记忆的 Token 预算，大于 0 时按预算淘汰整轮对话，代替按条数淘汰
+     */
+    private int memoryMaxTokens = 6000;
+
+    /**
+     * 是否压缩较早轮次中的代码（替换为文件清单和哈希）
+     */
+    private boolean memoryCompaction = true;
+
+    /**
+     * 除进行中的一轮外，保留完整代码的轮数，这些轮次也不会被 Token 预算淘汰
+     */
+    private int memoryFullTurns = 1;
+
+    /**
+     * 对话记忆缓存的最大条目数
+     */
+    private long memoryCacheSize = 1000;
+
+    /**
+     * 对话记忆缓存访问后的过期时间
+     */
+    private Duration memoryExpireAfterAccess = Duration.ofMinutes(10);
+}
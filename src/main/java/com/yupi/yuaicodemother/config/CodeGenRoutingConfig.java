@@ -0,0 +1,37 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 代码生成类型路由配置
+ * 先用本地启发式分类，置信度不足时查询最近的路由结果缓存，仍未命中才调用模型
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.routing")
+@Data
+public class CodeGenRoutingConfig {
+
+    /**
+     * 是否开启本地启发式分类
+     */
+    private boolean heuristicEnabled = true;
+
+    /**
+     * 启发式分类结果直接采用的最低置信度
+     */
+    private double minConfidence = 0.8;
+
+    /**
+     * 路由结果缓存的最大条数
+     */
+    private long cacheSize = 10000;
+
+    /**
+     * 路由结果缓存的有效期
+     */
+    private Duration cacheExpireAfterWrite = Duration.ofHours(24);
+}
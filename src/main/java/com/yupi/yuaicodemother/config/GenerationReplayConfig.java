@@ -0,0 +1,57 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 生成流断线续传与多订阅者配置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.stream.replay")
+@Data
+public class GenerationReplayConfig {
+
+    /**
+     * 内存回放缓冲区最多保留的事件数
+     */
+    private int maxEvents = 2000;
+
+    /**
+     * 内存回放缓冲区最多保留的字符数
+     */
+    private long maxChars = 512 * 1024;
+
+    /**
+     * 所有会话的回放缓冲区合计最多保留的字符数，超出时淘汰会话（被淘汰的会话无法续传，进行中的生成不受影响）
+     * 进行中的会话按 maxChars 预留，结束后按实际缓冲的字符数计算
+     */
+    private long maxTotalChars = 128L * 1024 * 1024;
+
+    /**
+     * 生成结束后会话的保留时间，期间可以续传
+     */
+    private Duration retention = Duration.ofMinutes(5);
+
+    /**
+     * 生成中会话的最长保留时间，防止上游异常不结束导致泄漏
+     */
+    private Duration maxLifetime = Duration.ofHours(1);
+
+    /**
+     * 最后一个订阅者离开后，等待多久再取消上游（期间可以续传或重新加入）
+     */
+    private Duration detachGrace = Duration.ofSeconds(30);
+
+    /**
+     * 是否将溢出内存缓冲区的事件写入 Redis
+     */
+    private boolean redisSpillEnabled = false;
+
+    /**
+     * Redis 中溢出事件的过期时间
+     */
+    private Duration redisSpillTtl = Duration.ofMinutes(30);
+}
@@ -0,0 +1,52 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 生成结果缓存配置
+ * 首轮对话的提示词规范化后相同（且生成类型、系统提示词版本相同）时，直接回放缓存的生成结果
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.result-cache")
+@Data
+public class GenerationResultCacheConfig {
+
+    /**
+     * 是否开启
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓存有效期
+     */
+    private Duration ttl = Duration.ofHours(24);
+
+    /**
+     * 缓存内容的总字符数上限
+     */
+    private long maxChars = 32L * 1024 * 1024;
+
+    /**
+     * 单条结果的字符数上限，超过则不缓存
+     */
+    private int maxEntryChars = 256 * 1024;
+
+    /**
+     * 回放时每个片段的字符数
+     */
+    private int replayChunkChars = 64;
+
+    /**
+     * 回放时片段之间的间隔，为 0 时不等待
+     */
+    private Duration replayInterval = Duration.ofMillis(15);
+
+    /**
+     * 手动维护的版本号，修改生成逻辑后递增即可让旧缓存失效（系统提示词的变更会自动识别）
+     */
+    private String version = "v1";
+}
@@ -0,0 +1,42 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 模型调用录制与回放配置（通过 record / replay 配置文件启用）
+ * 录制：把模型服务的响应（流式数据块及其到达时间、普通响应、错误）写入压缩文件，不保存请求内容；
+ * 回放：不访问模型服务，按录制文件重放响应，用于离线复现和压测解析、工具循环等环节
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.llm-recording")
+@Data
+public class LlmRecordingConfig {
+
+    /**
+     * 模式：off（默认）、record、replay
+     */
+    private String mode = "off";
+
+    /**
+     * 录制文件所在目录
+     */
+    private String directory = System.getProperty("user.dir") + "/tmp/llm_recordings";
+
+    /**
+     * 回放时的时间缩放：1 表示按录制时的间隔输出，0.5 表示两倍速，0 表示不等待
+     */
+    private double timeScale = 1;
+
+    /**
+     * 回放时是否要求请求内容与录制时完全一致；关闭时找不到一致的录制就按录制顺序依次回放，
+     * 按顺序回放只支持同一时间一个对话，有并发的模型调用时直接报错
+     */
+    private boolean strict = false;
+
+    /**
+     * 所有录制都回放过之后是否从头循环（反复回放同一段对话时使用）
+     */
+    private boolean loop = true;
+}
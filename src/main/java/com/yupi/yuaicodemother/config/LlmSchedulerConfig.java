@@ -0,0 +1,51 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模型调用调度配置
+ * 每个模型（按 Bean 名称区分，多例模型的所有实例共用一个额度）限制同时进行中的调用数，
+ * 超出后按用户加权公平排队，管理员走优先通道
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.llm-scheduler")
+@Data
+public class LlmSchedulerConfig {
+
+    /**
+     * 是否启用调度，关闭后直接调用模型
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未单独配置的模型同时进行中的调用数上限
+     */
+    private int defaultMaxInFlight = 16;
+
+    /**
+     * 按模型 Bean 名称单独配置的调用数上限，例如 reasoningStreamingChatModelPrototype: 4
+     */
+    private Map<String, Integer> maxInFlight = new HashMap<>();
+
+    /**
+     * 按用户角色配置的排队权重，未配置的角色权重为 1
+     */
+    private Map<String, Double> roleWeights = new HashMap<>();
+
+    /**
+     * 走优先通道的用户角色
+     */
+    private List<String> priorityRoles = List.of("admin");
+
+    /**
+     * 排队等待的超时时间，超时后返回"请求过于频繁"
+     */
+    private Duration queueTimeout = Duration.ofMinutes(2);
+}
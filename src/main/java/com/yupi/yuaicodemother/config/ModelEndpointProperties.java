@@ -0,0 +1,22 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+
+/**
+ * 模型的备用服务端点
+ * 未填写的项沿用所属模型的配置，例如同一个模型部署在多个服务商时通常只需填写 baseUrl 和 apiKey
+ */
+@Data
+public class ModelEndpointProperties {
+
+    /**
+     * 端点名称（用于指标和日志），默认为 baseUrl 的主机名
+     */
+    private String name;
+
+    private String baseUrl;
+
+    private String apiKey;
+
+    private String modelName;
+}
@@ -0,0 +1,33 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 多端点模型的故障转移配置
+ * 端点按首 token 耗时的指数加权移动平均（EWMA）排序，失败的端点暂时降级
+ * 各模型的备用端点（endpoints）和对冲延迟（hedge-delay）在各自的模型配置下设置
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.model-failover")
+@Data
+public class ModelFailoverConfig {
+
+    /**
+     * EWMA 平滑系数，越大越偏向最近的观测值
+     */
+    private double ewmaAlpha = 0.3;
+
+    /**
+     * 尚无观测数据的端点按该首 token 耗时参与排序
+     */
+    private Duration defaultTimeToFirstToken = Duration.ofSeconds(2);
+
+    /**
+     * 端点失败后的降级时长，连续失败时按倍数增加（最多 16 倍）
+     */
+    private Duration failureCooldown = Duration.ofSeconds(30);
+}
@@ -0,0 +1,96 @@
+package com.yupi.yuaicodemother.config;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.service.ParallelToolExecutionPolicy;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * 工具并行执行配置
+ * 模型一轮返回多个工具调用时（Vue 工程模式一次写多个文件），互不冲突的调用在虚拟线程上并发执行，
+ * 执行结果仍按调用顺序写入对话记忆。策略由 AiCodeGeneratorServiceFactory 设置到各个 AI 服务上
+ */
+@Slf4j
+@Configuration
+@ConfigurationProperties(prefix = "code.tool.parallel")
+@Data
+public class ParallelToolExecutionConfig {
+
+    /**
+     * 是否开启并行执行（默认关闭）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 单轮最大并发数
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 允许并行的工具及其冲突参数，key 为工具名，value 为参数名
+     * 冲突参数值相同的调用（如同一路径的 writeFile 与 modifyFile）按顺序串行执行
+     * 未配置的工具（如 readDir、exit）等待之前的调用全部完成后再执行
+     */
+    private Map<String, String> conflictArguments = new LinkedHashMap<>();
+
+    /**
+     * 执行工具调用的虚拟线程池，开启并行执行时创建
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private ExecutorService toolExecutor;
+
+    /**
+     * 工具并行执行策略，未开启时为 DISABLED（按顺序执行）
+     */
+    @Bean
+    public ParallelToolExecutionPolicy parallelToolExecutionPolicy() {
+        if (!enabled || conflictArguments.isEmpty()) {
+            return ParallelToolExecutionPolicy.DISABLED;
+        }
+        Map<String, Function<ToolExecutionRequest, String>> resolvers = new HashMap<>();
+        conflictArguments.forEach((toolName, argumentName) ->
+                resolvers.put(toolName, request -> conflictKey(request, argumentName)));
+        toolExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        log.info("工具并行执行已开启，最大并发数 {}，可并行工具 {}", maxConcurrency, conflictArguments.keySet());
+        return new ParallelToolExecutionPolicy(maxConcurrency, resolvers, toolExecutor);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (toolExecutor != null) {
+            toolExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 取冲突参数值并规范化路径写法，取不到时返回 null（该调用不参与并行）
+     */
+    private static String conflictKey(ToolExecutionRequest request, String argumentName) {
+        String value = JSONUtil.parseObj(request.arguments()).getStr(argumentName);
+        if (StrUtil.isBlank(value)) {
+            return null;
+        }
+        String path = value.trim().replace('\\', '/');
+        while (path.startsWith("./")) {
+            path = path.substring(2);
+        }
+        return StrUtil.removePrefix(path, "/");
+    }
+}
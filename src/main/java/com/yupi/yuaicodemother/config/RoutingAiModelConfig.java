@@ -1,13 +1,21 @@
 package com.yupi.yuaicodemother.config;
 
+import com.yupi.yuaicodemother.ai.failover.ModelFailoverFactory;
+import com.yupi.yuaicodemother.ai.http.AiHttpClientFactory;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
 /**
  * 智能路由模型配置
  */
@@ -16,6 +24,12 @@ import org.springframework.context.annotation.Scope;
 @Data
 public class RoutingAiModelConfig {
 
+    @Resource
+    private AiHttpClientFactory aiHttpClientFactory;
+
+    @Resource
+    private ModelFailoverFactory modelFailoverFactory;
+
     private String baseUrl;
 
     private String apiKey;
@@ -30,16 +44,39 @@ public class RoutingAiModelConfig {
 
     private Boolean logResponses = false;
 
+    /**
+     * 备用服务端点，按首 token 耗时自动选择，失败时自动转移
+     */
+    private List<ModelEndpointProperties> endpoints = new ArrayList<>();
+
+    /**
+     * 预先连接模型服务，首个会话无需等待 TLS 握手
+     */
+    @PostConstruct
+    public void warmUpConnection() {
+        aiHttpClientFactory.warmUp(baseUrl);
+        endpoints.forEach(endpoint -> aiHttpClientFactory.warmUp(endpoint.getBaseUrl()));
+    }
+
     /**
      * 创建用于路由判断的ChatModel
      */
     @Bean
     @Scope("prototype")
     public ChatModel routingChatModelPrototype() {
+        LinkedHashMap<String, ChatModel> models = new LinkedHashMap<>();
+        for (ModelEndpointProperties endpoint : modelFailoverFactory.resolveEndpoints(baseUrl, apiKey, modelName, endpoints)) {
+            models.put(endpoint.getName(), buildModel(endpoint));
+        }
+        return modelFailoverFactory.sync("routing-chat-model", models);
+    }
+
+    private ChatModel buildModel(ModelEndpointProperties endpoint) {
         return OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .modelName(modelName)
-                .baseUrl(baseUrl)
+                .httpClientBuilder(aiHttpClientFactory.newHttpClientBuilder())
+                .apiKey(endpoint.getApiKey())
+                .modelName(endpoint.getModelName())
+                .baseUrl(endpoint.getBaseUrl())
                 .maxTokens(maxTokens)
                 .temperature(temperature)
                 .logRequests(logRequests)
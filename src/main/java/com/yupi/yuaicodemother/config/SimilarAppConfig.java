@@ -0,0 +1,71 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 相似应用索引配置
+ * 对应用的初始化提示词建立 MinHash + LSH 索引，首轮生成时复用最相似的已生成应用
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.similar-app")
+@Data
+public class SimilarAppConfig {
+
+    /**
+     * 是否开启
+     */
+    private boolean enabled = true;
+
+    /**
+     * LSH 分段数
+     */
+    private int bands = 12;
+
+    /**
+     * 每段的签名位数，签名长度为 bands × rows
+     * 默认配置下相似度 0.8 的提示词成为候选的概率约 0.97，相似度 0.5 的约 0.17
+     */
+    private int rows = 6;
+
+    /**
+     * 字符 n-gram 长度
+     */
+    private int shingleSize = 3;
+
+    /**
+     * 相似度阈值（估计的 Jaccard 相似度）
+     */
+    private double threshold = 0.8;
+
+    /**
+     * 每次查询最多检查的相似应用数（依次检查是否已有生成结果）
+     */
+    private int maxCandidates = 5;
+
+    /**
+     * 同一分段中相同段哈希最多保留的应用数
+     */
+    private int maxBucketSize = 32;
+
+    /**
+     * 索引最多保留的应用数，超过时淘汰最早创建的应用（每个应用约 0.5 ~ 0.9KB 内存）
+     */
+    private int maxIndexedApps = 100000;
+
+    /**
+     * HTML 和多文件模式下，作为参考提供给模型的代码字符数上限，超过则不提供
+     */
+    private int maxReferenceChars = 16000;
+
+    /**
+     * Vue 工程模式下，是否复制相似应用的工程作为起点
+     */
+    private boolean seedVueProject = true;
+
+    /**
+     * 启动时从数据库重建索引的分页大小
+     */
+    private int rebuildPageSize = 5000;
+}
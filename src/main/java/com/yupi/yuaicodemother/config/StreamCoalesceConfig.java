@@ -0,0 +1,71 @@
+package com.yupi.yuaicodemother.config;
+
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流式输出合并配置
+ * 将上游逐 token 的输出按大小和时间窗口合并为较大的 SSE 帧
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.stream.coalesce")
+@Data
+public class StreamCoalesceConfig {
+
+    /**
+     * 是否开启合并
+     */
+    private boolean enabled = true;
+
+    /**
+     * 默认规则：累计达到 1 KB 或距离首个片段 30 ms 时推送
+     */
+    private Rule defaults = new Rule();
+
+    /**
+     * 按代码生成类型覆盖默认规则，key 为 CodeGenTypeEnum 的 value（html、multi_file、vue_project）
+     */
+    private Map<String, Rule> types = new HashMap<>();
+
+    /**
+     * 获取指定生成类型的合并规则
+     *
+     * @param codeGenType 代码生成类型
+     * @return 合并规则，未开启时返回 null
+     */
+    public Rule resolve(CodeGenTypeEnum codeGenType) {
+        if (!enabled) {
+            return null;
+        }
+        Rule rule = types.get(codeGenType.getValue());
+        if (rule == null) {
+            return defaults;
+        }
+        return rule.isEnabled() ? rule : null;
+    }
+
+    @Data
+    public static class Rule {
+
+        /**
+         * 是否对该类型开启合并
+         */
+        private boolean enabled = true;
+
+        /**
+         * 单帧最大字节数（UTF-8）
+         */
+        private int maxBytes = 1024;
+
+        /**
+         * 单帧最长等待时间
+         */
+        private Duration maxDelay = Duration.ofMillis(30);
+    }
+}
@@ -1,8 +1,11 @@
 package com.yupi.yuaicodemother.config;
 
+import com.yupi.yuaicodemother.ai.failover.ModelFailoverFactory;
+import com.yupi.yuaicodemother.ai.http.AiHttpClientFactory;
 import com.yupi.yuaicodemother.monitor.AiModelMonitorListener;
 import dev.langchain4j.model.chat.StreamingChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -10,6 +13,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 
 /**
@@ -23,6 +29,12 @@ public class StreamingChatModelConfig {
     @Resource
     private AiModelMonitorListener aiModelMonitorListener;
 
+    @Resource
+    private AiHttpClientFactory aiHttpClientFactory;
+
+    @Resource
+    private ModelFailoverFactory modelFailoverFactory;
+
     private String baseUrl;
 
     private String apiKey;
@@ -37,16 +49,44 @@ public class StreamingChatModelConfig {
 
     private boolean logResponses;
 
+    /**
+     * 备用服务端点，按首 token 耗时自动选择，失败时自动转移
+     */
+    private List<ModelEndpointProperties> endpoints = new ArrayList<>();
+
+    /**
+     * 首选端点多久没有输出就向下一个端点发出对冲请求，不配置表示不对冲
+     */
+    private Duration hedgeDelay;
+
+    /**
+     * 预先连接模型服务，首个会话无需等待 TLS 握手
+     */
+    @PostConstruct
+    public void warmUpConnection() {
+        aiHttpClientFactory.warmUp(baseUrl);
+        endpoints.forEach(endpoint -> aiHttpClientFactory.warmUp(endpoint.getBaseUrl()));
+    }
+
     /**
      * 流式模型
      */
     @Bean
     @Scope("prototype")
     public StreamingChatModel streamingChatModelPrototype() {
+        LinkedHashMap<String, StreamingChatModel> models = new LinkedHashMap<>();
+        for (ModelEndpointProperties endpoint : modelFailoverFactory.resolveEndpoints(baseUrl, apiKey, modelName, endpoints)) {
+            models.put(endpoint.getName(), buildModel(endpoint));
+        }
+        return modelFailoverFactory.streaming("streaming-chat-model", models, hedgeDelay);
+    }
+
+    private StreamingChatModel buildModel(ModelEndpointProperties endpoint) {
         return OpenAiStreamingChatModel.builder()
-                .apiKey(apiKey)
-                .baseUrl(baseUrl)
-                .modelName(modelName)
+                .httpClientBuilder(aiHttpClientFactory.newHttpClientBuilder())
+                .apiKey(endpoint.getApiKey())
+                .baseUrl(endpoint.getBaseUrl())
+                .modelName(endpoint.getModelName())
                 .maxTokens(maxTokens)
                 .temperature(temperature)
                 .logRequests(logRequests)
@@ -0,0 +1,69 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token 用量台账配置
+ * 每次模型响应的 Token 用量先进入内存队列，由后台线程攒批写入数据库，请求线程不做同步插入
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.token-ledger")
+@Data
+public class TokenLedgerConfig {
+
+    /**
+     * 是否记录台账
+     */
+    private boolean enabled = true;
+
+    /**
+     * 内存队列容量，队列满时丢弃新记录（并计入 ai_token_ledger_dropped_total）
+     */
+    private int queueCapacity = 100000;
+
+    /**
+     * 攒够多少条写入一次
+     */
+    private int batchSize = 500;
+
+    /**
+     * 第一条记录入队后最多等待多久写入
+     */
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    /**
+     * 批量写入失败后的最多重试次数，用尽后丢弃该批记录（计入 ai_token_ledger_records_total{result="failed"}）
+     */
+    private int maxRetries = 3;
+
+    /**
+     * 第一次重试前的等待时间，之后每次翻倍
+     */
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+    /**
+     * 各模型每百万 Token 的价格（元），用于用量报表估算费用，未配置的模型不计费用
+     */
+    private Map<String, ModelPrice> prices = new HashMap<>();
+
+    @Data
+    public static class ModelPrice {
+
+        /**
+         * 输入每百万 Token 价格
+         */
+        private BigDecimal input = BigDecimal.ZERO;
+
+        /**
+         * 输出每百万 Token 价格
+         */
+        private BigDecimal output = BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,45 @@
+package com.yupi.yuaicodemother.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 用户每日 Token 额度配置
+ * 用量先在本地累加，定时同步到 Redis（多实例共享），只在发起对话时检查额度，
+ * 进行中的生成不会因为额度用完被中断
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.token-quota")
+@Data
+public class TokenQuotaConfig {
+
+    /**
+     * 是否启用额度限制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未单独配置的角色每天可用的 Token 数
+     */
+    private long dailyLimit = 2_000_000;
+
+    /**
+     * 按用户角色单独配置的每日额度，负数表示不限制，例如 admin: -1
+     */
+    private Map<String, Long> roleLimits = new HashMap<>();
+
+    /**
+     * 本地用量同步到 Redis 的间隔
+     */
+    private Duration reconcileInterval = Duration.ofMillis(300);
+
+    /**
+     * 计算"每日"所用的时区
+     */
+    private String zoneId = "Asia/Shanghai";
+}
@@ -0,0 +1,62 @@
+package com.yupi.yuaicodemother.config;
+
+import com.yupi.yuaicodemother.monitor.ToolLoopMetricsListener;
+import dev.langchain4j.service.ToolLoopPolicy;
+import dev.langchain4j.service.ToolLoopState;
+import jakarta.annotation.Resource;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * 工具调用循环配置
+ * 限制单次生成中模型与工具来回的轮数、总耗时和 Token 总量，达到上限时执行完当轮工具后直接结束，并在输出末尾追加提示。
+ * 策略由 AiCodeGeneratorServiceFactory 设置到各个 AI 服务上
+ */
+@Configuration
+@ConfigurationProperties(prefix = "code.tool.loop")
+@Data
+public class ToolLoopConfig {
+
+    /**
+     * 单次生成最多轮数（每轮为一次模型响应）
+     */
+    private int maxRounds = 20;
+
+    /**
+     * 单次生成最长耗时，在发起下一轮请求前检查
+     */
+    private Duration maxDuration = Duration.ofMinutes(10);
+
+    /**
+     * 单次生成最多消耗的 Token 数（各轮输入和输出之和），在发起下一轮请求前检查，不配置表示不限制
+     */
+    private Integer maxTokens;
+
+    @Resource
+    private ToolLoopMetricsListener toolLoopMetricsListener;
+
+    /**
+     * 工具调用循环策略
+     */
+    @Bean
+    public ToolLoopPolicy toolLoopPolicy() {
+        return new ToolLoopPolicy(maxRounds, maxDuration, maxTokens, toolLoopMetricsListener, this::terminationMessage);
+    }
+
+    /**
+     * 达到上限时追加到输出末尾的提示（只发给前端，不写入对话记忆）
+     */
+    String terminationMessage(ToolLoopState.Outcome outcome) {
+        String reason = switch (outcome) {
+            case MAX_ROUNDS -> "已达到单次生成的最大轮数（" + maxRounds + " 轮）";
+            case MAX_DURATION -> "已达到单次生成的最长耗时（" + maxDuration.toMinutes() + " 分钟）";
+            case MAX_TOKENS -> "已达到单次生成的 Token 上限（" + maxTokens + "）";
+            default -> null;
+        };
+        return reason == null ? null : "\n\n> 生成提前结束：" + reason + "，可以继续对话完成剩余的内容。\n";
+    }
+}
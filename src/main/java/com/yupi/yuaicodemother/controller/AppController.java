@@ -2,7 +2,6 @@ package com.yupi.yuaicodemother.controller;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.mybatisflex.core.paginate.Page;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.yupi.yuaicodemother.annotation.AuthCheck;
@@ -11,6 +10,11 @@ import com.yupi.yuaicodemother.common.DeleteRequest;
 import com.yupi.yuaicodemother.common.ResultUtils;
 import com.yupi.yuaicodemother.constant.AppConstant;
 import com.yupi.yuaicodemother.constant.UserConstant;
+import com.yupi.yuaicodemother.core.similar.SimilarAppIndex;
+import com.yupi.yuaicodemother.core.sse.GenerationSseEvents;
+import com.yupi.yuaicodemother.core.sse.SseFrameEncoder;
+import com.yupi.yuaicodemother.core.stream.GenerationEvent;
+import com.yupi.yuaicodemother.core.stream.GenerationReplayRegistry;
 import com.yupi.yuaicodemother.exception.BusinessException;
 import com.yupi.yuaicodemother.exception.ErrorCode;
 import com.yupi.yuaicodemother.exception.ThrowUtils;
@@ -31,12 +35,10 @@ import org.springframework.web.bind.annotation.*;
 import com.yupi.yuaicodemother.model.entity.App;
 import com.yupi.yuaicodemother.service.AppService;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.io.File;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 应用 控制层。
@@ -56,33 +58,69 @@ public class AppController {
     @Resource
     private ProjectDownloadService projectDownloadService;
 
+    @Resource
+    private SseFrameEncoder sseFrameEncoder;
+
+    @Resource
+    private GenerationReplayRegistry generationReplayRegistry;
+
+    @Resource
+    private SimilarAppIndex similarAppIndex;
+
+    /**
+     * 对话生成代码（SSE）
+     * 每个事件带有 generationId:seq 形式的 id，断线重连时浏览器会通过 Last-Event-ID 请求头带回，
+     * 此时直接从回放缓冲区续传，不会重新调用模型
+     *
+     * @param appId       应用 ID
+     * @param message     提示词
+     * @param noCache     是否跳过生成结果缓存和相似应用复用（仅对首轮对话生效）
+     * @param lastEventId 最后收到的事件 ID（请求头或同名参数）
+     * @param request     请求
+     * @return 生成内容事件流
+     */
     @GetMapping(value = "/chat/gen/code", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     @RateLimit(limitType = RateLimitType.USER, rate = 5, rateInterval = 60, message = "AI 对话请求过于频繁，请稍后再试")
     public Flux<ServerSentEvent<String>> chatToGenCode(@RequestParam Long appId,
                                                        @RequestParam String message,
+                                                       @RequestParam(defaultValue = "false") boolean noCache,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
                                                        HttpServletRequest request) {
         // 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 id 错误");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "提示词不能为空");
         // 获取当前登录用户
         User loginUser = userService.getLoginUser(request);
-        // 调用服务生成代码（SSE 流式返回）
-        Flux<String> contentFlux = appService.chatToGenCode(appId, message, loginUser);
-        return contentFlux
-                .map(chunk -> {
-                    Map<String, String> wrapper = Map.of("d", chunk);
-                    String jsonData = JSONUtil.toJsonStr(wrapper);
-                    return ServerSentEvent.<String>builder()
-                            .data(jsonData)
-                            .build();
-                })
-                .concatWith(Mono.just(
-                        // 发送结束事件
-                        ServerSentEvent.<String>builder()
-                                .event("done")
-                                .data("")
-                                .build()
-                ));
+        // EventSource 无法自定义请求头，手动重连时也可以通过参数传递
+        if (StrUtil.isBlank(lastEventId)) {
+            lastEventId = request.getParameter("lastEventId");
+        }
+        Flux<GenerationEvent> eventFlux;
+        if (StrUtil.isNotBlank(lastEventId)) {
+            // 断线重连：从回放缓冲区续传
+            eventFlux = generationReplayRegistry.resume(appId, lastEventId, loginUser);
+        } else {
+            // 调用服务生成代码（SSE 流式返回），相同请求会加入进行中的生成
+            eventFlux = generationReplayRegistry.startOrJoin(appId, loginUser.getId(), message,
+                    () -> appService.chatToGenCode(appId, message, loginUser, noCache)).subscribe(0);
+        }
+        return GenerationSseEvents.toServerSentEvents(eventFlux, sseFrameEncoder);
+    }
+
+    /**
+     * 旁观应用进行中的生成（SSE）
+     * 用于多标签页或管理员查看，先收到已生成的内容，再接收实时内容，不会重复调用模型
+     *
+     * @param appId   应用 ID
+     * @param request 请求
+     * @return 生成内容事件流
+     */
+    @GetMapping(value = "/chat/gen/code/attach", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> attachToGenCode(@RequestParam Long appId,
+                                                         HttpServletRequest request) {
+        ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 id 错误");
+        User loginUser = userService.getLoginUser(request);
+        return GenerationSseEvents.toServerSentEvents(generationReplayRegistry.attach(appId, loginUser), sseFrameEncoder);
     }
 
     /**
@@ -329,6 +367,10 @@ public class AppController {
         app.setEditTime(LocalDateTime.now());
         boolean result = appService.updateById(app);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 精选应用可以被其他用户复用为生成起点，优先级变更后同步到相似应用索引
+        if (app.getPriority() != null) {
+            similarAppIndex.updatePriority(id, app.getPriority());
+        }
         return ResultUtils.success(true);
     }
 
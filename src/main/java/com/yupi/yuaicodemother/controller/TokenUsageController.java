@@ -0,0 +1,49 @@
+package com.yupi.yuaicodemother.controller;
+
+import com.yupi.yuaicodemother.common.BaseResponse;
+import com.yupi.yuaicodemother.common.ResultUtils;
+import com.yupi.yuaicodemother.exception.ErrorCode;
+import com.yupi.yuaicodemother.exception.ThrowUtils;
+import com.yupi.yuaicodemother.model.dto.tokenusage.TokenUsageReportRequest;
+import com.yupi.yuaicodemother.model.entity.User;
+import com.yupi.yuaicodemother.model.vo.TokenUsageReportVO;
+import com.yupi.yuaicodemother.service.TokenUsageService;
+import com.yupi.yuaicodemother.service.UserService;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Token 用量 控制层。
+ */
+@RestController
+@RequestMapping("/tokenUsage")
+public class TokenUsageController {
+
+    @Resource
+    private TokenUsageService tokenUsageService;
+
+    @Resource
+    private UserService userService;
+
+    /**
+     * 查询 Token 用量报表（按用户、应用、模型、日期聚合）
+     * 普通用户只能查询自己的用量，管理员可以查询所有用户
+     *
+     * @param tokenUsageReportRequest 报表请求
+     * @param request                 请求
+     * @return 报表行
+     */
+    @PostMapping("/report")
+    public BaseResponse<List<TokenUsageReportVO>> getUsageReport(@RequestBody TokenUsageReportRequest tokenUsageReportRequest,
+                                                                 HttpServletRequest request) {
+        ThrowUtils.throwIf(tokenUsageReportRequest == null, ErrorCode.PARAMS_ERROR);
+        User loginUser = userService.getLoginUser(request);
+        return ResultUtils.success(tokenUsageService.getUsageReport(tokenUsageReportRequest, loginUser));
+    }
+}
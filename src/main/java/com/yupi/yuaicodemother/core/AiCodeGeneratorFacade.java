@@ -1,20 +1,29 @@
 package com.yupi.yuaicodemother.core;
 
-import cn.hutool.json.JSONUtil;
+import cn.hutool.core.util.StrUtil;
 import com.yupi.yuaicodemother.ai.AiCodeGeneratorService;
 import com.yupi.yuaicodemother.ai.AiCodeGeneratorServiceFactory;
+import com.yupi.yuaicodemother.ai.AppChatMemoryProvider;
 import com.yupi.yuaicodemother.ai.model.HtmlCodeResult;
 import com.yupi.yuaicodemother.ai.model.MultiFileCodeResult;
 import com.yupi.yuaicodemother.ai.model.message.AiResponseMessage;
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
 import com.yupi.yuaicodemother.ai.model.message.ToolExecutedMessage;
 import com.yupi.yuaicodemother.ai.model.message.ToolRequestMessage;
+import com.yupi.yuaicodemother.ai.scheduler.LlmCallContext;
 import com.yupi.yuaicodemother.constant.AppConstant;
 import com.yupi.yuaicodemother.core.builder.VueProjectBuilder;
-import com.yupi.yuaicodemother.core.parser.CodeParserExecutor;
+import com.yupi.yuaicodemother.core.cache.GenerationResultCache;
+import com.yupi.yuaicodemother.core.similar.SimilarAppSeeder;
+import com.yupi.yuaicodemother.core.parser.StreamingCodeFenceParser;
 import com.yupi.yuaicodemother.core.saver.CodeFileSaverExecutor;
+import com.yupi.yuaicodemother.core.stream.ResponseAccumulator;
 import com.yupi.yuaicodemother.exception.BusinessException;
 import com.yupi.yuaicodemother.exception.ErrorCode;
 import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.tool.ToolExecution;
@@ -24,6 +33,8 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * AI 代码生成门面类，组合代码生成和保存功能
@@ -32,12 +43,23 @@ import java.io.File;
 @Slf4j
 public class AiCodeGeneratorFacade {
 
+    private static final String HTML_FILE_NAME = "index.html";
+
     @Resource
     private AiCodeGeneratorServiceFactory aiCodeGeneratorServiceFactory;
 
     @Resource
     private VueProjectBuilder vueProjectBuilder;
 
+    @Resource
+    private GenerationResultCache generationResultCache;
+
+    @Resource
+    private AppChatMemoryProvider appChatMemoryProvider;
+
+    @Resource
+    private SimilarAppSeeder similarAppSeeder;
+
     /**
      * 统一入口：根据类型生成并保存代码
      *
@@ -74,56 +96,109 @@ public class AiCodeGeneratorFacade {
      * @param userMessage     用户提示词
      * @param codeGenTypeEnum 生成类型
      * @param appId           应用 ID
-     * @return 保存的目录
+     * @return 类型化的流式消息
      */
-    public Flux<String> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId) {
+        return generateAndSaveCodeStream(userMessage, codeGenTypeEnum, appId, null, false);
+    }
+
+    /**
+     * 统一入口：根据类型生成并保存代码（流式）
+     *
+     * @param userMessage     用户提示词
+     * @param codeGenTypeEnum 生成类型
+     * @param appId           应用 ID
+     * @param userId          当前用户 ID，复用相似应用时只考虑该用户自己的应用和精选应用
+     * @param reuseResults    是否复用已有结果（首轮对话）：HTML 和多文件模式先查生成结果缓存，未命中时再复用相似应用
+     * @return 类型化的流式消息
+     */
+    public Flux<StreamMessage> generateAndSaveCodeStream(String userMessage, CodeGenTypeEnum codeGenTypeEnum, Long appId,
+                                                         Long userId, boolean reuseResults) {
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "生成类型不能为空");
         }
+        String resultCacheKey = reuseResults && generationResultCache.supports(codeGenTypeEnum)
+                ? generationResultCache.buildKey(userMessage, codeGenTypeEnum) : null;
+        if (resultCacheKey != null) {
+            String cachedResult = generationResultCache.get(resultCacheKey);
+            if (cachedResult != null) {
+                log.info("命中生成结果缓存，appId: {}, key: {}", appId, resultCacheKey);
+                return processCodeStream(generationResultCache.replay(cachedResult)
+                                .doOnComplete(() -> appendToChatMemory(appId, userMessage, cachedResult)),
+                        codeGenTypeEnum, appId, null);
+            }
+        }
+        if (!reuseResults) {
+            return generateCodeStream(userMessage, codeGenTypeEnum, appId, resultCacheKey);
+        }
+        // 复用提示词相似的已有应用（结果缓存的键仍使用原始提示词）
+        // 查找和复制在其他线程上完成后才发起模型调用，订阅时的调用上下文需要随之传递
+        return Flux.defer(() -> {
+            LlmCallContext callContext = LlmCallContext.current();
+            return similarAppSeeder.seed(appId, userId, userMessage, codeGenTypeEnum)
+                    .flatMapMany(modelMessage -> LlmCallContext.subscribeWith(callContext,
+                            generateCodeStream(modelMessage, codeGenTypeEnum, appId, resultCacheKey)));
+        });
+    }
+
+    /**
+     * 调用 AI 生成代码（流式），订阅时发起模型调用
+     *
+     * @param modelMessage   交给模型的提示词
+     * @param codeGenType    生成类型
+     * @param appId          应用 ID
+     * @param resultCacheKey 生成结果缓存键，不为空时在正常结束后写入缓存
+     * @return 类型化的流式消息
+     */
+    private Flux<StreamMessage> generateCodeStream(String modelMessage, CodeGenTypeEnum codeGenType, Long appId,
+                                                   String resultCacheKey) {
         // 根据 appId 获取相应的 AI 服务实例
-        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenTypeEnum);
-        return switch (codeGenTypeEnum) {
+        AiCodeGeneratorService aiCodeGeneratorService = aiCodeGeneratorServiceFactory.getAiCodeGeneratorService(appId, codeGenType);
+        return switch (codeGenType) {
             case HTML -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateHtmlCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.HTML, appId);
+                TokenStream tokenStream = aiCodeGeneratorService.generateHtmlCodeStream(appId, modelMessage);
+                yield processCodeStream(toTextFlux(tokenStream), CodeGenTypeEnum.HTML, appId, resultCacheKey);
             }
             case MULTI_FILE -> {
-                Flux<String> codeStream = aiCodeGeneratorService.generateMultiFileCodeStream(userMessage);
-                yield processCodeStream(codeStream, CodeGenTypeEnum.MULTI_FILE, appId);
+                TokenStream tokenStream = aiCodeGeneratorService.generateMultiFileCodeStream(appId, modelMessage);
+                yield processCodeStream(toTextFlux(tokenStream), CodeGenTypeEnum.MULTI_FILE, appId, resultCacheKey);
             }
             case VUE_PROJECT -> {
-                TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, userMessage);
+                TokenStream tokenStream = aiCodeGeneratorService.generateVueProjectCodeStream(appId, modelMessage);
                 yield processTokenStream(tokenStream, appId);
             }
             default -> {
-                String errorMessage = "不支持的生成类型：" + codeGenTypeEnum.getValue();
+                String errorMessage = "不支持的生成类型：" + codeGenType.getValue();
                 throw new BusinessException(ErrorCode.SYSTEM_ERROR, errorMessage);
             }
         };
     }
 
     /**
-     * 将 TokenStream 转换为 Flux<String>，并传递工具调用信息
+     * 将 TokenStream 转换为 Flux<StreamMessage>，并传递工具调用信息
      *
      * @param tokenStream TokenStream 对象
      * @param appId       应用 ID
-     * @return Flux<String> 流式响应
+     * @return Flux<StreamMessage> 流式响应
      */
-    private Flux<String> processTokenStream(TokenStream tokenStream, Long appId) {
+    private Flux<StreamMessage> processTokenStream(TokenStream tokenStream, Long appId) {
         return Flux.create(sink -> {
+            // 下游取消（客户端断开且没有其他订阅者）时，关闭模型 HTTP 流并停止后续工具调用
+            sink.onDispose(tokenStream::cancel);
             tokenStream.onPartialResponse((String partialResponse) -> {
-                        AiResponseMessage aiResponseMessage = new AiResponseMessage(partialResponse);
-                        sink.next(JSONUtil.toJsonStr(aiResponseMessage));
+                        sink.next(new AiResponseMessage(partialResponse));
                     })
                     .onPartialToolExecutionRequest((index, toolExecutionRequest) -> {
-                        ToolRequestMessage toolRequestMessage = new ToolRequestMessage(toolExecutionRequest);
-                        sink.next(JSONUtil.toJsonStr(toolRequestMessage));
+                        sink.next(new ToolRequestMessage(toolExecutionRequest));
                     })
                     .onToolExecuted((ToolExecution toolExecution) -> {
-                        ToolExecutedMessage toolExecutedMessage = new ToolExecutedMessage(toolExecution);
-                        sink.next(JSONUtil.toJsonStr(toolExecutedMessage));
+                        sink.next(new ToolExecutedMessage(toolExecution));
                     })
                     .onCompleteResponse((ChatResponse response) -> {
+                        // 客户端已断开，不再构建
+                        if (sink.isCancelled()) {
+                            return;
+                        }
                         // 执行 Vue 项目构建（同步执行，确保预览时项目已就绪）
                         String projectPath = AppConstant.CODE_OUTPUT_ROOT_DIR + "/vue_project_" + appId;
                         vueProjectBuilder.buildProject(projectPath);
@@ -137,32 +212,92 @@ public class AiCodeGeneratorFacade {
         });
     }
 
+    /**
+     * 将纯文本的 TokenStream 转换为 Flux<String>，下游取消时同步取消 TokenStream
+     *
+     * @param tokenStream TokenStream 对象
+     * @return 文本片段流
+     */
+    private Flux<String> toTextFlux(TokenStream tokenStream) {
+        return Flux.create(sink -> {
+            sink.onDispose(tokenStream::cancel);
+            tokenStream.onPartialResponse(sink::next)
+                    .onCompleteResponse((ChatResponse response) -> sink.complete())
+                    .onError(sink::error)
+                    .start();
+        });
+    }
+
     /**
      * 通用流式代码处理方法
+     * 边接收边解析代码块，每个代码块闭合后立即保存对应文件，预览无需等待整个响应结束
      *
-     * @param codeStream  代码流
-     * @param codeGenType 代码生成类型
-     * @param appId       应用 ID
-     * @return 流式响应
+     * @param codeStream     代码流
+     * @param codeGenType    代码生成类型
+     * @param appId          应用 ID
+     * @param resultCacheKey 生成结果缓存键，不为空时在正常结束后写入缓存
+     * @return 流式响应（每个片段包装为 AiResponseMessage）
      */
-    private Flux<String> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId) {
-        // 字符串拼接器，用于当流式返回所有的代码之后，再保存代码
-        StringBuilder codeBuilder = new StringBuilder();
-        return codeStream.doOnNext(chunk -> {
-            // 实时收集代码片段
-            codeBuilder.append(chunk);
-        }).doOnComplete(() -> {
-            // 流式返回完成后，保存代码
-            try {
-                String completeCode = codeBuilder.toString();
-                // 使用执行器解析代码
-                Object parsedResult = CodeParserExecutor.executeParser(completeCode, codeGenType);
-                // 使用执行器保存代码
-                File saveDir = CodeFileSaverExecutor.executeSaver(parsedResult, codeGenType, appId);
-                log.info("保存成功，目录为：{}", saveDir.getAbsolutePath());
-            } catch (Exception e) {
-                log.error("保存失败: {}", e.getMessage());
-            }
+    private Flux<StreamMessage> processCodeStream(Flux<String> codeStream, CodeGenTypeEnum codeGenType, Long appId,
+                                                  String resultCacheKey) {
+        return Flux.deferContextual(contextView -> {
+            // 优先写入下游流处理器提供的累加器（它只在结束时读取），否则自行累加；代码块内容从中截取，不另存一份
+            ResponseAccumulator sharedAccumulator = contextView.getOrDefault(ResponseAccumulator.CONTEXT_KEY, null);
+            ResponseAccumulator accumulator = sharedAccumulator != null ? sharedAccumulator : new ResponseAccumulator();
+            // 同名文件只保存第一个代码块，与正则解析器的行为一致
+            Set<String> savedFileNames = new HashSet<>();
+            StreamingCodeFenceParser fenceParser = new StreamingCodeFenceParser(accumulator, (lang, code) -> {
+                String fileName = CodeFileSaverExecutor.resolveFileName(lang, codeGenType);
+                if (fileName == null || StrUtil.isBlank(code) || !savedFileNames.add(fileName)) {
+                    return;
+                }
+                saveSingleFile(fileName, code.trim(), codeGenType, appId);
+            });
+            return codeStream.doOnNext(chunk -> {
+                // 先追加再解析，解析器从累加器中截取代码块
+                accumulator.append(chunk);
+                fenceParser.feed(chunk);
+            }).doOnComplete(() -> {
+                fenceParser.finish();
+                if (!savedFileNames.contains(HTML_FILE_NAME)) {
+                    // HTML 模式下没有代码块时，将整个内容作为 HTML
+                    if (codeGenType == CodeGenTypeEnum.HTML && !fenceParser.hasFence() && !StrUtil.isBlank(accumulator)) {
+                        saveSingleFile(HTML_FILE_NAME, accumulator.toString().trim(), codeGenType, appId);
+                        savedFileNames.add(HTML_FILE_NAME);
+                    } else {
+                        log.error("保存失败: 未解析到 HTML 代码，appId: {}", appId);
+                    }
+                }
+                // 只缓存解析出文件的完整结果
+                if (resultCacheKey != null && !savedFileNames.isEmpty()) {
+                    generationResultCache.put(resultCacheKey, accumulator.toString());
+                }
+            }).<StreamMessage>map(AiResponseMessage::new);
         });
     }
+
+    /**
+     * 缓存命中时模型没有参与，手动把本轮对话写入对话记忆，保证后续轮次的上下文完整
+     */
+    private void appendToChatMemory(Long appId, String userMessage, String aiResponse) {
+        try {
+            ChatMemory chatMemory = appChatMemoryProvider.get(appId);
+            chatMemory.add(UserMessage.from(userMessage));
+            chatMemory.add(AiMessage.from(aiResponse));
+        } catch (Exception e) {
+            log.error("写入对话记忆失败，appId: {}, error: {}", appId, e.getMessage());
+        }
+    }
+
+    /**
+     * 保存单个文件，失败只记录日志，不影响流式输出
+     */
+    private void saveSingleFile(String fileName, String content, CodeGenTypeEnum codeGenType, Long appId) {
+        try {
+            File saveDir = CodeFileSaverExecutor.executeSingleFileSaver(fileName, content, codeGenType, appId);
+            log.info("保存成功，文件为：{}", saveDir.getAbsolutePath() + File.separator + fileName);
+        } catch (Exception e) {
+            log.error("保存失败: {}", e.getMessage());
+        }
+    }
 }
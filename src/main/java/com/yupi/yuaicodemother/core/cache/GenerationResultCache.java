@@ -0,0 +1,130 @@
+package com.yupi.yuaicodemother.core.cache;
+
+import cn.hutool.core.io.resource.ResourceUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yupi.yuaicodemother.config.GenerationResultCacheConfig;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 首轮生成结果缓存（HTML 和多文件模式）
+ * 缓存键：规范化提示词 + 生成类型 + 系统提示词版本，值为模型的完整输出文本
+ * 命中时按配置的节奏回放，由门面照常解析代码块并保存文件
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class GenerationResultCache {
+
+    @Resource
+    private GenerationResultCacheConfig generationResultCacheConfig;
+
+    private Cache<String, String> cache;
+
+    /**
+     * 各生成类型的系统提示词版本（配置版本号 + 提示词内容哈希）
+     */
+    private final Map<CodeGenTypeEnum, String> promptVersions = new EnumMap<>(CodeGenTypeEnum.class);
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(generationResultCacheConfig.getMaxChars())
+                .weigher((String key, String value) -> value.length())
+                .expireAfterWrite(generationResultCacheConfig.getTtl())
+                .build();
+        promptVersions.put(CodeGenTypeEnum.HTML, promptVersion("prompt/codegen-html-system-prompt.txt"));
+        promptVersions.put(CodeGenTypeEnum.MULTI_FILE, promptVersion("prompt/codegen-multi-file-system-prompt.txt"));
+    }
+
+    /**
+     * 是否支持缓存该生成类型
+     */
+    public boolean supports(CodeGenTypeEnum codeGenType) {
+        return generationResultCacheConfig.isEnabled() && promptVersions.containsKey(codeGenType);
+    }
+
+    /**
+     * 构造缓存键
+     *
+     * @param userMessage 用户提示词
+     * @param codeGenType 生成类型
+     * @return 缓存键
+     */
+    public String buildKey(String userMessage, CodeGenTypeEnum codeGenType) {
+        String normalized = PromptNormalizer.normalize(userMessage);
+        return codeGenType.getValue() + ":" + promptVersions.get(codeGenType) + ":" + DigestUtil.sha256Hex(normalized);
+    }
+
+    /**
+     * 获取缓存的生成结果
+     *
+     * @param key 缓存键
+     * @return 完整输出文本，未命中时返回 null
+     */
+    public String get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * 保存生成结果，过长的结果不缓存
+     *
+     * @param key  缓存键
+     * @param text 完整输出文本
+     */
+    public void put(String key, String text) {
+        if (text == null || text.isBlank() || text.length() > generationResultCacheConfig.getMaxEntryChars()) {
+            return;
+        }
+        cache.put(key, text);
+        log.info("生成结果已缓存，key: {}, 长度: {}", key, text.length());
+    }
+
+    /**
+     * 按配置的节奏回放缓存内容
+     *
+     * @param text 完整输出文本
+     * @return 文本片段流
+     */
+    public Flux<String> replay(String text) {
+        Flux<String> chunks = Flux.fromIterable(split(text, generationResultCacheConfig.getReplayChunkChars()));
+        Duration interval = generationResultCacheConfig.getReplayInterval();
+        return interval == null || interval.isZero() ? chunks : chunks.delayElements(interval);
+    }
+
+    /**
+     * 按字符数切分，不拆开代理对
+     */
+    static List<String> split(String text, int chunkChars) {
+        int size = Math.max(1, chunkChars);
+        List<String> chunks = new ArrayList<>(text.length() / size + 1);
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(text.length(), start + size);
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end++;
+            }
+            chunks.add(text.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private String promptVersion(String resource) {
+        String prompt = ResourceUtil.readUtf8Str(resource);
+        return generationResultCacheConfig.getVersion() + "-" + DigestUtil.sha256Hex(prompt).substring(0, 8);
+    }
+}
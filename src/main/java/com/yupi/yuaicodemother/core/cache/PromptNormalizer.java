@@ -0,0 +1,91 @@
+package com.yupi.yuaicodemother.core.cache;
+
+import cn.hutool.core.util.StrUtil;
+
+import java.text.Normalizer;
+import java.util.List;
+
+/**
+ * 提示词规范化
+ * 只消除不影响生成结果的差异：全半角、大小写、空白、标点和常见的客套前缀
+ * 例如 "请帮我做一个个人博客！" 与 "做一个个人博客" 规范化后相同
+ * 客套前缀只在其后紧跟生成类动词时去掉，避免 "请假管理系统" 与 "假管理系统" 这类提示词被合并
+ *
+ * @author yupi
+ */
+public final class PromptNormalizer {
+
+    /**
+     * 开头的客套用语，按长度从长到短匹配
+     */
+    private static final List<String> POLITE_PREFIXES = List.of("麻烦帮我", "请帮我", "帮我", "给我", "麻烦", "请");
+
+    /**
+     * 去掉客套前缀后必须以这些动词开头，否则保留原文
+     */
+    private static final List<String> ACTION_WORDS = List.of("做", "生成", "写", "创建", "开发", "设计", "实现", "制作", "搭建");
+
+    private PromptNormalizer() {
+    }
+
+    /**
+     * 规范化提示词
+     *
+     * @param prompt 用户提示词
+     * @return 规范化后的提示词
+     */
+    public static String normalize(String prompt) {
+        if (StrUtil.isBlank(prompt)) {
+            return "";
+        }
+        String text = Normalizer.normalize(prompt, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (!Character.isWhitespace(codePoint) && !isPunctuation(codePoint)) {
+                builder.appendCodePoint(codePoint);
+            }
+            i += Character.charCount(codePoint);
+        }
+        String normalized = builder.toString();
+        String stripped = stripPolitePrefixes(normalized);
+        return startsWithAny(stripped, ACTION_WORDS) ? stripped : normalized;
+    }
+
+    /**
+     * 依次去掉开头的客套用语，如 "请给我做" 去掉 "请" 和 "给我"
+     */
+    private static String stripPolitePrefixes(String text) {
+        String stripped = text;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (String prefix : POLITE_PREFIXES) {
+                if (stripped.startsWith(prefix) && stripped.length() > prefix.length()) {
+                    stripped = stripped.substring(prefix.length());
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return stripped;
+    }
+
+    private static boolean startsWithAny(String text, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (text.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPunctuation(int codePoint) {
+        return switch (Character.getType(codePoint)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                 Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                 Character.OTHER_PUNCTUATION -> true;
+            default -> false;
+        };
+    }
+}
@@ -1,11 +1,12 @@
 package com.yupi.yuaicodemother.core.handler;
 
-import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.yupi.yuaicodemother.ai.model.message.*;
 import com.yupi.yuaicodemother.ai.tools.BaseTool;
 import com.yupi.yuaicodemother.ai.tools.ToolManager;
+import com.yupi.yuaicodemother.core.stream.ResponseAccumulator;
+import com.yupi.yuaicodemother.core.stream.StreamChunk;
 import com.yupi.yuaicodemother.model.entity.User;
 import com.yupi.yuaicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.yupi.yuaicodemother.service.ChatHistoryService;
@@ -30,7 +31,7 @@ public class JsonMessageStreamHandler {
 
     /**
      * 处理 TokenStream（VUE_PROJECT）
-     * 解析 JSON 消息并重组为完整的响应格式
+     * 按消息类型重组为完整的响应格式
      *
      * @param originFlux         原始流
      * @param chatHistoryService 聊天历史服务
@@ -38,22 +39,22 @@ public class JsonMessageStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<StreamChunk> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
         // 收集数据用于生成后端记忆格式
-        StringBuilder chatHistoryStringBuilder = new StringBuilder();
+        ResponseAccumulator chatHistoryAccumulator = new ResponseAccumulator();
         // 用于跟踪已经见过的工具ID，判断是否是第一次调用
         Set<String> seenToolIds = new HashSet<>();
         return originFlux
-                .map(chunk -> {
-                    // 解析每个 JSON 消息块
-                    return handleJsonMessageChunk(chunk, chatHistoryStringBuilder, seenToolIds);
+                .map(message -> {
+                    // 处理每个消息
+                    return handleStreamMessage(message, chatHistoryAccumulator, seenToolIds);
                 })
-                .filter(StrUtil::isNotEmpty) // 过滤空字串
+                .filter(streamChunk -> !streamChunk.isEmpty()) // 过滤空字串
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加 AI 消息到对话历史
-                    String aiResponse = chatHistoryStringBuilder.toString();
+                    String aiResponse = chatHistoryAccumulator.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 })
                 .doOnError(error -> {
@@ -64,22 +65,17 @@ public class JsonMessageStreamHandler {
     }
 
     /**
-     * 解析并收集 TokenStream 数据
+     * 收集 TokenStream 数据
      */
-    private String handleJsonMessageChunk(String chunk, StringBuilder chatHistoryStringBuilder, Set<String> seenToolIds) {
-        // 解析 JSON
-        StreamMessage streamMessage = JSONUtil.toBean(chunk, StreamMessage.class);
-        StreamMessageTypeEnum typeEnum = StreamMessageTypeEnum.getEnumByValue(streamMessage.getType());
-        switch (typeEnum) {
-            case AI_RESPONSE -> {
-                AiResponseMessage aiMessage = JSONUtil.toBean(chunk, AiResponseMessage.class);
+    private StreamChunk handleStreamMessage(StreamMessage streamMessage, ResponseAccumulator chatHistoryAccumulator, Set<String> seenToolIds) {
+        switch (streamMessage) {
+            case AiResponseMessage aiMessage -> {
                 String data = aiMessage.getData();
                 // 直接拼接响应
-                chatHistoryStringBuilder.append(data);
-                return data;
+                chatHistoryAccumulator.append(data);
+                return StreamChunk.of(data);
             }
-            case TOOL_REQUEST -> {
-                ToolRequestMessage toolRequestMessage = JSONUtil.toBean(chunk, ToolRequestMessage.class);
+            case ToolRequestMessage toolRequestMessage -> {
                 String toolId = toolRequestMessage.getId();
                 String toolName = toolRequestMessage.getName();
                 // 检查是否是第一次看到这个工具 ID
@@ -88,15 +84,14 @@ public class JsonMessageStreamHandler {
                     seenToolIds.add(toolId);
                     // 根据工具名称获取工具实例
                     BaseTool tool = toolManager.getTool(toolName);
-                    // 返回格式化的工具调用信息
-                    return tool.generateToolRequestResponse();
+                    // 返回格式化的工具调用信息（边界片段，立即推送）
+                    return StreamChunk.boundary(tool.generateToolRequestResponse());
                 } else {
                     // 不是第一次调用这个工具，直接返回空
-                    return "";
+                    return StreamChunk.of("");
                 }
             }
-            case TOOL_EXECUTED -> {
-                ToolExecutedMessage toolExecutedMessage = JSONUtil.toBean(chunk, ToolExecutedMessage.class);
+            case ToolExecutedMessage toolExecutedMessage -> {
                 JSONObject jsonObject = JSONUtil.parseObj(toolExecutedMessage.getArguments());
                 // 根据工具名称获取工具实例
                 String toolName = toolExecutedMessage.getName();
@@ -104,13 +99,9 @@ public class JsonMessageStreamHandler {
                 String result = tool.generateToolExecutedResult(jsonObject);
                 // 输出前端和要持久化的内容
                 String output = String.format("\n\n%s\n\n", result);
-                chatHistoryStringBuilder.append(output);
-                return output;
-            }
-            default -> {
-                log.error("不支持的消息类型: {}", typeEnum);
-                return "";
+                chatHistoryAccumulator.append(output);
+                return StreamChunk.boundary(output);
             }
         }
     }
-} 
\ No newline at end of file
+}
@@ -1,5 +1,9 @@
 package com.yupi.yuaicodemother.core.handler;
 
+import com.yupi.yuaicodemother.ai.model.message.AiResponseMessage;
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
+import com.yupi.yuaicodemother.core.stream.ResponseAccumulator;
+import com.yupi.yuaicodemother.core.stream.StreamChunk;
 import com.yupi.yuaicodemother.model.entity.User;
 import com.yupi.yuaicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.yupi.yuaicodemother.service.ChatHistoryService;
@@ -24,25 +28,27 @@ public class SimpleTextStreamHandler {
      * @param loginUser          登录用户
      * @return 处理后的流
      */
-    public Flux<String> handle(Flux<String> originFlux,
+    public Flux<StreamChunk> handle(Flux<StreamMessage> originFlux,
                                ChatHistoryService chatHistoryService,
                                long appId, User loginUser) {
-        StringBuilder aiResponseBuilder = new StringBuilder();
+        // 本次生成唯一的一份完整响应，通过 Context 交给上游门面写入（门面边写入边从中截取代码块），这里只在结束时读取
+        ResponseAccumulator aiResponseAccumulator = new ResponseAccumulator();
         return originFlux
-                .map(chunk -> {
-                    // 收集AI响应内容
-                    aiResponseBuilder.append(chunk);
-                    return chunk;
+                .map(message -> {
+                    // 文本流只会出现 AI 响应消息
+                    String chunk = message instanceof AiResponseMessage aiResponseMessage ? aiResponseMessage.getData() : "";
+                    return StreamChunk.of(chunk);
                 })
                 .doOnComplete(() -> {
                     // 流式响应完成后，添加AI消息到对话历史
-                    String aiResponse = aiResponseBuilder.toString();
+                    String aiResponse = aiResponseAccumulator.toString();
                     chatHistoryService.addChatMessage(appId, aiResponse, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
                 })
                 .doOnError(error -> {
                     // 如果AI回复失败，也要记录错误消息
                     String errorMessage = "AI回复失败: " + error.getMessage();
                     chatHistoryService.addChatMessage(appId, errorMessage, ChatHistoryMessageTypeEnum.AI.getValue(), loginUser.getId());
-                });
+                })
+                .contextWrite(context -> context.put(ResponseAccumulator.CONTEXT_KEY, aiResponseAccumulator));
     }
 }
@@ -1,5 +1,8 @@
 package com.yupi.yuaicodemother.core.handler;
 
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
+import com.yupi.yuaicodemother.core.stream.StreamChunk;
+import com.yupi.yuaicodemother.core.stream.StreamChunkCoalescer;
 import com.yupi.yuaicodemother.model.entity.User;
 import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
 import com.yupi.yuaicodemother.service.ChatHistoryService;
@@ -11,8 +14,9 @@ import reactor.core.publisher.Flux;
 /**
  * 流处理器执行器
  * 根据代码生成类型创建合适的流处理器：
- * 1. 传统的 Flux<String> 流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
- * 2. TokenStream 格式的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 1. 纯文本流（HTML、MULTI_FILE） -> SimpleTextStreamHandler
+ * 2. 包含工具调用的复杂流（VUE_PROJECT） -> JsonMessageStreamHandler
+ * 处理器输出的片段再经过 StreamChunkCoalescer 按大小/时间窗口合并后返回
  */
 @Slf4j
 @Component
@@ -21,6 +25,9 @@ public class StreamHandlerExecutor {
     @Resource
     private JsonMessageStreamHandler jsonMessageStreamHandler;
 
+    @Resource
+    private StreamChunkCoalescer streamChunkCoalescer;
+
     /**
      * 创建流处理器并处理聊天历史记录
      *
@@ -31,14 +38,16 @@ public class StreamHandlerExecutor {
      * @param codeGenType        代码生成类型
      * @return 处理后的流
      */
-    public Flux<String> doExecute(Flux<String> originFlux,
+    public Flux<String> doExecute(Flux<StreamMessage> originFlux,
                                   ChatHistoryService chatHistoryService,
                                   long appId, User loginUser, CodeGenTypeEnum codeGenType) {
-        return switch (codeGenType) {
+        Flux<StreamChunk> chunkFlux = switch (codeGenType) {
             case VUE_PROJECT -> // 使用注入的组件实例
                     jsonMessageStreamHandler.handle(originFlux, chatHistoryService, appId, loginUser);
             case HTML, MULTI_FILE -> // 简单文本处理器不需要依赖注入
                     new SimpleTextStreamHandler().handle(originFlux, chatHistoryService, appId, loginUser);
         };
+        // 合并细碎片段，工具调用和流结束时立即刷出
+        return streamChunkCoalescer.coalesce(chunkFlux, codeGenType);
     }
 }
@@ -0,0 +1,171 @@
+package com.yupi.yuaicodemother.core.parser;
+
+/**
+ * 流式代码块解析器（状态机）
+ * 逐片段读取模型输出，每当一个 ```lang 代码块闭合时立即回调，无需等待完整响应
+ * 不缓存代码块内容，只记录代码块在完整响应中的起止位置，闭合时从完整响应（通常是 ResponseAccumulator）中截取，
+ * 因此调用方需要先把片段追加到完整响应，再交给解析器。
+ * 反引号序列可以跨片段
+ *
+ * @author yupi
+ */
+public class StreamingCodeFenceParser {
+
+    /**
+     * 代码块语言标识的最大长度，超过则认为不是代码块
+     */
+    private static final int MAX_INFO_LENGTH = 32;
+
+    /**
+     * 代码块闭合回调
+     */
+    @FunctionalInterface
+    public interface FenceListener {
+
+        /**
+         * @param lang 代码块语言（小写），可能为空字符串
+         * @param code 代码块内容
+         */
+        void onFenceClosed(String lang, String code);
+    }
+
+    private enum State {
+        /**
+         * 代码块外
+         */
+        TEXT,
+        /**
+         * 读取 ``` 之后的语言标识，直到换行
+         */
+        INFO,
+        /**
+         * 代码块内
+         */
+        CODE
+    }
+
+    /**
+     * 完整响应，包含已输入的全部片段
+     */
+    private final CharSequence source;
+
+    private final FenceListener listener;
+
+    private State state = State.TEXT;
+
+    /**
+     * 当前连续的反引号个数
+     */
+    private int ticks;
+
+    private final StringBuilder info = new StringBuilder();
+
+    /**
+     * 已读取的字符数
+     */
+    private int position;
+
+    /**
+     * 当前代码块内容在完整响应中的起始位置
+     */
+    private int codeStart;
+
+    private String lang;
+
+    private boolean fenceSeen;
+
+    /**
+     * @param source   完整响应，输入片段前需要先追加到其中
+     * @param listener 代码块闭合回调
+     */
+    public StreamingCodeFenceParser(CharSequence source, FenceListener listener) {
+        this.source = source;
+        this.listener = listener;
+    }
+
+    /**
+     * 输入一个片段（已追加到完整响应末尾）
+     *
+     * @param chunk 模型输出片段
+     */
+    public void feed(String chunk) {
+        if (chunk == null) {
+            return;
+        }
+        for (int i = 0, length = chunk.length(); i < length; i++, position++) {
+            char c = chunk.charAt(i);
+            switch (state) {
+                case TEXT -> onText(c);
+                case INFO -> onInfo(c);
+                case CODE -> onCode(c);
+            }
+        }
+    }
+
+    /**
+     * 输入结束，未闭合的代码块（如输出被截断）按已收到的内容回调
+     */
+    public void finish() {
+        if (state == State.CODE) {
+            // 末尾未构成结束标记的反引号属于代码内容
+            closeFence(position);
+        }
+        state = State.TEXT;
+        ticks = 0;
+    }
+
+    /**
+     * 是否出现过代码块
+     */
+    public boolean hasFence() {
+        return fenceSeen;
+    }
+
+    private void onText(char c) {
+        if (c == '`') {
+            ticks++;
+            if (ticks == 3) {
+                ticks = 0;
+                info.setLength(0);
+                state = State.INFO;
+            }
+            return;
+        }
+        ticks = 0;
+    }
+
+    private void onInfo(char c) {
+        if (c == '\n') {
+            String infoString = info.toString().trim();
+            int spaceIndex = infoString.indexOf(' ');
+            lang = (spaceIndex > 0 ? infoString.substring(0, spaceIndex) : infoString).toLowerCase();
+            codeStart = position + 1;
+            fenceSeen = true;
+            state = State.CODE;
+            return;
+        }
+        info.append(c);
+        if (info.length() > MAX_INFO_LENGTH) {
+            // 不是代码块，按普通文本处理
+            state = State.TEXT;
+        }
+    }
+
+    private void onCode(char c) {
+        if (c != '`') {
+            ticks = 0;
+            return;
+        }
+        ticks++;
+        if (ticks == 3) {
+            ticks = 0;
+            // 代码内容截止到结束标记的第一个反引号之前
+            closeFence(position - 2);
+            state = State.TEXT;
+        }
+    }
+
+    private void closeFence(int codeEnd) {
+        listener.onFenceClosed(lang, source.subSequence(codeStart, codeEnd).toString());
+    }
+}
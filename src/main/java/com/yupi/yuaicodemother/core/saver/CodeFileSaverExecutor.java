@@ -35,4 +35,36 @@ public class CodeFileSaverExecutor {
             default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
         };
     }
+
+    /**
+     * 根据代码块语言获取要保存的文件名
+     *
+     * @param lang        代码块语言（小写）
+     * @param codeGenType 代码生成类型
+     * @return 文件名，不需要保存时返回 null
+     */
+    public static String resolveFileName(String lang, CodeGenTypeEnum codeGenType) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.resolveFileName(lang);
+            case MULTI_FILE -> multiFileCodeFileSaver.resolveFileName(lang);
+            default -> null;
+        };
+    }
+
+    /**
+     * 保存单个文件
+     *
+     * @param fileName    文件名
+     * @param content     文件内容
+     * @param codeGenType 代码生成类型
+     * @param appId       应用 ID
+     * @return 保存的目录
+     */
+    public static File executeSingleFileSaver(String fileName, String content, CodeGenTypeEnum codeGenType, Long appId) {
+        return switch (codeGenType) {
+            case HTML -> htmlCodeFileSaver.saveSingleFile(fileName, content, appId);
+            case MULTI_FILE -> multiFileCodeFileSaver.saveSingleFile(fileName, content, appId);
+            default -> throw new BusinessException(ErrorCode.SYSTEM_ERROR, "不支持的代码生成类型: " + codeGenType);
+        };
+    }
 }
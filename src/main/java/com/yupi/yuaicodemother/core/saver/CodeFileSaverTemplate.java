@@ -40,6 +40,30 @@ public abstract class CodeFileSaverTemplate<T> {
         return new File(baseDirPath);
     }
 
+    /**
+     * 保存单个文件（流式解析时代码块闭合后立即调用）
+     *
+     * @param fileName 文件名
+     * @param content  文件内容
+     * @param appId    应用 ID
+     * @return 保存的目录
+     */
+    public final File saveSingleFile(String fileName, String content, Long appId) {
+        String baseDirPath = buildUniqueDir(appId);
+        writeToFile(baseDirPath, fileName, content);
+        return new File(baseDirPath);
+    }
+
+    /**
+     * 根据代码块语言获取对应的文件名（可由子类覆盖）
+     *
+     * @param lang 代码块语言（小写）
+     * @return 文件名，不需要保存时返回 null
+     */
+    public String resolveFileName(String lang) {
+        return null;
+    }
+
     /**
      * 写入单个文件的工具方法
      *
@@ -23,6 +23,11 @@ public class HtmlCodeFileSaverTemplate extends CodeFileSaverTemplate<HtmlCodeRes
         writeToFile(baseDirPath, "index.html", result.getHtmlCode());
     }
 
+    @Override
+    public String resolveFileName(String lang) {
+        return "html".equals(lang) ? "index.html" : null;
+    }
+
     @Override
     protected void validateInput(HtmlCodeResult result) {
         super.validateInput(result);
@@ -28,6 +28,16 @@ public class MultiFileCodeFileSaverTemplate extends CodeFileSaverTemplate<MultiF
         writeToFile(baseDirPath, "script.js", result.getJsCode());
     }
 
+    @Override
+    public String resolveFileName(String lang) {
+        return switch (lang) {
+            case "html" -> "index.html";
+            case "css" -> "style.css";
+            case "js", "javascript" -> "script.js";
+            default -> null;
+        };
+    }
+
     @Override
     protected void validateInput(MultiFileCodeResult result) {
         super.validateInput(result);
@@ -0,0 +1,322 @@
+package com.yupi.yuaicodemother.core.similar;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongPredicate;
+
+/**
+ * MinHash 签名的 LSH 索引（线程安全，支持增量添加和删除）
+ * 签名按 bands × rows 分段，任一段完全相同即成为候选，再用签名估计相似度过滤。
+ * 相似度为 s 的两条记录成为候选的概率为 1 - (1 - s^rows)^bands
+ * <p>
+ * 内存：每个分段一张开放寻址的 long 哈希表（段哈希 → 记录 ID，负载 1/4 ~ 1/2，每条记录 32 ~ 64 字节），
+ * 每条记录另存 16 位截断签名（72 个取值共 144 字节），12 × 6 配置下每条记录约 0.5 ~ 0.9KB。
+ * 最多保留 maxEntries 条，超过时淘汰 ID 最小（最早创建）的记录，10 万条约 50 ~ 90MB。
+ * 同一段哈希最多保留 maxBucketSize 条，避免大量重复提示词形成过长的探测链拖慢查询。
+ * 每条记录带有所有者和是否公开，查询时只返回查询者自己的记录和公开的记录
+ *
+ * @author yupi
+ */
+public final class LshIndex {
+
+    /**
+     * 查询结果
+     *
+     * @param id         记录 ID
+     * @param similarity 估计的 Jaccard 相似度
+     */
+    public record Match(long id, double similarity) {
+    }
+
+    private record Entry(int group, long owner, boolean shared, short[] signature) {
+    }
+
+    private final int bands;
+
+    private final int rows;
+
+    private final BandTable[] tables;
+
+    private final int maxEntries;
+
+    /**
+     * 按 ID 排序，便于淘汰最早的记录
+     */
+    private final ConcurrentSkipListMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * 记录数（ConcurrentSkipListMap 的 size() 需要遍历）
+     */
+    private final AtomicInteger entryCount = new AtomicInteger();
+
+    /**
+     * @param bands         分段数
+     * @param rows          每段的签名位数
+     * @param maxBucketSize 同一分段中相同段哈希最多保留的记录数
+     * @param maxEntries    最多保留的记录数
+     */
+    public LshIndex(int bands, int rows, int maxBucketSize, int maxEntries) {
+        if (bands <= 0 || rows <= 0 || maxBucketSize <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("bands、rows、maxBucketSize 和 maxEntries 必须为正数");
+        }
+        this.bands = bands;
+        this.rows = rows;
+        this.maxEntries = maxEntries;
+        this.tables = new BandTable[bands];
+        for (int i = 0; i < bands; i++) {
+            tables[i] = new BandTable(maxBucketSize, entries::containsKey);
+        }
+    }
+
+    /**
+     * 签名长度应为 bands × rows
+     */
+    public int signatureLength() {
+        return bands * rows;
+    }
+
+    public int size() {
+        return entryCount.get();
+    }
+
+    /**
+     * 是否已达到记录数上限（之后只有比现有记录更新的记录才能加入）
+     */
+    public boolean isFull() {
+        return entryCount.get() >= maxEntries;
+    }
+
+    /**
+     * 添加记录，不同分组（如生成类型）的记录互不匹配
+     * 达到记录数上限时淘汰最早的记录，比现有记录都早的记录不再加入
+     *
+     * @param id        记录 ID，必须为正数
+     * @param group     分组
+     * @param owner     所有者
+     * @param shared    是否公开（其他人可以查询到）
+     * @param signature MinHash 签名
+     */
+    public void add(long id, int group, long owner, boolean shared, int[] signature) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id 必须为正数");
+        }
+        checkSignature(signature);
+        if (isFull()) {
+            Map.Entry<Long, Entry> oldest = entries.firstEntry();
+            if (oldest != null && id < oldest.getKey()) {
+                return;
+            }
+        }
+        if (entries.put(id, new Entry(group, owner, shared, truncate(signature))) == null) {
+            entryCount.incrementAndGet();
+        }
+        for (int band = 0; band < bands; band++) {
+            tables[band].put(bandKey(group, signature, band), id);
+        }
+        // 被淘汰的记录在分段表中的残留项与删除的记录一样，在下次扩容时清理
+        while (entryCount.get() > maxEntries && entries.pollFirstEntry() != null) {
+            entryCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 修改记录是否公开，记录不存在时忽略
+     */
+    public void setShared(long id, boolean shared) {
+        entries.computeIfPresent(id, (key, entry) -> entry.shared() == shared ? entry
+                : new Entry(entry.group(), entry.owner(), shared, entry.signature()));
+    }
+
+    /**
+     * 删除记录，分段表中的残留项在下次扩容时清理，查询时会被忽略
+     */
+    public void remove(long id) {
+        if (entries.remove(id) != null) {
+            entryCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * 查询相似记录
+     *
+     * @param group     分组
+     * @param signature MinHash 签名
+     * @param threshold 相似度阈值
+     * @param excludeId 需要排除的记录 ID（通常是自身）
+     * @param viewer    查询者，只返回其本人的记录和公开的记录
+     * @param limit     最多返回的条数
+     * @return 按相似度从高到低排列，相同时较新的记录（ID 较大）在前
+     */
+    public List<Match> query(int group, int[] signature, double threshold, long excludeId, long viewer, int limit) {
+        checkSignature(signature);
+        Set<Long> candidates = new HashSet<>();
+        for (int band = 0; band < bands; band++) {
+            tables[band].collect(bandKey(group, signature, band), candidates);
+        }
+        short[] truncated = truncate(signature);
+        List<Match> matches = new ArrayList<>();
+        for (Long id : candidates) {
+            if (id == excludeId) {
+                continue;
+            }
+            Entry entry = entries.get(id);
+            if (entry == null || entry.group() != group || (entry.owner() != viewer && !entry.shared())) {
+                continue;
+            }
+            double similarity = similarity(truncated, entry.signature());
+            if (similarity >= threshold) {
+                matches.add(new Match(id, similarity));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Match::similarity).reversed()
+                .thenComparing(Comparator.comparingLong(Match::id).reversed()));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    private void checkSignature(int[] signature) {
+        if (signature == null || signature.length != bands * rows) {
+            throw new IllegalArgumentException("签名长度应为 " + bands * rows);
+        }
+    }
+
+    private long bandKey(int group, int[] signature, int band) {
+        long hash = MinHasher.mix(((long) group << 32) | band);
+        for (int i = band * rows, end = i + rows; i < end; i++) {
+            hash = MinHasher.mix(hash ^ signature[i]);
+        }
+        return hash;
+    }
+
+    /**
+     * 只保留每个取值的低 16 位（b-bit MinHash），不同取值碰撞的概率约 1/65536，对相似度估计的影响可以忽略
+     */
+    private static short[] truncate(int[] signature) {
+        short[] truncated = new short[signature.length];
+        for (int i = 0; i < signature.length; i++) {
+            truncated[i] = (short) signature[i];
+        }
+        return truncated;
+    }
+
+    private static double similarity(short[] a, short[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    /**
+     * 单个分段的哈希表：线性探测，允许同一个键对应多个记录 ID，ID 为 0 表示空槽
+     */
+    private static final class BandTable {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private final int maxBucketSize;
+
+        private final LongPredicate live;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private long[] keys = new long[INITIAL_CAPACITY];
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+
+        private int size;
+
+        BandTable(int maxBucketSize, LongPredicate live) {
+            this.maxBucketSize = maxBucketSize;
+            this.live = live;
+        }
+
+        void put(long key, long id) {
+            lock.writeLock().lock();
+            try {
+                if ((size + 1) * 2 > ids.length) {
+                    resize();
+                }
+                int mask = ids.length - 1;
+                int slot = slot(key, mask);
+                int sameKey = 0;
+                while (ids[slot] != 0) {
+                    if (keys[slot] == key) {
+                        if (ids[slot] == id) {
+                            return;
+                        }
+                        if (live.test(ids[slot]) && ++sameKey >= maxBucketSize) {
+                            return;
+                        }
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                ids[slot] = id;
+                size++;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void collect(long key, Set<Long> out) {
+            lock.readLock().lock();
+            try {
+                int mask = ids.length - 1;
+                for (int slot = slot(key, mask); ids[slot] != 0; slot = (slot + 1) & mask) {
+                    if (keys[slot] == key) {
+                        out.add(ids[slot]);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * 重建表并丢弃已删除的记录，重建后负载不超过 1/4
+         */
+        private void resize() {
+            long[] oldKeys = keys;
+            long[] oldIds = ids;
+            int liveCount = 0;
+            for (long id : oldIds) {
+                if (id != 0 && live.test(id)) {
+                    liveCount++;
+                }
+            }
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < (liveCount + 1) * 4) {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+            ids = new long[capacity];
+            size = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldIds[i] == 0 || !live.test(oldIds[i])) {
+                    continue;
+                }
+                int slot = slot(oldKeys[i], mask);
+                while (ids[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+                size++;
+            }
+        }
+
+        private static int slot(long key, int mask) {
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.yupi.yuaicodemother.core.similar;
+
+import java.util.Arrays;
+
+/**
+ * MinHash 签名计算
+ * 以规范化提示词的字符 n-gram（按码点切分，兼容中文）为集合元素，两个签名相同位置取值相等的比例即 Jaccard 相似度的估计
+ * 哈希种子固定，重启后同一提示词的签名不变
+ *
+ * @author yupi
+ */
+public final class MinHasher {
+
+    private final int numHashes;
+
+    private final int shingleSize;
+
+    private final long[] seeds;
+
+    /**
+     * @param numHashes   签名长度（哈希函数个数）
+     * @param shingleSize n-gram 长度
+     */
+    public MinHasher(int numHashes, int shingleSize) {
+        if (numHashes <= 0 || shingleSize <= 0) {
+            throw new IllegalArgumentException("numHashes 和 shingleSize 必须为正数");
+        }
+        this.numHashes = numHashes;
+        this.shingleSize = shingleSize;
+        this.seeds = new long[numHashes];
+        long state = 0x5DEECE66DL;
+        for (int i = 0; i < numHashes; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            seeds[i] = mix(state);
+        }
+    }
+
+    public int numHashes() {
+        return numHashes;
+    }
+
+    /**
+     * 计算签名
+     *
+     * @param normalizedText 规范化后的文本
+     * @return 签名，文本为空时返回 null
+     */
+    public int[] signature(String normalizedText) {
+        if (normalizedText == null || normalizedText.isEmpty()) {
+            return null;
+        }
+        int[] codePoints = normalizedText.codePoints().toArray();
+        int shingles = Math.max(1, codePoints.length - shingleSize + 1);
+        long[] mins = new long[numHashes];
+        Arrays.fill(mins, Long.MAX_VALUE);
+        for (int start = 0; start < shingles; start++) {
+            long shingleHash = shingleHash(codePoints, start, Math.min(codePoints.length, start + shingleSize));
+            for (int i = 0; i < numHashes; i++) {
+                long h = mix(shingleHash ^ seeds[i]) & Long.MAX_VALUE;
+                if (h < mins[i]) {
+                    mins[i] = h;
+                }
+            }
+        }
+        int[] signature = new int[numHashes];
+        for (int i = 0; i < numHashes; i++) {
+            signature[i] = (int) (mins[i] >>> 31);
+        }
+        return signature;
+    }
+
+    /**
+     * FNV-1a
+     */
+    private static long shingleHash(int[] codePoints, int from, int to) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = from; i < to; i++) {
+            hash ^= codePoints[i];
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64 的混合函数
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,163 @@
+package com.yupi.yuaicodemother.core.similar;
+
+import cn.hutool.core.collection.CollUtil;
+import com.yupi.yuaicodemother.config.SimilarAppConfig;
+import com.yupi.yuaicodemother.constant.AppConstant;
+import com.yupi.yuaicodemother.core.cache.PromptNormalizer;
+import com.yupi.yuaicodemother.model.entity.App;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import com.yupi.yuaicodemother.repository.AppRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 相似应用索引
+ * 对应用的初始化提示词（规范化后）计算 MinHash 签名并放入 LSH 索引，按生成类型分组；
+ * 启动时后台从数据库按创建时间从新到旧分页重建（最多加载 maxIndexedApps 个），之后随应用创建、删除增量维护。
+ * 应用的代码属于创建者，只有精选应用对所有用户可见，查询时只返回当前用户自己的应用和精选应用
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class SimilarAppIndex {
+
+    @Resource
+    private SimilarAppConfig similarAppConfig;
+
+    @Resource
+    private AppRepository appRepository;
+
+    private MinHasher minHasher;
+
+    private LshIndex lshIndex;
+
+    /**
+     * 是否正在重建
+     */
+    private volatile boolean rebuilding;
+
+    /**
+     * 重建期间删除的应用，重建读到的旧数据中包含它们时不再加入索引
+     */
+    private final Set<Long> removedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        minHasher = new MinHasher(similarAppConfig.getBands() * similarAppConfig.getRows(), similarAppConfig.getShingleSize());
+        lshIndex = new LshIndex(similarAppConfig.getBands(), similarAppConfig.getRows(), similarAppConfig.getMaxBucketSize(),
+                similarAppConfig.getMaxIndexedApps());
+        if (similarAppConfig.isEnabled()) {
+            rebuilding = true;
+            Thread.ofVirtual().name("similar-app-index-rebuild").start(this::rebuild);
+        }
+    }
+
+    /**
+     * 添加应用到索引
+     *
+     * @param appId       应用 ID
+     * @param userId      创建者 ID
+     * @param priority    应用优先级
+     * @param initPrompt  初始化提示词
+     * @param codeGenType 生成类型
+     */
+    public void add(Long appId, Long userId, Integer priority, String initPrompt, CodeGenTypeEnum codeGenType) {
+        if (!similarAppConfig.isEnabled() || appId == null || appId <= 0 || userId == null || codeGenType == null) {
+            return;
+        }
+        int[] signature = minHasher.signature(PromptNormalizer.normalize(initPrompt));
+        if (signature != null) {
+            lshIndex.add(appId, codeGenType.ordinal(), userId, isFeatured(priority), signature);
+        }
+    }
+
+    /**
+     * 应用优先级变更后更新其是否对其他用户可见
+     *
+     * @param appId    应用 ID
+     * @param priority 新的优先级
+     */
+    public void updatePriority(Long appId, Integer priority) {
+        if (appId != null) {
+            lshIndex.setShared(appId, isFeatured(priority));
+        }
+    }
+
+    /**
+     * 从索引中删除应用
+     *
+     * @param appId 应用 ID
+     */
+    public void remove(Long appId) {
+        if (appId != null) {
+            // 先记录再删除：重建线程加入该应用后会再检查一次，无论先后都不会把它留在索引中
+            if (rebuilding) {
+                removedDuringRebuild.add(appId);
+            }
+            lshIndex.remove(appId);
+        }
+    }
+
+    /**
+     * 查找提示词相似的同类型应用
+     *
+     * @param appId       当前应用 ID（结果中排除）
+     * @param userId      当前用户 ID，只返回该用户自己的应用和精选应用
+     * @param prompt      提示词
+     * @param codeGenType 生成类型
+     * @return 按相似度从高到低排列的应用
+     */
+    public List<LshIndex.Match> findSimilar(Long appId, Long userId, String prompt, CodeGenTypeEnum codeGenType) {
+        if (!similarAppConfig.isEnabled() || userId == null || codeGenType == null) {
+            return List.of();
+        }
+        int[] signature = minHasher.signature(PromptNormalizer.normalize(prompt));
+        if (signature == null) {
+            return List.of();
+        }
+        return lshIndex.query(codeGenType.ordinal(), signature, similarAppConfig.getThreshold(),
+                appId == null ? 0 : appId, userId, similarAppConfig.getMaxCandidates());
+    }
+
+    private static boolean isFeatured(Integer priority) {
+        return priority != null && priority >= AppConstant.GOOD_APP_PRIORITY;
+    }
+
+    /**
+     * 按 ID 游标从新到旧分页加载应用，索引已满时停止
+     * 与增量添加并发执行也不会产生问题（重复添加同一应用是幂等的），重建期间删除的应用加入后会立即移除
+     */
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        long lastId = Long.MAX_VALUE;
+        try {
+            while (!lshIndex.isFull()) {
+                List<App> apps = appRepository.findPageBeforeId(lastId, similarAppConfig.getRebuildPageSize());
+                if (CollUtil.isEmpty(apps)) {
+                    break;
+                }
+                for (App app : apps) {
+                    add(app.getId(), app.getUserId(), app.getPriority(), app.getInitPrompt(),
+                            CodeGenTypeEnum.getEnumByValue(app.getCodeGenType()));
+                    if (removedDuringRebuild.contains(app.getId())) {
+                        lshIndex.remove(app.getId());
+                    }
+                    lastId = app.getId();
+                }
+            }
+            log.info("相似应用索引重建完成，应用数：{}，耗时：{} ms", lshIndex.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("相似应用索引重建失败，已加载至应用 ID {}：{}", lastId, e.getMessage(), e);
+        } finally {
+            rebuilding = false;
+            removedDuringRebuild.clear();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.yupi.yuaicodemother.core.similar;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yuaicodemother.config.SimilarAppConfig;
+import com.yupi.yuaicodemother.constant.AppConstant;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 相似应用复用
+ * 首轮生成前查找提示词相似且已有生成结果的同类型应用（仅限当前用户自己的应用和精选应用）：
+ * HTML 和多文件模式把其代码作为参考附在提示词后交给模型；Vue 工程模式复制其工程作为起点，由模型用工具在此基础上修改。
+ * 读取和复制文件在 boundedElastic 线程上执行，不占用请求线程
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class SimilarAppSeeder {
+
+    /**
+     * HTML 和多文件模式的文件及代码块语言
+     */
+    private static final List<String[]> STATIC_FILES = List.of(
+            new String[]{"index.html", "html"},
+            new String[]{"style.css", "css"},
+            new String[]{"script.js", "javascript"}
+    );
+
+    /**
+     * 复制 Vue 工程时跳过的目录
+     */
+    private static final Set<String> IGNORED_DIRS = Set.of("node_modules", "dist", ".git");
+
+    /**
+     * 提供给模型的文件清单最多条数
+     */
+    private static final int MAX_LISTED_FILES = 50;
+
+    @Resource
+    private SimilarAppConfig similarAppConfig;
+
+    @Resource
+    private SimilarAppIndex similarAppIndex;
+
+    /**
+     * 首轮生成前复用相似应用
+     *
+     * @param appId       当前应用 ID
+     * @param userId      当前用户 ID
+     * @param userMessage 用户提示词
+     * @param codeGenType 生成类型
+     * @return 交给模型的提示词，没有可复用的应用时原样返回（订阅时才开始查找和复制）
+     */
+    public Mono<String> seed(Long appId, Long userId, String userMessage, CodeGenTypeEnum codeGenType) {
+        return Mono.fromCallable(() -> doSeed(appId, userId, userMessage, codeGenType))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private String doSeed(Long appId, Long userId, String userMessage, CodeGenTypeEnum codeGenType) {
+        try {
+            for (LshIndex.Match match : similarAppIndex.findSimilar(appId, userId, userMessage, codeGenType)) {
+                File sourceDir = outputDir(codeGenType, match.id());
+                if (!sourceDir.isDirectory()) {
+                    continue;
+                }
+                String seededMessage = switch (codeGenType) {
+                    case HTML, MULTI_FILE -> withReferenceCode(userMessage, sourceDir, codeGenType);
+                    case VUE_PROJECT -> similarAppConfig.isSeedVueProject()
+                            ? withProjectTemplate(userMessage, sourceDir, outputDir(codeGenType, appId)) : null;
+                };
+                if (seededMessage != null) {
+                    log.info("复用相似应用，appId: {}, 相似应用: {}, 相似度: {}", appId, match.id(),
+                            String.format("%.2f", match.similarity()));
+                    return seededMessage;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("复用相似应用失败，appId: {}，将从零生成：{}", appId, e.getMessage());
+        }
+        return userMessage;
+    }
+
+    /**
+     * 附上相似应用的代码作为参考，代码过长时不附加（截断的代码容易误导模型）
+     */
+    private String withReferenceCode(String userMessage, File sourceDir, CodeGenTypeEnum codeGenType) {
+        StringBuilder reference = new StringBuilder();
+        for (String[] file : STATIC_FILES) {
+            if (codeGenType == CodeGenTypeEnum.HTML && !"index.html".equals(file[0])) {
+                continue;
+            }
+            File source = new File(sourceDir, file[0]);
+            if (!source.isFile()) {
+                continue;
+            }
+            reference.append("```").append(file[1]).append('\n')
+                    .append(FileUtil.readUtf8String(source).strip()).append("\n```\n");
+        }
+        if (reference.isEmpty() || reference.length() > similarAppConfig.getMaxReferenceChars()) {
+            return null;
+        }
+        return userMessage + "\n\n以下是一个相似需求已生成的代码，可以作为参考模板，请按本次需求调整后完整输出：\n" + reference;
+    }
+
+    /**
+     * 复制相似应用的工程作为起点，当前应用已有工程文件时不覆盖
+     */
+    private String withProjectTemplate(String userMessage, File sourceDir, File targetDir) throws IOException {
+        if (targetDir.exists() && !FileUtil.isDirEmpty(targetDir)) {
+            return null;
+        }
+        Path sourceRoot = sourceDir.toPath();
+        Path targetRoot = targetDir.toPath();
+        List<String> copiedFiles = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(sourceRoot)) {
+            for (Path source : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                Path relative = sourceRoot.relativize(source);
+                if (isIgnored(relative)) {
+                    continue;
+                }
+                Path target = targetRoot.resolve(relative);
+                Files.createDirectories(target.getParent());
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+                copiedFiles.add(relative.toString().replace(File.separatorChar, '/'));
+            }
+        }
+        if (copiedFiles.isEmpty()) {
+            return null;
+        }
+        String fileList = String.join("\n", copiedFiles.subList(0, Math.min(copiedFiles.size(), MAX_LISTED_FILES)));
+        if (copiedFiles.size() > MAX_LISTED_FILES) {
+            fileList += StrUtil.format("\n……共 {} 个文件", copiedFiles.size());
+        }
+        return userMessage + "\n\n项目目录中已放入一个相似需求的工程作为起点，文件如下：\n" + fileList
+                + "\n请先读取需要调整的文件，再按本次需求修改或新增文件，不必从零重写整个工程。";
+    }
+
+    private static boolean isIgnored(Path relative) {
+        for (Path segment : relative) {
+            if (IGNORED_DIRS.contains(segment.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static File outputDir(CodeGenTypeEnum codeGenType, long appId) {
+        return new File(AppConstant.CODE_OUTPUT_ROOT_DIR, codeGenType.getValue() + "_" + appId);
+    }
+}
@@ -0,0 +1,65 @@
+package com.yupi.yuaicodemother.core.sse;
+
+import com.yupi.yuaicodemother.core.stream.GenerationEvent;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * 生成事件到 SSE 事件的转换
+ * AppController 的生成接口与旁观接口共用，不依赖 Spring 容器，基准测试中可以直接调用
+ *
+ * @author yupi
+ */
+public final class GenerationSseEvents {
+
+    /**
+     * 结束事件
+     */
+    private static final String DONE_EVENT = "done";
+
+    private GenerationSseEvents() {
+    }
+
+    /**
+     * 转换为 SSE 事件，并在结尾追加 done 事件
+     * 排队中的客户端会收到 queued 事件，data 为 {"position":N}，N 为 0 表示已开始生成
+     *
+     * @param eventFlux 生成事件流
+     * @param encoder   数据帧编码器
+     * @return SSE 事件流
+     */
+    public static Flux<ServerSentEvent<String>> toServerSentEvents(Flux<GenerationEvent> eventFlux, SseFrameEncoder encoder) {
+        return eventFlux
+                .map(event -> toServerSentEvent(event, encoder))
+                .concatWith(Mono.just(
+                        // 发送结束事件
+                        ServerSentEvent.<String>builder()
+                                .event(DONE_EVENT)
+                                .data("")
+                                .build()
+                ));
+    }
+
+    /**
+     * 转换单个生成事件
+     *
+     * @param event   生成事件
+     * @param encoder 数据帧编码器
+     * @return SSE 事件
+     */
+    public static ServerSentEvent<String> toServerSentEvent(GenerationEvent event, SseFrameEncoder encoder) {
+        if (event.isStatus()) {
+            // 状态事件（如排队位置）不带 id，不影响 Last-Event-ID 续传
+            return ServerSentEvent.<String>builder()
+                    .event(event.event())
+                    .data(event.data())
+                    .build();
+        }
+        return ServerSentEvent.<String>builder()
+                .id(event.eventId())
+                // 直接编码为 {"d":"..."} 帧，避免每个 token 都创建 Map 并反射序列化
+                .data(encoder.encode(event.data()))
+                .build();
+    }
+}
@@ -0,0 +1,83 @@
+package com.yupi.yuaicodemother.core.sse;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * 默认的 JSON 帧编码器
+ * 直接把片段转义写入线程内复用的缓冲区，避免每个 token 都创建 Map 并走一次反射序列化
+ *
+ * @author yupi
+ */
+@Component
+public class JsonSseFrameEncoder implements SseFrameEncoder {
+
+    private static final String FRAME_PREFIX = "{\"d\":\"";
+
+    private static final String FRAME_SUFFIX = "\"}";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * 初始缓冲区大小，覆盖绝大多数 token
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * 超过该大小的缓冲区不再复用，防止偶发的大片段长期占用内存
+     */
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new StringBuilder(INITIAL_CAPACITY));
+
+    @Override
+    public String encode(String chunk) {
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        buffer.append(FRAME_PREFIX);
+        if (chunk != null) {
+            appendEscaped(buffer, chunk);
+        }
+        buffer.append(FRAME_SUFFIX);
+        String frame = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            BUFFER.set(new StringBuilder(INITIAL_CAPACITY));
+        }
+        return frame;
+    }
+
+    /**
+     * 按 JSON 字符串规则转义，未转义的连续区间整段拷贝
+     */
+    static void appendEscaped(StringBuilder buffer, String text) {
+        int length = text.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            if (i > start) {
+                buffer.append(text, start, i);
+            }
+            switch (c) {
+                case '"' -> buffer.append("\\\"");
+                case '\\' -> buffer.append("\\\\");
+                case '\n' -> buffer.append("\\n");
+                case '\r' -> buffer.append("\\r");
+                case '\t' -> buffer.append("\\t");
+                case '\b' -> buffer.append("\\b");
+                case '\f' -> buffer.append("\\f");
+                default -> buffer.append("\\u")
+                        .append(HEX_DIGITS[(c >> 12) & 0xF])
+                        .append(HEX_DIGITS[(c >> 8) & 0xF])
+                        .append(HEX_DIGITS[(c >> 4) & 0xF])
+                        .append(HEX_DIGITS[c & 0xF]);
+            }
+            start = i + 1;
+        }
+        if (start < length) {
+            buffer.append(text, start, length);
+        }
+    }
+}
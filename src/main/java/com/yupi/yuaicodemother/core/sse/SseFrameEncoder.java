@@ -0,0 +1,18 @@
+package com.yupi.yuaicodemother.core.sse;
+
+/**
+ * SSE 数据帧编码器
+ * 负责把流式输出的文本片段编码为前端约定的 {"d":"..."} 帧
+ *
+ * @author yupi
+ */
+public interface SseFrameEncoder {
+
+    /**
+     * 编码单个文本片段
+     *
+     * @param chunk 文本片段
+     * @return SSE data 字段内容
+     */
+    String encode(String chunk);
+}
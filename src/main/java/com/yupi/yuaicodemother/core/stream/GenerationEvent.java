@@ -0,0 +1,34 @@
+package com.yupi.yuaicodemother.core.stream;
+
+/**
+ * 一次生成中的单个输出事件
+ *
+ * @param generationId 生成 ID
+ * @param seq          事件序号，从 1 开始连续递增；状态事件为 0
+ * @param data         输出给前端的文本
+ * @param event        状态事件名称（如 queued），为空表示普通输出事件
+ */
+public record GenerationEvent(String generationId, long seq, String data, String event) {
+
+    public GenerationEvent(String generationId, long seq, String data) {
+        this(generationId, seq, data, null);
+    }
+
+    /**
+     * 状态事件不计入序号、不缓存，只推送给当前订阅者，不会进入对话历史
+     */
+    public static GenerationEvent status(String generationId, String event, String data) {
+        return new GenerationEvent(generationId, 0, data, event);
+    }
+
+    public boolean isStatus() {
+        return event != null;
+    }
+
+    /**
+     * SSE 事件 ID，格式为 generationId:seq，浏览器重连时通过 Last-Event-ID 原样带回
+     */
+    public String eventId() {
+        return generationId + ":" + seq;
+    }
+}
@@ -0,0 +1,206 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.yupi.yuaicodemother.ai.scheduler.LlmCallContext;
+import com.yupi.yuaicodemother.config.GenerationReplayConfig;
+import com.yupi.yuaicodemother.constant.UserConstant;
+import com.yupi.yuaicodemother.exception.BusinessException;
+import com.yupi.yuaicodemother.exception.ErrorCode;
+import com.yupi.yuaicodemother.exception.ThrowUtils;
+import com.yupi.yuaicodemother.model.entity.User;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RList;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 生成会话注册表
+ * 以 appId + generationId 为键保存进行中和刚结束的生成会话，支持通过 Last-Event-ID 断线续传
+ * 同一应用同一时间只有一次进行中的生成，其他连接（多标签页、管理员旁观）订阅同一个上游
+ */
+@Slf4j
+@Component
+public class GenerationReplayRegistry {
+
+    /**
+     * 模型调用排队时推送的状态事件
+     */
+    private static final String QUEUED_EVENT = "queued";
+
+    @Resource
+    private GenerationReplayConfig generationReplayConfig;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    /**
+     * 进行中的会话最多保留 maxLifetime，结束后再保留 retention 供续传
+     * 按回放缓冲区的字符数限制总量：进行中的会话按单个会话的上限预留，结束后重新放入时按实际缓冲的字符数计算
+     * 进行中的会话仍由 activeSessions 持有，容量淘汰不会取消它们
+     */
+    private Cache<String, GenerationSession> sessionCache;
+
+    /**
+     * 应用 ID -> 进行中的生成会话
+     */
+    private final Map<Long, GenerationSession> activeSessions = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        sessionCache = Caffeine.newBuilder()
+                .maximumWeight(generationReplayConfig.getMaxTotalChars())
+                .weigher((String key, GenerationSession session) -> (int) Math.min(Integer.MAX_VALUE, weightOf(session)))
+                .expireAfter(new Expiry<String, GenerationSession>() {
+                    @Override
+                    public long expireAfterCreate(String key, GenerationSession session, long currentTime) {
+                        return generationReplayConfig.getMaxLifetime().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, GenerationSession session, long currentTime, long currentDuration) {
+                        return session.isTerminated() ? generationReplayConfig.getRetention().toNanos() : currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, GenerationSession session, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((String key, GenerationSession session, RemovalCause cause) -> {
+                    if (session == null || session.isTerminated()) {
+                        return;
+                    }
+                    // 只有超过最长生命周期或主动移除时才取消上游，容量淘汰只影响续传，不中断进行中的生成
+                    if (cause == RemovalCause.EXPIRED || cause == RemovalCause.EXPLICIT) {
+                        log.warn("生成会话超时未结束，取消上游订阅，缓存键: {}", key);
+                        session.cancel();
+                    } else {
+                        log.warn("生成会话因缓存容量被淘汰，之后无法续传，缓存键: {}, 原因: {}", key, cause);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * 开始一次新的生成，或加入该应用进行中的相同生成
+     * 上游由会话独立订阅，客户端断开不会立即中断生成
+     *
+     * @param appId          应用 ID
+     * @param userId         用户 ID
+     * @param message        提示词
+     * @param sourceSupplier 生成内容流（仅在需要新建生成时调用）
+     * @return 生成会话
+     */
+    public GenerationSession startOrJoin(long appId, long userId, String message, Supplier<Flux<String>> sourceSupplier) {
+        GenerationSession[] created = new GenerationSession[1];
+        GenerationSession session = activeSessions.compute(appId, (id, existing) -> {
+            if (existing != null && !existing.isTerminated()) {
+                // 同一用户重复发送相同提示词，直接加入进行中的生成
+                if (existing.getUserId() == userId && existing.getMessage().equals(message)) {
+                    return existing;
+                }
+                throw new BusinessException(ErrorCode.OPERATION_ERROR, "应用正在生成中，请稍后再试");
+            }
+            created[0] = createSession(appId, userId, message);
+            return created[0];
+        });
+        if (created[0] != null) {
+            // 在 compute 之外订阅上游，避免持有锁时执行耗时操作
+            GenerationSession newSession = created[0];
+            // 模型调用排队时把排队位置推送给订阅者（AI 服务把该上下文带到工具循环线程）
+            LlmCallContext.currentOrOpen().queueListener(position ->
+                    newSession.publishStatus(QUEUED_EVENT, "{\"position\":" + position + "}"));
+            try {
+                newSession.start(sourceSupplier.get());
+            } catch (RuntimeException e) {
+                activeSessions.remove(appId, newSession);
+                sessionCache.invalidate(buildCacheKey(appId, newSession.getGenerationId()));
+                throw e;
+            } finally {
+                LlmCallContext.clear();
+            }
+        } else {
+            log.info("加入进行中的生成，appId: {}, generationId: {}", appId, session.getGenerationId());
+        }
+        return session;
+    }
+
+    /**
+     * 旁观应用进行中的生成：先回放已输出的内容，再接收实时事件
+     *
+     * @param appId     应用 ID
+     * @param loginUser 登录用户（应用创建者或管理员）
+     * @return 事件流
+     */
+    public Flux<GenerationEvent> attach(long appId, User loginUser) {
+        GenerationSession session = activeSessions.get(appId);
+        ThrowUtils.throwIf(session == null || session.isTerminated(), ErrorCode.NOT_FOUND_ERROR, "应用当前没有进行中的生成");
+        checkAccess(session, loginUser);
+        return session.subscribe(0);
+    }
+
+    /**
+     * 根据 Last-Event-ID 续传
+     *
+     * @param appId       应用 ID
+     * @param lastEventId 客户端最后收到的事件 ID（generationId:seq）
+     * @param loginUser   登录用户
+     * @return 续传的事件流
+     */
+    public Flux<GenerationEvent> resume(long appId, String lastEventId, User loginUser) {
+        int separatorIndex = lastEventId.lastIndexOf(':');
+        ThrowUtils.throwIf(separatorIndex <= 0, ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误");
+        String generationId = lastEventId.substring(0, separatorIndex);
+        String seqStr = lastEventId.substring(separatorIndex + 1);
+        ThrowUtils.throwIf(!StrUtil.isNumeric(seqStr), ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误");
+        GenerationSession session = sessionCache.getIfPresent(buildCacheKey(appId, generationId));
+        ThrowUtils.throwIf(session == null, ErrorCode.NOT_FOUND_ERROR, "生成记录已过期，请重新生成");
+        checkAccess(session, loginUser);
+        return session.subscribe(Long.parseLong(seqStr));
+    }
+
+    private GenerationSession createSession(long appId, long userId, String message) {
+        String generationId = IdUtil.fastSimpleUUID();
+        String key = buildCacheKey(appId, generationId);
+        RList<String> spillList = generationReplayConfig.isRedisSpillEnabled()
+                ? redissonClient.getList("gen:replay:" + key, StringCodec.INSTANCE)
+                : null;
+        GenerationSession[] holder = new GenerationSession[1];
+        holder[0] = new GenerationSession(generationId, appId, userId, message, generationReplayConfig, spillList, () -> {
+            activeSessions.remove(appId, holder[0]);
+            // 结束后重新放入缓存，按 retention 重新计算过期时间
+            sessionCache.asMap().computeIfPresent(key, (k, v) -> v);
+        });
+        sessionCache.put(key, holder[0]);
+        return holder[0];
+    }
+
+    private long weightOf(GenerationSession session) {
+        return session.isTerminated() ? session.getBufferedChars() : generationReplayConfig.getMaxChars();
+    }
+
+    /**
+     * 只有生成的发起者和管理员可以订阅
+     */
+    private void checkAccess(GenerationSession session, User loginUser) {
+        boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
+        ThrowUtils.throwIf(session.getUserId() != loginUser.getId() && !isAdmin, ErrorCode.NO_AUTH_ERROR, "无权限访问该生成记录");
+    }
+
+    private String buildCacheKey(long appId, String generationId) {
+        return appId + ":" + generationId;
+    }
+}
@@ -0,0 +1,367 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import com.yupi.yuaicodemother.config.GenerationReplayConfig;
+import com.yupi.yuaicodemother.exception.BusinessException;
+import com.yupi.yuaicodemother.exception.ErrorCode;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RList;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次进行中（或刚结束）的代码生成会话
+ * 独立订阅上游输出，按序号缓存最近的事件，客户端断线后可以从任意已缓存的序号继续接收
+ * 内存缓冲区超出上限时，最早的事件批量异步溢出到 Redis（可选），写入确认前仍保留在内存中
+ * 同一会话可以被多个连接同时订阅，最后一个订阅者离开并超过宽限期后才取消上游
+ */
+@Slf4j
+public class GenerationSession {
+
+    @Getter
+    private final String generationId;
+
+    @Getter
+    private final long appId;
+
+    @Getter
+    private final long userId;
+
+    /**
+     * 触发本次生成的提示词，用于判断重复请求能否直接加入
+     */
+    @Getter
+    private final String message;
+
+    private final int maxEvents;
+
+    private final long maxChars;
+
+    /**
+     * 溢出存储，为 null 表示不溢出，超出缓冲区的事件直接丢弃
+     */
+    private RList<String> spillList;
+
+    private final Duration spillTtl;
+
+    /**
+     * 没有订阅者后等待多久取消上游，期间可以续传或重新加入
+     */
+    private final Duration detachGrace;
+
+    private Disposable pendingCancel;
+
+    private final ArrayDeque<GenerationEvent> buffer = new ArrayDeque<>();
+
+    private long bufferedChars;
+
+    /**
+     * 已移出缓冲区、正在写入溢出存储的事件，写入确认后移除，期间续传从这里读取
+     */
+    private final ArrayDeque<GenerationEvent> spilling = new ArrayDeque<>();
+
+    /**
+     * 溢出写入链，保证多批事件按顺序写入
+     */
+    private CompletableFuture<?> spillChain = CompletableFuture.completedFuture(null);
+
+    /**
+     * 已确认写入溢出存储的最大序号（溢出存储中下标 i 对应序号 i + 1）
+     */
+    private long spilledSeq;
+
+    private long lastSeq;
+
+    private final List<FluxSink<GenerationEvent>> subscribers = new ArrayList<>();
+
+    private boolean completed;
+
+    private Throwable error;
+
+    private Disposable upstream;
+
+    /**
+     * 最近一次输出之后的状态事件（如排队位置），新订阅者回放完输出后收到它
+     */
+    private GenerationEvent pendingStatus;
+
+    private final Runnable onTerminate;
+
+    GenerationSession(String generationId, long appId, long userId, String message,
+                      GenerationReplayConfig config, RList<String> spillList, Runnable onTerminate) {
+        this.generationId = generationId;
+        this.appId = appId;
+        this.userId = userId;
+        this.message = message;
+        this.maxEvents = config.getMaxEvents();
+        this.maxChars = config.getMaxChars();
+        this.spillList = spillList;
+        this.spillTtl = config.getRedisSpillTtl();
+        this.detachGrace = config.getDetachGrace();
+        this.onTerminate = onTerminate;
+    }
+
+    /**
+     * 订阅上游，与任何客户端连接的生命周期解耦
+     */
+    void start(Flux<String> source) {
+        Disposable disposable = source.subscribe(this::onNext, this::onError, this::onComplete);
+        synchronized (this) {
+            this.upstream = disposable;
+        }
+    }
+
+    /**
+     * 从指定序号之后开始订阅：先回放缓存事件，再接收实时事件
+     *
+     * @param afterSeq 客户端已收到的最后一个序号，0 表示从头开始
+     */
+    public Flux<GenerationEvent> subscribe(long afterSeq) {
+        return Flux.create(sink -> attach(sink, afterSeq));
+    }
+
+    /**
+     * 推送状态事件（不缓存、不占用序号），会话已结束时忽略
+     *
+     * @param event 事件名称
+     * @param data  事件数据
+     */
+    public void publishStatus(String event, String data) {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            pendingStatus = GenerationEvent.status(generationId, event, data);
+            for (FluxSink<GenerationEvent> sink : subscribers) {
+                sink.next(pendingStatus);
+            }
+        }
+    }
+
+    public synchronized boolean isTerminated() {
+        return completed;
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 内存回放缓冲区当前保留的字符数
+     */
+    public synchronized long getBufferedChars() {
+        return bufferedChars;
+    }
+
+    /**
+     * 停止上游订阅，会话以错误结束
+     */
+    void cancel() {
+        Disposable current;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            current = upstream;
+        }
+        if (current != null) {
+            current.dispose();
+        }
+        onError(new BusinessException(ErrorCode.OPERATION_ERROR, "生成已取消"));
+    }
+
+    private synchronized void removeSubscriber(FluxSink<GenerationEvent> sink) {
+        subscribers.remove(sink);
+        if (subscribers.isEmpty() && !completed && pendingCancel == null) {
+            pendingCancel = Schedulers.parallel().schedule(this::cancelIfIdle, detachGrace.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void cancelIfIdle() {
+        synchronized (this) {
+            pendingCancel = null;
+            if (!subscribers.isEmpty() || completed) {
+                return;
+            }
+        }
+        log.info("生成会话已无订阅者，取消上游，appId: {}, generationId: {}", appId, generationId);
+        cancel();
+    }
+
+    private void onNext(String data) {
+        if (data == null || data.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            pendingStatus = null;
+            GenerationEvent event = new GenerationEvent(generationId, ++lastSeq, data);
+            buffer.addLast(event);
+            bufferedChars += data.length();
+            if (buffer.size() > maxEvents || bufferedChars > maxChars) {
+                evict();
+            }
+            // 在锁内推送，保证新订阅者的回放与实时事件不会交错
+            for (FluxSink<GenerationEvent> sink : subscribers) {
+                sink.next(event);
+            }
+        }
+    }
+
+    private void onError(Throwable throwable) {
+        List<FluxSink<GenerationEvent>> current;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            error = throwable;
+            current = new ArrayList<>(subscribers);
+            subscribers.clear();
+        }
+        current.forEach(sink -> sink.error(throwable));
+        onTerminate.run();
+    }
+
+    private void onComplete() {
+        List<FluxSink<GenerationEvent>> current;
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            current = new ArrayList<>(subscribers);
+            subscribers.clear();
+        }
+        current.forEach(FluxSink::complete);
+        onTerminate.run();
+    }
+
+    /**
+     * 淘汰到上限的一半，被淘汰的事件一次性写入溢出存储，避免每个事件一次 Redis 往返
+     * 写入是异步的，不阻塞上游的 onNext；写入确认前事件保留在 spilling 中
+     */
+    private void evict() {
+        List<GenerationEvent> evicted = new ArrayList<>();
+        while (!buffer.isEmpty() && (buffer.size() > maxEvents / 2 || bufferedChars > maxChars / 2)) {
+            GenerationEvent event = buffer.pollFirst();
+            bufferedChars -= event.data().length();
+            evicted.add(event);
+        }
+        if (spillList == null || evicted.isEmpty()) {
+            return;
+        }
+        spilling.addAll(evicted);
+        RList<String> target = spillList;
+        List<String> data = evicted.stream().map(GenerationEvent::data).toList();
+        spillChain = spillChain
+                .thenCompose(ignored -> target.addAllAsync(data))
+                .thenCompose(ignored -> target.expireAsync(spillTtl))
+                .whenComplete((ignored, throwable) -> onSpilled(evicted.size(), throwable));
+    }
+
+    private synchronized void onSpilled(int count, Throwable throwable) {
+        for (int i = 0; i < count; i++) {
+            spilling.pollFirst();
+        }
+        if (throwable == null) {
+            spilledSeq += count;
+            return;
+        }
+        // Redis 不可用时停止溢出，之后只能从内存缓冲区续传（后续批次会带着同一个异常依次到达这里）
+        if (spillList != null) {
+            log.warn("生成事件溢出到 Redis 失败，generationId: {}, 错误: {}", generationId, throwable.getMessage());
+            spillList = null;
+        }
+    }
+
+    /**
+     * 回放 afterSeq 之后的事件并加入实时订阅，无法补齐时以错误结束订阅
+     * 已溢出的部分在锁外异步读取，读完后从溢出位置继续，内存中的部分与加入订阅在同一把锁内完成，保证不漏不重
+     */
+    private void attach(FluxSink<GenerationEvent> sink, long afterSeq) {
+        RList<String> source;
+        long spilledUntil;
+        synchronized (this) {
+            long firstInMemorySeq = firstInMemorySeq();
+            if (afterSeq + 1 >= firstInMemorySeq) {
+                if (!replayInMemory(sink, afterSeq)) {
+                    return;
+                }
+            } else if (spillList == null || spilledSeq < firstInMemorySeq - 1) {
+                sink.error(new BusinessException(ErrorCode.NOT_FOUND_ERROR, "续传位置已过期，请重新生成"));
+                return;
+            }
+            source = afterSeq + 1 < firstInMemorySeq ? spillList : null;
+            spilledUntil = spilledSeq;
+        }
+        if (source == null) {
+            sink.onDispose(() -> removeSubscriber(sink));
+            return;
+        }
+        source.rangeAsync((int) afterSeq, (int) (spilledUntil - 1)).whenComplete((spilled, throwable) -> {
+            if (throwable != null || spilled.size() != spilledUntil - afterSeq) {
+                sink.error(new BusinessException(ErrorCode.NOT_FOUND_ERROR, "续传位置已过期，请重新生成"));
+                return;
+            }
+            long seq = afterSeq;
+            for (String data : spilled) {
+                sink.next(new GenerationEvent(generationId, ++seq, data));
+            }
+            if (!sink.isCancelled()) {
+                attach(sink, spilledUntil);
+            }
+        });
+    }
+
+    /**
+     * 在锁内回放内存中 afterSeq 之后的事件，会话未结束时加入实时订阅
+     *
+     * @return 是否加入了实时订阅
+     */
+    private boolean replayInMemory(FluxSink<GenerationEvent> sink, long afterSeq) {
+        for (GenerationEvent event : spilling) {
+            if (event.seq() > afterSeq) {
+                sink.next(event);
+            }
+        }
+        for (GenerationEvent event : buffer) {
+            if (event.seq() > afterSeq) {
+                sink.next(event);
+            }
+        }
+        if (completed) {
+            if (error != null) {
+                sink.error(error);
+            } else {
+                sink.complete();
+            }
+            return false;
+        }
+        if (pendingStatus != null) {
+            sink.next(pendingStatus);
+        }
+        subscribers.add(sink);
+        // 有新的订阅者，撤销待执行的取消
+        if (pendingCancel != null) {
+            pendingCancel.dispose();
+            pendingCancel = null;
+        }
+        return true;
+    }
+
+    private long firstInMemorySeq() {
+        if (!spilling.isEmpty()) {
+            return spilling.peekFirst().seq();
+        }
+        return buffer.isEmpty() ? lastSeq + 1 : buffer.peekFirst().seq();
+    }
+}
@@ -0,0 +1,93 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单次生成的响应累加器
+ * 按固定大小的分段保存模型输出，追加时不会像 StringBuilder 那样整体扩容复制
+ * 同一次生成中，代码解析兜底、文件保存和对话历史写入共用这一份内容
+ * 非线程安全，同一次生成的流回调是串行的
+ */
+public final class ResponseAccumulator implements CharSequence {
+
+    /**
+     * Reactor Context 中的键，文本流（HTML、多文件）的流处理器通过它把累加器传给上游的门面，
+     * 由门面写入并从中截取代码块，流处理器只在结束时读取
+     */
+    public static final String CONTEXT_KEY = ResponseAccumulator.class.getName();
+
+    private static final int SEGMENT_SHIFT = 12;
+
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final List<char[]> segments = new ArrayList<>();
+
+    private int length;
+
+    /**
+     * 追加文本
+     *
+     * @param text 文本片段
+     * @return 当前累加器
+     */
+    public ResponseAccumulator append(String text) {
+        if (text == null) {
+            return this;
+        }
+        int offset = 0;
+        int remaining = text.length();
+        while (remaining > 0) {
+            int segmentOffset = length & SEGMENT_MASK;
+            if (segmentOffset == 0 && (length >> SEGMENT_SHIFT) == segments.size()) {
+                segments.add(new char[SEGMENT_SIZE]);
+            }
+            int count = Math.min(remaining, SEGMENT_SIZE - segmentOffset);
+            text.getChars(offset, offset + count, segments.get(length >> SEGMENT_SHIFT), segmentOffset);
+            offset += count;
+            remaining -= count;
+            length += count;
+        }
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return segments.get(index >> SEGMENT_SHIFT)[index & SEGMENT_MASK];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end + ", length: " + length);
+        }
+        return copy(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return copy(0, length);
+    }
+
+    private String copy(int start, int end) {
+        StringBuilder builder = new StringBuilder(end - start);
+        int index = start;
+        while (index < end) {
+            int segmentOffset = index & SEGMENT_MASK;
+            int count = Math.min(end - index, SEGMENT_SIZE - segmentOffset);
+            builder.append(segments.get(index >> SEGMENT_SHIFT), segmentOffset, count);
+            index += count;
+        }
+        return builder.toString();
+    }
+}
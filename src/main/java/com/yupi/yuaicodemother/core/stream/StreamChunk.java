@@ -0,0 +1,28 @@
+package com.yupi.yuaicodemother.core.stream;
+
+/**
+ * 流式输出片段
+ *
+ * @param text  输出给前端的文本
+ * @param flush 是否为边界片段（如工具调用），需要立即推送而不参与合并
+ */
+public record StreamChunk(String text, boolean flush) {
+
+    /**
+     * 普通文本片段，可以与相邻片段合并
+     */
+    public static StreamChunk of(String text) {
+        return new StreamChunk(text, false);
+    }
+
+    /**
+     * 边界片段，推送前先刷出已合并的内容
+     */
+    public static StreamChunk boundary(String text) {
+        return new StreamChunk(text, true);
+    }
+
+    public boolean isEmpty() {
+        return text == null || text.isEmpty();
+    }
+}
@@ -0,0 +1,174 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import com.yupi.yuaicodemother.config.StreamCoalesceConfig;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import com.yupi.yuaicodemother.monitor.StreamFrameMetricsCollector;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式片段合并器
+ * 位于流处理器与 AppController 之间，把逐 token 的片段按大小/时间窗口合并，减少 SSE 帧数和系统调用
+ * 边界片段（工具调用）与流结束时会立即刷出
+ */
+@Slf4j
+@Component
+public class StreamChunkCoalescer {
+
+    @Resource
+    private StreamCoalesceConfig streamCoalesceConfig;
+
+    @Resource
+    private StreamFrameMetricsCollector streamFrameMetricsCollector;
+
+    /**
+     * 按生成类型的配置合并片段
+     *
+     * @param source      处理器输出的片段流
+     * @param codeGenType 代码生成类型
+     * @return 合并后的文本帧
+     */
+    public Flux<String> coalesce(Flux<StreamChunk> source, CodeGenTypeEnum codeGenType) {
+        String typeTag = codeGenType.getValue();
+        Flux<StreamChunk> observed = source
+                .filter(chunk -> !chunk.isEmpty())
+                .doOnNext(chunk -> streamFrameMetricsCollector.recordChunk(typeTag));
+        StreamCoalesceConfig.Rule rule = streamCoalesceConfig.resolve(codeGenType);
+        Flux<String> frames = rule == null
+                ? observed.map(StreamChunk::text)
+                : coalesce(observed, rule.getMaxBytes(), rule.getMaxDelay());
+        return frames.doOnNext(frame -> streamFrameMetricsCollector.recordFrame(typeTag, utf8Length(frame)));
+    }
+
+    /**
+     * 合并片段
+     *
+     * @param source   片段流
+     * @param maxBytes 单帧最大字节数
+     * @param maxDelay 单帧最长等待时间
+     * @return 合并后的文本帧
+     */
+    public static Flux<String> coalesce(Flux<StreamChunk> source, int maxBytes, Duration maxDelay) {
+        return Flux.create(sink -> {
+            CoalescingBuffer buffer = new CoalescingBuffer(sink, maxBytes, maxDelay);
+            Disposable upstream = source.subscribe(buffer::onChunk, buffer::onError, buffer::onComplete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                buffer.cancelTimer();
+            });
+        });
+    }
+
+    /**
+     * 计算 UTF-8 编码后的字节数（不产生临时数组）
+     */
+    static int utf8Length(String text) {
+        int bytes = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 单个流的合并缓冲区，上游回调与定时刷出可能在不同线程，统一加锁
+     */
+    private static class CoalescingBuffer {
+
+        private final FluxSink<String> sink;
+        private final int maxBytes;
+        private final Duration maxDelay;
+
+        private final StringBuilder pending = new StringBuilder();
+        private int pendingBytes;
+        private Disposable timer;
+        private boolean terminated;
+
+        CoalescingBuffer(FluxSink<String> sink, int maxBytes, Duration maxDelay) {
+            this.sink = sink;
+            this.maxBytes = maxBytes;
+            this.maxDelay = maxDelay;
+        }
+
+        synchronized void onChunk(StreamChunk chunk) {
+            if (terminated) {
+                return;
+            }
+            if (chunk.flush()) {
+                // 边界片段：先推送已合并内容，再单独推送自身
+                flush();
+                sink.next(chunk.text());
+                return;
+            }
+            pending.append(chunk.text());
+            pendingBytes += utf8Length(chunk.text());
+            if (pendingBytes >= maxBytes) {
+                flush();
+            } else if (timer == null) {
+                timer = Schedulers.parallel().schedule(this::onTimer, maxDelay.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void onError(Throwable error) {
+            if (terminated) {
+                return;
+            }
+            flush();
+            terminated = true;
+            sink.error(error);
+        }
+
+        synchronized void onComplete() {
+            if (terminated) {
+                return;
+            }
+            flush();
+            terminated = true;
+            sink.complete();
+        }
+
+        synchronized void cancelTimer() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private synchronized void onTimer() {
+            timer = null;
+            if (!terminated) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            cancelTimer();
+            if (pending.isEmpty()) {
+                return;
+            }
+            String frame = pending.toString();
+            pending.setLength(0);
+            pendingBytes = 0;
+            sink.next(frame);
+        }
+    }
+}
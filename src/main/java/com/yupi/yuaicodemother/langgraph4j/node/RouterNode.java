@@ -1,6 +1,6 @@
 package com.yupi.yuaicodemother.langgraph4j.node;
 
-import com.yupi.yuaicodemother.ai.AiCodeGenTypeRoutingService;
+import com.yupi.yuaicodemother.ai.routing.CodeGenTypeRouter;
 import com.yupi.yuaicodemother.langgraph4j.state.WorkflowContext;
 import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
 import com.yupi.yuaicodemother.utils.SpringContextUtil;
@@ -23,10 +23,10 @@ public class RouterNode {
 
             CodeGenTypeEnum generationType;
             try {
-                // 获取AI路由服务
-                AiCodeGenTypeRoutingService routingService = SpringContextUtil.getBean(AiCodeGenTypeRoutingService.class);
+                // 获取路由服务（本地启发式分类优先，其次路由缓存，最后调用 AI）
+                CodeGenTypeRouter router = SpringContextUtil.getBean(CodeGenTypeRouter.class);
                 // 根据原始提示词进行智能路由
-                generationType = routingService.routeCodeGenType(context.getOriginalPrompt());
+                generationType = router.route(context.getOriginalPrompt()).codeGenType();
                 log.info("AI智能路由完成，选择类型: {} ({})", generationType.getValue(), generationType.getText());
             } catch (Exception e) {
                 log.error("AI智能路由失败，使用默认HTML类型: {}", e.getMessage());
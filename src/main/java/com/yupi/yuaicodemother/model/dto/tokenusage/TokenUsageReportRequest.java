@@ -0,0 +1,46 @@
+package com.yupi.yuaicodemother.model.dto.tokenusage;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Token 用量报表请求
+ */
+@Data
+public class TokenUsageReportRequest implements Serializable {
+
+    /**
+     * 分组维度：user、app、model、day，可多选，默认按 day 分组
+     */
+    private List<String> groupBy;
+
+    /**
+     * 开始日期（含），默认 30 天前
+     */
+    private LocalDate startDate;
+
+    /**
+     * 结束日期（含），默认今天
+     */
+    private LocalDate endDate;
+
+    /**
+     * 用户 id（普通用户只能查询自己）
+     */
+    private Long userId;
+
+    /**
+     * 应用 id
+     */
+    private Long appId;
+
+    /**
+     * 模型名称
+     */
+    private String modelName;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,49 @@
+package com.yupi.yuaicodemother.model.enums;
+
+import cn.hutool.core.util.ObjUtil;
+import lombok.Getter;
+
+/**
+ * Token 用量报表的分组维度
+ */
+@Getter
+public enum TokenUsageDimensionEnum {
+
+    USER("用户", "user", "user_id"),
+    APP("应用", "app", "app_id"),
+    MODEL("模型", "model", "model_name"),
+    DAY("日期", "day", "CAST(date_trunc('day', create_time) AS DATE)");
+
+    private final String text;
+
+    private final String value;
+
+    /**
+     * 对应的 SQL 表达式（固定值，不来自用户输入）
+     */
+    private final String column;
+
+    TokenUsageDimensionEnum(String text, String value, String column) {
+        this.text = text;
+        this.value = value;
+        this.column = column;
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value 枚举值的value
+     * @return 枚举值
+     */
+    public static TokenUsageDimensionEnum getEnumByValue(String value) {
+        if (ObjUtil.isEmpty(value)) {
+            return null;
+        }
+        for (TokenUsageDimensionEnum anEnum : TokenUsageDimensionEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,40 @@
+package com.yupi.yuaicodemother.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Token 用量报表的一行（未参与分组的维度为空）
+ */
+@Data
+public class TokenUsageReportVO implements Serializable {
+
+    private Long userId;
+
+    private Long appId;
+
+    private String modelName;
+
+    private LocalDate day;
+
+    /**
+     * 模型调用次数
+     */
+    private long requestCount;
+
+    private long inputTokens;
+
+    private long outputTokens;
+
+    private long totalTokens;
+
+    /**
+     * 估算费用（元），按配置的模型价格计算，未配置价格的模型不计入
+     */
+    private BigDecimal cost;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -26,6 +26,7 @@ public class AiModelMetricsCollector {
     private final ConcurrentMap<String, Counter> errorCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> tokenCountersCache = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Timer> responseTimersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> endpointDecisionCountersCache = new ConcurrentHashMap<>();
 
     /**
      * 记录请求次数
@@ -94,4 +95,20 @@ public class AiModelMetricsCollector {
         );
         timer.record(duration);
     }
-}
\ No newline at end of file
+
+    /**
+     * 记录模型服务端点的路由决策
+     */
+    public void recordEndpointDecision(String model, String endpoint, String decision) {
+        String key = String.format("%s_%s_%s", model, endpoint, decision);
+        Counter counter = endpointDecisionCountersCache.computeIfAbsent(key, k ->
+                Counter.builder("ai_model_endpoint_decisions_total")
+                        .description("AI模型端点路由决策次数")
+                        .tag("model", model)
+                        .tag("endpoint", endpoint)
+                        .tag("decision", decision)
+                        .register(meterRegistry)
+        );
+        counter.increment();
+    }
+}
@@ -1,20 +1,27 @@
 package com.yupi.yuaicodemother.monitor;
 
+import cn.hutool.core.util.NumberUtil;
+import cn.hutool.core.util.StrUtil;
+import com.yupi.yuaicodemother.ai.scheduler.LlmCallContext;
+import com.yupi.yuaicodemother.ratelimter.quota.TokenQuotaService;
 import dev.langchain4j.model.chat.listener.ChatModelErrorContext;
 import dev.langchain4j.model.chat.listener.ChatModelListener;
 import dev.langchain4j.model.chat.listener.ChatModelRequestContext;
 import dev.langchain4j.model.chat.listener.ChatModelResponseContext;
 import dev.langchain4j.model.output.TokenUsage;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 /**
  * AI 模型监听器
  */
+@Slf4j
 @Component
 public class AiModelMonitorListener implements ChatModelListener {
 
@@ -23,15 +30,24 @@ public class AiModelMonitorListener implements ChatModelListener {
     // 用于监控上下文传递（因为请求和响应事件的触发不是同一个线程）
     private static final String MONITOR_CONTEXT_KEY = "monitor_context";
 
+    // 没有监控上下文时（如系统发起的调用）使用的占位信息
+    private static final MonitorContext UNKNOWN_CONTEXT = MonitorContext.builder().userId("unknown").appId("unknown").build();
+
     @Resource
     private AiModelMetricsCollector aiModelMetricsCollector;
 
+    @Resource
+    private TokenLedger tokenLedger;
+
+    @Resource
+    private TokenQuotaService tokenQuotaService;
+
     @Override
     public void onRequest(ChatModelRequestContext requestContext) {
         // 获取当前时间戳，但未做任何处理
         requestContext.attributes().put(REQUEST_START_TIME_KEY, Instant.now());
         // 从监控上下文中获取信息
-        MonitorContext monitorContext = MonitorContextHolder.getContext();
+        MonitorContext monitorContext = currentContext();
         String userId = monitorContext.getUserId();
         String appId = monitorContext.getAppId();
         requestContext.attributes().put(MONITOR_CONTEXT_KEY, monitorContext);
@@ -46,7 +62,7 @@ public class AiModelMonitorListener implements ChatModelListener {
         // 从属性中获取监控信息（由 onRequest 方法存储）
         Map<Object, Object> attributes = responseContext.attributes();
         // 从监控上下文中获取信息
-        MonitorContext context = (MonitorContext) attributes.get(MONITOR_CONTEXT_KEY);
+        MonitorContext context = (MonitorContext) attributes.getOrDefault(MONITOR_CONTEXT_KEY, UNKNOWN_CONTEXT);
         String userId = context.getUserId();
         String appId = context.getAppId();
         // 获取模型名称
@@ -56,13 +72,13 @@ public class AiModelMonitorListener implements ChatModelListener {
         // 记录响应时间
         recordResponseTime(attributes, userId, appId, modelName);
         // 记录 Token 使用情况
-        recordTokenUsage(responseContext, userId, appId, modelName);
+        recordTokenUsage(responseContext.chatResponse().metadata().tokenUsage(), userId, appId, modelName);
     }
 
     @Override
     public void onError(ChatModelErrorContext errorContext) {
-        // 从监控上下文中获取信息
-        MonitorContext context = MonitorContextHolder.getContext();
+        // 流式调用的错误在 HTTP 回调线程上触发，从属性中获取监控信息（由 onRequest 方法存储）
+        MonitorContext context = (MonitorContext) errorContext.attributes().getOrDefault(MONITOR_CONTEXT_KEY, currentContext());
         String userId = context.getUserId();
         String appId = context.getAppId();
         // 获取模型名称和错误类型
@@ -76,6 +92,36 @@ public class AiModelMonitorListener implements ChatModelListener {
         recordResponseTime(attributes, userId, appId, modelName);
     }
 
+    /**
+     * 记录模型服务端点的路由决策（多端点故障转移和对冲请求）
+     *
+     * @param model    逻辑模型名称
+     * @param endpoint 端点名称
+     * @param decision 决策：selected（首选）、failover（故障转移）、hedge（发出对冲请求）、hedge_won（对冲请求胜出）、
+     *                 aborted（落败的请求被中止）、exhausted（所有端点均失败）
+     */
+    public void onEndpointDecision(String model, String endpoint, String decision) {
+        aiModelMetricsCollector.recordEndpointDecision(model, endpoint, decision);
+        if (!"selected".equals(decision)) {
+            log.info("模型端点路由，model: {}, endpoint: {}, decision: {}", model, endpoint, decision);
+        }
+    }
+
+    /**
+     * 记录被中止的请求（如对冲落败）消耗的 Token
+     * 这类请求收不到包含用量的完整响应，但服务端已经处理了输入，由调用方估算用量后计入台账和每日额度
+     *
+     * @param context    发起请求的用户的监控上下文
+     * @param modelName  模型名称
+     * @param tokenUsage 估算的用量
+     */
+    public void onAbortedRequest(MonitorContext context, String modelName, TokenUsage tokenUsage) {
+        String userId = context.getUserId();
+        String appId = context.getAppId();
+        aiModelMetricsCollector.recordRequest(userId, appId, modelName, "aborted");
+        recordTokenUsage(tokenUsage, userId, appId, modelName);
+    }
+
     /**
      * 记录响应时间
      */
@@ -86,14 +132,39 @@ public class AiModelMonitorListener implements ChatModelListener {
     }
 
     /**
-     * 记录Token使用情况
+     * 记录Token使用情况（指标 + 持久化台账 + 每日额度）
      */
-    private void recordTokenUsage(ChatModelResponseContext responseContext, String userId, String appId, String modelName) {
-        TokenUsage tokenUsage = responseContext.chatResponse().metadata().tokenUsage();
+    private void recordTokenUsage(TokenUsage tokenUsage, String userId, String appId, String modelName) {
         if (tokenUsage != null) {
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "input", tokenUsage.inputTokenCount());
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "output", tokenUsage.outputTokenCount());
             aiModelMetricsCollector.recordTokenUsage(userId, appId, modelName, "total", tokenUsage.totalTokenCount());
+            // 只入队，由后台线程批量写入数据库
+            tokenLedger.record(new TokenUsageRecord(parseId(userId), parseId(appId), StrUtil.blankToDefault(modelName, "unknown"),
+                    countOf(tokenUsage.inputTokenCount()), countOf(tokenUsage.outputTokenCount()),
+                    countOf(tokenUsage.totalTokenCount()), LocalDateTime.now()));
+            // 累加本地额度计数，由后台定时同步到 Redis
+            tokenQuotaService.recordUsage(parseId(userId), countOf(tokenUsage.totalTokenCount()));
+        }
+    }
+
+    /**
+     * 当前线程的监控上下文：优先使用 MonitorContextHolder，其次是模型调用上下文（AI 服务的工具循环线程）
+     */
+    public MonitorContext currentContext() {
+        MonitorContext context = MonitorContextHolder.getContext();
+        if (context == null) {
+            LlmCallContext callContext = LlmCallContext.current();
+            context = callContext != null ? callContext.getMonitorContext() : null;
         }
+        return context != null ? context : UNKNOWN_CONTEXT;
+    }
+
+    private static Long parseId(String id) {
+        return NumberUtil.isLong(id) ? Long.parseLong(id) : null;
+    }
+
+    private static int countOf(Integer count) {
+        return count != null ? count : 0;
     }
 }
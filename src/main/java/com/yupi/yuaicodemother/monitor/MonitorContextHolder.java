@@ -4,6 +4,8 @@ import lombok.extern.slf4j.Slf4j;
 
 /**
  * 监控上下文持有者（同线程内共享）
+ * 不会被子线程继承：线程池和调度器的线程由第一个使用者创建，继承会把该用户的上下文带给之后的所有调用。
+ * 需要跨线程时由调用方显式传递，例如 AI 服务的工具循环线程通过 LlmCallContext 获取，多端点模型在发起请求前重新设置
  */
 @Slf4j
 public class MonitorContextHolder {
@@ -30,4 +32,28 @@ public class MonitorContextHolder {
     public static void clearContext() {
         CONTEXT_HOLDER.remove();
     }
+
+    /**
+     * 在指定的监控上下文中执行任务，结束后恢复当前线程原有的上下文
+     *
+     * @param context 监控上下文，为空时任务在没有上下文的情况下执行
+     * @param task    任务
+     */
+    public static void runWithContext(MonitorContext context, Runnable task) {
+        MonitorContext previous = CONTEXT_HOLDER.get();
+        setOrRemove(context);
+        try {
+            task.run();
+        } finally {
+            setOrRemove(previous);
+        }
+    }
+
+    private static void setOrRemove(MonitorContext context) {
+        if (context == null) {
+            CONTEXT_HOLDER.remove();
+        } else {
+            CONTEXT_HOLDER.set(context);
+        }
+    }
 }
\ No newline at end of file
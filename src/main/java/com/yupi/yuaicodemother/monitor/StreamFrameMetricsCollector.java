@@ -0,0 +1,56 @@
+package com.yupi.yuaicodemother.monitor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 流式输出帧指标收集器
+ * 帧速率通过 ai_stream_frames_total 的 rate 计算，单帧大小见 ai_stream_frame_bytes
+ */
+@Component
+public class StreamFrameMetricsCollector {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, Counter> chunkCountersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> frameCountersCache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> frameBytesCache = new ConcurrentHashMap<>();
+
+    /**
+     * 记录上游片段
+     */
+    public void recordChunk(String codeGenType) {
+        chunkCountersCache.computeIfAbsent(codeGenType, k ->
+                Counter.builder("ai_stream_chunks_total")
+                        .description("合并前的上游片段数")
+                        .tag("code_gen_type", codeGenType)
+                        .register(meterRegistry)
+        ).increment();
+    }
+
+    /**
+     * 记录推送给前端的帧
+     */
+    public void recordFrame(String codeGenType, int bytes) {
+        frameCountersCache.computeIfAbsent(codeGenType, k ->
+                Counter.builder("ai_stream_frames_total")
+                        .description("推送给前端的 SSE 帧数")
+                        .tag("code_gen_type", codeGenType)
+                        .register(meterRegistry)
+        ).increment();
+        frameBytesCache.computeIfAbsent(codeGenType, k ->
+                DistributionSummary.builder("ai_stream_frame_bytes")
+                        .description("单个 SSE 帧的字节数")
+                        .baseUnit("bytes")
+                        .tag("code_gen_type", codeGenType)
+                        .register(meterRegistry)
+        ).record(bytes);
+    }
+}
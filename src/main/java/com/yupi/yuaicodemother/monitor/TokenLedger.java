@@ -0,0 +1,193 @@
+package com.yupi.yuaicodemother.monitor;
+
+import com.yupi.yuaicodemother.config.TokenLedgerConfig;
+import com.yupi.yuaicodemother.repository.TokenUsageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token 用量台账（异步攒批写入）
+ * record 只把记录放入有界队列，不会阻塞调用方；后台线程攒够 batchSize 条或等待 flushInterval 后批量写入数据库。
+ * 写入失败时按退避间隔重试（期间新记录继续排队，队列满时丢弃新记录），重试用尽才丢弃该批记录并记录错误日志。
+ * 应用关闭时写入队列中剩余的记录（不再等待重试）。
+ * 指标：ai_token_ledger_queue_size、ai_token_ledger_flush、ai_token_ledger_records_total{result}、ai_token_ledger_retries_total
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class TokenLedger {
+
+    @Resource
+    private TokenLedgerConfig tokenLedgerConfig;
+
+    @Resource
+    private TokenUsageRepository tokenUsageRepository;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<TokenUsageRecord> queue;
+
+    private Thread writerThread;
+
+    private volatile boolean running;
+
+    private Counter writtenCounter;
+
+    private Counter droppedCounter;
+
+    private Counter failedCounter;
+
+    private Counter retryCounter;
+
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void init() {
+        if (!tokenLedgerConfig.isEnabled()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(tokenLedgerConfig.getQueueCapacity());
+        writtenCounter = recordsCounter("written");
+        droppedCounter = recordsCounter("dropped");
+        failedCounter = recordsCounter("failed");
+        retryCounter = Counter.builder("ai_token_ledger_retries_total")
+                .description("Token 台账批量写入重试次数")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("ai_token_ledger_flush")
+                .description("Token 台账批量写入耗时")
+                .register(meterRegistry);
+        Gauge.builder("ai_token_ledger_queue_size", queue, BlockingQueue::size)
+                .description("等待写入的 Token 台账记录数")
+                .register(meterRegistry);
+        running = true;
+        writerThread = Thread.ofPlatform().name("token-ledger-writer").daemon().start(this::runLoop);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        writerThread.interrupt();
+        writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        // 写入剩余记录
+        List<TokenUsageRecord> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += tokenLedgerConfig.getBatchSize()) {
+            write(rest.subList(from, Math.min(rest.size(), from + tokenLedgerConfig.getBatchSize())));
+        }
+    }
+
+    /**
+     * 记录一次模型响应的 Token 用量（非阻塞）
+     */
+    public void record(TokenUsageRecord record) {
+        if (queue == null) {
+            return;
+        }
+        if (!queue.offer(record)) {
+            droppedCounter.increment();
+        }
+    }
+
+    private void runLoop() {
+        int batchSize = tokenLedgerConfig.getBatchSize();
+        long flushIntervalNanos = tokenLedgerConfig.getFlushInterval().toNanos();
+        List<TokenUsageRecord> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                TokenUsageRecord first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    TokenUsageRecord next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 关闭时被中断，已取出的记录照常写入，剩余的由 destroy 写入
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 写入一批记录，失败时按退避间隔重试；正在关闭时不再等待重试
+     */
+    private void write(List<TokenUsageRecord> batch) {
+        long backoffNanos = tokenLedgerConfig.getRetryBackoff().toNanos();
+        for (int retries = 0; ; retries++) {
+            Exception error = flush(batch);
+            if (error == null) {
+                return;
+            }
+            if (retries >= tokenLedgerConfig.getMaxRetries() || !running) {
+                failedCounter.increment(batch.size());
+                long totalTokens = batch.stream().mapToLong(TokenUsageRecord::totalTokens).sum();
+                log.error("写入 Token 台账失败，已重试 {} 次，丢弃 {} 条记录（共 {} Token）",
+                        retries, batch.size(), totalTokens, error);
+                return;
+            }
+            log.warn("写入 Token 台账失败，{} ms 后重试：{}", TimeUnit.NANOSECONDS.toMillis(backoffNanos), error.getMessage());
+            retryCounter.increment();
+            try {
+                TimeUnit.NANOSECONDS.sleep(backoffNanos);
+            } catch (InterruptedException e) {
+                // 关闭时被中断，running 已为 false，立即再试一次
+            }
+            backoffNanos *= 2;
+        }
+    }
+
+    /**
+     * @return 写入失败时的异常，成功时为 null
+     */
+    private Exception flush(List<TokenUsageRecord> batch) {
+        long start = System.nanoTime();
+        try {
+            tokenUsageRepository.batchInsert(batch);
+            writtenCounter.increment(batch.size());
+            return null;
+        } catch (Exception e) {
+            return e;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Counter recordsCounter(String result) {
+        return Counter.builder("ai_token_ledger_records_total")
+                .description("Token 台账记录数")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,19 @@
+package com.yupi.yuaicodemother.monitor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 一次模型响应的 Token 用量
+ *
+ * @param userId       用户 ID，系统调用为 null
+ * @param appId        应用 ID，与应用无关的调用为 null
+ * @param modelName    模型名称
+ * @param inputTokens  输入 Token 数
+ * @param outputTokens 输出 Token 数
+ * @param totalTokens  总 Token 数
+ * @param createTime   响应完成时间
+ */
+public record TokenUsageRecord(Long userId, Long appId, String modelName,
+                               int inputTokens, int outputTokens, int totalTokens,
+                               LocalDateTime createTime) {
+}
@@ -0,0 +1,86 @@
+package com.yupi.yuaicodemother.monitor;
+
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.ToolLoopListener;
+import dev.langchain4j.service.ToolLoopRound;
+import dev.langchain4j.service.ToolLoopState;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 工具调用循环指标收集器
+ * 每轮：模型响应耗时、工具执行耗时、Token 消耗；每次会话：轮数、总耗时、结束原因
+ */
+@Slf4j
+@Component
+public class ToolLoopMetricsListener implements ToolLoopListener {
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Timer roundModelTimer;
+    private Timer roundToolTimer;
+    private DistributionSummary roundTokens;
+    private DistributionSummary sessionRounds;
+    private Timer sessionTimer;
+    private final Map<ToolLoopState.Outcome, Counter> outcomeCounters = new EnumMap<>(ToolLoopState.Outcome.class);
+
+    @PostConstruct
+    public void initMeters() {
+        roundModelTimer = Timer.builder("ai_tool_loop_round_model_duration")
+                .description("单轮模型流式响应耗时")
+                .register(meterRegistry);
+        roundToolTimer = Timer.builder("ai_tool_loop_round_tool_duration")
+                .description("单轮工具执行耗时")
+                .register(meterRegistry);
+        roundTokens = DistributionSummary.builder("ai_tool_loop_round_tokens")
+                .description("单轮 Token 消耗")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        sessionRounds = DistributionSummary.builder("ai_tool_loop_rounds")
+                .description("单次会话的轮数")
+                .register(meterRegistry);
+        sessionTimer = Timer.builder("ai_tool_loop_session_duration")
+                .description("单次会话总耗时")
+                .register(meterRegistry);
+        for (ToolLoopState.Outcome outcome : ToolLoopState.Outcome.values()) {
+            outcomeCounters.put(outcome, Counter.builder("ai_tool_loop_sessions_total")
+                    .description("工具调用循环结束次数")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public void onRoundCompleted(Object memoryId, ToolLoopRound round) {
+        roundModelTimer.record(round.modelLatency());
+        if (round.toolCalls() > 0) {
+            roundToolTimer.record(round.toolLatency());
+        }
+        TokenUsage tokenUsage = round.tokenUsage();
+        if (tokenUsage != null && tokenUsage.totalTokenCount() != null) {
+            roundTokens.record(tokenUsage.totalTokenCount());
+        }
+    }
+
+    @Override
+    public void onLoopFinished(Object memoryId, ToolLoopState state, ToolLoopState.Outcome outcome) {
+        sessionRounds.record(state.rounds());
+        sessionTimer.record(state.elapsed());
+        outcomeCounters.get(outcome).increment();
+        if (outcome == ToolLoopState.Outcome.MAX_ROUNDS || outcome == ToolLoopState.Outcome.MAX_DURATION
+                || outcome == ToolLoopState.Outcome.MAX_TOKENS) {
+            log.warn("工具调用循环达到上限，appId: {}, 原因: {}, 轮数: {}, 耗时: {} ms",
+                    memoryId, outcome, state.rounds(), state.elapsed().toMillis());
+        }
+    }
+}
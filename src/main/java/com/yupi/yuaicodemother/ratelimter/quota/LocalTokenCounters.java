@@ -0,0 +1,95 @@
+package com.yupi.yuaicodemother.ratelimter.quota;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 本地 Token 用量计数（按用户 + 自然日）
+ * 模型响应时只累加本地的 LongAdder，不访问 Redis；后台定时取出未同步的增量写入 Redis，
+ * 写入成功后再从本地扣除，失败时增量留在本地等下一轮，不会重复计数也不会丢失。
+ * 累加和移除过期计数都在 compute 中完成，累加不会落到已经被移除的计数上
+ *
+ * @author yupi
+ */
+final class LocalTokenCounters {
+
+    private final ConcurrentHashMap<Key, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 累加本地用量
+     */
+    void add(long userId, LocalDate day, long tokens) {
+        counters.compute(new Key(userId, day), (key, counter) -> {
+            Counter target = counter == null ? new Counter() : counter;
+            target.pending.add(tokens);
+            return target;
+        });
+    }
+
+    /**
+     * 已用量 = 最近一次从 Redis 得到的总量 + 本地尚未同步的增量
+     */
+    long used(long userId, LocalDate day) {
+        Counter counter = counters.get(new Key(userId, day));
+        return counter == null ? 0 : counter.reconciled.get() + counter.pending.sum();
+    }
+
+    /**
+     * 更新从 Redis 读到的总量（同一天的总量只增不减，保留较大值）
+     */
+    void updateReconciled(long userId, LocalDate day, long total) {
+        counters.computeIfAbsent(new Key(userId, day), k -> new Counter()).reconciled.accumulateAndGet(total, Math::max);
+    }
+
+    /**
+     * 取出所有未同步的增量，同时清理已经过期且没有增量的计数
+     *
+     * @param today 当前日期，早于它的计数在同步完成后移除
+     */
+    Map<Key, Long> pendingDeltas(LocalDate today) {
+        Map<Key, Long> deltas = new HashMap<>();
+        counters.forEach((key, counter) -> {
+            long delta = counter.pending.sum();
+            if (delta != 0) {
+                deltas.put(key, delta);
+            } else if (key.day().isBefore(today)) {
+                // 在 compute 中再检查一次，期间有新的累加时保留
+                counters.compute(key, (k, current) -> current == null || current.pending.sum() == 0 ? null : current);
+            }
+        });
+        return deltas;
+    }
+
+    /**
+     * 增量已经写入 Redis：从本地扣除，并记录写入后的总量
+     */
+    void commit(Key key, long delta, long total) {
+        Counter counter = counters.computeIfAbsent(key, k -> new Counter());
+        counter.pending.add(-delta);
+        counter.reconciled.accumulateAndGet(total, Math::max);
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    record Key(long userId, LocalDate day) {
+    }
+
+    private static final class Counter {
+
+        /**
+         * 尚未同步到 Redis 的增量
+         */
+        private final LongAdder pending = new LongAdder();
+
+        /**
+         * 最近一次从 Redis 得到的总量（包含所有实例已同步的用量）
+         */
+        private final AtomicLong reconciled = new AtomicLong();
+    }
+}
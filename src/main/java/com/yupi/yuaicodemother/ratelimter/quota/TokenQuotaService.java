@@ -0,0 +1,203 @@
+package com.yupi.yuaicodemother.ratelimter.quota;
+
+import com.yupi.yuaicodemother.config.TokenQuotaConfig;
+import com.yupi.yuaicodemother.exception.BusinessException;
+import com.yupi.yuaicodemother.exception.ErrorCode;
+import com.yupi.yuaicodemother.model.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchOptions;
+import org.redisson.api.RAtomicLongAsync;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+import org.redisson.api.RedissonClient;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户每日 Token 额度
+ * 模型每次响应后只累加本地计数（{@link #recordUsage}），后台每隔几百毫秒把所有用户的增量用一个原子批次写入 Redis，
+ * 发起对话时（{@link #checkQuota}）读取 Redis 中的全局用量加上本地未同步的增量判断是否超额。
+ * 额度只在准入时检查，生成过程中用完额度不会中断当前生成，超出的部分计入当天用量，下一次对话会被拒绝。
+ * 指标：ai_token_quota_rejected_total、ai_token_quota_reconcile、ai_token_quota_reconcile_failures_total、ai_token_quota_tracked_users
+ *
+ * @author yupi
+ */
+@Slf4j
+@Component
+public class TokenQuotaService {
+
+    private static final String KEY_PREFIX = "token_quota:";
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * Redis 中每日用量的保留时间，跨天后自然过期
+     */
+    private static final Duration KEY_TTL = Duration.ofDays(2);
+
+    @Resource
+    private TokenQuotaConfig tokenQuotaConfig;
+
+    @Resource
+    private RedissonClient redissonClient;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final LocalTokenCounters counters = new LocalTokenCounters();
+
+    private ScheduledExecutorService reconciler;
+
+    private ZoneId zoneId;
+
+    private Counter rejectedCounter;
+
+    private Counter reconcileFailureCounter;
+
+    private Timer reconcileTimer;
+
+    @PostConstruct
+    public void init() {
+        zoneId = ZoneId.of(tokenQuotaConfig.getZoneId());
+        rejectedCounter = Counter.builder("ai_token_quota_rejected_total")
+                .description("因每日 Token 额度用完被拒绝的对话数")
+                .register(meterRegistry);
+        reconcileFailureCounter = Counter.builder("ai_token_quota_reconcile_failures_total")
+                .description("Token 用量同步到 Redis 失败次数")
+                .register(meterRegistry);
+        reconcileTimer = Timer.builder("ai_token_quota_reconcile")
+                .description("Token 用量同步到 Redis 耗时")
+                .register(meterRegistry);
+        Gauge.builder("ai_token_quota_tracked_users", counters, LocalTokenCounters::size)
+                .description("本地正在计数的用户数")
+                .register(meterRegistry);
+        if (!tokenQuotaConfig.isEnabled()) {
+            return;
+        }
+        long intervalMillis = Math.max(50, tokenQuotaConfig.getReconcileInterval().toMillis());
+        reconciler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("token-quota-reconciler").daemon().factory());
+        reconciler.scheduleWithFixedDelay(this::reconcileSafely, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        if (reconciler == null) {
+            return;
+        }
+        reconciler.shutdown();
+        reconciler.awaitTermination(5, TimeUnit.SECONDS);
+        // 同步剩余的增量
+        reconcileSafely();
+    }
+
+    /**
+     * 准入检查：当天额度已用完时拒绝
+     *
+     * @param loginUser 发起对话的用户
+     * @throws BusinessException 额度已用完
+     */
+    public void checkQuota(User loginUser) {
+        if (!tokenQuotaConfig.isEnabled()) {
+            return;
+        }
+        long limit = dailyLimitOf(loginUser.getUserRole());
+        if (limit < 0) {
+            return;
+        }
+        long used = getUsedTokens(loginUser.getId());
+        if (used >= limit) {
+            rejectedCounter.increment();
+            log.info("用户今日 Token 额度已用完，userId: {}, used: {}, limit: {}", loginUser.getId(), used, limit);
+            throw new BusinessException(ErrorCode.TOO_MANY_REQUEST, "今日 Token 额度已用完，请明天再试");
+        }
+    }
+
+    /**
+     * 获取用户当天已使用的 Token 数（包含其他实例已同步的用量）
+     */
+    public long getUsedTokens(long userId) {
+        LocalDate today = today();
+        try {
+            long total = redissonClient.getAtomicLong(redisKey(userId, today)).get();
+            counters.updateReconciled(userId, today, total);
+        } catch (Exception e) {
+            // Redis 不可用时按本地已知的用量判断
+            log.warn("读取 Token 用量失败，userId: {}, {}", userId, e.getMessage());
+        }
+        return counters.used(userId, today);
+    }
+
+    /**
+     * 记录一次模型响应消耗的 Token，只更新本地计数
+     */
+    public void recordUsage(Long userId, long tokens) {
+        if (!tokenQuotaConfig.isEnabled() || userId == null || tokens <= 0) {
+            return;
+        }
+        counters.add(userId, today(), tokens);
+    }
+
+    /**
+     * 按角色获取每日额度，负数表示不限制
+     */
+    private long dailyLimitOf(String userRole) {
+        Long roleLimit = userRole == null ? null : tokenQuotaConfig.getRoleLimits().get(userRole);
+        return roleLimit != null ? roleLimit : tokenQuotaConfig.getDailyLimit();
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            reconcileFailureCounter.increment();
+            log.warn("Token 用量同步到 Redis 失败，增量保留到下一轮: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把所有用户的本地增量用一个原子批次写入 Redis，成功后再从本地扣除
+     */
+    private void reconcile() {
+        Map<LocalTokenCounters.Key, Long> deltas = counters.pendingDeltas(today());
+        if (deltas.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        RBatch batch = redissonClient.createBatch(BatchOptions.defaults()
+                .executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+        Map<LocalTokenCounters.Key, RFuture<Long>> totals = new LinkedHashMap<>();
+        deltas.forEach((key, delta) -> {
+            RAtomicLongAsync atomicLong = batch.getAtomicLong(redisKey(key.userId(), key.day()));
+            totals.put(key, atomicLong.addAndGetAsync(delta));
+            atomicLong.expireAsync(KEY_TTL);
+        });
+        batch.execute();
+        totals.forEach((key, total) -> counters.commit(key, deltas.get(key), total.toCompletableFuture().join()));
+        reconcileTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private LocalDate today() {
+        return LocalDate.now(zoneId);
+    }
+
+    private static String redisKey(long userId, LocalDate day) {
+        return KEY_PREFIX + day.format(DAY_FORMATTER) + ":" + userId;
+    }
+}
@@ -100,4 +100,14 @@ public interface AppRepository extends JpaRepository<App, Long>, JpaSpecificatio
      */
     @Query("SELECT a FROM App a WHERE a.userId = :userId ORDER BY a.createTime DESC LIMIT :limit")
     List<App> findLatestByUserId(@Param("userId") Long userId, @Param("limit") int limit);
+
+    /**
+     * 按 ID 游标从新到旧查询未删除的应用（键集分页）
+     *
+     * @param lastId 上一页最后一个应用的 ID，只返回 ID 小于它的应用
+     * @param limit 数量限制
+     * @return 应用列表
+     */
+    @Query("SELECT a FROM App a WHERE a.id < :lastId AND a.isDelete = 0 ORDER BY a.id DESC LIMIT :limit")
+    List<App> findPageBeforeId(@Param("lastId") Long lastId, @Param("limit") int limit);
 }
@@ -0,0 +1,134 @@
+package com.yupi.yuaicodemother.repository;
+
+import com.yupi.yuaicodemother.model.enums.TokenUsageDimensionEnum;
+import com.yupi.yuaicodemother.model.vo.TokenUsageReportVO;
+import com.yupi.yuaicodemother.monitor.TokenUsageRecord;
+import jakarta.annotation.Resource;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Token 用量台账 Repository (JDBC)
+ * 台账只追加、按时间范围聚合，不需要实体映射，直接使用 JdbcTemplate 批量写入
+ * （连接串开启 reWriteBatchedInserts 后，驱动会把一批 INSERT 合并为多值插入）
+ *
+ * @author yupi
+ */
+@Repository
+public class TokenUsageRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO token_usage "
+            + "(user_id, app_id, model_name, input_tokens, output_tokens, total_tokens, create_time) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    @Resource
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 批量写入
+     *
+     * @param records 用量记录
+     */
+    public void batchInsert(List<TokenUsageRecord> records) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TokenUsageRecord record = records.get(i);
+                setNullableLong(ps, 1, record.userId());
+                setNullableLong(ps, 2, record.appId());
+                ps.setString(3, record.modelName());
+                ps.setInt(4, record.inputTokens());
+                ps.setInt(5, record.outputTokens());
+                ps.setInt(6, record.totalTokens());
+                ps.setTimestamp(7, Timestamp.valueOf(record.createTime()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return records.size();
+            }
+        });
+    }
+
+    /**
+     * 按维度聚合 [start, end) 范围内的用量
+     * 结果总是包含模型维度（用于计算费用），由调用方按需合并
+     *
+     * @param dimensions 分组维度
+     * @param start      开始时间（含）
+     * @param end        结束时间（不含）
+     * @param userId     用户 id，可以为空
+     * @param appId      应用 id，可以为空
+     * @param modelName  模型名称，可以为空
+     * @return 聚合结果
+     */
+    public List<TokenUsageReportVO> aggregate(Set<TokenUsageDimensionEnum> dimensions, LocalDateTime start, LocalDateTime end,
+                                              Long userId, Long appId, String modelName) {
+        Set<TokenUsageDimensionEnum> groupDimensions = EnumSet.of(TokenUsageDimensionEnum.MODEL);
+        groupDimensions.addAll(dimensions);
+        String columns = groupDimensions.stream()
+                .map(dimension -> dimension.getColumn() + " AS " + dimension.getValue() + "_key")
+                .collect(Collectors.joining(", "));
+        String groupBy = groupDimensions.stream()
+                .map(TokenUsageDimensionEnum::getColumn)
+                .collect(Collectors.joining(", "));
+        StringBuilder sql = new StringBuilder("SELECT ").append(columns)
+                .append(", COUNT(*) AS request_count, SUM(input_tokens) AS input_tokens, ")
+                .append("SUM(output_tokens) AS output_tokens, SUM(total_tokens) AS total_tokens ")
+                .append("FROM token_usage WHERE create_time >= ? AND create_time < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(start));
+        args.add(Timestamp.valueOf(end));
+        if (userId != null) {
+            sql.append(" AND user_id = ?");
+            args.add(userId);
+        }
+        if (appId != null) {
+            sql.append(" AND app_id = ?");
+            args.add(appId);
+        }
+        if (modelName != null) {
+            sql.append(" AND model_name = ?");
+            args.add(modelName);
+        }
+        sql.append(" GROUP BY ").append(groupBy);
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> {
+            TokenUsageReportVO row = new TokenUsageReportVO();
+            row.setModelName(rs.getString("model_key"));
+            if (groupDimensions.contains(TokenUsageDimensionEnum.USER)) {
+                row.setUserId(rs.getObject("user_key", Long.class));
+            }
+            if (groupDimensions.contains(TokenUsageDimensionEnum.APP)) {
+                row.setAppId(rs.getObject("app_key", Long.class));
+            }
+            if (groupDimensions.contains(TokenUsageDimensionEnum.DAY)) {
+                row.setDay(rs.getDate("day_key").toLocalDate());
+            }
+            row.setRequestCount(rs.getLong("request_count"));
+            row.setInputTokens(rs.getLong("input_tokens"));
+            row.setOutputTokens(rs.getLong("output_tokens"));
+            row.setTotalTokens(rs.getLong("total_tokens"));
+            return row;
+        }, args.toArray());
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.BIGINT);
+        } else {
+            ps.setLong(index, value);
+        }
+    }
+}
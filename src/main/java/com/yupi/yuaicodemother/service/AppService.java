@@ -28,6 +28,17 @@ public interface AppService extends IService<App> {
      */
     Flux<String> chatToGenCode(Long appId, String message, User loginUser);
 
+    /**
+     * 通过对话生成应用代码
+     *
+     * @param appId     应用 ID
+     * @param message   提示词
+     * @param loginUser 登录用户
+     * @param noCache   是否跳过生成结果缓存和相似应用复用
+     * @return
+     */
+    Flux<String> chatToGenCode(Long appId, String message, User loginUser, boolean noCache);
+
     /**
      * 创建应用
      *
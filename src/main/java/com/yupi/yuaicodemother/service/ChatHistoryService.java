@@ -7,6 +7,7 @@ import com.yupi.yuaicodemother.model.dto.chathistory.ChatHistoryQueryRequest;
 import com.yupi.yuaicodemother.model.entity.ChatHistory;
 import com.yupi.yuaicodemother.model.entity.User;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 
 import java.time.LocalDateTime;
 
@@ -49,6 +50,14 @@ public interface ChatHistoryService extends IService<ChatHistory> {
                                                LocalDateTime lastCreateTime,
                                                User loginUser);
 
+    /**
+     * 应用是否已有对话历史
+     *
+     * @param appId
+     * @return
+     */
+    boolean hasChatHistory(Long appId);
+
     /**
      * 加载对话历史到内存
      *
@@ -59,6 +68,16 @@ public interface ChatHistoryService extends IService<ChatHistory> {
      */
     int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount);
 
+    /**
+     * 准备对话记忆：优先使用 Redis 中已有的记忆，没有时才从数据库加载并一次性写入
+     *
+     * @param appId
+     * @param chatMemoryStore 对话记忆存储
+     * @param maxCount 最多从数据库加载多少条
+     * @return 记忆中的消息条数
+     */
+    int hydrateChatMemory(Long appId, ChatMemoryStore chatMemoryStore, int maxCount);
+
     /**
      * 构造查询条件
      *
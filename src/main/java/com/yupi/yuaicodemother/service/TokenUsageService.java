@@ -0,0 +1,23 @@
+package com.yupi.yuaicodemother.service;
+
+import com.yupi.yuaicodemother.model.dto.tokenusage.TokenUsageReportRequest;
+import com.yupi.yuaicodemother.model.entity.User;
+import com.yupi.yuaicodemother.model.vo.TokenUsageReportVO;
+
+import java.util.List;
+
+/**
+ * Token 用量服务
+ */
+public interface TokenUsageService {
+
+    /**
+     * 按用户、应用、模型、日期聚合 Token 用量和估算费用
+     * 普通用户只能查询自己的用量，管理员可以查询任意用户
+     *
+     * @param tokenUsageReportRequest 报表请求
+     * @param loginUser               登录用户
+     * @return 报表行（按日期倒序、Token 数倒序）
+     */
+    List<TokenUsageReportVO> getUsageReport(TokenUsageReportRequest tokenUsageReportRequest, User loginUser);
+}
@@ -7,12 +7,14 @@ import cn.hutool.core.util.RandomUtil;
 import cn.hutool.core.util.StrUtil;
 import com.mybatisflex.core.query.QueryWrapper;
 import com.mybatisflex.spring.service.impl.ServiceImpl;
-import com.yupi.yuaicodemother.ai.AiCodeGenTypeRoutingService;
-import com.yupi.yuaicodemother.ai.AiCodeGenTypeRoutingServiceFactory;
+import com.yupi.yuaicodemother.ai.routing.CodeGenTypeRouter;
+import com.yupi.yuaicodemother.ai.scheduler.LlmCallContext;
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
 import com.yupi.yuaicodemother.constant.AppConstant;
 import com.yupi.yuaicodemother.core.AiCodeGeneratorFacade;
 import com.yupi.yuaicodemother.core.builder.VueProjectBuilder;
 import com.yupi.yuaicodemother.core.handler.StreamHandlerExecutor;
+import com.yupi.yuaicodemother.core.similar.SimilarAppIndex;
 import com.yupi.yuaicodemother.exception.BusinessException;
 import com.yupi.yuaicodemother.exception.ErrorCode;
 import com.yupi.yuaicodemother.exception.ThrowUtils;
@@ -26,7 +28,7 @@ import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
 import com.yupi.yuaicodemother.model.vo.AppVO;
 import com.yupi.yuaicodemother.model.vo.UserVO;
 import com.yupi.yuaicodemother.monitor.MonitorContext;
-import com.yupi.yuaicodemother.monitor.MonitorContextHolder;
+import com.yupi.yuaicodemother.ratelimter.quota.TokenQuotaService;
 import com.yupi.yuaicodemother.service.AppService;
 import com.yupi.yuaicodemother.service.ChatHistoryService;
 import com.yupi.yuaicodemother.service.ScreenshotService;
@@ -73,14 +75,25 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
     @Resource
     private VueProjectBuilder vueProjectBuilder;
 
+    @Resource
+    private SimilarAppIndex similarAppIndex;
+
     @Resource
     private ScreenshotService screenshotService;
 
     @Resource
-    private AiCodeGenTypeRoutingServiceFactory aiCodeGenTypeRoutingServiceFactory;
+    private CodeGenTypeRouter codeGenTypeRouter;
+
+    @Resource
+    private TokenQuotaService tokenQuotaService;
 
     @Override
     public Flux<String> chatToGenCode(Long appId, String message, User loginUser) {
+        return chatToGenCode(appId, message, loginUser, false);
+    }
+
+    @Override
+    public Flux<String> chatToGenCode(Long appId, String message, User loginUser, boolean noCache) {
         // 1. 参数校验
         ThrowUtils.throwIf(appId == null || appId <= 0, ErrorCode.PARAMS_ERROR, "应用 ID 错误");
         ThrowUtils.throwIf(StrUtil.isBlank(message), ErrorCode.PARAMS_ERROR, "提示词不能为空");
@@ -91,29 +104,31 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         if (!app.getUserId().equals(loginUser.getId())) {
             throw new BusinessException(ErrorCode.NO_AUTH_ERROR, "无权限访问该应用");
         }
+        // 检查今日 Token 额度（只在发起对话时检查，生成过程中用完额度不会中断）
+        tokenQuotaService.checkQuota(loginUser);
         // 4. 获取应用的代码生成类型
         String codeGenType = app.getCodeGenType();
         CodeGenTypeEnum codeGenTypeEnum = CodeGenTypeEnum.getEnumByValue(codeGenType);
         if (codeGenTypeEnum == null) {
             throw new BusinessException(ErrorCode.PARAMS_ERROR, "应用代码生成类型错误");
         }
-        // 5. 在调用 AI 前，先保存用户消息到数据库中
+        // 5. 首轮对话可以复用生成结果缓存和相似应用（需在保存用户消息前判断）
+        boolean reuseResults = !noCache && !chatHistoryService.hasChatHistory(appId);
+        // 在调用 AI 前，先保存用户消息到数据库中
         chatHistoryService.addChatMessage(appId, message, ChatHistoryMessageTypeEnum.USER.getValue(), loginUser.getId());
-        // 6. 设置监控上下文（用户 ID 和应用 ID）
-        MonitorContextHolder.setContext(
-                MonitorContext.builder()
+        // 6. 模型调用上下文：调度按用户公平排队，管理员走优先通道；监控上下文（用户 ID 和应用 ID）随它传递到工具循环线程
+        // 沿用调用方已设置的上下文（GenerationReplayRegistry 在其中设置排队回调），只在订阅期间设置到订阅线程上，不留在请求线程
+        LlmCallContext callContext = LlmCallContext.currentOrCreate()
+                .user(loginUser.getId().toString(), loginUser.getUserRole())
+                .monitorContext(MonitorContext.builder()
                         .userId(loginUser.getId().toString())
                         .appId(appId.toString())
-                        .build()
-        );
-        // 7. 调用 AI 生成代码（流式）
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId);
+                        .build());
+        // 7. 调用 AI 生成代码（流式，订阅时发起模型调用）
+        Flux<StreamMessage> codeStream = LlmCallContext.subscribeWith(callContext,
+                aiCodeGeneratorFacade.generateAndSaveCodeStream(message, codeGenTypeEnum, appId, loginUser.getId(), reuseResults));
         // 8. 收集 AI 响应的内容，并且在完成后保存记录到对话历史
-        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum)
-                .doFinally(signalType -> {
-                    // 流结束时清理（无论成功/失败/取消）
-                    MonitorContextHolder.clearContext();
-                });
+        return streamHandlerExecutor.doExecute(codeStream, chatHistoryService, appId, loginUser, codeGenTypeEnum);
     }
 
     @Override
@@ -127,13 +142,20 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         app.setUserId(loginUser.getId());
         // 应用名称暂时为 initPrompt 前 12 位
         app.setAppName(initPrompt.substring(0, Math.min(initPrompt.length(), 12)));
-        // 使用 AI 智能选择代码生成类型（多例模式）
-        AiCodeGenTypeRoutingService aiCodeGenTypeRoutingService = aiCodeGenTypeRoutingServiceFactory.createAiCodeGenTypeRoutingService();
-        CodeGenTypeEnum selectedCodeGenType = aiCodeGenTypeRoutingService.routeCodeGenType(initPrompt);
+        // 智能选择代码生成类型（本地启发式分类优先，其次路由缓存，最后调用 AI）
+        CodeGenTypeEnum selectedCodeGenType;
+        LlmCallContext.currentOrOpen().user(loginUser.getId().toString(), loginUser.getUserRole());
+        try {
+            selectedCodeGenType = codeGenTypeRouter.route(initPrompt).codeGenType();
+        } finally {
+            LlmCallContext.clear();
+        }
         app.setCodeGenType(selectedCodeGenType.getValue());
         // 插入数据库
         boolean result = this.save(app);
         ThrowUtils.throwIf(!result, ErrorCode.OPERATION_ERROR);
+        // 加入相似应用索引
+        similarAppIndex.add(app.getId(), app.getUserId(), app.getPriority(), initPrompt, selectedCodeGenType);
         log.info("应用创建成功，ID: {}, 类型: {}", app.getId(), selectedCodeGenType.getValue());
         return app.getId();
     }
@@ -302,6 +324,7 @@ public class AppServiceImpl extends ServiceImpl<AppMapper, App> implements AppSe
         } catch (Exception e) {
             log.error("删除应用关联的对话历史失败：{}", e.getMessage());
         }
+        similarAppIndex.remove(appId);
         // 删除应用
         return super.removeById(id);
     }
@@ -17,14 +17,17 @@ import com.yupi.yuaicodemother.model.enums.ChatHistoryMessageTypeEnum;
 import com.yupi.yuaicodemother.service.AppService;
 import com.yupi.yuaicodemother.service.ChatHistoryService;
 import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -90,33 +93,50 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         return this.page(Page.of(1, pageSize), queryWrapper);
     }
 
+    @Override
+    public boolean hasChatHistory(Long appId) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .eq(ChatHistory::getAppId, appId);
+        return this.exists(queryWrapper);
+    }
+
     @Override
     public int loadChatHistoryToMemory(Long appId, MessageWindowChatMemory chatMemory, int maxCount) {
         try {
-            QueryWrapper queryWrapper = QueryWrapper.create()
-                    .eq(ChatHistory::getAppId, appId)
-                    .orderBy(ChatHistory::getCreateTime, false)
-                    .limit(1, maxCount);
-            List<ChatHistory> historyList = this.list(queryWrapper);
-            if (CollUtil.isEmpty(historyList)) {
+            List<ChatMessage> messages = queryHistoryMessages(appId, maxCount);
+            if (messages.isEmpty()) {
                 return 0;
             }
-            // 反转列表，确保按照时间正序（老的在前，新的在后）
-            historyList = historyList.reversed();
-            // 按照时间顺序将消息添加到记忆中
-            int loadedCount = 0;
             // 先清理历史缓存，防止重复加载
             chatMemory.clear();
-            for (ChatHistory history : historyList) {
-                if (ChatHistoryMessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(UserMessage.from(history.getMessage()));
-                } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
-                    chatMemory.add(AiMessage.from(history.getMessage()));
-                }
-                loadedCount++;
+            // 按照时间顺序将消息添加到记忆中
+            messages.forEach(chatMemory::add);
+            log.info("成功为 appId: {} 加载 {} 条历史消息", appId, messages.size());
+            return messages.size();
+        } catch (Exception e) {
+            log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
+            // 加载失败不影响系统运行，只是没有历史上下文
+            return 0;
+        }
+    }
+
+    @Override
+    public int hydrateChatMemory(Long appId, ChatMemoryStore chatMemoryStore, int maxCount) {
+        try {
+            // Redis 中已有记忆（包含工具调用等数据库未保存的消息），直接使用
+            List<ChatMessage> cachedMessages = chatMemoryStore.getMessages(appId);
+            if (CollUtil.isNotEmpty(cachedMessages)) {
+                log.debug("appId: {} 的对话记忆命中 Redis，共 {} 条消息", appId, cachedMessages.size());
+                return cachedMessages.size();
+            }
+            List<ChatMessage> messages = queryHistoryMessages(appId, maxCount);
+            if (messages.isEmpty()) {
+                return 0;
             }
-            log.info("成功为 appId: {} 加载 {} 条历史消息", appId, loadedCount);
-            return loadedCount;
+            // 一次性写入全部消息，避免逐条 add 时每次都整体重写 Redis
+            chatMemoryStore.updateMessages(appId, messages);
+            log.info("成功为 appId: {} 从数据库加载 {} 条历史消息到 Redis", appId, messages.size());
+            return messages.size();
         } catch (Exception e) {
             log.error("加载历史对话失败，appId: {}, error: {}", appId, e.getMessage(), e);
             // 加载失败不影响系统运行，只是没有历史上下文
@@ -124,6 +144,36 @@ public class ChatHistoryServiceImpl extends ServiceImpl<ChatHistoryMapper, ChatH
         }
     }
 
+    /**
+     * 查询最近的对话历史并转换为对话消息
+     *
+     * @param appId    应用 id
+     * @param maxCount 最多查询多少条
+     * @return 按时间正序排列的消息
+     */
+    private List<ChatMessage> queryHistoryMessages(Long appId, int maxCount) {
+        QueryWrapper queryWrapper = QueryWrapper.create()
+                .select(ChatHistory::getMessage, ChatHistory::getMessageType)
+                .eq(ChatHistory::getAppId, appId)
+                .orderBy(ChatHistory::getCreateTime, false)
+                .limit(1, maxCount);
+        List<ChatHistory> historyList = this.list(queryWrapper);
+        if (CollUtil.isEmpty(historyList)) {
+            return List.of();
+        }
+        // 反转列表，确保按照时间正序（老的在前，新的在后）
+        historyList = historyList.reversed();
+        List<ChatMessage> messages = new ArrayList<>(historyList.size());
+        for (ChatHistory history : historyList) {
+            if (ChatHistoryMessageTypeEnum.USER.getValue().equals(history.getMessageType())) {
+                messages.add(UserMessage.from(history.getMessage()));
+            } else if (ChatHistoryMessageTypeEnum.AI.getValue().equals(history.getMessageType())) {
+                messages.add(AiMessage.from(history.getMessage()));
+            }
+        }
+        return messages;
+    }
+
     /**
      * 获取查询包装类
      *
@@ -0,0 +1,125 @@
+package com.yupi.yuaicodemother.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import com.yupi.yuaicodemother.config.TokenLedgerConfig;
+import com.yupi.yuaicodemother.constant.UserConstant;
+import com.yupi.yuaicodemother.exception.ErrorCode;
+import com.yupi.yuaicodemother.exception.ThrowUtils;
+import com.yupi.yuaicodemother.model.dto.tokenusage.TokenUsageReportRequest;
+import com.yupi.yuaicodemother.model.entity.User;
+import com.yupi.yuaicodemother.model.enums.TokenUsageDimensionEnum;
+import com.yupi.yuaicodemother.model.vo.TokenUsageReportVO;
+import com.yupi.yuaicodemother.repository.TokenUsageRepository;
+import com.yupi.yuaicodemother.service.TokenUsageService;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Token 用量服务实现
+ */
+@Service
+public class TokenUsageServiceImpl implements TokenUsageService {
+
+    /**
+     * 单次报表最多查询的天数
+     */
+    private static final int MAX_REPORT_DAYS = 366;
+
+    private static final BigDecimal ONE_MILLION = BigDecimal.valueOf(1_000_000);
+
+    @Resource
+    private TokenUsageRepository tokenUsageRepository;
+
+    @Resource
+    private TokenLedgerConfig tokenLedgerConfig;
+
+    @Override
+    public List<TokenUsageReportVO> getUsageReport(TokenUsageReportRequest tokenUsageReportRequest, User loginUser) {
+        ThrowUtils.throwIf(tokenUsageReportRequest == null, ErrorCode.PARAMS_ERROR);
+        // 1. 解析分组维度
+        Set<TokenUsageDimensionEnum> dimensions = EnumSet.noneOf(TokenUsageDimensionEnum.class);
+        List<String> groupBy = tokenUsageReportRequest.getGroupBy();
+        if (CollUtil.isEmpty(groupBy)) {
+            dimensions.add(TokenUsageDimensionEnum.DAY);
+        } else {
+            for (String value : groupBy) {
+                TokenUsageDimensionEnum dimension = TokenUsageDimensionEnum.getEnumByValue(value);
+                ThrowUtils.throwIf(dimension == null, ErrorCode.PARAMS_ERROR, "不支持的分组维度: " + value);
+                dimensions.add(dimension);
+            }
+        }
+        // 2. 校验时间范围
+        LocalDate endDate = tokenUsageReportRequest.getEndDate() != null ? tokenUsageReportRequest.getEndDate() : LocalDate.now();
+        LocalDate startDate = tokenUsageReportRequest.getStartDate() != null ? tokenUsageReportRequest.getStartDate() : endDate.minusDays(29);
+        ThrowUtils.throwIf(startDate.isAfter(endDate), ErrorCode.PARAMS_ERROR, "开始日期不能晚于结束日期");
+        ThrowUtils.throwIf(ChronoUnit.DAYS.between(startDate, endDate) >= MAX_REPORT_DAYS, ErrorCode.PARAMS_ERROR,
+                "查询范围不能超过 " + MAX_REPORT_DAYS + " 天");
+        // 3. 权限校验，普通用户只能查询自己的用量
+        Long userId = tokenUsageReportRequest.getUserId();
+        boolean isAdmin = UserConstant.ADMIN_ROLE.equals(loginUser.getUserRole());
+        if (!isAdmin) {
+            ThrowUtils.throwIf(userId != null && !userId.equals(loginUser.getId()), ErrorCode.NO_AUTH_ERROR, "只能查询自己的用量");
+            userId = loginUser.getId();
+        }
+        // 4. 聚合（结果总是按模型细分，先按模型价格计算费用，再合并到请求的维度）
+        List<TokenUsageReportVO> rows = tokenUsageRepository.aggregate(dimensions,
+                startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay(),
+                userId, tokenUsageReportRequest.getAppId(), tokenUsageReportRequest.getModelName());
+        rows.forEach(row -> row.setCost(calculateCost(row)));
+        if (!dimensions.contains(TokenUsageDimensionEnum.MODEL)) {
+            rows = mergeModels(rows);
+        }
+        rows.sort(Comparator.comparing(TokenUsageReportVO::getDay, Comparator.nullsLast(Comparator.reverseOrder()))
+                .thenComparing(TokenUsageReportVO::getTotalTokens, Comparator.reverseOrder()));
+        return rows;
+    }
+
+    private BigDecimal calculateCost(TokenUsageReportVO row) {
+        TokenLedgerConfig.ModelPrice price = tokenLedgerConfig.getPrices().get(row.getModelName());
+        if (price == null) {
+            return BigDecimal.ZERO;
+        }
+        return price.getInput().multiply(BigDecimal.valueOf(row.getInputTokens()))
+                .add(price.getOutput().multiply(BigDecimal.valueOf(row.getOutputTokens())))
+                .divide(ONE_MILLION, 6, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 合并同一用户、应用、日期下不同模型的用量
+     */
+    private List<TokenUsageReportVO> mergeModels(List<TokenUsageReportVO> rows) {
+        Map<List<Object>, TokenUsageReportVO> merged = new LinkedHashMap<>();
+        for (TokenUsageReportVO row : rows) {
+            List<Object> key = new ArrayList<>(3);
+            key.add(row.getUserId());
+            key.add(row.getAppId());
+            key.add(row.getDay());
+            TokenUsageReportVO target = merged.computeIfAbsent(key, k -> {
+                TokenUsageReportVO vo = new TokenUsageReportVO();
+                vo.setUserId(row.getUserId());
+                vo.setAppId(row.getAppId());
+                vo.setDay(row.getDay());
+                vo.setCost(BigDecimal.ZERO);
+                return vo;
+            });
+            target.setRequestCount(target.getRequestCount() + row.getRequestCount());
+            target.setInputTokens(target.getInputTokens() + row.getInputTokens());
+            target.setOutputTokens(target.getOutputTokens() + row.getOutputTokens());
+            target.setTotalTokens(target.getTotalTokens() + row.getTotalTokens());
+            target.setCost(target.getCost().add(row.getCost()));
+        }
+        return new ArrayList<>(merged.values());
+    }
+}
@@ -58,4 +58,14 @@ public interface StreamingChatResponseHandler {
      * @param error The error that occurred
      */
     void onError(Throwable error);
+
+    /**
+     * Polled by the model while streaming. Once it returns {@code true}, the model stops reading the response,
+     * closes the underlying HTTP stream and does not invoke any further callbacks.
+     *
+     * @return {@code true} if the consumer is no longer interested in the response
+     */
+    default boolean isCancelled() {
+        return false;
+    }
 }
@@ -21,6 +21,7 @@ import dev.langchain4j.model.openai.spi.OpenAiStreamingChatModelBuilderFactory;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static dev.langchain4j.internal.InternalStreamingChatResponseHandlerUtils.withLoggingExceptions;
 import static dev.langchain4j.internal.Utils.*;
@@ -122,12 +123,21 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
         OpenAiStreamingResponseBuilder openAiResponseBuilder = new OpenAiStreamingResponseBuilder();
         ToolExecutionRequestBuilder toolBuilder = new ToolExecutionRequestBuilder();
 
+        AtomicBoolean aborted = new AtomicBoolean();
+
         client.chatCompletion(openAiRequest)
                 .onPartialResponse(partialResponse -> {
+                    if (handler.isCancelled()) {
+                        // Thrown from the SSE listener so that the parser loop exits and the response body is closed
+                        throw StreamCancelledException.INSTANCE;
+                    }
                     openAiResponseBuilder.append(partialResponse);
                     handle(partialResponse, toolBuilder, handler);
                 })
                 .onComplete(() -> {
+                    if (handler.isCancelled()) {
+                        return;
+                    }
                     if (toolBuilder.hasToolExecutionRequests()) {
                         try {
                             handler.onCompleteToolExecutionRequest(toolBuilder.index(), toolBuilder.build());
@@ -143,12 +153,32 @@ public class OpenAiStreamingChatModel implements StreamingChatModel {
                     }
                 })
                 .onError(throwable -> {
+                    if (throwable instanceof StreamCancelledException || handler.isCancelled()) {
+                        // The client reports listener exceptions via onError while still inside the parser loop,
+                        // rethrowing once aborts the read and closes the connection; later reports are ignored
+                        if (aborted.compareAndSet(false, true)) {
+                            throw StreamCancelledException.INSTANCE;
+                        }
+                        return;
+                    }
                     RuntimeException mappedException = ExceptionMapper.DEFAULT.mapException(throwable);
                     withLoggingExceptions(() -> handler.onError(mappedException));
                 })
                 .execute();
     }
 
+    /**
+     * Signals that the consumer cancelled the stream. Carries no stack trace, it is used for control flow only.
+     */
+    private static final class StreamCancelledException extends RuntimeException {
+
+        private static final StreamCancelledException INSTANCE = new StreamCancelledException();
+
+        private StreamCancelledException() {
+            super("Streaming response cancelled by the consumer", null, false, false);
+        }
+    }
+
     private static void handle(ChatCompletionResponse partialResponse,
                                ToolExecutionRequestBuilder toolBuilder,
                                StreamingChatResponseHandler handler) {
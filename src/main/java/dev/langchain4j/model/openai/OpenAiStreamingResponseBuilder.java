@@ -11,40 +11,56 @@ import dev.langchain4j.model.openai.internal.shared.Usage;
 import dev.langchain4j.model.output.FinishReason;
 import dev.langchain4j.model.output.TokenUsage;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static dev.langchain4j.internal.Utils.isNullOrBlank;
 import static dev.langchain4j.internal.Utils.isNullOrEmpty;
 import static dev.langchain4j.model.openai.internal.OpenAiUtils.finishReasonFrom;
 import static dev.langchain4j.model.openai.internal.OpenAiUtils.tokenUsageFrom;
 import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.toList;
 
 /**
- * This class needs to be thread safe because it is called when a streaming result comes back
- * and there is no guarantee that this thread will be the same as the one that initiated the request,
- * in fact it almost certainly won't be.
+ * Accumulates the deltas of a single streaming response.
+ * <p>
+ * This class is NOT thread safe. All deltas of one response are delivered sequentially by the HTTP client's
+ * reading thread, and {@link #build()} is called on that same thread once the stream completes, so a single
+ * writer is guaranteed and no synchronization is needed. Use one instance per response.
  */
 @Internal
 public class OpenAiStreamingResponseBuilder {
 
-    private final StringBuffer contentBuilder = new StringBuffer();
+    private static final int DEFAULT_CONTENT_CAPACITY = 2048;
+    private static final int TOOL_ARGUMENTS_CAPACITY = 512;
 
-    private final StringBuffer toolNameBuilder = new StringBuffer();
-    private final StringBuffer toolArgumentsBuilder = new StringBuffer();
+    private final StringBuilder contentBuilder;
 
-    private final Map<Integer, ToolExecutionRequestBuilder> indexToToolExecutionRequestBuilder = new ConcurrentHashMap<>();
+    private StringBuilder toolNameBuilder;
+    private StringBuilder toolArgumentsBuilder;
 
-    private final AtomicReference<String> id = new AtomicReference<>();
-    private final AtomicReference<Long> created = new AtomicReference<>();
-    private final AtomicReference<String> model = new AtomicReference<>();
-    private final AtomicReference<String> serviceTier = new AtomicReference<>();
-    private final AtomicReference<String> systemFingerprint = new AtomicReference<>();
-    private final AtomicReference<TokenUsage> tokenUsage = new AtomicReference<>();
-    private final AtomicReference<FinishReason> finishReason = new AtomicReference<>();
+    /**
+     * Tool call builders indexed by the tool call index, in the order the model emitted them.
+     */
+    private final List<ToolExecutionRequestBuilder> toolExecutionRequestBuilders = new ArrayList<>(2);
+
+    private String id;
+    private Long created;
+    private String model;
+    private String serviceTier;
+    private String systemFingerprint;
+    private TokenUsage tokenUsage;
+    private FinishReason finishReason;
+
+    public OpenAiStreamingResponseBuilder() {
+        this(DEFAULT_CONTENT_CAPACITY);
+    }
+
+    /**
+     * @param expectedContentLength expected length of the textual response, used to presize the content buffer
+     */
+    public OpenAiStreamingResponseBuilder(int expectedContentLength) {
+        this.contentBuilder = new StringBuilder(Math.max(16, expectedContentLength));
+    }
 
     public void append(ChatCompletionResponse partialResponse) {
         if (partialResponse == null) {
@@ -52,24 +68,24 @@ public class OpenAiStreamingResponseBuilder {
         }
 
         if (!isNullOrBlank(partialResponse.id())) {
-            this.id.set(partialResponse.id());
+            this.id = partialResponse.id();
         }
         if (partialResponse.created() != null) {
-            this.created.set(partialResponse.created());
+            this.created = partialResponse.created();
         }
         if (!isNullOrBlank(partialResponse.model())) {
-            this.model.set(partialResponse.model());
+            this.model = partialResponse.model();
         }
         if (!isNullOrBlank(partialResponse.serviceTier())) {
-            this.serviceTier.set(partialResponse.serviceTier());
+            this.serviceTier = partialResponse.serviceTier();
         }
         if (!isNullOrBlank(partialResponse.systemFingerprint())) {
-            this.systemFingerprint.set(partialResponse.systemFingerprint());
+            this.systemFingerprint = partialResponse.systemFingerprint();
         }
 
         Usage usage = partialResponse.usage();
         if (usage != null) {
-            this.tokenUsage.set(tokenUsageFrom(usage));
+            this.tokenUsage = tokenUsageFrom(usage);
         }
 
         List<ChatCompletionChoice> choices = partialResponse.choices();
@@ -84,7 +100,7 @@ public class OpenAiStreamingResponseBuilder {
 
         String finishReason = chatCompletionChoice.finishReason();
         if (finishReason != null) {
-            this.finishReason.set(finishReasonFrom(finishReason));
+            this.finishReason = finishReasonFrom(finishReason);
         }
 
         Delta delta = chatCompletionChoice.delta();
@@ -101,29 +117,34 @@ public class OpenAiStreamingResponseBuilder {
             FunctionCall functionCall = delta.functionCall();
 
             if (functionCall.name() != null) {
+                if (this.toolNameBuilder == null) {
+                    this.toolNameBuilder = new StringBuilder(32);
+                }
                 this.toolNameBuilder.append(functionCall.name());
             }
 
             if (functionCall.arguments() != null) {
+                if (this.toolArgumentsBuilder == null) {
+                    this.toolArgumentsBuilder = new StringBuilder(TOOL_ARGUMENTS_CAPACITY);
+                }
                 this.toolArgumentsBuilder.append(functionCall.arguments());
             }
         }
 
-        if (delta.toolCalls() != null) {
-            System.out.println("OLOLO " + delta.toolCalls()); // TODO
-
-            for (ToolCall toolCall : delta.toolCalls()) {
-
-                ToolExecutionRequestBuilder builder = this.indexToToolExecutionRequestBuilder.computeIfAbsent(
-                        toolCall.index(),
-                        idx -> new ToolExecutionRequestBuilder()
-                );
+        List<ToolCall> toolCalls = delta.toolCalls();
+        if (toolCalls != null) {
+            for (int i = 0, size = toolCalls.size(); i < size; i++) {
+                ToolCall toolCall = toolCalls.get(i);
+                ToolExecutionRequestBuilder builder = toolExecutionRequestBuilder(toolCall.index());
 
                 if (toolCall.id() != null) {
                     builder.idBuilder.append(toolCall.id());
                 }
 
                 FunctionCall functionCall = toolCall.function();
+                if (functionCall == null) {
+                    continue;
+                }
                 if (functionCall.name() != null) {
                     builder.nameBuilder.append(functionCall.name());
                 }
@@ -135,6 +156,19 @@ public class OpenAiStreamingResponseBuilder {
         }
     }
 
+    private ToolExecutionRequestBuilder toolExecutionRequestBuilder(Integer index) {
+        int idx = index == null ? 0 : index;
+        while (toolExecutionRequestBuilders.size() <= idx) {
+            toolExecutionRequestBuilders.add(null);
+        }
+        ToolExecutionRequestBuilder builder = toolExecutionRequestBuilders.get(idx);
+        if (builder == null) {
+            builder = new ToolExecutionRequestBuilder();
+            toolExecutionRequestBuilders.set(idx, builder);
+        }
+        return builder;
+    }
+
     public void append(CompletionResponse partialResponse) {
         if (partialResponse == null) {
             return;
@@ -142,7 +176,7 @@ public class OpenAiStreamingResponseBuilder {
 
         Usage usage = partialResponse.usage();
         if (usage != null) {
-            this.tokenUsage.set(tokenUsageFrom(usage));
+            this.tokenUsage = tokenUsageFrom(usage);
         }
 
         List<CompletionChoice> choices = partialResponse.choices();
@@ -157,7 +191,7 @@ public class OpenAiStreamingResponseBuilder {
 
         String finishReason = completionChoice.finishReason();
         if (finishReason != null) {
-            this.finishReason.set(finishReasonFrom(finishReason));
+            this.finishReason = finishReasonFrom(finishReason);
         }
 
         String token = completionChoice.text();
@@ -169,22 +203,21 @@ public class OpenAiStreamingResponseBuilder {
     public ChatResponse build() {
 
         OpenAiChatResponseMetadata chatResponseMetadata = OpenAiChatResponseMetadata.builder()
-                .id(id.get())
-                .modelName(model.get())
-                .tokenUsage(tokenUsage.get())
-                .finishReason(finishReason.get())
-                .created(created.get())
-                .serviceTier(serviceTier.get())
-                .systemFingerprint(systemFingerprint.get())
+                .id(id)
+                .modelName(model)
+                .tokenUsage(tokenUsage)
+                .finishReason(finishReason)
+                .created(created)
+                .serviceTier(serviceTier)
+                .systemFingerprint(systemFingerprint)
                 .build();
 
         String text = contentBuilder.toString();
 
-        String toolName = toolNameBuilder.toString();
-        if (!toolName.isEmpty()) {
+        if (toolNameBuilder != null && !toolNameBuilder.isEmpty()) {
             ToolExecutionRequest toolExecutionRequest = ToolExecutionRequest.builder()
-                    .name(toolName)
-                    .arguments(toolArgumentsBuilder.toString())
+                    .name(toolNameBuilder.toString())
+                    .arguments(toolArgumentsBuilder == null ? "" : toolArgumentsBuilder.toString())
                     .build();
 
             AiMessage aiMessage = isNullOrBlank(text) ?
@@ -197,14 +230,18 @@ public class OpenAiStreamingResponseBuilder {
                     .build();
         }
 
-        if (!indexToToolExecutionRequestBuilder.isEmpty()) {
-            List<ToolExecutionRequest> toolExecutionRequests = indexToToolExecutionRequestBuilder.values().stream()
-                    .map(it -> ToolExecutionRequest.builder()
-                            .id(it.idBuilder.toString())
-                            .name(it.nameBuilder.toString())
-                            .arguments(it.argumentsBuilder.toString())
-                            .build())
-                    .collect(toList());
+        if (!toolExecutionRequestBuilders.isEmpty()) {
+            List<ToolExecutionRequest> toolExecutionRequests = new ArrayList<>(toolExecutionRequestBuilders.size());
+            for (ToolExecutionRequestBuilder it : toolExecutionRequestBuilders) {
+                if (it == null) {
+                    continue;
+                }
+                toolExecutionRequests.add(ToolExecutionRequest.builder()
+                        .id(it.idBuilder.toString())
+                        .name(it.nameBuilder.toString())
+                        .arguments(it.argumentsBuilder.toString())
+                        .build());
+            }
 
             AiMessage aiMessage = isNullOrBlank(text) ?
                     AiMessage.from(toolExecutionRequests) :
@@ -229,8 +266,8 @@ public class OpenAiStreamingResponseBuilder {
 
     private static class ToolExecutionRequestBuilder {
 
-        private final StringBuffer idBuilder = new StringBuffer();
-        private final StringBuffer nameBuilder = new StringBuffer();
-        private final StringBuffer argumentsBuilder = new StringBuffer();
+        private final StringBuilder idBuilder = new StringBuilder(48);
+        private final StringBuilder nameBuilder = new StringBuilder(32);
+        private final StringBuilder argumentsBuilder = new StringBuilder(TOOL_ARGUMENTS_CAPACITY);
     }
 }
@@ -20,8 +20,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -31,6 +37,12 @@ import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
 /**
  * Handles response from a language model for AI Service that is streamed token-by-token. Handles both regular (text)
  * responses and responses with the request to execute one or multiple tools.
+ * <p>
+ * One instance drives the whole tool loop of a session. The loop runs on its own virtual thread: it sends a request,
+ * waits until this handler receives the complete response, executes the requested tools and sends the follow-up
+ * request, until the model answers without tools, a limit of the {@link ToolLoopPolicy} is reached, the stream is
+ * cancelled, or an error occurs. The HTTP callback thread only completes the current round, so no handler chain is
+ * built and nothing from earlier rounds stays reachable except the bounded {@link ToolLoopState}.
  */
 @Internal
 class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler {
@@ -51,12 +63,17 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
     private final Consumer<Throwable> errorHandler;
 
     private final ChatMemory temporaryMemory;
-    private final TokenUsage tokenUsage;
 
     private final List<ToolSpecification> toolSpecifications;
     private final Map<String, ToolExecutor> toolExecutors;
+    private final ParallelToolExecutionPolicy parallelPolicy;
     private final List<String> responseBuffer = new ArrayList<>();
     private final boolean hasOutputGuardrails;
+    private final AtomicBoolean cancelled;
+
+    private final ToolLoopPolicy loopPolicy;
+    private final ToolLoopState loopState;
+    private volatile CompletableFuture<ChatResponse> currentRound;
 
     AiServiceStreamingResponseHandler(
             ChatExecutor chatExecutor,
@@ -72,8 +89,11 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
             TokenUsage tokenUsage,
             List<ToolSpecification> toolSpecifications,
             Map<String, ToolExecutor> toolExecutors,
+            ToolLoopPolicy loopPolicy,
+            ParallelToolExecutionPolicy parallelPolicy,
             GuardrailRequestParams commonGuardrailParams,
-            Object methodKey) {
+            Object methodKey,
+            AtomicBoolean cancelled) {
         this.chatExecutor = ensureNotNull(chatExecutor, "chatExecutor");
         this.context = ensureNotNull(context, "context");
         this.memoryId = ensureNotNull(memoryId, "memoryId");
@@ -87,16 +107,49 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
         this.errorHandler = errorHandler;
 
         this.temporaryMemory = temporaryMemory;
-        this.tokenUsage = ensureNotNull(tokenUsage, "tokenUsage");
         this.commonGuardrailParams = commonGuardrailParams;
 
         this.toolSpecifications = copy(toolSpecifications);
         this.toolExecutors = copy(toolExecutors);
+        this.parallelPolicy = ensureNotNull(parallelPolicy, "parallelPolicy");
         this.hasOutputGuardrails = context.guardrailService().hasOutputGuardrails(methodKey);
+        this.cancelled = ensureNotNull(cancelled, "cancelled");
+
+        this.loopPolicy = ensureNotNull(loopPolicy, "loopPolicy");
+        this.loopState = new ToolLoopState(loopPolicy.maxRounds(), loopPolicy.maxDuration(), loopPolicy.maxTokens(),
+                ensureNotNull(tokenUsage, "tokenUsage"));
+    }
+
+    /**
+     * Starts the tool loop with the initial request. Returns immediately.
+     * The loop thread inherits nothing; the {@link ToolLoopContextPropagator} of the service captures the caller's
+     * context here and installs it on that thread.
+     */
+    void start(ChatRequest chatRequest) {
+        Runnable loop = context.toolLoopContextPropagator.wrap(() -> runLoop(chatRequest));
+        Thread.ofVirtual().name("ai-service-tool-loop").inheritInheritableThreadLocals(false).start(loop);
+    }
+
+    /**
+     * Wakes up the loop driver if it is waiting for a response. The cancelled flag must already be set.
+     */
+    void cancel() {
+        CompletableFuture<ChatResponse> round = currentRound;
+        if (round != null) {
+            round.cancel(false);
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get();
     }
 
     @Override
     public void onPartialResponse(String partialResponse) {
+        if (isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         if (hasOutputGuardrails) {
             responseBuffer.add(partialResponse);
@@ -107,95 +160,268 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onPartialToolExecutionRequest(int index, ToolExecutionRequest partialToolExecutionRequest) {
+        if (isCancelled()) {
+            return;
+        }
         // If we're using output guardrails, then buffer the partial response until the guardrails have completed
         partialToolExecutionRequestHandler.accept(index, partialToolExecutionRequest);
     }
 
     @Override
     public void onCompleteResponse(ChatResponse completeResponse) {
-        AiMessage aiMessage = completeResponse.aiMessage();
-        addToMemory(aiMessage);
-
-        if (aiMessage.hasToolExecutionRequests()) {
-            for (ToolExecutionRequest toolExecutionRequest : aiMessage.toolExecutionRequests()) {
-                String toolName = toolExecutionRequest.name();
-                ToolExecutor toolExecutor = toolExecutors.get(toolName);
-                String toolExecutionResult = toolExecutor.execute(toolExecutionRequest, memoryId);
-                ToolExecutionResultMessage toolExecutionResultMessage =
-                        ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult);
-                addToMemory(toolExecutionResultMessage);
-
-                if (toolExecutionHandler != null) {
-                    ToolExecution toolExecution = ToolExecution.builder()
-                            .request(toolExecutionRequest)
-                            .result(toolExecutionResult)
-                            .build();
-                    toolExecutionHandler.accept(toolExecution);
-                }
+        CompletableFuture<ChatResponse> round = currentRound;
+        if (round != null) {
+            round.complete(completeResponse);
+        }
+    }
+
+    private void runLoop(ChatRequest chatRequest) {
+        ToolLoopState.Outcome outcome = ToolLoopState.Outcome.FAILED;
+        try {
+            outcome = doRunLoop(chatRequest);
+        } catch (CancellationException e) {
+            outcome = ToolLoopState.Outcome.CANCELLED;
+        } catch (Exception e) {
+            Throwable error = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (isCancelled()) {
+                outcome = ToolLoopState.Outcome.CANCELLED;
+                LOG.debug("Ignored error after cancellation", error);
+            } else {
+                handleError(error);
+            }
+        } finally {
+            currentRound = null;
+            try {
+                loopPolicy.listener().onLoopFinished(memoryId, loopState, outcome);
+            } catch (Exception e) {
+                LOG.warn("Tool loop listener failed", e);
+            }
+        }
+    }
+
+    private ToolLoopState.Outcome doRunLoop(ChatRequest chatRequest) {
+        ChatRequest request = chatRequest;
+        while (true) {
+            // Only the final answer goes through the output guardrails, text buffered in tool rounds is dropped
+            responseBuffer.clear();
+            long roundStart = System.nanoTime();
+            ChatResponse completeResponse = awaitResponse(request);
+            long modelNanos = System.nanoTime() - roundStart;
+            if (completeResponse == null || isCancelled()) {
+                LOG.debug("Token stream cancelled, skipping tool execution and completion callbacks");
+                return ToolLoopState.Outcome.CANCELLED;
+            }
+
+            AiMessage aiMessage = completeResponse.aiMessage();
+            addToMemory(aiMessage);
+            TokenUsage roundTokenUsage = completeResponse.metadata().tokenUsage();
+
+            if (!aiMessage.hasToolExecutionRequests()) {
+                recordRound(modelNanos, 0, 0, roundTokenUsage);
+                completeSession(completeResponse, ToolLoopState.Outcome.COMPLETED);
+                return ToolLoopState.Outcome.COMPLETED;
+            }
+
+            List<ToolExecutionRequest> toolExecutionRequests = aiMessage.toolExecutionRequests();
+            long toolStart = System.nanoTime();
+            boolean executed = executeTools(toolExecutionRequests);
+            recordRound(modelNanos, System.nanoTime() - toolStart, toolExecutionRequests.size(), roundTokenUsage);
+            if (!executed || isCancelled()) {
+                return ToolLoopState.Outcome.CANCELLED;
+            }
+
+            ToolLoopState.Outcome limit = loopState.limitReached();
+            if (limit != null) {
+                LOG.warn("Tool loop stopped ({}) after {} rounds, {} tool calls and {} ms",
+                        limit, loopState.rounds(), loopState.toolCalls(), loopState.elapsed().toMillis());
+                completeSession(completeResponse, limit);
+                return limit;
             }
 
-            ChatRequest chatRequest = ChatRequest.builder()
+            request = ChatRequest.builder()
                     .messages(messagesToSend(memoryId))
                     .toolSpecifications(toolSpecifications)
                     .build();
+        }
+    }
 
-            var handler = new AiServiceStreamingResponseHandler(
-                    chatExecutor,
-                    context,
-                    memoryId,
-                    partialResponseHandler,
-                    partialToolExecutionRequestHandler,
-                    completeToolExecutionRequestHandler,
-                    toolExecutionHandler,
-                    completeResponseHandler,
-                    errorHandler,
-                    temporaryMemory,
-                    TokenUsage.sum(tokenUsage, completeResponse.metadata().tokenUsage()),
-                    toolSpecifications,
-                    toolExecutors,
-                    commonGuardrailParams,
-                    methodKey);
-
-            context.streamingChatModel.chat(chatRequest, handler);
-        } else {
-            if (completeResponseHandler != null) {
-                ChatResponse finalChatResponse = ChatResponse.builder()
-                        .aiMessage(aiMessage)
-                        .metadata(completeResponse.metadata().toBuilder()
-                                .tokenUsage(tokenUsage.add(
-                                        completeResponse.metadata().tokenUsage()))
-                                .build())
+    /**
+     * Sends the request with this instance as the handler and blocks the loop thread until the response is complete.
+     *
+     * @return the complete response, or {@code null} if the stream was cancelled before the request was sent
+     */
+    private ChatResponse awaitResponse(ChatRequest request) {
+        CompletableFuture<ChatResponse> round = new CompletableFuture<>();
+        currentRound = round;
+        if (isCancelled()) {
+            return null;
+        }
+        try {
+            context.streamingChatModel.chat(request, this);
+        } catch (RuntimeException e) {
+            round.completeExceptionally(e);
+        }
+        return round.join();
+    }
+
+    private void recordRound(long modelNanos, long toolNanos, int toolCalls, TokenUsage roundTokenUsage) {
+        ToolLoopRound round = loopState.recordRound(modelNanos, toolNanos, toolCalls, roundTokenUsage);
+        try {
+            loopPolicy.listener().onRoundCompleted(memoryId, round);
+        } catch (Exception e) {
+            LOG.warn("Tool loop listener failed", e);
+        }
+    }
+
+    /**
+     * @return {@code false} if the stream was cancelled while executing the tools
+     */
+    private boolean executeTools(List<ToolExecutionRequest> toolExecutionRequests) {
+        if (parallelPolicy.appliesTo(toolExecutionRequests)) {
+            executeToolsConcurrently(toolExecutionRequests, parallelPolicy);
+            return !isCancelled();
+        }
+        for (ToolExecutionRequest toolExecutionRequest : toolExecutionRequests) {
+            if (isCancelled()) {
+                return false;
+            }
+            onToolExecuted(toolExecutionRequest, executeTool(toolExecutionRequest));
+        }
+        return true;
+    }
+
+    /**
+     * @param outcome {@link ToolLoopState.Outcome#COMPLETED}, or the limit that stopped the loop; then the last response
+     *                is a tool request, output guardrails are skipped and the termination message of the policy is
+     *                streamed before completing (it is not added to the chat memory)
+     */
+    private void completeSession(ChatResponse completeResponse, ToolLoopState.Outcome outcome) {
+        boolean runGuardrails = outcome == ToolLoopState.Outcome.COMPLETED;
+        if (completeResponseHandler == null) {
+            streamTerminationMessage(outcome);
+            return;
+        }
+        ChatResponse finalChatResponse = ChatResponse.builder()
+                .aiMessage(completeResponse.aiMessage())
+                .metadata(completeResponse.metadata().toBuilder()
+                        .tokenUsage(loopState.tokenUsage())
+                        .build())
+                .build();
+
+        if (hasOutputGuardrails) {
+            // Invoke output guardrails
+            if (runGuardrails && commonGuardrailParams != null) {
+                var newCommonParams = GuardrailRequestParams.builder()
+                        .chatMemory(getMemory())
+                        .augmentationResult(commonGuardrailParams.augmentationResult())
+                        .userMessageTemplate(commonGuardrailParams.userMessageTemplate())
+                        .variables(commonGuardrailParams.variables())
                         .build();
 
-                // Invoke output guardrails
-                if (hasOutputGuardrails) {
-                    if (commonGuardrailParams != null) {
-                        var newCommonParams = GuardrailRequestParams.builder()
-                                .chatMemory(getMemory())
-                                .augmentationResult(commonGuardrailParams.augmentationResult())
-                                .userMessageTemplate(commonGuardrailParams.userMessageTemplate())
-                                .variables(commonGuardrailParams.variables())
-                                .build();
-
-                        var outputGuardrailParams = OutputGuardrailRequest.builder()
-                                .responseFromLLM(finalChatResponse)
-                                .chatExecutor(chatExecutor)
-                                .requestParams(newCommonParams)
-                                .build();
-
-                        finalChatResponse =
-                                context.guardrailService().executeGuardrails(methodKey, outputGuardrailParams);
-                    }
-
-                    // If we have output guardrails, we should process all of the partial responses first before
-                    // completing
-                    responseBuffer.forEach(partialResponseHandler::accept);
-                    responseBuffer.clear();
-                }
+                var outputGuardrailParams = OutputGuardrailRequest.builder()
+                        .responseFromLLM(finalChatResponse)
+                        .chatExecutor(chatExecutor)
+                        .requestParams(newCommonParams)
+                        .build();
 
-                // TODO should completeResponseHandler accept all ChatResponses that happened?
-                completeResponseHandler.accept(finalChatResponse);
+                finalChatResponse = context.guardrailService().executeGuardrails(methodKey, outputGuardrailParams);
             }
+
+            // If we have output guardrails, we should process all of the partial responses first before
+            // completing
+            responseBuffer.forEach(partialResponseHandler::accept);
+            responseBuffer.clear();
+        }
+
+        streamTerminationMessage(outcome);
+        // TODO should completeResponseHandler accept all ChatResponses that happened?
+        completeResponseHandler.accept(finalChatResponse);
+    }
+
+    private void streamTerminationMessage(ToolLoopState.Outcome outcome) {
+        if (outcome == ToolLoopState.Outcome.COMPLETED) {
+            return;
+        }
+        String terminationMessage = loopPolicy.terminationMessage(outcome);
+        if (terminationMessage != null) {
+            partialResponseHandler.accept(terminationMessage);
+        }
+    }
+
+    private String executeTool(ToolExecutionRequest toolExecutionRequest) {
+        ToolExecutor toolExecutor = toolExecutors.get(toolExecutionRequest.name());
+        return toolExecutor.execute(toolExecutionRequest, memoryId);
+    }
+
+    private void onToolExecuted(ToolExecutionRequest toolExecutionRequest, String toolExecutionResult) {
+        ToolExecutionResultMessage toolExecutionResultMessage =
+                ToolExecutionResultMessage.from(toolExecutionRequest, toolExecutionResult);
+        addToMemory(toolExecutionResultMessage);
+
+        if (toolExecutionHandler != null) {
+            ToolExecution toolExecution = ToolExecution.builder()
+                    .request(toolExecutionRequest)
+                    .result(toolExecutionResult)
+                    .build();
+            toolExecutionHandler.accept(toolExecution);
+        }
+    }
+
+    /**
+     * Executes the requests on the executor of the policy, then appends the results in request order.
+     * Requests sharing a conflict key are chained, requests without a key wait for everything scheduled before them.
+     */
+    private void executeToolsConcurrently(List<ToolExecutionRequest> toolExecutionRequests,
+                                          ParallelToolExecutionPolicy policy) {
+        Semaphore permits = new Semaphore(policy.maxConcurrency());
+        List<CompletableFuture<String>> futures = new ArrayList<>(toolExecutionRequests.size());
+        Map<String, CompletableFuture<String>> lastByConflictKey = new HashMap<>();
+        CompletableFuture<?> barrier = CompletableFuture.completedFuture(null);
+
+        for (ToolExecutionRequest toolExecutionRequest : toolExecutionRequests) {
+            String conflictKey = policy.conflictKey(toolExecutionRequest);
+            CompletableFuture<?> dependency;
+            if (conflictKey == null) {
+                dependency = CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+            } else {
+                CompletableFuture<String> previous = lastByConflictKey.get(conflictKey);
+                dependency = previous == null ? barrier : CompletableFuture.allOf(barrier, previous);
+            }
+            CompletableFuture<String> future = dependency
+                    .handle((ignored, error) -> null)
+                    .thenApplyAsync(ignored -> {
+                        if (isCancelled()) {
+                            return null;
+                        }
+                        permits.acquireUninterruptibly();
+                        try {
+                            return executeTool(toolExecutionRequest);
+                        } finally {
+                            permits.release();
+                        }
+                    }, policy.executor());
+            futures.add(future);
+            if (conflictKey == null) {
+                barrier = future;
+            } else {
+                lastByConflictKey.put(conflictKey, future);
+            }
+        }
+
+        for (int i = 0; i < toolExecutionRequests.size(); i++) {
+            String toolExecutionResult;
+            try {
+                toolExecutionResult = futures.get(i).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw e;
+            }
+            if (isCancelled()) {
+                return;
+            }
+            onToolExecuted(toolExecutionRequests.get(i), toolExecutionResult);
         }
     }
 
@@ -217,6 +443,17 @@ class AiServiceStreamingResponseHandler implements StreamingChatResponseHandler
 
     @Override
     public void onError(Throwable error) {
+        CompletableFuture<ChatResponse> round = currentRound;
+        if (round != null) {
+            round.completeExceptionally(error);
+        } else if (isCancelled()) {
+            LOG.debug("Ignored error after cancellation", error);
+        } else {
+            handleError(error);
+        }
+    }
+
+    private void handleError(Throwable error) {
         if (errorHandler != null) {
             try {
                 errorHandler.accept(error);
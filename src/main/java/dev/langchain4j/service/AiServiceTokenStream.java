@@ -17,6 +17,7 @@ import dev.langchain4j.service.tool.ToolExecutor;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -44,6 +45,9 @@ public class AiServiceTokenStream implements TokenStream {
     private BiConsumer<Integer, ToolExecutionRequest> partialToolExecutionRequestHandler;
     private BiConsumer<Integer, ToolExecutionRequest> completeToolExecutionRequestHandler;
 
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile AiServiceStreamingResponseHandler handler;
+
     private int onPartialResponseInvoked;
     private int onCompleteResponseInvoked;
     private int onRetrievedInvoked;
@@ -137,7 +141,7 @@ public class AiServiceTokenStream implements TokenStream {
                 .chatRequest(chatRequest)
                 .build();
 
-        var handler = new AiServiceStreamingResponseHandler(
+        this.handler = new AiServiceStreamingResponseHandler(
                 chatExecutor,
                 context,
                 memoryId,
@@ -151,14 +155,31 @@ public class AiServiceTokenStream implements TokenStream {
                 new TokenUsage(),
                 toolSpecifications,
                 toolExecutors,
+                context.toolLoopPolicy,
+                context.parallelToolExecutionPolicy,
                 commonGuardrailParams,
-                methodKey);
+                methodKey,
+                cancelled);
 
         if (contentsHandler != null && retrievedContents != null) {
             contentsHandler.accept(retrievedContents);
         }
 
-        context.streamingChatModel.chat(chatRequest, handler);
+        handler.start(chatRequest);
+    }
+
+    @Override
+    public void cancel() {
+        cancelled.set(true);
+        AiServiceStreamingResponseHandler handler = this.handler;
+        if (handler != null) {
+            handler.cancel();
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get();
     }
 
     private void validateConfiguration() {
@@ -0,0 +1,92 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import static dev.langchain4j.internal.Utils.copy;
+import static dev.langchain4j.internal.ValidationUtils.ensureNotNull;
+
+/**
+ * Opt-in policy for executing the tool requests of one model turn concurrently.
+ * <p>
+ * Only tools that have a conflict key resolver are executed in parallel. Requests whose resolvers return the same
+ * key (for example, the same file path for {@code writeFile} and {@code modifyFile}) are executed one after another,
+ * in request order. Requests for tools without a resolver, or whose resolver returns {@code null}, act as barriers:
+ * they start after all previous requests have finished, and later requests wait for them.
+ * <p>
+ * The policy is set per AI Service with {@link #applyTo(AiServices)}; services without one execute tools sequentially.
+ * Results are always appended to the chat memory in request order.
+ */
+public final class ParallelToolExecutionPolicy {
+
+    public static final ParallelToolExecutionPolicy DISABLED = new ParallelToolExecutionPolicy(1, Map.of(), Runnable::run);
+
+    private final int maxConcurrency;
+    private final Map<String, Function<ToolExecutionRequest, String>> conflictKeyResolvers;
+    private final Executor executor;
+
+    /**
+     * @param maxConcurrency       maximum number of tool executions running at the same time for one turn
+     * @param conflictKeyResolvers tool name to conflict key resolver, only these tools may run in parallel
+     * @param executor             runs the tool executions, owned by the caller
+     */
+    public ParallelToolExecutionPolicy(int maxConcurrency,
+                                       Map<String, Function<ToolExecutionRequest, String>> conflictKeyResolvers,
+                                       Executor executor) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.conflictKeyResolvers = copy(conflictKeyResolvers);
+        this.executor = ensureNotNull(executor, "executor");
+    }
+
+    /**
+     * Sets this policy on the AI Service being built.
+     */
+    public <T> AiServices<T> applyTo(AiServices<T> aiServices) {
+        aiServices.context.parallelToolExecutionPolicy = this;
+        return aiServices;
+    }
+
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public Executor executor() {
+        return executor;
+    }
+
+    /**
+     * @return conflict key of the request, or {@code null} if the request must not run concurrently with others
+     */
+    public String conflictKey(ToolExecutionRequest request) {
+        Function<ToolExecutionRequest, String> resolver = conflictKeyResolvers.get(request.name());
+        if (resolver == null) {
+            return null;
+        }
+        try {
+            return resolver.apply(request);
+        } catch (RuntimeException e) {
+            // Malformed arguments: let the tool itself report the problem, but do not run it concurrently
+            return null;
+        }
+    }
+
+    /**
+     * @return whether at least two of the requests may run concurrently under this policy
+     */
+    boolean appliesTo(List<ToolExecutionRequest> requests) {
+        if (maxConcurrency < 2 || conflictKeyResolvers.isEmpty() || requests.size() < 2) {
+            return false;
+        }
+        int parallelizable = 0;
+        for (ToolExecutionRequest request : requests) {
+            if (conflictKeyResolvers.containsKey(request.name()) && ++parallelizable > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
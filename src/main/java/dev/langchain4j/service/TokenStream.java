@@ -80,4 +80,21 @@ public interface TokenStream {
      * Will send a request to LLM and start response streaming.
      */
     void start();
+
+    /**
+     * Cancels the stream: the in-flight HTTP response is closed, no further tools are executed,
+     * no follow-up requests are sent to the model and no further callbacks are invoked.
+     * Can be called from any thread, any number of times.
+     * <p>
+     * Implementations that cannot cancel ignore the call, so callers can always register it as a dispose hook.
+     */
+    default void cancel() {
+    }
+
+    /**
+     * @return {@code true} if {@link #cancel()} has been called
+     */
+    default boolean isCancelled() {
+        return false;
+    }
 }
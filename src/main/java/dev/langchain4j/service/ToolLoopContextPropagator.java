@@ -0,0 +1,28 @@
+package dev.langchain4j.service;
+
+/**
+ * Carries thread-bound state of the caller onto the tool loop thread of streaming AI Services.
+ * <p>
+ * The loop runs on a fresh virtual thread that inherits nothing. {@link #wrap(Runnable)} is invoked on the thread that
+ * starts the stream, so it can capture what it needs there and install it around the loop on the new thread.
+ * The propagator is set per AI Service with {@link #applyTo(AiServices)}; services without one use {@link #NONE}.
+ */
+@FunctionalInterface
+public interface ToolLoopContextPropagator {
+
+    ToolLoopContextPropagator NONE = task -> task;
+
+    /**
+     * @param task the tool loop
+     * @return the task to run on the tool loop thread
+     */
+    Runnable wrap(Runnable task);
+
+    /**
+     * Sets this propagator on the AI Service being built.
+     */
+    default <T> AiServices<T> applyTo(AiServices<T> aiServices) {
+        aiServices.context.toolLoopContextPropagator = this;
+        return aiServices;
+    }
+}
@@ -0,0 +1,23 @@
+package dev.langchain4j.service;
+
+/**
+ * Observes the tool loop of streaming AI Service calls. Callbacks are invoked on the loop driver thread and must not
+ * block.
+ */
+public interface ToolLoopListener {
+
+    ToolLoopListener NOOP = new ToolLoopListener() {
+    };
+
+    /**
+     * Invoked after each round, including the final one that produced the answer.
+     */
+    default void onRoundCompleted(Object memoryId, ToolLoopRound round) {
+    }
+
+    /**
+     * Invoked once when the loop stops, for whatever reason.
+     */
+    default void onLoopFinished(Object memoryId, ToolLoopState state, ToolLoopState.Outcome outcome) {
+    }
+}
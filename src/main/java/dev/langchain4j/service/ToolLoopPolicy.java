@@ -0,0 +1,52 @@
+package dev.langchain4j.service;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+import static dev.langchain4j.internal.ValidationUtils.ensureGreaterThanZero;
+
+/**
+ * Limits and listener of the tool loop used by streaming AI Services.
+ * <p>
+ * The policy is set per AI Service with {@link #applyTo(AiServices)}; services without one use {@link #UNBOUNDED}.
+ *
+ * @param maxRounds           maximum number of model responses per session, the session ends after the tools of the
+ *                            last allowed round have been executed
+ * @param maxDuration         maximum wall-clock time of a session, checked before each follow-up request, {@code null}
+ *                            for no limit
+ * @param maxTokens           maximum total tokens of a session, checked before each follow-up request, {@code null} for
+ *                            no limit
+ * @param listener            receives per-round and per-session metrics
+ * @param terminationMessages text streamed as a last partial response when a limit stops the session, {@code null} or
+ *                            a {@code null} result for none
+ */
+public record ToolLoopPolicy(int maxRounds, Duration maxDuration, Integer maxTokens, ToolLoopListener listener,
+                             Function<ToolLoopState.Outcome, String> terminationMessages) {
+
+    public static final ToolLoopPolicy UNBOUNDED = new ToolLoopPolicy(Integer.MAX_VALUE, null, null, ToolLoopListener.NOOP, null);
+
+    public ToolLoopPolicy {
+        ensureGreaterThanZero(maxRounds, "maxRounds");
+        if (maxTokens != null) {
+            ensureGreaterThanZero(maxTokens, "maxTokens");
+        }
+        if (listener == null) {
+            listener = ToolLoopListener.NOOP;
+        }
+    }
+
+    /**
+     * @return the text to stream when the given limit stops the session, or {@code null}
+     */
+    public String terminationMessage(ToolLoopState.Outcome outcome) {
+        return terminationMessages == null ? null : terminationMessages.apply(outcome);
+    }
+
+    /**
+     * Sets this policy on the AI Service being built.
+     */
+    public <T> AiServices<T> applyTo(AiServices<T> aiServices) {
+        aiServices.context.toolLoopPolicy = this;
+        return aiServices;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.time.Duration;
+
+/**
+ * Metrics of one round of the tool loop: a model response followed by the execution of its tool requests.
+ *
+ * @param round        1-based round number within the session
+ * @param modelLatency time from sending the request until the model finished streaming the response
+ * @param toolLatency  time spent executing the tool requests of the response, zero for the final answer
+ * @param toolCalls    number of tool requests in the response
+ * @param tokenUsage   token usage reported for the response, may be {@code null}
+ */
+public record ToolLoopRound(int round, Duration modelLatency, Duration toolLatency, int toolCalls,
+                            TokenUsage tokenUsage) {
+}
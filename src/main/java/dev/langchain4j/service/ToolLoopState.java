@@ -0,0 +1,89 @@
+package dev.langchain4j.service;
+
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.time.Duration;
+
+/**
+ * Bounded state of one tool loop session. Only counters are kept, messages live in the chat memory, so the state
+ * does not grow with the number of rounds. Accessed by the loop driver thread only.
+ */
+public final class ToolLoopState {
+
+    public enum Outcome {
+        /**
+         * The model answered without requesting tools
+         */
+        COMPLETED,
+        /**
+         * The round limit was reached, the tools of the last round were executed but no follow-up request was sent
+         */
+        MAX_ROUNDS,
+        /**
+         * The wall-clock limit was reached, same handling as {@link #MAX_ROUNDS}
+         */
+        MAX_DURATION,
+        /**
+         * The token limit was reached, same handling as {@link #MAX_ROUNDS}
+         */
+        MAX_TOKENS,
+        CANCELLED,
+        FAILED
+    }
+
+    private final int maxRounds;
+    private final long maxDurationNanos;
+    private final long maxTokens;
+    private final long startNanos = System.nanoTime();
+
+    private int rounds;
+    private int toolCalls;
+    private TokenUsage tokenUsage;
+
+    ToolLoopState(int maxRounds, Duration maxDuration, Integer maxTokens, TokenUsage initialTokenUsage) {
+        this.maxRounds = maxRounds;
+        this.maxDurationNanos = maxDuration == null ? Long.MAX_VALUE : maxDuration.toNanos();
+        this.maxTokens = maxTokens == null ? Long.MAX_VALUE : maxTokens;
+        this.tokenUsage = initialTokenUsage;
+    }
+
+    ToolLoopRound recordRound(long modelNanos, long toolNanos, int roundToolCalls, TokenUsage roundTokenUsage) {
+        rounds++;
+        toolCalls += roundToolCalls;
+        tokenUsage = TokenUsage.sum(tokenUsage, roundTokenUsage);
+        return new ToolLoopRound(rounds, Duration.ofNanos(modelNanos), Duration.ofNanos(toolNanos), roundToolCalls,
+                roundTokenUsage);
+    }
+
+    /**
+     * @return the limit that stops the loop before the next round, or {@code null} if another round may start
+     */
+    Outcome limitReached() {
+        if (rounds >= maxRounds) {
+            return Outcome.MAX_ROUNDS;
+        }
+        if (System.nanoTime() - startNanos >= maxDurationNanos) {
+            return Outcome.MAX_DURATION;
+        }
+        if (tokenUsage != null && tokenUsage.totalTokenCount() != null && tokenUsage.totalTokenCount() >= maxTokens) {
+            return Outcome.MAX_TOKENS;
+        }
+        return null;
+    }
+
+    public int rounds() {
+        return rounds;
+    }
+
+    public int toolCalls() {
+        return toolCalls;
+    }
+
+    public TokenUsage tokenUsage() {
+        return tokenUsage;
+    }
+
+    public Duration elapsed() {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+}
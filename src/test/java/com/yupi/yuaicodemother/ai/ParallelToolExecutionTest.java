@@ -0,0 +1,231 @@
+package com.yupi.yuaicodemother.ai;
+
+import com.yupi.yuaicodemother.config.ParallelToolExecutionConfig;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.ParallelToolExecutionPolicy;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.tool.ToolExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 一轮多个工具调用的并行执行：互不冲突的调用并发执行、冲突的调用按顺序执行、结果按调用顺序写入记忆、异常上报给 onError
+ */
+class ParallelToolExecutionTest {
+
+    interface Assistant {
+
+        TokenStream chat(String message);
+    }
+
+    private final ParallelToolExecutionConfig config = new ParallelToolExecutionConfig();
+
+    private final ScriptedModel model = new ScriptedModel();
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        config.destroy();
+    }
+
+    @Test
+    void runIndependentWritesConcurrentlyAndKeepResultOrder() throws Exception {
+        CountDownLatch allStarted = new CountDownLatch(3);
+        // 三个写文件调用都开始后才返回，先发起的最后完成
+        Map<String, ToolExecutor> executors = Map.of("writeFile", (request, memoryId) -> {
+            allStarted.countDown();
+            await(allStarted);
+            sleep(10L * (3 - Integer.parseInt(request.id())));
+            return "已写入 " + request.id();
+        });
+        model.respond(AiMessage.from(write("1", "index.html"), write("2", "./src/App.vue"), write("3", "src/main.js")));
+        model.respond(AiMessage.from("完成"));
+
+        ChatResponse response = run(executors, policy()).get(5, TimeUnit.SECONDS);
+
+        assertEquals("完成", response.aiMessage().text());
+        assertEquals(List.of("1", "2", "3"), toolResultIds(model.requests.get(1).messages()));
+        assertEquals(List.of("已写入 1", "已写入 2", "已写入 3"), toolResults(model.requests.get(1).messages()));
+    }
+
+    @Test
+    void serializeSameFileAndWaitForBarrierTools() throws Exception {
+        Map<String, ToolExecutor> executors = Map.of(
+                "writeFile", this::track,
+                "modifyFile", this::track,
+                "readDir", this::track);
+        model.respond(AiMessage.from(
+                write("1", "index.html"),
+                ToolExecutionRequest.builder().id("2").name("modifyFile").arguments("{\"relativeFilePath\":\"./index.html\"}").build(),
+                write("3", "style.css"),
+                ToolExecutionRequest.builder().id("4").name("readDir").arguments("{}").build(),
+                write("5", "app.js")));
+        model.respond(AiMessage.from("完成"));
+
+        run(executors, policy()).get(5, TimeUnit.SECONDS);
+
+        // 同一文件的修改在写入完成后开始；readDir 等待之前的调用全部完成，之后的调用等待它完成
+        assertTrue(events.indexOf("end 1") < events.indexOf("start 2"));
+        assertTrue(events.indexOf("end 2") < events.indexOf("start 4"));
+        assertTrue(events.indexOf("end 3") < events.indexOf("start 4"));
+        assertTrue(events.indexOf("end 4") < events.indexOf("start 5"));
+        assertTrue(maxRunning.get() >= 2);
+        assertEquals(List.of("1", "2", "3", "4", "5"), toolResultIds(model.requests.get(1).messages()));
+    }
+
+    @Test
+    void runSequentiallyWhenDisabled() throws Exception {
+        Map<String, ToolExecutor> executors = Map.of("writeFile", this::track);
+        model.respond(AiMessage.from(write("1", "index.html"), write("2", "style.css")));
+        model.respond(AiMessage.from("完成"));
+
+        run(executors, config.parallelToolExecutionPolicy()).get(5, TimeUnit.SECONDS);
+
+        assertSame(ParallelToolExecutionPolicy.DISABLED, config.parallelToolExecutionPolicy());
+        assertEquals(1, maxRunning.get());
+        assertEquals(List.of("start 1", "end 1", "start 2", "end 2"), events);
+    }
+
+    @Test
+    void reportToolExceptionToOnError() {
+        Map<String, ToolExecutor> executors = Map.of("writeFile", (request, memoryId) -> {
+            if ("2".equals(request.id())) {
+                throw new IllegalStateException("磁盘已满");
+            }
+            return "已写入 " + request.id();
+        });
+        model.respond(AiMessage.from(write("1", "index.html"), write("2", "style.css"), write("3", "app.js")));
+        model.respond(AiMessage.from("完成"));
+
+        CompletableFuture<ChatResponse> result = run(executors, policy());
+
+        Throwable error = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS)).getCause();
+        assertInstanceOf(IllegalStateException.class, error);
+        assertEquals("磁盘已满", error.getMessage());
+        // 出错后不再发起下一轮请求
+        assertEquals(1, model.requests.size());
+    }
+
+    private ParallelToolExecutionPolicy policy() {
+        config.setEnabled(true);
+        config.setMaxConcurrency(4);
+        config.setConflictArguments(new LinkedHashMap<>(Map.of(
+                "writeFile", "relativeFilePath",
+                "modifyFile", "relativeFilePath")));
+        return config.parallelToolExecutionPolicy();
+    }
+
+    private CompletableFuture<ChatResponse> run(Map<String, ToolExecutor> executors, ParallelToolExecutionPolicy policy) {
+        Map<ToolSpecification, ToolExecutor> tools = new HashMap<>();
+        executors.forEach((name, executor) -> tools.put(ToolSpecification.builder().name(name).build(), executor));
+        AiServices<Assistant> builder = AiServices.builder(Assistant.class)
+                .streamingChatModel(model)
+                .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+                .tools(tools);
+        Assistant assistant = policy.applyTo(builder).build();
+        CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        assistant.chat("做一个待办清单")
+                .onPartialResponse(partial -> {
+                })
+                .onCompleteResponse(result::complete)
+                .onError(result::completeExceptionally)
+                .start();
+        return result;
+    }
+
+    private String track(ToolExecutionRequest request, Object memoryId) {
+        events.add("start " + request.id());
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        sleep(30);
+        running.decrementAndGet();
+        events.add("end " + request.id());
+        return "完成 " + request.id();
+    }
+
+    private static ToolExecutionRequest write(String id, String path) {
+        return ToolExecutionRequest.builder()
+                .id(id)
+                .name("writeFile")
+                .arguments("{\"relativeFilePath\":\"" + path + "\"}")
+                .build();
+    }
+
+    private static List<String> toolResultIds(List<ChatMessage> messages) {
+        return messages.stream()
+                .filter(ToolExecutionResultMessage.class::isInstance)
+                .map(message -> ((ToolExecutionResultMessage) message).id())
+                .toList();
+    }
+
+    private static List<String> toolResults(List<ChatMessage> messages) {
+        return messages.stream()
+                .filter(ToolExecutionResultMessage.class::isInstance)
+                .map(message -> ((ToolExecutionResultMessage) message).text())
+                .toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(2, TimeUnit.SECONDS), "工具调用没有并发执行");
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 按顺序返回预设响应的模型，记录每轮收到的请求
+     */
+    private static class ScriptedModel implements StreamingChatModel {
+
+        private final Queue<AiMessage> responses = new ArrayDeque<>();
+
+        private final List<ChatRequest> requests = new CopyOnWriteArrayList<>();
+
+        void respond(AiMessage aiMessage) {
+            responses.add(aiMessage);
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            requests.add(chatRequest);
+            handler.onCompleteResponse(ChatResponse.builder().aiMessage(responses.remove()).build());
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.yupi.yuaicodemother.ai;
+
+import com.yupi.yuaicodemother.stub.OpenAiStubServer;
+import com.yupi.yuaicodemother.stub.StubBehavior;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.TokenStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 下游取消时 TokenStream 的行为：关闭模型 HTTP 流、不再执行工具、不再发起后续请求、不回调 onError
+ */
+class TokenStreamCancellationTest {
+
+    interface Assistant {
+
+        TokenStream chat(String message);
+    }
+
+    /**
+     * 写文件工具，可以在执行中阻塞，模拟耗时的工具调用
+     */
+    static class FileTools {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private volatile boolean blocking;
+
+        @Tool("写入文件")
+        public String writeFile(@P("文件的相对路径") String relativeFilePath, @P("文件内容") String content) throws InterruptedException {
+            calls.incrementAndGet();
+            started.countDown();
+            if (blocking) {
+                release.await(5, TimeUnit.SECONDS);
+            }
+            return "已写入 " + relativeFilePath;
+        }
+    }
+
+    /**
+     * 记录 SSE 读取循环何时退出（退出后响应体随即关闭）
+     */
+    static class TrackingHttpClientBuilder implements HttpClientBuilder {
+
+        private final HttpClientBuilder delegate = JdkHttpClient.builder();
+
+        private final CountDownLatch readFinished = new CountDownLatch(1);
+
+        @Override
+        public Duration connectTimeout() {
+            return delegate.connectTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration connectTimeout) {
+            delegate.connectTimeout(connectTimeout);
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return delegate.readTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration readTimeout) {
+            delegate.readTimeout(readTimeout);
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            HttpClient client = delegate.build();
+            return new HttpClient() {
+
+                @Override
+                public SuccessfulHttpResponse execute(HttpRequest request) {
+                    return client.execute(request);
+                }
+
+                @Override
+                public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+                    client.execute(request, (inputStream, eventListener) -> {
+                        try {
+                            parser.parse(inputStream, eventListener);
+                        } finally {
+                            readFinished.countDown();
+                        }
+                    }, listener);
+                }
+            };
+        }
+    }
+
+    private OpenAiStubServer server;
+
+    private final TrackingHttpClientBuilder httpClientBuilder = new TrackingHttpClientBuilder();
+
+    private final FileTools tools = new FileTools();
+
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new OpenAiStubServer(StubBehavior.builder()
+                .tokensPerSecond(200)
+                .timeToFirstToken(Duration.ZERO)
+                .jitter(0)
+                .charsPerToken(2)
+                .build()).start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tools.release.countDown();
+        server.close();
+    }
+
+    @Test
+    void disposeWhileStreamingClosesHttpResponse() {
+        AtomicInteger received = new AtomicInteger();
+        Disposable disposable = toFlux(newAssistant().chat("做一个待办清单")).subscribe(chunk -> received.incrementAndGet());
+        await(() -> received.get() >= 5);
+        disposable.dispose();
+
+        // 完整响应需要数秒，取消后读取循环在下一个片段到达时立即退出
+        await(() -> httpClientBuilder.readFinished.getCount() == 0);
+        int receivedAtStop = received.get();
+        sleep(300);
+        assertEquals(receivedAtStop, received.get());
+        assertTrue(receivedAtStop < 50);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, tools.calls.get());
+        assertNull(error.get());
+    }
+
+    @Test
+    void disposeWhileExecutingToolsStopsLoop() {
+        tools.blocking = true;
+        Disposable disposable = toFlux(newAssistant().chat("做一个待办清单")).subscribe();
+        await(() -> tools.calls.get() == 1);
+        assertEquals(0, httpClientBuilder.readFinished.getCount());
+        disposable.dispose();
+        tools.release.countDown();
+
+        sleep(300);
+        // 第一轮返回了 3 个写文件调用，取消后剩余的调用和下一轮模型请求都不再执行
+        assertEquals(1, tools.calls.get());
+        assertEquals(1, server.getRequestCount());
+        assertNull(error.get());
+    }
+
+    private Assistant newAssistant() {
+        OpenAiStreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .baseUrl(server.getBaseUrl())
+                .apiKey("stub")
+                .modelName("stub-chat")
+                .httpClientBuilder(httpClientBuilder)
+                .build();
+        return AiServices.builder(Assistant.class)
+                .streamingChatModel(model)
+                .chatMemory(MessageWindowChatMemory.withMaxMessages(20))
+                .tools(tools)
+                .build();
+    }
+
+    /**
+     * 与 AiCodeGeneratorFacade 相同的转换方式：下游取消时取消 TokenStream
+     */
+    private Flux<String> toFlux(TokenStream tokenStream) {
+        return Flux.create(sink -> {
+            sink.onDispose(tokenStream::cancel);
+            tokenStream.onPartialResponse(sink::next)
+                    .onPartialToolExecutionRequest((index, request) -> sink.next(request.arguments()))
+                    .onCompleteResponse(response -> sink.complete())
+                    .onError(throwable -> {
+                        error.set(throwable);
+                        sink.error(throwable);
+                    })
+                    .start();
+        });
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            sleep(10);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.yupi.yuaicodemother.ai;
+
+import com.yupi.yuaicodemother.ai.scheduler.LlmCallContext;
+import com.yupi.yuaicodemother.config.ToolLoopConfig;
+import com.yupi.yuaicodemother.monitor.ToolLoopMetricsListener;
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.guardrail.OutputGuardrail;
+import dev.langchain4j.guardrail.OutputGuardrailResult;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.TokenStream;
+import dev.langchain4j.service.ToolLoopContextPropagator;
+import dev.langchain4j.service.tool.ToolExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 工具调用循环：轮数和 Token 上限、达到上限时的提示、输出护轨只处理最后一轮的文本、调用上下文传递到工具循环线程
+ */
+class ToolLoopTest {
+
+    interface Assistant {
+
+        TokenStream chat(String message);
+    }
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ToolLoopConfig config = new ToolLoopConfig();
+
+    private final ScriptedModel model = new ScriptedModel();
+
+    private final AtomicInteger toolCalls = new AtomicInteger();
+
+    private final List<String> partials = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ToolLoopMetricsListener listener = new ToolLoopMetricsListener();
+        ReflectionTestUtils.setField(listener, "meterRegistry", meterRegistry);
+        listener.initMeters();
+        ReflectionTestUtils.setField(config, "toolLoopMetricsListener", listener);
+    }
+
+    @Test
+    void stopAfterMaxRoundsWithTerminationMessage() throws Exception {
+        config.setMaxRounds(2);
+        for (int i = 1; i <= 5; i++) {
+            model.respond(AiMessage.from(write(String.valueOf(i))), 100, 10);
+        }
+
+        ChatResponse response = run(newAssistant(null)).get(5, TimeUnit.SECONDS);
+
+        // 最后一轮的工具照常执行，之后不再发起请求
+        assertEquals(2, model.requests.size());
+        assertEquals(2, toolCalls.get());
+        assertEquals(220, response.tokenUsage().totalTokenCount());
+        assertEquals(1, partials.size());
+        assertTrue(partials.get(0).contains("已达到单次生成的最大轮数（2 轮）"));
+        awaitOutcome("max_rounds");
+    }
+
+    @Test
+    void stopWhenTokenLimitReached() throws Exception {
+        config.setMaxTokens(250);
+        for (int i = 1; i <= 5; i++) {
+            model.respond(AiMessage.from(write(String.valueOf(i))), 100, 10);
+        }
+
+        ChatResponse response = run(newAssistant(null)).get(5, TimeUnit.SECONDS);
+
+        // 第三轮后累计 330 个 Token，超过上限
+        assertEquals(3, model.requests.size());
+        assertEquals(3, toolCalls.get());
+        assertEquals(330, response.tokenUsage().totalTokenCount());
+        assertEquals(1, partials.size());
+        assertTrue(partials.get(0).contains("已达到单次生成的 Token 上限（250）"));
+        awaitOutcome("max_tokens");
+    }
+
+    @Test
+    void completeWithoutTerminationMessage() throws Exception {
+        config.setMaxTokens(1000);
+        model.respond(AiMessage.from(write("1")), 100, 10);
+        model.respond(AiMessage.from("完成"), 150, 20);
+
+        ChatResponse response = run(newAssistant(null)).get(5, TimeUnit.SECONDS);
+
+        assertEquals("完成", response.aiMessage().text());
+        assertEquals(280, response.tokenUsage().totalTokenCount());
+        assertEquals(List.of("完成"), partials);
+        awaitOutcome("completed");
+    }
+
+    @Test
+    void outputGuardrailsOnlyReleaseFinalRoundText() throws Exception {
+        List<String> checked = new CopyOnWriteArrayList<>();
+        OutputGuardrail guardrail = new OutputGuardrail() {
+
+            @Override
+            public OutputGuardrailResult validate(AiMessage responseFromLLM) {
+                checked.add(responseFromLLM.text());
+                return success();
+            }
+        };
+        model.respond(AiMessage.from("先写入首页", List.of(write("1"))), 100, 10);
+        model.respond(AiMessage.from("再写入样式", List.of(write("2"))), 100, 10);
+        model.respond(AiMessage.from("完成"), 100, 10);
+
+        run(newAssistant(guardrail)).get(5, TimeUnit.SECONDS);
+
+        // 工具轮中缓冲的文本不会在最后一起放出
+        assertEquals(List.of("完成"), partials);
+        assertEquals(List.of("完成"), checked);
+        assertEquals(2, toolCalls.get());
+    }
+
+    @Test
+    void callContextReachesEveryRoundOnTheLoopThread() throws Exception {
+        model.respond(AiMessage.from(write("1")), 100, 10);
+        model.respond(AiMessage.from("完成"), 100, 10);
+        Assistant assistant = newAssistant(null);
+
+        LlmCallContext context = LlmCallContext.currentOrOpen().user("1", "user");
+        CompletableFuture<ChatResponse> result;
+        try {
+            result = run(assistant);
+        } finally {
+            LlmCallContext.clear();
+        }
+        result.get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of(context, context), model.callContexts);
+        assertFalse(model.threads.contains(Thread.currentThread()));
+    }
+
+    private Assistant newAssistant(OutputGuardrail guardrail) {
+        ToolExecutor writeFile = (request, memoryId) -> {
+            toolCalls.incrementAndGet();
+            return "已写入 " + request.id();
+        };
+        AiServices<Assistant> builder = AiServices.builder(Assistant.class)
+                .streamingChatModel(model)
+                .chatMemory(MessageWindowChatMemory.withMaxMessages(50))
+                .tools(Map.of(ToolSpecification.builder().name("writeFile").build(), writeFile));
+        if (guardrail != null) {
+            builder.outputGuardrails(guardrail);
+        }
+        // 与 AiCodeGeneratorServiceFactory 相同，把调用上下文带到工具循环线程
+        ToolLoopContextPropagator propagator = LlmCallContext::wrap;
+        propagator.applyTo(builder);
+        return config.toolLoopPolicy().applyTo(builder).build();
+    }
+
+    private CompletableFuture<ChatResponse> run(Assistant assistant) {
+        CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        assistant.chat("做一个待办清单")
+                .onPartialResponse(partials::add)
+                .onCompleteResponse(result::complete)
+                .onError(result::completeExceptionally)
+                .start();
+        return result;
+    }
+
+    private void awaitOutcome(String outcome) {
+        // 会话结束的指标在完成回调之后记录
+        await(() -> meterRegistry.get("ai_tool_loop_sessions_total").tag("outcome", outcome).counter().count() == 1);
+    }
+
+    private static ToolExecutionRequest write(String id) {
+        return ToolExecutionRequest.builder()
+                .id(id)
+                .name("writeFile")
+                .arguments("{\"relativeFilePath\":\"file" + id + ".html\"}")
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 按顺序返回预设响应的模型，先以片段输出文本，再返回完整响应
+     */
+    private static class ScriptedModel implements StreamingChatModel {
+
+        private final Queue<ChatResponse> responses = new ArrayDeque<>();
+
+        private final List<ChatRequest> requests = new CopyOnWriteArrayList<>();
+
+        private final List<LlmCallContext> callContexts = new CopyOnWriteArrayList<>();
+
+        private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+        void respond(AiMessage aiMessage, int inputTokens, int outputTokens) {
+            responses.add(ChatResponse.builder()
+                    .aiMessage(aiMessage)
+                    .tokenUsage(new TokenUsage(inputTokens, outputTokens))
+                    .build());
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            requests.add(chatRequest);
+            callContexts.add(LlmCallContext.current());
+            threads.add(Thread.currentThread());
+            ChatResponse response = responses.remove();
+            if (response.aiMessage().text() != null) {
+                handler.onPartialResponse(response.aiMessage().text());
+            }
+            handler.onCompleteResponse(response);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.yupi.yuaicodemother.ai.failover;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EndpointStatsTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private EndpointStats newStats() {
+        return new EndpointStats(0.5, 2000 * MS, 1000 * MS);
+    }
+
+    @Test
+    void ewmaTracksTimeToFirstToken() {
+        EndpointStats stats = newStats();
+        assertTrue(Double.isNaN(stats.ewmaMillis()));
+        // 没有观测时按默认值排序
+        assertEquals(2000 * MS, stats.score(0));
+
+        stats.recordTimeToFirstToken(400 * MS);
+        assertEquals(400, stats.ewmaMillis(), 1e-6);
+        stats.recordTimeToFirstToken(800 * MS);
+        assertEquals(600, stats.ewmaMillis(), 1e-6);
+
+        // 未完成的观测只会调高
+        stats.recordPending(200 * MS);
+        assertEquals(600, stats.ewmaMillis(), 1e-6);
+        stats.recordPending(1000 * MS);
+        assertEquals(800, stats.ewmaMillis(), 1e-6);
+    }
+
+    @Test
+    void failureCoolsDownWithBackoff() {
+        EndpointStats stats = newStats();
+        stats.recordTimeToFirstToken(100 * MS);
+
+        stats.recordFailure(0);
+        assertEquals(Double.MAX_VALUE, stats.score(500 * MS));
+        assertEquals(100 * MS, stats.score(1000 * MS), 1e-6);
+
+        // 连续失败时降级时长翻倍
+        stats.recordFailure(1000 * MS);
+        assertEquals(Double.MAX_VALUE, stats.score(2500 * MS));
+        assertEquals(100 * MS, stats.score(3000 * MS), 1e-6);
+
+        // 成功后立即恢复
+        stats.recordFailure(3000 * MS);
+        stats.recordTimeToFirstToken(100 * MS);
+        assertEquals(100 * MS, stats.score(3000 * MS), 1e-6);
+    }
+}
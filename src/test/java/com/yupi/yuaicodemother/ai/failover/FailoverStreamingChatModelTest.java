@@ -0,0 +1,366 @@
+package com.yupi.yuaicodemother.ai.failover;
+
+import com.yupi.yuaicodemother.ai.http.AiHttpClientFactory;
+import com.yupi.yuaicodemother.ai.http.StreamAbortHandle;
+import com.yupi.yuaicodemother.ai.recording.LlmRecordingManager;
+import com.yupi.yuaicodemother.config.AiHttpClientConfig;
+import com.yupi.yuaicodemother.config.ModelFailoverConfig;
+import com.yupi.yuaicodemother.monitor.AiModelMonitorListener;
+import com.yupi.yuaicodemother.monitor.MonitorContext;
+import com.yupi.yuaicodemother.monitor.MonitorContextHolder;
+import com.yupi.yuaicodemother.stub.OpenAiStubServer;
+import com.yupi.yuaicodemother.stub.StubBehavior;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FailoverStreamingChatModelTest {
+
+    private static final MonitorContext ALICE = MonitorContext.builder().userId("1").appId("10").build();
+
+    private static final ChatRequest REQUEST = ChatRequest.builder().messages(UserMessage.from("做一个个人博客网站")).build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RecordingMonitorListener monitorListener = new RecordingMonitorListener();
+
+    private final ManualHedgeFactory factory = new ManualHedgeFactory();
+
+    private final RecordingHandler handler = new RecordingHandler();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(factory, "modelFailoverConfig", new ModelFailoverConfig());
+        ReflectionTestUtils.setField(factory, "aiModelMonitorListener", monitorListener);
+        ReflectionTestUtils.setField(factory, "meterRegistry", meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        factory.destroy();
+        factory.scheduler.shutdownNow();
+        MonitorContextHolder.clearContext();
+    }
+
+    @Test
+    void firstOutputWinsAndLoserIsAborted() {
+        FakeModel primary = new FakeModel("primary");
+        FakeModel backup = new FakeModel("backup");
+        MonitorContextHolder.setContext(ALICE);
+        failover(Duration.ofSeconds(1), primary, backup).chat(REQUEST, handler);
+        MonitorContextHolder.clearContext();
+        assertEquals(1, primary.calls);
+        assertEquals(0, backup.calls);
+
+        // 对冲请求在调度线程上发出，沿用调用方的监控上下文
+        factory.runHedge();
+        assertEquals(1, backup.calls);
+        assertSame(ALICE, backup.monitorContext);
+
+        backup.handler.onPartialResponse("你好");
+        assertTrue(primary.aborted);
+        assertTrue(primary.handler.isCancelled());
+        // 中止后落败请求的输出和读取错误都不再上报
+        primary.handler.onPartialResponse("迟到的输出");
+        primary.handler.onError(new IOException("closed"));
+        backup.handler.onCompleteResponse(response(120, 30));
+
+        assertEquals(List.of("你好"), handler.partials);
+        assertNotNull(handler.completeResponse.get());
+        assertNull(handler.error.get());
+        assertEquals(List.of("primary:selected", "backup:hedge", "primary:aborted", "backup:hedge_won"), monitorListener.decisions);
+        // 落败请求按胜出请求的输入 Token 数计入调用方的用量
+        assertEquals(List.of("1/10/primary-model:120+0"), monitorListener.abortedUsages);
+    }
+
+    @Test
+    void cancelHedgeWhenPrimaryOutputsFirst() {
+        FakeModel primary = new FakeModel("primary");
+        FakeModel backup = new FakeModel("backup");
+        failover(Duration.ofSeconds(1), primary, backup).chat(REQUEST, handler);
+        primary.handler.onPartialResponse("你好");
+        assertTrue(factory.hedgeFuture.isCancelled());
+
+        // 已经在执行中的对冲任务发现胜出者已确定后直接返回
+        factory.runHedge();
+        primary.handler.onCompleteResponse(response(120, 30));
+        assertEquals(0, backup.calls);
+        assertEquals(List.of("primary:selected"), monitorListener.decisions);
+        assertTrue(monitorListener.abortedUsages.isEmpty());
+        assertEquals(List.of("你好"), handler.partials);
+        assertNotNull(handler.completeResponse.get());
+    }
+
+    @Test
+    void failoverWhenAttemptFailsBeforeOutput() {
+        FakeModel primary = new FakeModel("primary");
+        FakeModel backup = new FakeModel("backup");
+        StreamingChatModel model = failover(null, primary, backup);
+        model.chat(REQUEST, handler);
+        primary.handler.onError(new IllegalStateException("503"));
+        assertEquals(1, backup.calls);
+
+        backup.handler.onPartialResponse("你好");
+        backup.handler.onCompleteResponse(response(120, 30));
+        assertEquals(List.of("你好"), handler.partials);
+        assertNotNull(handler.completeResponse.get());
+        assertNull(handler.error.get());
+        assertEquals(List.of("primary:selected", "backup:failover"), monitorListener.decisions);
+        // 失败的请求没有被中止，不计入用量
+        assertTrue(monitorListener.abortedUsages.isEmpty());
+
+        // 失败的端点处于降级期，下一次调用首选备用端点
+        model.chat(REQUEST, new RecordingHandler());
+        assertEquals(1, primary.calls);
+        assertEquals(2, backup.calls);
+    }
+
+    @Test
+    void waitForRunningHedgeBeforeFailover() {
+        FakeModel primary = new FakeModel("primary");
+        FakeModel backup = new FakeModel("backup");
+        FakeModel third = new FakeModel("third");
+        failover(Duration.ofSeconds(1), primary, backup, third).chat(REQUEST, handler);
+        factory.runHedge();
+
+        // 对冲请求仍在进行中，首选端点失败时不转移
+        primary.handler.onError(new IllegalStateException("503"));
+        assertEquals(0, third.calls);
+        backup.handler.onError(new IllegalStateException("503"));
+        assertEquals(1, third.calls);
+
+        third.handler.onPartialResponse("你好");
+        third.handler.onCompleteResponse(response(120, 30));
+        assertEquals(List.of("你好"), handler.partials);
+        assertNull(handler.error.get());
+        assertEquals(List.of("primary:selected", "backup:hedge", "third:failover"), monitorListener.decisions);
+    }
+
+    @Test
+    void reportErrorWhenAllEndpointsFail() {
+        FakeModel primary = new FakeModel("primary");
+        FakeModel backup = new FakeModel("backup");
+        backup.failOnCall = true;
+        failover(null, primary, backup).chat(REQUEST, handler);
+        primary.handler.onError(new IllegalStateException("503"));
+
+        assertEquals(1, backup.calls);
+        assertEquals("backup unavailable", handler.error.get().getMessage());
+        assertEquals(List.of("primary:selected", "backup:failover", "backup:exhausted"), monitorListener.decisions);
+    }
+
+    @Test
+    void errorAfterOutputIsNotFailedOver() {
+        FakeModel primary = new FakeModel("primary");
+        FakeModel backup = new FakeModel("backup");
+        failover(null, primary, backup).chat(REQUEST, handler);
+        primary.handler.onPartialResponse("你好");
+        IllegalStateException error = new IllegalStateException("connection reset");
+        primary.handler.onError(error);
+
+        assertSame(error, handler.error.get());
+        assertEquals(0, backup.calls);
+    }
+
+    @Test
+    void abortClosesLoserHttpStream() throws Exception {
+        AiHttpClientFactory httpClientFactory = newHttpClientFactory();
+        try (OpenAiStubServer slow = new OpenAiStubServer(StubBehavior.builder()
+                .timeToFirstToken(Duration.ofSeconds(30)).jitter(0).build()).start();
+             OpenAiStubServer fast = new OpenAiStubServer(StubBehavior.builder()
+                     .timeToFirstToken(Duration.ZERO).tokensPerSecond(1000).jitter(0).build()).start()) {
+            LinkedHashMap<String, StreamingChatModel> endpoints = new LinkedHashMap<>();
+            endpoints.put("slow", openAi(slow, httpClientFactory));
+            endpoints.put("fast", openAi(fast, httpClientFactory));
+            factory.streaming("streaming-chat-model", endpoints, Duration.ofSeconds(1)).chat(REQUEST, handler);
+            await(() -> slow.getRequestCount() == 1);
+            factory.runHedge();
+
+            await(() -> handler.completeResponse.get() != null);
+            assertNull(handler.error.get());
+            // 两个请求的许可都已释放：慢端点的响应流被立即关闭，而不是等到 30 秒后的首个片段
+            await(() -> meterRegistry.get("ai_http_in_flight_requests").gauge().value() == 0);
+            assertEquals(List.of("slow:selected", "fast:hedge", "slow:aborted", "fast:hedge_won"), monitorListener.decisions);
+        }
+    }
+
+    private StreamingChatModel failover(Duration hedgeDelay, FakeModel... models) {
+        LinkedHashMap<String, StreamingChatModel> endpoints = new LinkedHashMap<>();
+        for (FakeModel model : models) {
+            endpoints.put(model.name, model);
+        }
+        return factory.streaming("streaming-chat-model", endpoints, hedgeDelay);
+    }
+
+    private AiHttpClientFactory newHttpClientFactory() throws Exception {
+        LlmRecordingManager llmRecordingManager = new LlmRecordingManager();
+        AiHttpClientConfig config = new AiHttpClientConfig();
+        config.setVersion("HTTP_1_1");
+        AiHttpClientFactory httpClientFactory = new AiHttpClientFactory();
+        ReflectionTestUtils.setField(httpClientFactory, "aiHttpClientConfig", config);
+        ReflectionTestUtils.setField(httpClientFactory, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(httpClientFactory, "llmRecordingManager", llmRecordingManager);
+        httpClientFactory.init();
+        return httpClientFactory;
+    }
+
+    private static StreamingChatModel openAi(OpenAiStubServer server, AiHttpClientFactory httpClientFactory) {
+        return OpenAiStreamingChatModel.builder()
+                .baseUrl(server.getBaseUrl())
+                .apiKey("stub")
+                .modelName("stub-chat")
+                .httpClientBuilder(httpClientFactory.newHttpClientBuilder())
+                .build();
+    }
+
+    private static ChatResponse response(int inputTokens, int outputTokens) {
+        return ChatResponse.builder()
+                .aiMessage(AiMessage.from("你好"))
+                .tokenUsage(new TokenUsage(inputTokens, outputTokens))
+                .build();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 由测试驱动回调的模型端点，记录调用时的监控上下文，并登记中止回调
+     */
+    private static class FakeModel implements StreamingChatModel {
+
+        private final String name;
+
+        private volatile int calls;
+
+        private volatile StreamingChatResponseHandler handler;
+
+        private volatile MonitorContext monitorContext;
+
+        private volatile boolean aborted;
+
+        private volatile boolean failOnCall;
+
+        FakeModel(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            calls++;
+            this.handler = handler;
+            this.monitorContext = MonitorContextHolder.getContext();
+            StreamAbortHandle.current().onAbort(() -> aborted = true);
+            if (failOnCall) {
+                throw new IllegalStateException(name + " unavailable");
+            }
+        }
+
+        @Override
+        public ChatRequestParameters defaultRequestParameters() {
+            return ChatRequestParameters.builder().modelName(name + "-model").build();
+        }
+    }
+
+    /**
+     * 对冲任务不按时间触发，由测试调用 runHedge 执行
+     */
+    private static class ManualHedgeFactory extends ModelFailoverFactory {
+
+        private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        private volatile Runnable hedgeTask;
+
+        private volatile ScheduledFuture<?> hedgeFuture;
+
+        @Override
+        ScheduledFuture<?> scheduleHedge(Runnable task, Duration delay) {
+            hedgeTask = task;
+            hedgeFuture = scheduler.schedule(() -> {
+            }, 1, TimeUnit.HOURS);
+            return hedgeFuture;
+        }
+
+        void runHedge() {
+            hedgeTask.run();
+        }
+    }
+
+    /**
+     * 记录路由决策和被中止请求的用量
+     */
+    private static class RecordingMonitorListener extends AiModelMonitorListener {
+
+        private final List<String> decisions = new CopyOnWriteArrayList<>();
+
+        private final List<String> abortedUsages = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void onEndpointDecision(String model, String endpoint, String decision) {
+            decisions.add(endpoint + ":" + decision);
+        }
+
+        @Override
+        public void onAbortedRequest(MonitorContext context, String modelName, TokenUsage tokenUsage) {
+            abortedUsages.add(context.getUserId() + "/" + context.getAppId() + "/" + modelName + ":"
+                    + tokenUsage.inputTokenCount() + "+" + tokenUsage.outputTokenCount());
+        }
+    }
+
+    private static class RecordingHandler implements StreamingChatResponseHandler {
+
+        private final List<String> partials = new CopyOnWriteArrayList<>();
+
+        private final AtomicReference<ChatResponse> completeResponse = new AtomicReference<>();
+
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        @Override
+        public void onPartialResponse(String partialResponse) {
+            partials.add(partialResponse);
+        }
+
+        @Override
+        public void onCompleteResponse(ChatResponse completeResponse) {
+            this.completeResponse.set(completeResponse);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            this.error.set(error);
+        }
+    }
+}
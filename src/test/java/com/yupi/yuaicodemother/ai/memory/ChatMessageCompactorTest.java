@@ -0,0 +1,70 @@
+package com.yupi.yuaicodemother.ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatMessageCompactorTest {
+
+    private static final String CODE = "<div>\n".repeat(200);
+
+    @Test
+    void replaceCodeFencesWithManifest() {
+        String text = "这是一个博客页面\n```html\n" + CODE + "```\n```css\n.a { color: red; }\n```";
+        String compacted = ChatMessageCompactor.compactText(text);
+        assertTrue(compacted.contains("这是一个博客页面"));
+        assertTrue(compacted.contains("html 代码块"));
+        assertTrue(compacted.contains("css 代码块"));
+        assertFalse(compacted.contains("<div>"));
+        // 重复压缩结果不变
+        assertEquals(compacted, ChatMessageCompactor.compactText(compacted));
+    }
+
+    @Test
+    void keepShortTextAndToolPaths() {
+        assertEquals("好的，已修改", ChatMessageCompactor.compactText("好的，已修改"));
+        ToolExecutionRequest request = ToolExecutionRequest.builder()
+                .id("call_1")
+                .name("writeFile")
+                .arguments("{\"relativeFilePath\":\"src/App.vue\",\"content\":\"" + "x".repeat(1000) + "\"}")
+                .build();
+        AiMessage compacted = (AiMessage) ChatMessageCompactor.compact(AiMessage.from(request));
+        String arguments = compacted.toolExecutionRequests().get(0).arguments();
+        assertTrue(arguments.contains("src/App.vue"));
+        assertTrue(arguments.length() < 200);
+        assertEquals("call_1", compacted.toolExecutionRequests().get(0).id());
+    }
+
+    @Test
+    void replaceCodeFencesInUserMessage() {
+        String prompt = "做一个个人博客网站，风格简洁\n\n以下是一个相似需求已生成的代码：\n```html\n" + CODE + "```";
+        UserMessage compacted = (UserMessage) ChatMessageCompactor.compact(UserMessage.from(prompt));
+        assertTrue(compacted.singleText().startsWith("做一个个人博客网站，风格简洁\n\n以下是一个相似需求已生成的代码："));
+        assertTrue(compacted.singleText().contains("html 代码块"));
+        assertFalse(compacted.singleText().contains("<div>"));
+        // 没有代码块的用户消息原样保留，即使很长
+        UserMessage longPrompt = UserMessage.from("需求".repeat(500));
+        assertSame(longPrompt, ChatMessageCompactor.compact(longPrompt));
+    }
+
+    @Test
+    void compactOnlyEarlierTurns() {
+        InMemoryChatMemoryStore delegate = new InMemoryChatMemoryStore();
+        CompactingChatMemoryStore store = new CompactingChatMemoryStore(delegate, 1);
+        String reply = "```html\n" + CODE + "```";
+        store.updateMessages(1L, List.of(
+                UserMessage.from("做个博客"), AiMessage.from(reply),
+                UserMessage.from("改成蓝色"), AiMessage.from(reply),
+                UserMessage.from("加个标题")));
+        List<ChatMessage> messages = store.getMessages(1L);
+        assertNotEquals(reply, ((AiMessage) messages.get(1)).text());
+        assertEquals(reply, ((AiMessage) messages.get(3)).text());
+    }
+}
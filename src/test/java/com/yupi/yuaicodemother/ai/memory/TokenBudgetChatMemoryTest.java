@@ -0,0 +1,60 @@
+package com.yupi.yuaicodemother.ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.store.memory.chat.InMemoryChatMemoryStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBudgetChatMemoryTest {
+
+    @Test
+    void evictWholeTurnsOverBudget() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, new InMemoryChatMemoryStore(), 300);
+        memory.add(SystemMessage.from("你是前端专家"));
+        for (int i = 0; i < 5; i++) {
+            memory.add(UserMessage.from("需求 " + i));
+            memory.add(AiMessage.from("a".repeat(400)));
+        }
+        List<ChatMessage> messages = memory.messages();
+        assertInstanceOf(SystemMessage.class, messages.get(0));
+        assertInstanceOf(UserMessage.class, messages.get(1));
+        assertEquals("需求 4", ((UserMessage) messages.get(messages.size() - 2)).singleText());
+        int total = messages.stream().mapToInt(TokenBudgetChatMemory::estimateTokens).sum();
+        assertTrue(total <= 300);
+    }
+
+    @Test
+    void keepCurrentTurnEvenIfOverBudget() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, new InMemoryChatMemoryStore(), 10);
+        memory.add(UserMessage.from("需求"));
+        memory.add(AiMessage.from("a".repeat(400)));
+        assertEquals(2, memory.messages().size());
+    }
+
+    @Test
+    void keepFullTurnsEvenIfOverBudget() {
+        TokenBudgetChatMemory memory = new TokenBudgetChatMemory(1L, new InMemoryChatMemoryStore(), 300, 1);
+        memory.add(UserMessage.from("做个博客"));
+        memory.add(AiMessage.from("a".repeat(400)));
+        // 上一轮生成的完整页面远超预算，仍需保留给修改请求使用
+        memory.add(UserMessage.from("改成蓝色"));
+        memory.add(AiMessage.from("b".repeat(2000)));
+        memory.add(UserMessage.from("加个标题"));
+        List<ChatMessage> messages = memory.messages();
+        assertEquals(3, messages.size());
+        assertEquals("改成蓝色", ((UserMessage) messages.get(0)).singleText());
+        assertEquals("b".repeat(2000), ((AiMessage) messages.get(1)).text());
+    }
+
+    @Test
+    void estimateChineseAndAscii() {
+        assertEquals(1, TokenBudgetChatMemory.estimateTokens("abcd"));
+        assertEquals(2, TokenBudgetChatMemory.estimateTokens("中文"));
+    }
+}
@@ -0,0 +1,328 @@
+package com.yupi.yuaicodemother.ai.recording;
+
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpMethod;
+import dev.langchain4j.http.client.HttpRequest;
+import dev.langchain4j.http.client.SuccessfulHttpResponse;
+import dev.langchain4j.http.client.sse.ServerSentEvent;
+import dev.langchain4j.http.client.sse.ServerSentEventListener;
+import dev.langchain4j.http.client.sse.ServerSentEventParser;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmRecordingTest {
+
+    private static final List<ServerSentEvent> EVENTS = List.of(
+            new ServerSentEvent(null, "{\"choices\":[{\"delta\":{\"content\":\"你好\"}}]}"),
+            new ServerSentEvent(null, "{\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"function\":{\"name\":\"writeFile\"}}]}}]}"),
+            new ServerSentEvent(null, "{\"choices\":[],\"usage\":{\"total_tokens\":12}}"),
+            new ServerSentEvent(null, "[DONE]"));
+
+    /**
+     * 模拟模型服务：流式请求依次推送 EVENTS，普通请求按请求体返回
+     */
+    private static final HttpClient FAKE_SERVER = new HttpClient() {
+
+        @Override
+        public SuccessfulHttpResponse execute(HttpRequest request) {
+            if (request.body().contains("fail")) {
+                throw new HttpException(429, "rate limited");
+            }
+            return SuccessfulHttpResponse.builder().statusCode(200).headers(Map.of()).body("HTML").build();
+        }
+
+        @Override
+        public void execute(HttpRequest request, ServerSentEventParser parser, ServerSentEventListener listener) {
+            listener.onOpen(SuccessfulHttpResponse.builder().statusCode(200).headers(Map.of()).build());
+            EVENTS.forEach(listener::onEvent);
+            listener.onClose();
+        }
+    };
+
+    private static HttpRequest request(String body) {
+        return HttpRequest.builder()
+                .method(HttpMethod.POST)
+                .url("https://api.deepseek.com/chat/completions")
+                .body(body)
+                .build();
+    }
+
+    /**
+     * 录制到内存
+     */
+    private static final class MemorySink implements RecordingHttpClient.Sink {
+
+        private final List<LlmRecording> recordings = new ArrayList<>();
+
+        private long sequence;
+
+        @Override
+        public synchronized long nextSequence() {
+            return ++sequence;
+        }
+
+        @Override
+        public synchronized void save(long sequence, LlmRecording recording) {
+            recordings.add(recording);
+        }
+    }
+
+    private static class CollectingListener implements ServerSentEventListener {
+
+        private final List<ServerSentEvent> events = new ArrayList<>();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Throwable error;
+
+        @Override
+        public void onEvent(ServerSentEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done.countDown();
+        }
+
+        @Override
+        public void onClose() {
+            done.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void recordsAndReplaysStreamsAndResponses(@TempDir Path dir) throws Exception {
+        MemorySink sink = new MemorySink();
+        HttpClient recordingClient = new RecordingHttpClient(FAKE_SERVER, sink);
+        recordingClient.execute(request("{\"stream\":true}"), null, new CollectingListener());
+        assertEquals("HTML", recordingClient.execute(request("{\"route\":1}")).body());
+        assertThrows(HttpException.class, () -> recordingClient.execute(request("{\"fail\":1}")));
+        assertEquals(3, sink.recordings.size());
+
+        // 写入文件再读回
+        for (int i = 0; i < sink.recordings.size(); i++) {
+            LlmRecordingFiles.write(dir.resolve(String.format("s-%06d%s", i, LlmRecordingFiles.FILE_SUFFIX)), sink.recordings.get(i));
+        }
+        List<LlmRecording> loaded = LlmRecordingFiles.readDirectory(dir);
+        assertEquals(sink.recordings, loaded);
+        LlmRecording stream = loaded.get(0);
+        assertTrue(stream.stream());
+        assertEquals(List.of(LlmRecording.OPEN, LlmRecording.EVENT, LlmRecording.EVENT, LlmRecording.EVENT,
+                LlmRecording.EVENT, LlmRecording.CLOSE), stream.frames().stream().map(LlmRecording.Frame::kind).toList());
+
+        HttpClient replayingClient = new ReplayingHttpClient(new LlmCassette(loaded, true, false), 0);
+        CollectingListener listener = new CollectingListener();
+        replayingClient.execute(request("{\"stream\":true}"), null, listener);
+        listener.await();
+        assertNull(listener.error);
+        assertEquals(EVENTS, listener.events);
+
+        assertEquals("HTML", replayingClient.execute(request("{\"route\":1}")).body());
+        HttpException error = assertThrows(HttpException.class, () -> replayingClient.execute(request("{\"fail\":1}")));
+        assertEquals(429, error.statusCode());
+    }
+
+    @Test
+    void cassetteMatchesByHashThenByOrder() {
+        LlmRecording first = new LlmRecording("u", true, "a", 0, List.of());
+        LlmRecording second = new LlmRecording("u", true, "b", 0, List.of());
+        LlmRecording sync = new LlmRecording("u", false, "c", 0, List.of());
+
+        LlmCassette cassette = new LlmCassette(List.of(first, second, sync), false, false);
+        assertSame(second, cassette.next("b", true));
+        cassette.finished();
+        // 摘要不一致时按录制顺序回放同类型的录制
+        assertSame(first, cassette.next("x", true));
+        cassette.finished();
+        assertNull(cassette.next("x", true));
+        assertSame(sync, cassette.next("x", false));
+        cassette.finished();
+
+        LlmCassette strict = new LlmCassette(List.of(first, second), true, true);
+        assertNull(strict.next("x", true));
+        assertSame(first, strict.next("a", true));
+        // 循环模式下回放过的录制可以再次回放
+        assertSame(first, strict.next("a", true));
+    }
+
+    @Test
+    void orderedReplayRejectsConcurrentConversations() {
+        LlmRecording first = new LlmRecording("u", true, "a", 0, List.of());
+        LlmRecording second = new LlmRecording("u", true, "b", 0, List.of());
+        LlmCassette cassette = new LlmCassette(List.of(first, second), false, false);
+        assertSame(first, cassette.next("x", true));
+        // 第一个录制还在回放，无法判断并发的请求属于哪个对话
+        assertThrows(IllegalStateException.class, () -> cassette.next("y", true));
+        // 摘要相同的录制不受影响
+        assertSame(second, cassette.next("b", true));
+    }
+
+    @Test
+    void listenerExceptionsAreReportedToOnError() throws Exception {
+        MemorySink sink = new MemorySink();
+        new RecordingHttpClient(FAKE_SERVER, sink).execute(request("{}"), null, new CollectingListener());
+        HttpClient replayingClient = new ReplayingHttpClient(new LlmCassette(sink.recordings, false, false), 0);
+        List<Throwable> errors = new ArrayList<>();
+        CountDownLatch closed = new CountDownLatch(1);
+        replayingClient.execute(request("{}"), null, new ServerSentEventListener() {
+
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                throw new IllegalStateException("consumer failure");
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                errors.add(throwable);
+            }
+
+            @Override
+            public void onClose() {
+                closed.countDown();
+            }
+        });
+        // onError 正常返回时继续回放，与 JDK 客户端一致
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertEquals(EVENTS.size(), errors.size());
+        assertInstanceOf(IllegalStateException.class, errors.get(0));
+    }
+
+    @Test
+    void stopReplayWhenOnErrorThrows() throws Exception {
+        MemorySink sink = new MemorySink();
+        new RecordingHttpClient(FAKE_SERVER, sink).execute(request("{}"), null, new CollectingListener());
+        LlmCassette cassette = new LlmCassette(sink.recordings, false, true);
+        HttpClient replayingClient = new ReplayingHttpClient(cassette, 0);
+        CountDownLatch stopped = new CountDownLatch(1);
+        List<ServerSentEvent> events = new ArrayList<>();
+        AtomicBoolean closed = new AtomicBoolean();
+        replayingClient.execute(request("{}"), null, new ServerSentEventListener() {
+
+            @Override
+            public void onEvent(ServerSentEvent event) {
+                events.add(event);
+                throw new IllegalStateException("cancelled");
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                stopped.countDown();
+                throw new IllegalStateException("abort");
+            }
+
+            @Override
+            public void onClose() {
+                closed.set(true);
+            }
+        });
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        // 停止后录制已结束回放，下一次按顺序回放不受影响
+        Thread.sleep(100);
+        assertEquals(1, events.size());
+        assertFalse(closed.get());
+        assertNotNull(cassette.next("x", true));
+    }
+
+    @Test
+    void replayThroughOpenAiStreamingChatModel() throws Exception {
+        LlmRecording recording = new LlmRecording("https://api.deepseek.com/chat/completions", true, "h", 0, List.of(
+                LlmRecording.Frame.open(0, 200),
+                LlmRecording.Frame.event(10, null, chunk("{\"role\":\"assistant\",\"content\":\"\"}")),
+                LlmRecording.Frame.event(20, null, chunk("{\"content\":\"你好\"}")),
+                LlmRecording.Frame.event(30, null, chunk("{\"content\":\"，世界\"}")),
+                LlmRecording.Frame.event(40, null, "{\"id\":\"r1\",\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}]}"),
+                LlmRecording.Frame.event(50, null, "{\"id\":\"r1\",\"choices\":[],\"usage\":{\"prompt_tokens\":5,\"completion_tokens\":3,\"total_tokens\":8}}"),
+                LlmRecording.Frame.event(60, null, "[DONE]"),
+                LlmRecording.Frame.close(70)));
+        OpenAiStreamingChatModel model = OpenAiStreamingChatModel.builder()
+                .baseUrl("http://replay")
+                .apiKey("replay")
+                .modelName("deepseek-chat")
+                .httpClientBuilder(new ReplayingHttpClientBuilder(new LlmCassette(List.of(recording, recording), false, false), 0))
+                .build();
+        ChatRequest chatRequest = ChatRequest.builder().messages(UserMessage.from("你好")).build();
+
+        List<String> partials = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<ChatResponse> response = new AtomicReference<>();
+        model.chat(chatRequest, new StreamingChatResponseHandler() {
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                partials.add(partialResponse);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                response.set(completeResponse);
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("你好", "，世界"), partials);
+        assertEquals("你好，世界", response.get().aiMessage().text());
+        assertEquals(8, response.get().tokenUsage().totalTokenCount());
+
+        // 处理器取消后，模型中断回放，不再回调
+        AtomicInteger callbacks = new AtomicInteger();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        model.chat(chatRequest, new StreamingChatResponseHandler() {
+
+            @Override
+            public void onPartialResponse(String partialResponse) {
+                callbacks.incrementAndGet();
+                cancelled.set(true);
+            }
+
+            @Override
+            public void onCompleteResponse(ChatResponse completeResponse) {
+                callbacks.incrementAndGet();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                callbacks.incrementAndGet();
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        });
+        Thread.sleep(300);
+        assertEquals(1, callbacks.get());
+    }
+
+    private static String chunk(String delta) {
+        return "{\"id\":\"r1\",\"choices\":[{\"index\":0,\"delta\":" + delta + "}]}";
+    }
+}
@@ -0,0 +1,36 @@
+package com.yupi.yuaicodemother.ai.routing;
+
+import com.yupi.yuaicodemother.core.cache.PromptNormalizer;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeGenTypeHeuristicClassifierTest {
+
+    private RoutingDecision classify(String prompt) {
+        return CodeGenTypeHeuristicClassifier.classify(PromptNormalizer.normalize(prompt));
+    }
+
+    @Test
+    void confidentForClearPrompts() {
+        RoutingDecision html = classify("做一个简单的个人介绍页面");
+        assertEquals(CodeGenTypeEnum.HTML, html.codeGenType());
+        assertTrue(html.confidence() >= 0.8);
+
+        RoutingDecision multiFile = classify("做一个公司官网，需要首页、关于我们、联系我们三个页面");
+        assertEquals(CodeGenTypeEnum.MULTI_FILE, multiFile.codeGenType());
+        assertTrue(multiFile.confidence() >= 0.8);
+
+        RoutingDecision vue = classify("做一个电商管理系统，包含用户管理、商品管理、订单管理，需要路由和状态管理");
+        assertEquals(CodeGenTypeEnum.VUE_PROJECT, vue.codeGenType());
+        assertTrue(vue.confidence() >= 0.8);
+    }
+
+    @Test
+    void lowConfidenceForAmbiguousPrompts() {
+        assertEquals(0, classify("帮我做点东西").confidence());
+        // 同时命中多种类型的关键词
+        assertTrue(classify("做一个简单的商城首页").confidence() < 0.8);
+    }
+}
@@ -0,0 +1,67 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FairQueueTest {
+
+    @Test
+    void grantsImmediatelyBelowLimit() {
+        FairQueue queue = new FairQueue(2);
+        assertTrue(queue.enqueue("a", 1, false, null).granted().isDone());
+        assertTrue(queue.enqueue("a", 1, false, null).granted().isDone());
+        FairQueue.Ticket third = queue.enqueue("a", 1, false, null);
+        assertFalse(third.granted().isDone());
+        assertEquals(1, queue.waiting());
+
+        queue.release();
+        assertTrue(third.granted().isDone());
+        assertEquals(2, queue.inFlight());
+        assertEquals(0, queue.waiting());
+    }
+
+    @Test
+    void interleavesUsersAndPrefersPriorityLane() {
+        FairQueue queue = new FairQueue(1);
+        queue.enqueue("busy", 1, false, null);
+        List<String> order = new ArrayList<>();
+        // 用户 a 连续提交 3 个请求后，b 和管理员才提交
+        enqueue(queue, order, "a1", "a", false);
+        enqueue(queue, order, "a2", "a", false);
+        enqueue(queue, order, "a3", "a", false);
+        enqueue(queue, order, "b1", "b", false);
+        enqueue(queue, order, "admin1", "admin", true);
+
+        for (int i = 0; i < 5; i++) {
+            queue.release();
+        }
+        assertEquals(List.of("admin1", "a1", "b1", "a2", "a3"), order);
+    }
+
+    @Test
+    void reportsPositionsAndCancels() {
+        FairQueue queue = new FairQueue(1);
+        queue.enqueue("busy", 1, false, null);
+        AtomicInteger first = new AtomicInteger(-1);
+        AtomicInteger second = new AtomicInteger(-1);
+        FairQueue.Ticket t1 = queue.enqueue("a", 1, false, first::set);
+        queue.enqueue("b", 1, false, second::set);
+        assertEquals(1, first.get());
+        assertEquals(2, second.get());
+
+        assertTrue(queue.cancel(t1));
+        assertEquals(1, second.get());
+        // 已获得许可的请求不能再取消
+        queue.release();
+        assertFalse(queue.cancel(t1));
+    }
+
+    private static void enqueue(FairQueue queue, List<String> order, String name, String userId, boolean priority) {
+        queue.enqueue(userId, 1, priority, null).granted().thenRun(() -> order.add(name));
+    }
+}
@@ -0,0 +1,73 @@
+package com.yupi.yuaicodemother.ai.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 模型调用上下文：不被线程池和子线程继承，只通过 wrap / subscribeWith 显式传递
+ */
+class LlmCallContextTest {
+
+    @AfterEach
+    void tearDown() {
+        LlmCallContext.clear();
+    }
+
+    @Test
+    void pooledThreadCreatedUnderContextDoesNotKeepIt() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // 线程池的线程在第一个用户的请求中创建
+            LlmCallContext.currentOrOpen().user("1", "user");
+            assertNull(pool.submit(LlmCallContext::current).get(5, TimeUnit.SECONDS));
+            LlmCallContext.clear();
+
+            // 之后其他调用在同一个线程上也看不到它
+            assertNull(pool.submit(LlmCallContext::current).get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void wrapCarriesContextAndRestoresTheThread() throws Exception {
+        LlmCallContext context = LlmCallContext.currentOrOpen().user("1", "admin");
+        CompletableFuture<LlmCallContext> seen = new CompletableFuture<>();
+        Runnable task = LlmCallContext.wrap(() -> seen.complete(LlmCallContext.current()));
+        LlmCallContext.clear();
+
+        Thread thread = Thread.ofVirtual().start(task);
+        thread.join(5000);
+        assertSame(context, seen.get(5, TimeUnit.SECONDS));
+
+        // 在已有上下文的线程上执行，结束后恢复原来的上下文
+        LlmCallContext other = LlmCallContext.currentOrOpen().user("2", "user");
+        task.run();
+        assertSame(other, LlmCallContext.current());
+    }
+
+    @Test
+    void wrapWithoutContextReturnsTask() {
+        Runnable task = () -> {
+        };
+        assertSame(task, LlmCallContext.wrap(task));
+    }
+
+    @Test
+    void subscribeWithSetsContextOnlyDuringSubscription() {
+        LlmCallContext context = LlmCallContext.currentOrOpen().user("1", "user");
+        LlmCallContext.clear();
+        Flux<LlmCallContext> source = Flux.defer(() -> Flux.just(LlmCallContext.current()));
+
+        assertSame(context, LlmCallContext.subscribeWith(context, source).blockFirst());
+        assertNull(LlmCallContext.current());
+    }
+}
@@ -1,5 +1,7 @@
 package com.yupi.yuaicodemother.core;
 
+import com.yupi.yuaicodemother.ai.model.message.AiResponseMessage;
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
 import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
 import jakarta.annotation.Resource;
 import org.junit.jupiter.api.Assertions;
@@ -24,9 +26,12 @@ class AiCodeGeneratorFacadeTest {
 
     @Test
     void generateAndSaveCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("生成一个登录页面，总共不超过 20 行代码", CodeGenTypeEnum.HTML, 1L);
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream("生成一个登录页面，总共不超过 20 行代码", CodeGenTypeEnum.HTML, 1L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<String> result = codeStream
+                .map(message -> ((AiResponseMessage) message).getData())
+                .collectList()
+                .block();
         // 验证结果
         Assertions.assertNotNull(result);
         // 拼接字符串，得到完整内容
@@ -36,14 +41,13 @@ class AiCodeGeneratorFacadeTest {
 
     @Test
     void generateVueProjectCodeStream() {
-        Flux<String> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
+        Flux<StreamMessage> codeStream = aiCodeGeneratorFacade.generateAndSaveCodeStream(
                 "简单的任务记录网站，总代码量不超过 200 行",
                 CodeGenTypeEnum.VUE_PROJECT, 1L);
         // 阻塞等待所有数据收集完成
-        List<String> result = codeStream.collectList().block();
+        List<StreamMessage> result = codeStream.collectList().block();
         // 验证结果
         Assertions.assertNotNull(result);
-        String completeContent = String.join("", result);
-        Assertions.assertNotNull(completeContent);
+        Assertions.assertFalse(result.isEmpty());
     }
 }
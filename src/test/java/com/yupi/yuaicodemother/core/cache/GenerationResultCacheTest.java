@@ -0,0 +1,288 @@
+package com.yupi.yuaicodemother.core.cache;
+
+import cn.hutool.core.io.FileUtil;
+import com.yupi.yuaicodemother.ai.AiCodeGeneratorService;
+import com.yupi.yuaicodemother.ai.AiCodeGeneratorServiceFactory;
+import com.yupi.yuaicodemother.ai.AppChatMemoryProvider;
+import com.yupi.yuaicodemother.ai.model.message.AiResponseMessage;
+import com.yupi.yuaicodemother.ai.model.message.StreamMessage;
+import com.yupi.yuaicodemother.ai.scheduler.LlmCallContext;
+import com.yupi.yuaicodemother.config.GenerationResultCacheConfig;
+import com.yupi.yuaicodemother.constant.AppConstant;
+import com.yupi.yuaicodemother.core.AiCodeGeneratorFacade;
+import com.yupi.yuaicodemother.core.handler.StreamHandlerExecutor;
+import com.yupi.yuaicodemother.core.similar.SimilarAppSeeder;
+import com.yupi.yuaicodemother.model.entity.App;
+import com.yupi.yuaicodemother.model.entity.User;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import com.yupi.yuaicodemother.ratelimter.quota.TokenQuotaService;
+import com.yupi.yuaicodemother.service.ChatHistoryService;
+import com.yupi.yuaicodemother.service.impl.AppServiceImpl;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.service.AiServices;
+import dev.langchain4j.service.ToolLoopContextPropagator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.File;
+import java.io.Serializable;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 生成结果缓存：首轮对话未命中时写入、命中时回放不调用模型，跳过缓存和非首轮对话不读缓存；
+ * 模型调用上下文只在订阅期间传递，不留在调用线程上
+ */
+class GenerationResultCacheTest {
+
+    private static final String RESULT = "好的，这是待办清单：\n```html\n<html><body>待办清单</body></html>\n```\n";
+
+    private static final long OWNER_ID = 1L;
+
+    private final GenerationResultCacheConfig config = new GenerationResultCacheConfig();
+
+    private final GenerationResultCache cache = new GenerationResultCache();
+
+    private final ScriptedModel model = new ScriptedModel();
+
+    /**
+     * 对话历史服务只需要判断是否有历史消息和保存用户消息
+     */
+    private volatile boolean hasHistory;
+
+    private final ChatHistoryService chatHistoryService = (ChatHistoryService) Proxy.newProxyInstance(
+            ChatHistoryService.class.getClassLoader(), new Class<?>[]{ChatHistoryService.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "hasChatHistory" -> hasHistory;
+                case "addChatMessage" -> true;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    private final Map<Long, ChatMemory> memories = new ConcurrentHashMap<>();
+
+    private final AtomicInteger seedCalls = new AtomicInteger();
+
+    private final Set<Long> usedAppIds = new HashSet<>();
+
+    private AppServiceImpl appService;
+
+    @BeforeEach
+    void setUp() {
+        config.setReplayInterval(Duration.ZERO);
+        config.setReplayChunkChars(8);
+        ReflectionTestUtils.setField(cache, "generationResultCacheConfig", config);
+        cache.init();
+
+        AiServices<AiCodeGeneratorService> builder = AiServices.builder(AiCodeGeneratorService.class)
+                .streamingChatModel(model)
+                .chatMemoryProvider(this::memory);
+        ToolLoopContextPropagator propagator = LlmCallContext::wrap;
+        AiCodeGeneratorService aiService = propagator.applyTo(builder).build();
+        AiCodeGeneratorFacade facade = new AiCodeGeneratorFacade();
+        ReflectionTestUtils.setField(facade, "aiCodeGeneratorServiceFactory", new AiCodeGeneratorServiceFactory() {
+
+            @Override
+            public AiCodeGeneratorService getAiCodeGeneratorService(long appId, CodeGenTypeEnum codeGenType) {
+                return aiService;
+            }
+        });
+        ReflectionTestUtils.setField(facade, "generationResultCache", cache);
+        ReflectionTestUtils.setField(facade, "appChatMemoryProvider", new AppChatMemoryProvider() {
+
+            @Override
+            public ChatMemory get(Object memoryId) {
+                return memory(memoryId);
+            }
+        });
+        ReflectionTestUtils.setField(facade, "similarAppSeeder", new SimilarAppSeeder() {
+
+            @Override
+            public Mono<String> seed(Long appId, Long userId, String userMessage, CodeGenTypeEnum codeGenType) {
+                seedCalls.incrementAndGet();
+                // 与实际实现一样在其他线程上完成
+                return Mono.fromCallable(() -> userMessage).subscribeOn(Schedulers.boundedElastic());
+            }
+        });
+
+        appService = new AppServiceImpl() {
+
+            @Override
+            public App getById(Serializable id) {
+                return App.builder().id((Long) id).userId(OWNER_ID).codeGenType(CodeGenTypeEnum.HTML.getValue()).build();
+            }
+        };
+        ReflectionTestUtils.setField(appService, "aiCodeGeneratorFacade", facade);
+        ReflectionTestUtils.setField(appService, "chatHistoryService", chatHistoryService);
+        ReflectionTestUtils.setField(appService, "tokenQuotaService", new TokenQuotaService() {
+
+            @Override
+            public void checkQuota(User loginUser) {
+            }
+        });
+        ReflectionTestUtils.setField(appService, "streamHandlerExecutor", new StreamHandlerExecutor() {
+
+            @Override
+            public Flux<String> doExecute(Flux<StreamMessage> originFlux, ChatHistoryService chatHistoryService,
+                                          long appId, User loginUser, CodeGenTypeEnum codeGenType) {
+                return originFlux.map(message -> ((AiResponseMessage) message).getData());
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        LlmCallContext.clear();
+        usedAppIds.forEach(appId -> FileUtil.del(outputDir(appId)));
+    }
+
+    @Test
+    void missThenPutThenHitWithoutCallingModel() {
+        assertEquals(RESULT, chat(900_001L, "做一个待办清单", false));
+        assertEquals(1, model.calls.get());
+        assertEquals(RESULT, cache.get(cache.buildKey("做一个待办清单", CodeGenTypeEnum.HTML)));
+
+        // 另一个应用的首轮对话，提示词规范化后相同
+        assertEquals(RESULT, chat(900_002L, "请帮我做一个待办清单！", false));
+
+        assertEquals(1, model.calls.get());
+        assertEquals(1, seedCalls.get());
+        assertTrue(new File(outputDir(900_002L), "index.html").isFile());
+        // 回放结束后本轮对话写入对话记忆
+        List<ChatMessage> messages = memories.get(900_002L).messages();
+        assertEquals(2, messages.size());
+        assertEquals(RESULT, ((AiMessage) messages.get(1)).text());
+    }
+
+    @Test
+    void bypassCacheWhenNoCache() {
+        chat(900_003L, "做一个待办清单", false);
+
+        assertEquals(RESULT, chat(900_004L, "做一个待办清单", true));
+
+        assertEquals(2, model.calls.get());
+        // 跳过缓存时同样不复用相似应用
+        assertEquals(1, seedCalls.get());
+    }
+
+    @Test
+    void neverHitOrPutOnLaterTurns() {
+        hasHistory = true;
+        chat(900_005L, "做一个待办清单", false);
+        assertNull(cache.get(cache.buildKey("做一个待办清单", CodeGenTypeEnum.HTML)));
+
+        hasHistory = false;
+        chat(900_006L, "做一个待办清单", false);
+        hasHistory = true;
+        chat(900_007L, "做一个待办清单", false);
+
+        assertEquals(3, model.calls.get());
+        assertEquals(1, seedCalls.get());
+    }
+
+    @Test
+    void callContextReachesModelButNotCallerThread() {
+        // 首轮对话（经过相似应用查找）和后续对话
+        chat(900_008L, "做一个待办清单", false);
+        hasHistory = true;
+        chat(900_009L, "做一个待办清单", false);
+
+        assertEquals(List.of(String.valueOf(OWNER_ID), String.valueOf(OWNER_ID)), model.callUserIds);
+        assertNull(LlmCallContext.current());
+    }
+
+    @Test
+    void keepDifferentRequirementsApart() {
+        assertNotEquals(cache.buildKey("请假管理系统", CodeGenTypeEnum.HTML), cache.buildKey("假管理系统", CodeGenTypeEnum.HTML));
+        assertNotEquals(cache.buildKey("做一个待办清单", CodeGenTypeEnum.HTML),
+                cache.buildKey("做一个待办清单", CodeGenTypeEnum.MULTI_FILE));
+    }
+
+    @Test
+    void skipBlankAndOversizedResults() {
+        config.setMaxEntryChars(10);
+        cache.put("blank", "  ");
+        cache.put("oversized", "x".repeat(11));
+        cache.put("fits", "x".repeat(10));
+
+        assertNull(cache.get("blank"));
+        assertNull(cache.get("oversized"));
+        assertNotNull(cache.get("fits"));
+    }
+
+    @Test
+    void supportOnlyStaticModesWhenEnabled() {
+        assertTrue(cache.supports(CodeGenTypeEnum.HTML));
+        assertTrue(cache.supports(CodeGenTypeEnum.MULTI_FILE));
+        assertFalse(cache.supports(CodeGenTypeEnum.VUE_PROJECT));
+        config.setEnabled(false);
+        assertFalse(cache.supports(CodeGenTypeEnum.HTML));
+    }
+
+    @Test
+    void splitWithoutBreakingSurrogatePairs() {
+        String text = "ab😀cd😀";
+        List<String> chunks = GenerationResultCache.split(text, 3);
+
+        assertEquals(List.of("ab😀", "cd😀"), chunks);
+        assertEquals(List.of("a", "b"), GenerationResultCache.split("ab", 0));
+        assertTrue(GenerationResultCache.split("", 4).isEmpty());
+        assertEquals(RESULT, String.join("", cache.replay(RESULT).collectList().block()));
+    }
+
+    private String chat(long appId, String message, boolean noCache) {
+        usedAppIds.add(appId);
+        User loginUser = User.builder().id(OWNER_ID).userRole("user").build();
+        List<String> chunks = appService.chatToGenCode(appId, message, loginUser, noCache).collectList().block();
+        return String.join("", chunks);
+    }
+
+    private ChatMemory memory(Object memoryId) {
+        return memories.computeIfAbsent(((Number) memoryId).longValue(), id -> MessageWindowChatMemory.withMaxMessages(20));
+    }
+
+    private static File outputDir(long appId) {
+        return new File(AppConstant.CODE_OUTPUT_ROOT_DIR, CodeGenTypeEnum.HTML.getValue() + "_" + appId);
+    }
+
+    /**
+     * 每次调用都以片段输出同一份生成结果
+     */
+    private static class ScriptedModel implements StreamingChatModel {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private final List<String> callUserIds = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+            calls.incrementAndGet();
+            LlmCallContext callContext = LlmCallContext.current();
+            callUserIds.add(callContext != null ? callContext.getUserId() : "none");
+            for (String chunk : GenerationResultCache.split(RESULT, 16)) {
+                handler.onPartialResponse(chunk);
+            }
+            handler.onCompleteResponse(ChatResponse.builder().aiMessage(AiMessage.from(RESULT)).build());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.yupi.yuaicodemother.core.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptNormalizerTest {
+
+    @Test
+    void ignorePunctuationWhitespaceAndPoliteness() {
+        String expected = PromptNormalizer.normalize("做一个个人博客");
+        assertEquals(expected, PromptNormalizer.normalize("请帮我做一个个人博客！"));
+        assertEquals(expected, PromptNormalizer.normalize("  做一个 个人博客。"));
+        assertEquals(expected, PromptNormalizer.normalize("请给我做一个个人博客"));
+        assertEquals(PromptNormalizer.normalize("生成一个登录页"), PromptNormalizer.normalize("麻烦生成一个登录页"));
+        assertEquals(PromptNormalizer.normalize("Make a TODO app"), PromptNormalizer.normalize("make a todo app!"));
+    }
+
+    @Test
+    void keepMeaningfulDifferences() {
+        assertNotEquals(PromptNormalizer.normalize("做一个个人博客"), PromptNormalizer.normalize("做一个团队博客"));
+        assertNotEquals(PromptNormalizer.normalize("20 行代码"), PromptNormalizer.normalize("30 行代码"));
+        assertEquals("", PromptNormalizer.normalize("  "));
+    }
+
+    @Test
+    void keepPrefixThatIsPartOfTheRequirement() {
+        // 去掉前缀后不是以生成类动词开头时保留原文
+        assertNotEquals(PromptNormalizer.normalize("请假管理系统"), PromptNormalizer.normalize("假管理系统"));
+        assertNotEquals(PromptNormalizer.normalize("给我妈妈做一个相册"), PromptNormalizer.normalize("妈妈做一个相册"));
+        assertNotEquals(PromptNormalizer.normalize("麻烦事记录本"), PromptNormalizer.normalize("事记录本"));
+        assertEquals("请假管理系统", PromptNormalizer.normalize("请假管理系统。"));
+    }
+}
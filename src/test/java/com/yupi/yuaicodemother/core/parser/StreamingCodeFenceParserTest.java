@@ -0,0 +1,99 @@
+package com.yupi.yuaicodemother.core.parser;
+
+import com.yupi.yuaicodemother.core.stream.ResponseAccumulator;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingCodeFenceParserTest {
+
+    private static final String CONTENT = """
+            下面是代码：
+            ```html
+            <div class="a">`inline`</div>
+            ```
+            样式：
+            ```css
+            .a { color: red; }
+            ```
+            ```javascript
+            console.log(`x`);
+            ```
+            完成
+            """;
+
+    @Test
+    void parseFencesAcrossChunks() {
+        // 每次输入 1~3 个字符，覆盖反引号跨片段的情况
+        for (int step = 1; step <= 3; step++) {
+            Map<String, String> files = new LinkedHashMap<>();
+            ResponseAccumulator response = new ResponseAccumulator();
+            StreamingCodeFenceParser parser = new StreamingCodeFenceParser(response, (lang, code) -> files.put(lang, code.trim()));
+            for (int i = 0; i < CONTENT.length(); i += step) {
+                feed(parser, response, CONTENT.substring(i, Math.min(CONTENT.length(), i + step)));
+            }
+            parser.finish();
+            assertEquals("<div class=\"a\">`inline`</div>", files.get("html"));
+            assertEquals(".a { color: red; }", files.get("css"));
+            assertEquals("console.log(`x`);", files.get("javascript"));
+            assertTrue(parser.hasFence());
+        }
+    }
+
+    @Test
+    void notifyFenceAsSoonAsItCloses() {
+        Map<String, String> files = new LinkedHashMap<>();
+        ResponseAccumulator response = new ResponseAccumulator();
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser(response, (lang, code) -> files.put(lang, code));
+        feed(parser, response, "```html\n<p>1</p>\n``");
+        assertTrue(files.isEmpty());
+        feed(parser, response, "`\n```css\n");
+        assertEquals("<p>1</p>\n", files.get("html"));
+        assertFalse(files.containsKey("css"));
+    }
+
+    @Test
+    void noFenceInPlainText() {
+        ResponseAccumulator response = new ResponseAccumulator();
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser(response, (lang, code) -> fail());
+        feed(parser, response, "<html>`a`</html>");
+        parser.finish();
+        assertFalse(parser.hasFence());
+    }
+
+    @Test
+    void flushUnclosedFenceOnFinish() {
+        Map<String, String> files = new LinkedHashMap<>();
+        ResponseAccumulator response = new ResponseAccumulator();
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser(response, (lang, code) -> files.put(lang, code));
+        feed(parser, response, "```html\n<p>truncated``");
+        parser.finish();
+        assertEquals("<p>truncated``", files.get("html"));
+    }
+
+    @Test
+    void sliceFencesFromLargeResponse() {
+        // 跨越累加器多个分段的代码块
+        String body = "<p>line</p>\n".repeat(2000);
+        String content = "说明\n```html\n" + body + "```\n结束";
+        Map<String, String> files = new LinkedHashMap<>();
+        ResponseAccumulator response = new ResponseAccumulator();
+        StreamingCodeFenceParser parser = new StreamingCodeFenceParser(response, (lang, code) -> files.put(lang, code));
+        for (int i = 0; i < content.length(); i += 7) {
+            feed(parser, response, content.substring(i, Math.min(content.length(), i + 7)));
+        }
+        parser.finish();
+        assertEquals(body, files.get("html"));
+    }
+
+    /**
+     * 与门面的用法一致：先追加到完整响应，再交给解析器
+     */
+    private static void feed(StreamingCodeFenceParser parser, ResponseAccumulator response, String chunk) {
+        response.append(chunk);
+        parser.feed(chunk);
+    }
+}
@@ -0,0 +1,101 @@
+package com.yupi.yuaicodemother.core.similar;
+
+import com.yupi.yuaicodemother.core.cache.PromptNormalizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LshIndexTest {
+
+    private final MinHasher minHasher = new MinHasher(72, 3);
+
+    private int[] signature(String prompt) {
+        return minHasher.signature(PromptNormalizer.normalize(prompt));
+    }
+
+    @Test
+    void findNearDuplicatePrompts() {
+        LshIndex index = new LshIndex(12, 6, 32, 10000);
+        index.add(1, 0, 7, false, signature("做一个个人博客网站，包含文章列表、文章详情和关于我页面，整体风格简洁"));
+        index.add(2, 0, 7, false, signature("做一个在线商城，包含商品列表、购物车和订单结算页面"));
+        index.add(3, 1, 7, false, signature("做一个个人博客网站，包含文章列表、文章详情和关于我页面，整体风格简洁"));
+
+        List<LshIndex.Match> matches = index.query(0,
+                signature("请帮我做一个个人博客网站，包含文章列表、文章详情和关于我页面，整体风格简洁大方"), 0.6, 0, 7, 5);
+        assertEquals(1, matches.size());
+        assertEquals(1, matches.get(0).id());
+        assertTrue(matches.get(0).similarity() >= 0.6);
+    }
+
+    @Test
+    void excludeSelfAndRemoved() {
+        LshIndex index = new LshIndex(12, 6, 32, 10000);
+        int[] blog = signature("做一个个人博客网站");
+        index.add(1, 0, 7, false, blog);
+        index.add(2, 0, 7, false, blog);
+        assertEquals(List.of(1L), index.query(0, blog, 0.8, 2, 7, 5).stream().map(LshIndex.Match::id).toList());
+        index.remove(1);
+        assertTrue(index.query(0, blog, 0.8, 2, 7, 5).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void keepWorkingAcrossResizeAndCapDuplicateBuckets() {
+        LshIndex index = new LshIndex(12, 6, 4, 10000);
+        int[] duplicate = signature("做一个待办事项应用");
+        for (int i = 1; i <= 3000; i++) {
+            index.add(i, 0, 7, false, i % 2 == 0 ? duplicate : signature("应用编号 " + i + " 的独立需求描述"));
+        }
+        assertEquals(3000, index.size());
+        // 相同段哈希最多保留 4 条，查询结果不会无限增长
+        assertTrue(index.query(0, duplicate, 0.9, 0, 7, 100).size() <= 4);
+        List<LshIndex.Match> matches = index.query(0, signature("应用编号 2999 的独立需求描述"), 0.99, 0, 7, 1);
+        assertEquals(2999, matches.get(0).id());
+    }
+
+    @Test
+    void evictOldestRecordsWhenFull() {
+        LshIndex index = new LshIndex(12, 6, 32, 3);
+        int[] blog = signature("做一个个人博客网站");
+        index.add(2, 0, 7, false, blog);
+        index.add(3, 0, 7, false, blog);
+        index.add(4, 0, 7, false, blog);
+        assertTrue(index.isFull());
+
+        index.add(5, 0, 7, false, blog);
+        // 比现有记录都早的记录不再加入
+        index.add(1, 0, 7, false, blog);
+
+        assertEquals(3, index.size());
+        assertEquals(List.of(5L, 4L, 3L), index.query(0, blog, 0.8, 0, 7, 5).stream().map(LshIndex.Match::id).toList());
+        index.remove(3);
+        assertFalse(index.isFull());
+        index.add(1, 0, 7, false, blog);
+        assertEquals(List.of(5L, 4L, 1L), index.query(0, blog, 0.8, 0, 7, 5).stream().map(LshIndex.Match::id).toList());
+    }
+
+    @Test
+    void neverReturnOtherUsersPrivateRecords() {
+        LshIndex index = new LshIndex(12, 6, 32, 10000);
+        int[] blog = signature("做一个个人博客网站，包含文章列表和文章详情");
+        index.add(1, 0, 7, false, blog);
+        index.add(2, 0, 8, false, blog);
+        index.add(3, 0, 9, true, blog);
+
+        assertEquals(List.of(3L, 1L), index.query(0, blog, 0.8, 0, 7, 5).stream().map(LshIndex.Match::id).toList());
+        assertEquals(List.of(3L, 2L), index.query(0, blog, 0.8, 0, 8, 5).stream().map(LshIndex.Match::id).toList());
+        // 取消公开后其他用户不再能查到，公开后可以查到
+        index.setShared(3, false);
+        index.setShared(2, true);
+        assertEquals(List.of(2L, 1L), index.query(0, blog, 0.8, 0, 7, 5).stream().map(LshIndex.Match::id).toList());
+        assertEquals(List.of(2L), index.query(0, blog, 0.8, 0, 10, 5).stream().map(LshIndex.Match::id).toList());
+    }
+
+    @Test
+    void emptyPromptHasNoSignature() {
+        assertNull(signature(" ！ "));
+        assertThrows(IllegalArgumentException.class, () -> new LshIndex(12, 6, 32, 10000).add(1, 0, 7, false, new int[3]));
+    }
+}
@@ -0,0 +1,104 @@
+package com.yupi.yuaicodemother.core.similar;
+
+import com.yupi.yuaicodemother.config.SimilarAppConfig;
+import com.yupi.yuaicodemother.model.entity.App;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import com.yupi.yuaicodemother.repository.AppRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 相似应用索引的启动重建：从新到旧加载、索引满时停止、重建期间删除的应用不会被重新加入
+ */
+class SimilarAppIndexTest {
+
+    private static final String PROMPT = "做一个个人博客网站，包含文章列表和文章详情";
+
+    private final SimilarAppConfig config = new SimilarAppConfig();
+
+    private final SimilarAppIndex index = new SimilarAppIndex();
+
+    private final Queue<Runnable> beforePages = new ArrayDeque<>();
+
+    private final Queue<List<App>> pages = new ArrayDeque<>();
+
+    /**
+     * 每次查询的 ID 游标
+     */
+    private final List<Long> cursors = new CopyOnWriteArrayList<>();
+
+    @Test
+    void loadNewestAppsFirstAndStopWhenFull() {
+        config.setMaxIndexedApps(2);
+        pages.add(List.of(app(5), app(4)));
+        pages.add(List.of(app(3), app(2)));
+
+        rebuild();
+
+        assertEquals(List.of(Long.MAX_VALUE), cursors);
+        assertEquals(List.of(5L, 4L), similarIds());
+    }
+
+    @Test
+    void keepAppsRemovedDuringRebuildOutOfIndex() {
+        // 第一页查出后应用 4 被删除，重建线程随后才把这一页加入索引
+        beforePages.add(() -> index.remove(4L));
+        pages.add(List.of(app(5), app(4), app(3)));
+
+        rebuild();
+
+        assertEquals(List.of(5L, 3L), similarIds());
+        // 下一页从上一页最后一个应用之后开始
+        assertEquals(List.of(Long.MAX_VALUE, 3L), cursors);
+        // 重建结束后新增的应用照常加入
+        index.add(4L, 7L, 0, PROMPT, CodeGenTypeEnum.HTML);
+        assertEquals(List.of(5L, 4L, 3L), similarIds());
+    }
+
+    private void rebuild() {
+        AppRepository appRepository = (AppRepository) Proxy.newProxyInstance(AppRepository.class.getClassLoader(),
+                new Class<?>[]{AppRepository.class}, (proxy, method, args) -> {
+                    if (!"findPageBeforeId".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    cursors.add((Long) args[0]);
+                    Runnable beforePage = beforePages.poll();
+                    if (beforePage != null) {
+                        beforePage.run();
+                    }
+                    List<App> page = pages.poll();
+                    return page == null ? List.of() : page;
+                });
+        ReflectionTestUtils.setField(index, "similarAppConfig", config);
+        ReflectionTestUtils.setField(index, "appRepository", appRepository);
+        index.init();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Boolean.TRUE.equals(ReflectionTestUtils.getField(index, "rebuilding"))) {
+            assertTrue(System.nanoTime() < deadline, "等待重建超时");
+            Thread.onSpinWait();
+        }
+    }
+
+    private List<Long> similarIds() {
+        return index.findSimilar(0L, 7L, PROMPT, CodeGenTypeEnum.HTML).stream().map(LshIndex.Match::id).toList();
+    }
+
+    private static App app(long id) {
+        return App.builder()
+                .id(id)
+                .userId(7L)
+                .priority(0)
+                .initPrompt(PROMPT)
+                .codeGenType(CodeGenTypeEnum.HTML.getValue())
+                .build();
+    }
+}
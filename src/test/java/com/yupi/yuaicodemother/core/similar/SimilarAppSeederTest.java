@@ -0,0 +1,149 @@
+package com.yupi.yuaicodemother.core.similar;
+
+import cn.hutool.core.io.FileUtil;
+import com.yupi.yuaicodemother.config.SimilarAppConfig;
+import com.yupi.yuaicodemother.constant.AppConstant;
+import com.yupi.yuaicodemother.model.enums.CodeGenTypeEnum;
+import com.yupi.yuaicodemother.repository.AppRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 相似应用复用：只复用自己的应用和精选应用，附加参考代码，异步复制 Vue 工程
+ */
+class SimilarAppSeederTest {
+
+    private static final long OWNER_ID = 7L;
+
+    private static final long OTHER_USER_ID = 8L;
+
+    private static final String BLOG = "做一个个人博客网站，包含文章列表、文章详情和关于我页面";
+
+    private static final String BLOG_AGAIN = "请帮我做一个个人博客网站，包含文章列表、文章详情和关于我页面！";
+
+    private final SimilarAppConfig config = new SimilarAppConfig();
+
+    private final SimilarAppIndex index = new SimilarAppIndex();
+
+    private final SimilarAppSeeder seeder = new SimilarAppSeeder();
+
+    private final List<File> createdDirs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        AppRepository appRepository = (AppRepository) Proxy.newProxyInstance(AppRepository.class.getClassLoader(),
+                new Class<?>[]{AppRepository.class}, (proxy, method, args) -> List.of());
+        ReflectionTestUtils.setField(index, "similarAppConfig", config);
+        ReflectionTestUtils.setField(index, "appRepository", appRepository);
+        index.init();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (Boolean.TRUE.equals(ReflectionTestUtils.getField(index, "rebuilding"))) {
+            assertTrue(System.nanoTime() < deadline, "等待重建超时");
+            Thread.onSpinWait();
+        }
+        ReflectionTestUtils.setField(seeder, "similarAppConfig", config);
+        ReflectionTestUtils.setField(seeder, "similarAppIndex", index);
+    }
+
+    @AfterEach
+    void tearDown() {
+        createdDirs.forEach(FileUtil::del);
+    }
+
+    @Test
+    void attachOwnAppCodeAsReference() {
+        index.add(920_001L, OWNER_ID, 0, BLOG, CodeGenTypeEnum.HTML);
+        writeFile(CodeGenTypeEnum.HTML, 920_001L, "index.html", "<html>博客</html>");
+
+        String seeded = seeder.seed(920_002L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.HTML).block();
+
+        assertTrue(seeded.startsWith(BLOG_AGAIN));
+        assertTrue(seeded.contains("```html\n<html>博客</html>\n```"));
+    }
+
+    @Test
+    void neverSeedFromOtherUsersPrivateApps() {
+        index.add(920_003L, OTHER_USER_ID, 0, BLOG, CodeGenTypeEnum.HTML);
+        writeFile(CodeGenTypeEnum.HTML, 920_003L, "index.html", "<html>别人的博客</html>");
+        outputDir(CodeGenTypeEnum.HTML, 920_004L);
+
+        assertEquals(BLOG_AGAIN, seeder.seed(920_004L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.HTML).block());
+
+        // 设为精选后对所有用户可见
+        index.updatePriority(920_003L, AppConstant.GOOD_APP_PRIORITY);
+        assertTrue(seeder.seed(920_004L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.HTML).block().contains("别人的博客"));
+    }
+
+    @Test
+    void neverCopyOtherUsersPrivateVueProject() {
+        index.add(920_005L, OTHER_USER_ID, 0, BLOG, CodeGenTypeEnum.VUE_PROJECT);
+        writeFile(CodeGenTypeEnum.VUE_PROJECT, 920_005L, "src/App.vue", "<template>别人的博客</template>");
+        File targetDir = outputDir(CodeGenTypeEnum.VUE_PROJECT, 920_006L);
+
+        assertEquals(BLOG_AGAIN, seeder.seed(920_006L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.VUE_PROJECT).block());
+        assertFalse(targetDir.exists());
+    }
+
+    @Test
+    void skipAppsWithoutOutputOrWithOversizedCode() {
+        config.setMaxReferenceChars(100);
+        index.add(920_007L, OWNER_ID, 0, BLOG, CodeGenTypeEnum.HTML);
+        outputDir(CodeGenTypeEnum.HTML, 920_008L);
+        assertEquals(BLOG_AGAIN, seeder.seed(920_008L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.HTML).block());
+
+        writeFile(CodeGenTypeEnum.HTML, 920_007L, "index.html", "<html>" + "博".repeat(100) + "</html>");
+        assertEquals(BLOG_AGAIN, seeder.seed(920_008L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.HTML).block());
+    }
+
+    @Test
+    void copyVueProjectOffTheCallingThread() {
+        index.add(920_009L, OWNER_ID, 0, BLOG, CodeGenTypeEnum.VUE_PROJECT);
+        writeFile(CodeGenTypeEnum.VUE_PROJECT, 920_009L, "package.json", "{}");
+        writeFile(CodeGenTypeEnum.VUE_PROJECT, 920_009L, "src/App.vue", "<template>博客</template>");
+        writeFile(CodeGenTypeEnum.VUE_PROJECT, 920_009L, "node_modules/vue/index.js", "");
+        File targetDir = outputDir(CodeGenTypeEnum.VUE_PROJECT, 920_010L);
+
+        Mono<String> seed = seeder.seed(920_010L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.VUE_PROJECT);
+        // 订阅前不做任何复制
+        assertFalse(targetDir.exists());
+        String[] copyThread = new String[1];
+        String seeded = seed.doOnNext(message -> copyThread[0] = Thread.currentThread().getName()).block();
+
+        assertTrue(copyThread[0].startsWith("boundedElastic"));
+        assertTrue(seeded.contains("src/App.vue"));
+        assertEquals("<template>博客</template>", FileUtil.readUtf8String(new File(targetDir, "src/App.vue")));
+        assertFalse(new File(targetDir, "node_modules").exists());
+    }
+
+    @Test
+    void keepExistingVueProject() {
+        index.add(920_011L, OWNER_ID, 0, BLOG, CodeGenTypeEnum.VUE_PROJECT);
+        writeFile(CodeGenTypeEnum.VUE_PROJECT, 920_011L, "src/App.vue", "<template>博客</template>");
+        writeFile(CodeGenTypeEnum.VUE_PROJECT, 920_012L, "src/App.vue", "<template>已有</template>");
+
+        assertEquals(BLOG_AGAIN, seeder.seed(920_012L, OWNER_ID, BLOG_AGAIN, CodeGenTypeEnum.VUE_PROJECT).block());
+        assertEquals("<template>已有</template>",
+                FileUtil.readUtf8String(new File(outputDir(CodeGenTypeEnum.VUE_PROJECT, 920_012L), "src/App.vue")));
+    }
+
+    private void writeFile(CodeGenTypeEnum codeGenType, long appId, String relativePath, String content) {
+        FileUtil.writeUtf8String(content, new File(outputDir(codeGenType, appId), relativePath));
+    }
+
+    private File outputDir(CodeGenTypeEnum codeGenType, long appId) {
+        File dir = new File(AppConstant.CODE_OUTPUT_ROOT_DIR, codeGenType.getValue() + "_" + appId);
+        createdDirs.add(dir);
+        return dir;
+    }
+}
@@ -0,0 +1,31 @@
+package com.yupi.yuaicodemother.core.sse;
+
+import cn.hutool.json.JSONUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonSseFrameEncoderTest {
+
+    private final JsonSseFrameEncoder encoder = new JsonSseFrameEncoder();
+
+    @Test
+    void encodePlainChunk() {
+        assertEquals("{\"d\":\"<div>你好</div>\"}", encoder.encode("<div>你好</div>"));
+    }
+
+    @Test
+    void encodeChunkWithEscapes() {
+        String chunk = "const s = \"a\\\\b\";\n\tif (x) {\r\n}\u0001 ";
+        String frame = encoder.encode(chunk);
+        // 与原有 Hutool 序列化结果在语义上保持一致
+        assertEquals(chunk, JSONUtil.parseObj(frame).getStr("d"));
+        assertFalse(frame.contains("\n"));
+    }
+
+    @Test
+    void encodeEmptyAndNullChunk() {
+        assertEquals("{\"d\":\"\"}", encoder.encode(""));
+        assertEquals("{\"d\":\"\"}", encoder.encode(null));
+    }
+}
@@ -0,0 +1,83 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.yupi.yuaicodemother.config.GenerationReplayConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 会话缓存按回放缓冲区的字符数限制总量：进行中的会话按单个会话上限预留，结束后按实际字符数计算
+ */
+class GenerationReplayRegistryTest {
+
+    private final GenerationReplayConfig config = new GenerationReplayConfig();
+
+    private final GenerationReplayRegistry registry = new GenerationReplayRegistry();
+
+    @BeforeEach
+    void setUp() {
+        config.setMaxChars(100);
+        config.setMaxTotalChars(250);
+        ReflectionTestUtils.setField(registry, "generationReplayConfig", config);
+        registry.init();
+    }
+
+    @Test
+    void weighSessionsByBufferedChars() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationSession active = registry.startOrJoin(1L, 1L, "message", upstream::asFlux);
+        assertEquals(100, weightedSize());
+
+        upstream.tryEmitNext("x".repeat(30));
+        upstream.tryEmitComplete();
+        assertTrue(active.isTerminated());
+        assertEquals(30, weightedSize());
+    }
+
+    @Test
+    void evictFinishedSessionsBeyondTotalChars() {
+        for (long appId = 1; appId <= 10; appId++) {
+            registry.startOrJoin(appId, 1L, "message", () -> Flux.just("x".repeat(50)));
+        }
+        sessionCache().cleanUp();
+
+        assertTrue(weightedSize() <= 250);
+        assertTrue(sessionCache().estimatedSize() < 10);
+    }
+
+    @Test
+    void evictionDoesNotCancelActiveSessions() {
+        List<Sinks.Many<String>> upstreams = new ArrayList<>();
+        List<GenerationSession> sessions = new ArrayList<>();
+        for (long appId = 1; appId <= 5; appId++) {
+            Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+            upstreams.add(upstream);
+            sessions.add(registry.startOrJoin(appId, 1L, "message", upstream::asFlux));
+        }
+        sessionCache().cleanUp();
+
+        assertTrue(sessionCache().estimatedSize() < 5);
+        assertTrue(sessions.stream().noneMatch(GenerationSession::isTerminated));
+        upstreams.forEach(Sinks.Many::tryEmitComplete);
+        assertTrue(sessions.stream().allMatch(GenerationSession::isTerminated));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, GenerationSession> sessionCache() {
+        return (Cache<String, GenerationSession>) ReflectionTestUtils.getField(registry, "sessionCache");
+    }
+
+    private long weightedSize() {
+        Cache<String, GenerationSession> cache = sessionCache();
+        cache.cleanUp();
+        return cache.policy().eviction().orElseThrow().weightedSize().orElseThrow();
+    }
+}
@@ -0,0 +1,165 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import com.yupi.yuaicodemother.config.GenerationReplayConfig;
+import com.yupi.yuaicodemother.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RList;
+import org.redisson.misc.CompletableFutureWrapper;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenerationSessionTest {
+
+    private GenerationSession newSession(int maxEvents) {
+        return newSession(maxEvents, null);
+    }
+
+    private GenerationSession newSession(int maxEvents, RList<String> spillList) {
+        GenerationReplayConfig config = new GenerationReplayConfig();
+        config.setMaxEvents(maxEvents);
+        config.setDetachGrace(Duration.ofMillis(50));
+        return new GenerationSession("g1", 1L, 1L, "message", config, spillList, () -> {
+        });
+    }
+
+    @Test
+    void resumeAfterLastSeq() {
+        GenerationSession session = newSession(100);
+        session.start(Flux.just("a", "b", "c"));
+        List<GenerationEvent> events = session.subscribe(1).collectList().block();
+        assertNotNull(events);
+        assertEquals(List.of("b", "c"), events.stream().map(GenerationEvent::data).toList());
+        assertEquals("g1:3", events.get(1).eventId());
+    }
+
+    @Test
+    void replayThenLiveEvents() {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationSession session = newSession(100);
+        session.start(upstream.asFlux());
+        upstream.tryEmitNext("a");
+        var result = session.subscribe(0).map(GenerationEvent::data).collectList().toFuture();
+        upstream.tryEmitNext("b");
+        upstream.tryEmitComplete();
+        assertEquals(List.of("a", "b"), result.join());
+        assertTrue(session.isTerminated());
+    }
+
+    @Test
+    void evictedEventsWithoutSpillCannotResume() {
+        GenerationSession session = newSession(4);
+        session.start(Flux.just("1", "2", "3", "4", "5"));
+        assertThrows(BusinessException.class, () -> session.subscribe(0).blockLast());
+        List<GenerationEvent> tail = session.subscribe(4).collectList().block();
+        assertNotNull(tail);
+        assertEquals(List.of("5"), tail.stream().map(GenerationEvent::data).toList());
+    }
+
+    @Test
+    void cancelUpstreamAfterLastSubscriberLeaves() throws InterruptedException {
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationSession session = newSession(100);
+        session.start(upstream.asFlux());
+        var first = session.subscribe(0).subscribe();
+        var second = session.subscribe(0).subscribe();
+        first.dispose();
+        Thread.sleep(150);
+        assertFalse(session.isTerminated());
+        second.dispose();
+        Thread.sleep(150);
+        assertTrue(session.isTerminated());
+        assertEquals(Sinks.EmitResult.FAIL_CANCELLED, upstream.tryEmitNext("late"));
+    }
+
+    @Test
+    void spillWithoutBlockingUpstream() {
+        FakeSpillList spill = new FakeSpillList();
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        GenerationSession session = newSession(4, spill.proxy());
+        session.start(upstream.asFlux());
+        // Redis 写入一直未确认，上游照常推进
+        for (int i = 1; i <= 10; i++) {
+            upstream.tryEmitNext(String.valueOf(i));
+        }
+        // 两批被淘汰的事件按顺序写入，上一批确认前不会发出下一批
+        assertEquals(1, spill.pendingWrites.size());
+
+        // 写入确认前，被淘汰的事件仍可从内存续传
+        List<String> replayed = new ArrayList<>();
+        var live = session.subscribe(0).map(GenerationEvent::data).subscribe(replayed::add);
+        assertEquals(List.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"), replayed);
+        live.dispose();
+
+        spill.completeWrites();
+        assertEquals(List.of("1", "2", "3", "4", "5", "6"), spill.stored);
+        upstream.tryEmitComplete();
+        List<GenerationEvent> resumed = session.subscribe(2).collectList().block();
+        assertNotNull(resumed);
+        assertEquals(List.of("3", "4", "5", "6", "7", "8", "9", "10"), resumed.stream().map(GenerationEvent::data).toList());
+        assertEquals("g1:10", resumed.get(resumed.size() - 1).eventId());
+    }
+
+    @Test
+    void stopSpillingAfterRedisFailure() {
+        FakeSpillList spill = new FakeSpillList();
+        GenerationSession session = newSession(4, spill.proxy());
+        spill.failWrites = true;
+        session.start(Flux.just("1", "2", "3", "4", "5"));
+        spill.completeWrites();
+        assertThrows(BusinessException.class, () -> session.subscribe(0).blockLast());
+        List<GenerationEvent> tail = session.subscribe(4).collectList().block();
+        assertNotNull(tail);
+        assertEquals(List.of("5"), tail.stream().map(GenerationEvent::data).toList());
+    }
+
+    /**
+     * 只实现会话用到的异步方法，写入在 completeWrites 之前保持未确认
+     */
+    private static class FakeSpillList {
+
+        private final List<String> stored = new CopyOnWriteArrayList<>();
+
+        private final List<Runnable> pendingWrites = new CopyOnWriteArrayList<>();
+
+        private boolean failWrites;
+
+        @SuppressWarnings("unchecked")
+        RList<String> proxy() {
+            return (RList<String>) Proxy.newProxyInstance(RList.class.getClassLoader(), new Class<?>[]{RList.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "addAllAsync" -> {
+                            CompletableFuture<Boolean> future = new CompletableFuture<>();
+                            pendingWrites.add(() -> {
+                                if (failWrites) {
+                                    future.completeExceptionally(new IllegalStateException("Redis 不可用"));
+                                } else {
+                                    stored.addAll((Collection<String>) args[0]);
+                                    future.complete(true);
+                                }
+                            });
+                            yield new CompletableFutureWrapper<>(future);
+                        }
+                        case "expireAsync" -> new CompletableFutureWrapper<>(true);
+                        case "rangeAsync" -> new CompletableFutureWrapper<>(
+                                new ArrayList<>(stored.subList((int) args[0], (int) args[1] + 1)));
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+
+        void completeWrites() {
+            while (!pendingWrites.isEmpty()) {
+                pendingWrites.remove(0).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseAccumulatorTest {
+
+    @Test
+    void appendAcrossSegments() {
+        ResponseAccumulator accumulator = new ResponseAccumulator();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            String chunk = "片段" + i + "\n";
+            accumulator.append(chunk);
+            expected.append(chunk);
+        }
+        assertEquals(expected.length(), accumulator.length());
+        assertEquals(expected.toString(), accumulator.toString());
+        assertEquals(expected.substring(4090, 4200), accumulator.subSequence(4090, 4200).toString());
+        assertEquals(expected.charAt(8192), accumulator.charAt(8192));
+    }
+
+    @Test
+    void emptyAccumulator() {
+        ResponseAccumulator accumulator = new ResponseAccumulator().append(null);
+        assertTrue(accumulator.isEmpty());
+        assertEquals("", accumulator.toString());
+        assertThrows(IndexOutOfBoundsException.class, () -> accumulator.charAt(0));
+    }
+}
@@ -0,0 +1,52 @@
+package com.yupi.yuaicodemother.core.stream;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamChunkCoalescerTest {
+
+    @Test
+    void mergeUntilMaxBytes() {
+        Flux<StreamChunk> source = Flux.just("ab", "cd", "ef", "g").map(StreamChunk::of);
+        List<String> frames = StreamChunkCoalescer.coalesce(source, 4, Duration.ofSeconds(10))
+                .collectList()
+                .block();
+        assertEquals(List.of("abcd", "efg"), frames);
+    }
+
+    @Test
+    void boundaryFlushesPendingText() {
+        Flux<StreamChunk> source = Flux.just(
+                StreamChunk.of("a"),
+                StreamChunk.of("b"),
+                StreamChunk.boundary("[工具调用]"),
+                StreamChunk.of("c"));
+        List<String> frames = StreamChunkCoalescer.coalesce(source, 1024, Duration.ofSeconds(10))
+                .collectList()
+                .block();
+        assertEquals(List.of("ab", "[工具调用]", "c"), frames);
+    }
+
+    @Test
+    void flushAfterMaxDelay() {
+        Flux<StreamChunk> source = Flux.concat(
+                Flux.just(StreamChunk.of("a"), StreamChunk.of("b")),
+                Flux.just(StreamChunk.of("c")).delaySubscription(Duration.ofMillis(300)));
+        List<String> frames = StreamChunkCoalescer.coalesce(source, 1024, Duration.ofMillis(20))
+                .collectList()
+                .block();
+        assertEquals(List.of("ab", "c"), frames);
+    }
+
+    @Test
+    void utf8Length() {
+        assertEquals(3, StreamChunkCoalescer.utf8Length("abc"));
+        assertEquals(6, StreamChunkCoalescer.utf8Length("你好"));
+        assertEquals(4, StreamChunkCoalescer.utf8Length("😀"));
+    }
+}
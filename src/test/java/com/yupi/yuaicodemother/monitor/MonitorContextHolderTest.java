@@ -0,0 +1,46 @@
+package com.yupi.yuaicodemother.monitor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonitorContextHolderTest {
+
+    private static final MonitorContext ALICE = MonitorContext.builder().userId("1").appId("10").build();
+
+    private static final MonitorContext BOB = MonitorContext.builder().userId("2").appId("20").build();
+
+    @AfterEach
+    void tearDown() {
+        MonitorContextHolder.clearContext();
+    }
+
+    @Test
+    void notInheritedByChildThreads() throws InterruptedException {
+        MonitorContextHolder.setContext(ALICE);
+        AtomicReference<MonitorContext> seen = new AtomicReference<>(BOB);
+        Thread child = new Thread(() -> seen.set(MonitorContextHolder.getContext()));
+        child.start();
+        child.join();
+        assertNull(seen.get());
+    }
+
+    @Test
+    void runWithContextRestoresPrevious() {
+        MonitorContextHolder.setContext(ALICE);
+        AtomicReference<MonitorContext> seen = new AtomicReference<>();
+        MonitorContextHolder.runWithContext(BOB, () -> seen.set(MonitorContextHolder.getContext()));
+        assertSame(BOB, seen.get());
+        assertSame(ALICE, MonitorContextHolder.getContext());
+
+        // 任务抛出异常时同样恢复（原来没有上下文）
+        MonitorContextHolder.clearContext();
+        assertThrows(IllegalStateException.class, () -> MonitorContextHolder.runWithContext(BOB, () -> {
+            throw new IllegalStateException();
+        }));
+        assertNull(MonitorContextHolder.getContext());
+    }
+}
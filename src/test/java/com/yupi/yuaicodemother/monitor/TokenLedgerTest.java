@@ -0,0 +1,181 @@
+package com.yupi.yuaicodemother.monitor;
+
+import com.yupi.yuaicodemother.config.TokenLedgerConfig;
+import com.yupi.yuaicodemother.repository.TokenUsageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenLedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final FakeRepository repository = new FakeRepository();
+
+    private TokenLedger tokenLedger;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (tokenLedger != null) {
+            tokenLedger.destroy();
+        }
+    }
+
+    @Test
+    void writeFullBatchesThenRestAfterFlushInterval() {
+        tokenLedger = start(config(3, Duration.ofMillis(300), 0));
+        for (int i = 1; i <= 7; i++) {
+            tokenLedger.record(record(i));
+        }
+        await(() -> repository.writtenIds().size() == 7);
+
+        assertEquals(List.of(3, 3, 1), repository.batchSizes());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), repository.writtenIds());
+        assertEquals(7, records("written"));
+    }
+
+    @Test
+    void retryFailedBatch() {
+        repository.failures.set(2);
+        tokenLedger = start(config(10, Duration.ofMillis(50), 3));
+        tokenLedger.record(record(1));
+        tokenLedger.record(record(2));
+        await(() -> repository.writtenIds().size() == 2);
+
+        assertEquals(List.of(1L, 2L), repository.writtenIds());
+        assertEquals(2, meterRegistry.get("ai_token_ledger_retries_total").counter().count());
+        assertEquals(0, records("failed"));
+    }
+
+    @Test
+    void dropBatchAfterRetriesAndKeepWriting() {
+        repository.failures.set(3);
+        tokenLedger = start(config(10, Duration.ofMillis(50), 2));
+        tokenLedger.record(record(1));
+        await(() -> records("failed") == 1);
+        // 写入线程仍然存活，之后的记录正常写入
+        tokenLedger.record(record(2));
+        await(() -> repository.writtenIds().size() == 1);
+
+        assertEquals(List.of(2L), repository.writtenIds());
+        assertEquals(2, meterRegistry.get("ai_token_ledger_retries_total").counter().count());
+    }
+
+    @Test
+    void writeQueuedRecordsOnShutdown() throws InterruptedException {
+        tokenLedger = start(config(2, Duration.ofMinutes(1), 0));
+        for (int i = 1; i <= 5; i++) {
+            tokenLedger.record(record(i));
+        }
+        tokenLedger.destroy();
+        tokenLedger = null;
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), repository.writtenIds());
+        assertTrue(repository.batchSizes().stream().allMatch(size -> size <= 2));
+    }
+
+    @Test
+    void dropNewRecordsWhenQueueIsFull() {
+        TokenLedgerConfig config = config(1, Duration.ofMinutes(1), 0);
+        config.setQueueCapacity(2);
+        repository.blocked = true;
+        tokenLedger = start(config);
+        try {
+            // 第一条被写入线程取走后阻塞在写入上，队列只能再容纳两条
+            tokenLedger.record(record(1));
+            await(() -> repository.calls.get() == 1);
+            for (int i = 2; i <= 5; i++) {
+                tokenLedger.record(record(i));
+            }
+            assertEquals(2, records("dropped"));
+        } finally {
+            repository.blocked = false;
+        }
+        await(() -> repository.writtenIds().size() == 3);
+        assertEquals(List.of(1L, 2L, 3L), repository.writtenIds());
+    }
+
+    private TokenLedger start(TokenLedgerConfig config) {
+        TokenLedger ledger = new TokenLedger();
+        ReflectionTestUtils.setField(ledger, "tokenLedgerConfig", config);
+        ReflectionTestUtils.setField(ledger, "tokenUsageRepository", repository);
+        ReflectionTestUtils.setField(ledger, "meterRegistry", meterRegistry);
+        ledger.init();
+        return ledger;
+    }
+
+    private double records(String result) {
+        return meterRegistry.get("ai_token_ledger_records_total").tag("result", result).counter().count();
+    }
+
+    private static TokenLedgerConfig config(int batchSize, Duration flushInterval, int maxRetries) {
+        TokenLedgerConfig config = new TokenLedgerConfig();
+        config.setBatchSize(batchSize);
+        config.setFlushInterval(flushInterval);
+        config.setMaxRetries(maxRetries);
+        config.setRetryBackoff(Duration.ofMillis(10));
+        return config;
+    }
+
+    private static TokenUsageRecord record(long appId) {
+        return new TokenUsageRecord(1L, appId, "deepseek-chat", 10, 20, 30, LocalDateTime.now());
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "等待超时");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * 记录每批写入的内容，可以模拟前若干次写入失败和写入阻塞
+     */
+    private static class FakeRepository extends TokenUsageRepository {
+
+        private final List<List<TokenUsageRecord>> batches = new CopyOnWriteArrayList<>();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile boolean blocked;
+
+        @Override
+        public void batchInsert(List<TokenUsageRecord> records) {
+            calls.incrementAndGet();
+            while (blocked) {
+                Thread.onSpinWait();
+            }
+            if (failures.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                throw new IllegalStateException("数据库不可用");
+            }
+            batches.add(new ArrayList<>(records));
+        }
+
+        List<Integer> batchSizes() {
+            return batches.stream().map(List::size).toList();
+        }
+
+        List<Long> writtenIds() {
+            return batches.stream().flatMap(List::stream).map(TokenUsageRecord::appId).toList();
+        }
+    }
+}
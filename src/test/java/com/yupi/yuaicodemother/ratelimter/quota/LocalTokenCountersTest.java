@@ -0,0 +1,103 @@
+package com.yupi.yuaicodemother.ratelimter.quota;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalTokenCountersTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 8, 1);
+
+    @Test
+    void usedIncludesReconciledAndPending() {
+        LocalTokenCounters counters = new LocalTokenCounters();
+        assertEquals(0, counters.used(1, TODAY));
+
+        counters.add(1, TODAY, 100);
+        counters.add(1, TODAY, 50);
+        assertEquals(150, counters.used(1, TODAY));
+
+        // 其他实例已经同步了 1000
+        counters.updateReconciled(1, TODAY, 1000);
+        assertEquals(1150, counters.used(1, TODAY));
+        // 总量只增不减
+        counters.updateReconciled(1, TODAY, 900);
+        assertEquals(1150, counters.used(1, TODAY));
+    }
+
+    @Test
+    void commitMovesDeltaFromPendingToReconciled() {
+        LocalTokenCounters counters = new LocalTokenCounters();
+        counters.add(1, TODAY, 100);
+        Map<LocalTokenCounters.Key, Long> deltas = counters.pendingDeltas(TODAY);
+        LocalTokenCounters.Key key = new LocalTokenCounters.Key(1, TODAY);
+        assertEquals(Map.of(key, 100L), deltas);
+
+        // 同步期间又产生了新的用量
+        counters.add(1, TODAY, 30);
+        counters.commit(key, 100, 100);
+        assertEquals(130, counters.used(1, TODAY));
+        assertEquals(Map.of(key, 30L), counters.pendingDeltas(TODAY));
+    }
+
+    @Test
+    void failedReconcileKeepsDelta() {
+        LocalTokenCounters counters = new LocalTokenCounters();
+        counters.add(1, TODAY, 100);
+        counters.pendingDeltas(TODAY);
+        // 没有 commit，下一轮继续同步同样的增量
+        assertEquals(Map.of(new LocalTokenCounters.Key(1, TODAY), 100L), counters.pendingDeltas(TODAY));
+        assertEquals(100, counters.used(1, TODAY));
+    }
+
+    @Test
+    void staleDaysAreRemovedOnceSynced() {
+        LocalTokenCounters counters = new LocalTokenCounters();
+        LocalDate yesterday = TODAY.minusDays(1);
+        counters.add(1, yesterday, 100);
+        // 有增量时保留到同步完成
+        assertEquals(1, counters.pendingDeltas(TODAY).size());
+        assertEquals(1, counters.size());
+
+        counters.commit(new LocalTokenCounters.Key(1, yesterday), 100, 100);
+        assertTrue(counters.pendingDeltas(TODAY).isEmpty());
+        assertEquals(0, counters.size());
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() {
+        LocalTokenCounters counters = new LocalTokenCounters();
+        IntStream.range(0, 10_000).parallel().forEach(i -> counters.add(i % 4, TODAY, 1));
+        long total = IntStream.range(0, 4).mapToLong(userId -> counters.used(userId, TODAY)).sum();
+        assertEquals(10_000, total);
+    }
+
+    @Test
+    void addsRacingWithStaleCleanupAreNotLost() {
+        LocalTokenCounters counters = new LocalTokenCounters();
+        LocalDate yesterday = TODAY.minusDays(1);
+        AtomicBoolean adding = new AtomicBoolean(true);
+        // 跨天后仍有前一天的用量陆续写入，同步线程同时在同步并清理前一天的计数
+        CompletableFuture<Long> synced = CompletableFuture.supplyAsync(() -> {
+            long total = 0;
+            while (adding.get() || counters.size() > 0) {
+                for (Map.Entry<LocalTokenCounters.Key, Long> delta : counters.pendingDeltas(TODAY).entrySet()) {
+                    total += delta.getValue();
+                    counters.commit(delta.getKey(), delta.getValue(), total);
+                }
+            }
+            return total;
+        });
+        IntStream.range(0, 20_000).parallel().forEach(i -> counters.add(1, yesterday, 1));
+        adding.set(false);
+
+        assertEquals(20_000, synced.join());
+        assertEquals(0, counters.size());
+    }
+}
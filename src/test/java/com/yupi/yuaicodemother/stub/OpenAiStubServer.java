@@ -0,0 +1,288 @@
+package com.yupi.yuaicodemother.stub;
+
+import cn.hutool.core.io.IoUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可嵌入的 OpenAI 兼容模拟模型服务（POST {baseUrl}/chat/completions）
+ * 用于压测生成链路而不消耗真实 Token：按配置的首 token 耗时、每秒 token 数和抖动流式输出 {@link StubResponses} 中的回复，
+ * 按错误率返回 503，并且在 Vue 工程模式下发出 writeFile / readFile / modifyFile 的工具调用增量。
+ * 每个请求在独立的虚拟线程中处理，客户端断开（取消生成）时停止输出
+ *
+ * <pre>
+ * try (OpenAiStubServer server = new OpenAiStubServer(StubBehavior.builder().build()).start()) {
+ *     String baseUrl = server.getBaseUrl();
+ * }
+ * </pre>
+ *
+ * @author yupi
+ */
+@Slf4j
+public class OpenAiStubServer implements AutoCloseable {
+
+    private static final String COMPLETIONS_PATH = "/chat/completions";
+
+    private final StubBehavior behavior;
+
+    private final AtomicLong requestCount = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    public OpenAiStubServer(StubBehavior behavior) {
+        this.behavior = behavior;
+    }
+
+    /**
+     * 启动服务
+     */
+    public OpenAiStubServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(behavior.getPort()), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("模拟模型服务已启动，baseUrl: {}, behavior: {}", getBaseUrl(), behavior);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 供模型配置使用的 base-url
+     */
+    public String getBaseUrl() {
+        return "http://localhost:" + getPort() + "/v1";
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    private void handle(HttpExchange exchange) {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod()) || !exchange.getRequestURI().getPath().endsWith(COMPLETIONS_PATH)) {
+                sendJson(exchange, 404, error("not found", "invalid_request_error"));
+                return;
+            }
+            String body = IoUtil.read(exchange.getRequestBody(), StandardCharsets.UTF_8);
+            JSONObject request = JSONUtil.parseObj(body);
+            long seq = requestCount.incrementAndGet();
+            // 同一个 seed 下第 N 个请求的行为是确定的
+            SplittableRandom random = new SplittableRandom(behavior.getSeed() * 31 + seq);
+            if (random.nextDouble() < behavior.getErrorRate()) {
+                errorCount.incrementAndGet();
+                sendJson(exchange, 503, error("stub injected error", "server_error"));
+                return;
+            }
+            StubResponses.Reply reply = StubResponses.reply(request, behavior.isToolCalls());
+            Completion completion = new Completion("chatcmpl-stub-" + seq, request.getStr("model", "stub-model"),
+                    System.currentTimeMillis() / 1000, body.length() / Math.max(1, behavior.getCharsPerToken()));
+            if (request.getBool("stream", false)) {
+                stream(exchange, completion, reply, random);
+            } else {
+                complete(exchange, completion, reply, random);
+            }
+        } catch (IOException e) {
+            // 客户端断开（例如取消生成或对冲请求落败）
+            log.debug("模拟模型服务连接中断: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.warn("模拟模型服务处理请求失败", e);
+        }
+    }
+
+    /**
+     * 流式输出：首 token 耗时之后逐个 token 输出文本或工具调用参数
+     */
+    private void stream(HttpExchange exchange, Completion completion, StubResponses.Reply reply, SplittableRandom random)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        sleep(behavior.getTimeToFirstToken().toNanos(), random);
+        sendChunk(out, completion, new JSONObject().set("role", "assistant").set("content", ""), null);
+        int completionTokens = 0;
+        for (String token : tokensOf(reply.content())) {
+            sendChunk(out, completion, new JSONObject().set("content", token), null);
+            completionTokens++;
+            pace(random);
+        }
+        List<StubResponses.ToolCall> toolCalls = reply.toolCalls();
+        for (int index = 0; index < toolCalls.size(); index++) {
+            StubResponses.ToolCall toolCall = toolCalls.get(index);
+            JSONObject start = new JSONObject()
+                    .set("index", index)
+                    .set("id", "call_" + completion.id() + "_" + index)
+                    .set("type", "function")
+                    .set("function", new JSONObject().set("name", toolCall.name()).set("arguments", ""));
+            sendChunk(out, completion, new JSONObject().set("tool_calls", new JSONArray().set(start)), null);
+            for (String token : tokensOf(toolCall.arguments())) {
+                JSONObject argumentsDelta = new JSONObject()
+                        .set("index", index)
+                        .set("function", new JSONObject().set("arguments", token));
+                sendChunk(out, completion, new JSONObject().set("tool_calls", new JSONArray().set(argumentsDelta)), null);
+                completionTokens++;
+                pace(random);
+            }
+        }
+        sendChunk(out, completion, new JSONObject(), toolCalls.isEmpty() ? "stop" : "tool_calls");
+        // 用量放在最后一个 choices 为空的块中（stream_options.include_usage）
+        JSONObject usageChunk = completion.chunk().set("choices", new JSONArray()).set("usage", completion.usage(completionTokens));
+        writeEvent(out, usageChunk.toString());
+        writeEvent(out, "[DONE]");
+    }
+
+    /**
+     * 非流式输出：等待相当于流式输出完成的时间后一次性返回
+     */
+    private void complete(HttpExchange exchange, Completion completion, StubResponses.Reply reply, SplittableRandom random)
+            throws IOException, InterruptedException {
+        List<String> tokens = tokensOf(reply.content());
+        sleep(behavior.getTimeToFirstToken().toNanos(), random);
+        for (int i = 1; i < tokens.size(); i++) {
+            pace(random);
+        }
+        JSONObject message = new JSONObject().set("role", "assistant").set("content", reply.content());
+        if (!reply.toolCalls().isEmpty()) {
+            JSONArray toolCalls = new JSONArray();
+            for (int index = 0; index < reply.toolCalls().size(); index++) {
+                StubResponses.ToolCall toolCall = reply.toolCalls().get(index);
+                toolCalls.add(new JSONObject()
+                        .set("id", "call_" + completion.id() + "_" + index)
+                        .set("type", "function")
+                        .set("function", new JSONObject().set("name", toolCall.name()).set("arguments", toolCall.arguments())));
+            }
+            message.set("tool_calls", toolCalls);
+        }
+        JSONObject choice = new JSONObject()
+                .set("index", 0)
+                .set("message", message)
+                .set("finish_reason", reply.toolCalls().isEmpty() ? "stop" : "tool_calls");
+        JSONObject response = new JSONObject()
+                .set("id", completion.id())
+                .set("object", "chat.completion")
+                .set("created", completion.created())
+                .set("model", completion.model())
+                .set("choices", new JSONArray().set(choice))
+                .set("usage", completion.usage(tokens.size()));
+        sendJson(exchange, 200, response);
+    }
+
+    private void sendChunk(OutputStream out, Completion completion, JSONObject delta, String finishReason) throws IOException {
+        JSONObject choice = new JSONObject().set("index", 0).set("delta", delta);
+        if (finishReason != null) {
+            choice.set("finish_reason", finishReason);
+        }
+        writeEvent(out, completion.chunk().set("choices", new JSONArray().set(choice)).toString());
+    }
+
+    private static void writeEvent(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static JSONObject error(String message, String type) {
+        return new JSONObject().set("error", new JSONObject().set("message", message).set("type", type));
+    }
+
+    /**
+     * 按每秒 token 数等待输出下一个 token
+     */
+    private void pace(SplittableRandom random) throws InterruptedException {
+        if (behavior.getTokensPerSecond() > 0) {
+            sleep((long) (TimeUnit.SECONDS.toNanos(1) / behavior.getTokensPerSecond()), random);
+        }
+    }
+
+    private void sleep(long baseNanos, SplittableRandom random) throws InterruptedException {
+        double factor = 1 + behavior.getJitter() * (2 * random.nextDouble() - 1);
+        long nanos = (long) (baseNanos * Math.max(0, factor));
+        if (nanos > 0) {
+            Thread.sleep(Duration.ofNanos(nanos));
+        }
+    }
+
+    /**
+     * 按 charsPerToken 个字符（码点）切分 token
+     */
+    private List<String> tokensOf(String text) {
+        List<String> tokens = new ArrayList<>();
+        int size = Math.max(1, behavior.getCharsPerToken());
+        int start = 0;
+        while (start < text.length()) {
+            int end = start;
+            for (int i = 0; i < size && end < text.length(); i++) {
+                end = text.offsetByCodePoints(end, 1);
+            }
+            tokens.add(text.substring(start, end));
+            start = end;
+        }
+        return tokens;
+    }
+
+    /**
+     * 一次回复的公共字段
+     */
+    private record Completion(String id, String model, long created, int promptTokens) {
+
+        JSONObject chunk() {
+            return new JSONObject()
+                    .set("id", id)
+                    .set("object", "chat.completion.chunk")
+                    .set("created", created)
+                    .set("model", model);
+        }
+
+        JSONObject usage(int completionTokens) {
+            return new JSONObject()
+                    .set("prompt_tokens", promptTokens)
+                    .set("completion_tokens", completionTokens)
+                    .set("total_tokens", promptTokens + completionTokens);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.yupi.yuaicodemother.stub;
+
+/**
+ * 单独启动模拟模型服务（参数见 {@link StubBehavior#fromSystemProperties()}），例如
+ * -Dstub.port=18080 -Dstub.tokens-per-second=50 -Dstub.ttft-ms=800 -Dstub.error-rate=0.05
+ * 应用以 --spring.profiles.active=stub 启动即可连接
+ *
+ * @author yupi
+ */
+public class OpenAiStubServerLauncher {
+
+    public static void main(String[] args) throws Exception {
+        OpenAiStubServer server = new OpenAiStubServer(StubBehavior.fromSystemProperties()).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        Thread.currentThread().join();
+    }
+}
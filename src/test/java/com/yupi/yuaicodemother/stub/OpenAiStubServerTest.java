@@ -0,0 +1,168 @@
+package com.yupi.yuaicodemother.stub;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAiStubServerTest {
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private static StubBehavior.StubBehaviorBuilder fastBehavior() {
+        return StubBehavior.builder()
+                .tokensPerSecond(0)
+                .timeToFirstToken(Duration.ZERO)
+                .jitter(0);
+    }
+
+    private HttpResponse<String> post(OpenAiStubServer server, JSONObject body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(server.getBaseUrl() + "/chat/completions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static JSONObject chatRequest(boolean stream, String... tools) {
+        JSONArray toolArray = new JSONArray();
+        for (String tool : tools) {
+            toolArray.add(new JSONObject().set("type", "function").set("function", new JSONObject().set("name", tool)));
+        }
+        JSONObject request = new JSONObject()
+                .set("model", "stub-chat")
+                .set("stream", stream)
+                .set("messages", new JSONArray()
+                        .set(new JSONObject().set("role", "system").set("content", "你是前端专家"))
+                        .set(new JSONObject().set("role", "user").set("content", "做一个待办清单")));
+        if (!toolArray.isEmpty()) {
+            request.set("tools", toolArray);
+        }
+        return request;
+    }
+
+    /**
+     * 解析 SSE 响应中的数据块
+     */
+    private static List<String> events(String body) {
+        return body.lines()
+                .filter(line -> line.startsWith("data: "))
+                .map(line -> line.substring("data: ".length()))
+                .toList();
+    }
+
+    @Test
+    void streamsTemplatedCode() throws Exception {
+        try (OpenAiStubServer server = new OpenAiStubServer(fastBehavior().build()).start()) {
+            HttpResponse<String> response = post(server, chatRequest(true));
+            assertEquals(200, response.statusCode());
+            List<String> events = events(response.body());
+            assertEquals("[DONE]", events.getLast());
+
+            StringBuilder content = new StringBuilder();
+            String finishReason = null;
+            for (String event : events.subList(0, events.size() - 1)) {
+                JSONArray choices = JSONUtil.parseObj(event).getJSONArray("choices");
+                if (choices.isEmpty()) {
+                    continue;
+                }
+                JSONObject choice = choices.getJSONObject(0);
+                content.append(choice.getJSONObject("delta").getStr("content", ""));
+                finishReason = choice.getStr("finish_reason", finishReason);
+            }
+            assertEquals("stop", finishReason);
+            assertTrue(content.toString().contains("```html"));
+            assertTrue(content.toString().contains("做一个待办清单"));
+            // 最后一个数据块携带用量
+            JSONObject usage = JSONUtil.parseObj(events.get(events.size() - 2)).getJSONObject("usage");
+            assertTrue(usage.getInt("completion_tokens") > 0);
+        }
+    }
+
+    @Test
+    void streamsToolCallDeltasByRound() throws Exception {
+        try (OpenAiStubServer server = new OpenAiStubServer(fastBehavior().build()).start()) {
+            JSONObject request = chatRequest(true, "writeFile", "readFile", "modifyFile", "exit");
+            List<String> events = events(post(server, request).body());
+
+            StringBuilder arguments = new StringBuilder();
+            String finishReason = null;
+            int toolCallStarts = 0;
+            for (String event : events.subList(0, events.size() - 1)) {
+                JSONArray choices = JSONUtil.parseObj(event).getJSONArray("choices");
+                if (choices.isEmpty()) {
+                    continue;
+                }
+                JSONObject choice = choices.getJSONObject(0);
+                finishReason = choice.getStr("finish_reason", finishReason);
+                JSONArray toolCalls = choice.getJSONObject("delta").getJSONArray("tool_calls");
+                if (toolCalls == null) {
+                    continue;
+                }
+                JSONObject toolCall = toolCalls.getJSONObject(0);
+                if (toolCall.getStr("id") != null) {
+                    toolCallStarts++;
+                    assertEquals("writeFile", toolCall.getByPath("function.name", String.class));
+                } else if (toolCall.getInt("index") == 0) {
+                    arguments.append(toolCall.getByPath("function.arguments", String.class));
+                }
+            }
+            assertEquals("tool_calls", finishReason);
+            // 第一轮同时写入三个文件
+            assertEquals(3, toolCallStarts);
+            assertEquals("package.json", JSONUtil.parseObj(arguments.toString()).getStr("relativeFilePath"));
+
+            // 已经进行了三轮工具调用后，下一轮是 modifyFile
+            JSONArray messages = request.getJSONArray("messages");
+            for (int i = 0; i < 3; i++) {
+                messages.add(new JSONObject().set("role", "assistant").set("tool_calls", new JSONArray().set(new JSONObject())));
+                messages.add(new JSONObject().set("role", "tool").set("content", "ok"));
+            }
+            String body = post(server, request).body();
+            assertTrue(body.contains("\"name\":\"modifyFile\""));
+        }
+    }
+
+    @Test
+    void answersRoutingWithoutStreaming() throws Exception {
+        try (OpenAiStubServer server = new OpenAiStubServer(fastBehavior().build()).start()) {
+            JSONObject request = chatRequest(false);
+            request.getJSONArray("messages").getJSONObject(0).set("content", "你是一个专业的代码生成方案路由器");
+            JSONObject response = JSONUtil.parseObj(post(server, request).body());
+            assertEquals("HTML", response.getByPath("choices[0].message.content", String.class));
+        }
+    }
+
+    @Test
+    void injectsErrorsDeterministically() throws Exception {
+        StubBehavior behavior = fastBehavior().errorRate(0.5).seed(7).build();
+        List<Integer> first;
+        try (OpenAiStubServer server = new OpenAiStubServer(behavior).start()) {
+            first = statuses(server);
+            assertEquals(first.stream().filter(status -> status == 503).count(), server.getErrorCount());
+        }
+        try (OpenAiStubServer server = new OpenAiStubServer(behavior).start()) {
+            assertEquals(first, statuses(server));
+        }
+        assertTrue(first.contains(503));
+        assertTrue(first.contains(200));
+    }
+
+    private List<Integer> statuses(OpenAiStubServer server) throws Exception {
+        List<Integer> statuses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            statuses.add(post(server, chatRequest(false)).statusCode());
+        }
+        return statuses;
+    }
+}
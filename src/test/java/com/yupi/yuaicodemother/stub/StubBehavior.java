@@ -0,0 +1,92 @@
+package com.yupi.yuaicodemother.stub;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Duration;
+
+/**
+ * 模拟模型服务的行为参数
+ * 同一个 seed 下，第 N 个请求的首 token 耗时、抖动和是否注入错误都是确定的
+ *
+ * @author yupi
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StubBehavior {
+
+    /**
+     * 监听端口，0 表示随机端口
+     */
+    @Builder.Default
+    private int port = 0;
+
+    /**
+     * 每秒输出的 token 数（一个 token 按 charsPerToken 个字符切分）
+     */
+    @Builder.Default
+    private double tokensPerSecond = 200;
+
+    /**
+     * 首 token 耗时
+     */
+    @Builder.Default
+    private Duration timeToFirstToken = Duration.ofMillis(300);
+
+    /**
+     * 耗时抖动比例，0.2 表示每次等待在 ±20% 内随机
+     */
+    @Builder.Default
+    private double jitter = 0.2;
+
+    /**
+     * 注入错误（HTTP 503）的请求比例
+     */
+    @Builder.Default
+    private double errorRate = 0;
+
+    /**
+     * 每个 token 包含的字符数
+     */
+    @Builder.Default
+    private int charsPerToken = 4;
+
+    /**
+     * 随机种子
+     */
+    @Builder.Default
+    private long seed = 42;
+
+    /**
+     * 是否在提供了 writeFile 等工具的请求中按脚本发出工具调用（Vue 工程模式）
+     */
+    @Builder.Default
+    private boolean toolCalls = true;
+
+    /**
+     * 从系统属性读取参数（stub.port、stub.tokens-per-second、stub.ttft-ms、stub.jitter、stub.error-rate、
+     * stub.chars-per-token、stub.seed、stub.tool-calls），未设置的使用默认值
+     */
+    public static StubBehavior fromSystemProperties() {
+        StubBehavior defaults = StubBehavior.builder().build();
+        return StubBehavior.builder()
+                .port(Integer.getInteger("stub.port", 18080))
+                .tokensPerSecond(doubleProperty("stub.tokens-per-second", defaults.getTokensPerSecond()))
+                .timeToFirstToken(Duration.ofMillis(Long.getLong("stub.ttft-ms", defaults.getTimeToFirstToken().toMillis())))
+                .jitter(doubleProperty("stub.jitter", defaults.getJitter()))
+                .errorRate(doubleProperty("stub.error-rate", defaults.getErrorRate()))
+                .charsPerToken(Integer.getInteger("stub.chars-per-token", defaults.getCharsPerToken()))
+                .seed(Long.getLong("stub.seed", defaults.getSeed()))
+                .toolCalls(Boolean.parseBoolean(System.getProperty("stub.tool-calls", String.valueOf(defaults.isToolCalls()))))
+                .build();
+    }
+
+    private static double doubleProperty(String key, double defaultValue) {
+        String value = System.getProperty(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
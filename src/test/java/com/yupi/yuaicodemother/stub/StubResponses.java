@@ -0,0 +1,310 @@
+package com.yupi.yuaicodemother.stub;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.http.HtmlUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 模拟模型服务的回复脚本
+ * 根据请求内容决定回复：路由和质检等非流式请求返回固定的结构化结果；
+ * 提供了文件工具的流式请求（Vue 工程模式）按对话轮次依次调用 writeFile、readFile、modifyFile、exit，最后输出总结；
+ * 其他流式请求返回包含 html、css、javascript 代码块的模板，{{prompt}} 替换为用户需求
+ *
+ * @author yupi
+ */
+public final class StubResponses {
+
+    private static final String ROUTING_PROMPT_MARKER = "代码生成方案路由器";
+
+    private static final String QUALITY_CHECK_PROMPT_MARKER = "代码质量检查";
+
+    private static final int MAX_PROMPT_LENGTH = 100;
+
+    private static final String CODE_TEMPLATE = """
+            好的，下面是根据你的需求生成的页面。
+
+            ```html
+            <!DOCTYPE html>
+            <html lang="zh-CN">
+            <head>
+                <meta charset="UTF-8">
+                <meta name="viewport" content="width=device-width, initial-scale=1.0">
+                <title>{{title}}</title>
+                <link rel="stylesheet" href="style.css">
+            </head>
+            <body>
+                <header class="hero">
+                    <h1>{{title}}</h1>
+                    <p>{{prompt}}</p>
+                    <button id="action">开始使用</button>
+                </header>
+                <main class="features">
+                    <section class="card"><h2>简洁</h2><p>清晰的布局和留白，让内容一目了然。</p></section>
+                    <section class="card"><h2>响应式</h2><p>在手机、平板和桌面端都能正常显示。</p></section>
+                    <section class="card"><h2>交互</h2><p>点击按钮查看简单的交互效果。</p></section>
+                </main>
+                <footer>由模拟模型服务生成</footer>
+                <script src="script.js"></script>
+            </body>
+            </html>
+            ```
+
+            ```css
+            * { box-sizing: border-box; margin: 0; padding: 0; }
+            body { font-family: -apple-system, "PingFang SC", sans-serif; color: #333; background: #f5f7fa; }
+            .hero { padding: 80px 24px; text-align: center; background: linear-gradient(135deg, #667eea, #764ba2); color: #fff; }
+            .hero h1 { font-size: 40px; margin-bottom: 16px; }
+            .hero button { margin-top: 24px; padding: 12px 32px; border: none; border-radius: 24px; cursor: pointer; }
+            .features { display: grid; grid-template-columns: repeat(auto-fit, minmax(240px, 1fr)); gap: 24px; padding: 48px 24px; }
+            .card { padding: 24px; border-radius: 12px; background: #fff; box-shadow: 0 4px 12px rgba(0, 0, 0, 0.08); }
+            footer { padding: 24px; text-align: center; color: #999; }
+            ```
+
+            ```javascript
+            document.getElementById('action').addEventListener('click', function () {
+                alert('欢迎使用 {{title}}');
+            });
+            ```
+
+            页面包含标题区、特性卡片和页脚，样式和脚本分别放在 style.css 和 script.js 中。
+            """;
+
+    private static final String PACKAGE_JSON = """
+            {
+              "name": "stub-vue-app",
+              "version": "1.0.0",
+              "private": true,
+              "type": "module",
+              "scripts": {
+                "dev": "vite",
+                "build": "vite build"
+              },
+              "dependencies": {
+                "vue": "^3.3.4"
+              },
+              "devDependencies": {
+                "@vitejs/plugin-vue": "^4.2.3",
+                "vite": "^4.4.5"
+              }
+            }
+            """;
+
+    private static final String VITE_CONFIG = """
+            import { defineConfig } from 'vite'
+            import vue from '@vitejs/plugin-vue'
+
+            export default defineConfig({
+              base: './',
+              plugins: [vue()]
+            })
+            """;
+
+    private static final String INDEX_HTML = """
+            <!DOCTYPE html>
+            <html lang="zh-CN">
+            <head>
+              <meta charset="UTF-8">
+              <meta name="viewport" content="width=device-width, initial-scale=1.0">
+              <title>{{title}}</title>
+            </head>
+            <body>
+              <div id="app"></div>
+              <script type="module" src="/src/main.js"></script>
+            </body>
+            </html>
+            """;
+
+    private static final String MAIN_JS = """
+            import { createApp } from 'vue'
+            import App from './App.vue'
+
+            createApp(App).mount('#app')
+            """;
+
+    private static final String APP_VUE = """
+            <template>
+              <div class="app">
+                <h1>Hello Stub</h1>
+                <p>{{ description }}</p>
+              </div>
+            </template>
+
+            <script setup>
+            const description = '{{prompt}}'
+            </script>
+
+            <style scoped>
+            .app { padding: 48px; text-align: center; font-family: sans-serif; }
+            </style>
+            """;
+
+    private static final String FINAL_SUMMARY = "项目已生成完成，包含 package.json、vite.config.js、index.html、src/main.js 和 src/App.vue。";
+
+    private StubResponses() {
+    }
+
+    /**
+     * 模拟模型的一次回复
+     *
+     * @param content   文本内容，没有时为空字符串
+     * @param toolCalls 工具调用，没有时为空列表
+     */
+    public record Reply(String content, List<ToolCall> toolCalls) {
+
+        static Reply text(String content) {
+            return new Reply(content, List.of());
+        }
+
+        static Reply tools(ToolCall... toolCalls) {
+            return new Reply("", List.of(toolCalls));
+        }
+    }
+
+    /**
+     * 工具调用
+     *
+     * @param name      工具名称
+     * @param arguments JSON 格式的参数
+     */
+    public record ToolCall(String name, String arguments) {
+    }
+
+    /**
+     * 根据请求生成回复
+     *
+     * @param request      OpenAI 格式的请求体
+     * @param useToolCalls 是否按脚本发出工具调用
+     */
+    public static Reply reply(JSONObject request, boolean useToolCalls) {
+        JSONArray messages = request.getJSONArray("messages");
+        String systemPrompt = lastContentOf(messages, "system");
+        String prompt = lastContentOf(messages, "user");
+        if (!request.getBool("stream", false)) {
+            if (systemPrompt.contains(ROUTING_PROMPT_MARKER)) {
+                return Reply.text("HTML");
+            }
+            if (systemPrompt.contains(QUALITY_CHECK_PROMPT_MARKER)) {
+                return Reply.text("{\"isValid\":true,\"errors\":[],\"suggestions\":[]}");
+            }
+            return Reply.text("好的，已完成。");
+        }
+        Set<String> tools = toolNamesOf(request.getJSONArray("tools"));
+        if (useToolCalls && tools.contains("writeFile")) {
+            return toolScript(toolRoundsSinceLastUserMessage(messages), tools, prompt);
+        }
+        return Reply.text(fill(CODE_TEMPLATE, prompt));
+    }
+
+    /**
+     * 工具调用脚本，每一轮对应一次模型请求
+     */
+    private static Reply toolScript(int round, Set<String> tools, String prompt) {
+        return switch (round) {
+            // 一轮内同时写入多个文件，覆盖并行工具执行
+            case 0 -> Reply.tools(
+                    writeFile("package.json", PACKAGE_JSON),
+                    writeFile("vite.config.js", VITE_CONFIG),
+                    writeFile("index.html", fill(INDEX_HTML, prompt)));
+            case 1 -> Reply.tools(
+                    writeFile("src/main.js", MAIN_JS),
+                    writeFile("src/App.vue", fill(APP_VUE, prompt)));
+            case 2 -> tools.contains("readFile")
+                    ? Reply.tools(toolCall("readFile", new JSONObject().set("relativeFilePath", "src/App.vue")))
+                    : Reply.text(FINAL_SUMMARY);
+            case 3 -> tools.contains("modifyFile")
+                    ? Reply.tools(toolCall("modifyFile", new JSONObject()
+                    .set("relativeFilePath", "src/App.vue")
+                    .set("oldContent", "<h1>Hello Stub</h1>")
+                    .set("newContent", "<h1>" + titleOf(prompt) + "</h1>")))
+                    : Reply.text(FINAL_SUMMARY);
+            case 4 -> tools.contains("exit")
+                    ? Reply.tools(toolCall("exit", new JSONObject()))
+                    : Reply.text(FINAL_SUMMARY);
+            default -> Reply.text(FINAL_SUMMARY);
+        };
+    }
+
+    private static ToolCall writeFile(String relativeFilePath, String content) {
+        return toolCall("writeFile", new JSONObject()
+                .set("relativeFilePath", relativeFilePath)
+                .set("content", content));
+    }
+
+    private static ToolCall toolCall(String name, JSONObject arguments) {
+        return new ToolCall(name, arguments.toString());
+    }
+
+    /**
+     * 最后一条用户消息之后已经进行的工具调用轮数
+     */
+    private static int toolRoundsSinceLastUserMessage(JSONArray messages) {
+        int rounds = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            JSONObject message = messages.getJSONObject(i);
+            String role = message.getStr("role");
+            if ("user".equals(role)) {
+                break;
+            }
+            JSONArray toolCalls = message.getJSONArray("tool_calls");
+            if ("assistant".equals(role) && toolCalls != null && !toolCalls.isEmpty()) {
+                rounds++;
+            }
+        }
+        return rounds;
+    }
+
+    private static Set<String> toolNamesOf(JSONArray tools) {
+        if (tools == null) {
+            return Set.of();
+        }
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < tools.size(); i++) {
+            names.add(tools.getJSONObject(i).getByPath("function.name", String.class));
+        }
+        return Set.copyOf(names);
+    }
+
+    /**
+     * 获取指定角色最后一条消息的文本（content 可能是字符串或多段内容数组）
+     */
+    private static String lastContentOf(JSONArray messages, String role) {
+        if (messages == null) {
+            return "";
+        }
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            JSONObject message = messages.getJSONObject(i);
+            if (!role.equals(message.getStr("role"))) {
+                continue;
+            }
+            Object content = message.get("content");
+            if (content instanceof JSONArray parts) {
+                StringBuilder text = new StringBuilder();
+                for (int j = 0; j < parts.size(); j++) {
+                    text.append(StrUtil.nullToEmpty(parts.getJSONObject(j).getStr("text")));
+                }
+                return text.toString();
+            }
+            return content == null || JSONUtil.isNull(content) ? "" : content.toString();
+        }
+        return "";
+    }
+
+    private static String fill(String template, String prompt) {
+        String escapedPrompt = HtmlUtil.escape(StrUtil.maxLength(StrUtil.trim(prompt), MAX_PROMPT_LENGTH))
+                .replace("\\", "&#92;");
+        return template
+                .replace("{{title}}", titleOf(prompt))
+                .replace("{{prompt}}", escapedPrompt);
+    }
+
+    private static String titleOf(String prompt) {
+        String title = StrUtil.subPre(StrUtil.trim(prompt).replaceAll("[\\s<>'\"&{}]+", ""), 12);
+        return StrUtil.isBlank(title) ? "示例页面" : title;
+    }
+}
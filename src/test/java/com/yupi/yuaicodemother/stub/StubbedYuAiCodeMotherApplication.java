@@ -0,0 +1,23 @@
+package com.yupi.yuaicodemother.stub;
+
+import com.yupi.yuaicodemother.YuAiCodeMotherApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * 在同一进程内启动模拟模型服务和应用（stub 配置），用于本地压测生成链路
+ * 模拟服务的参数见 {@link StubBehavior#fromSystemProperties()}
+ *
+ * @author yupi
+ */
+public class StubbedYuAiCodeMotherApplication {
+
+    public static void main(String[] args) throws Exception {
+        OpenAiStubServer server = new OpenAiStubServer(StubBehavior.fromSystemProperties()).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        // 系统属性优先于 application-stub.yml，端口为 0（随机）时也能连上
+        System.setProperty("stub.port", String.valueOf(server.getPort()));
+        new SpringApplicationBuilder(YuAiCodeMotherApplication.class)
+                .profiles("stub")
+                .run(args);
+    }
+}